@@ -35,6 +35,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        // 本地单元测试中android.util.Log等框架方法返回默认值，不抛出异常
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -25,22 +25,41 @@ import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.navigation.ui.NavigationUI;
 
+import com.example.contacthub.data.CodecBenchmark;
+import com.example.contacthub.data.CompressionBenchmark;
+import com.example.contacthub.data.EncryptionBenchmark;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.SeedData;
+import com.example.contacthub.data.StartupBenchmark;
 import com.example.contacthub.databinding.ActivityMainBinding;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.ui.view.contactDetail.ContactEditActivity;
-import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.AppExecutors;
 import com.example.contacthub.utils.QRCodeUtil;
 import com.journeyapps.barcodescanner.ScanOptions;
 
 import org.json.JSONException;
 
-import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 public class MainActivity extends AppCompatActivity {    private ActivityMainBinding binding;
     private static final String TAG = "MainActivity";
     private QRCodeUtil qrCodeUtil;
-    private FileUtil fileUtil;
+
+    /**
+     * 可通过启动参数运行的基准，按启动参数名索引，依次在后台线程运行
+     */
+    private static final Map<String, Consumer<Context>> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put(StartupBenchmark.EXTRA_RUN, StartupBenchmark::run);
+        BENCHMARKS.put(CodecBenchmark.EXTRA_RUN, CodecBenchmark::run);
+        BENCHMARKS.put(CompressionBenchmark.EXTRA_RUN, CompressionBenchmark::run);
+        BENCHMARKS.put(EncryptionBenchmark.EXTRA_RUN, EncryptionBenchmark::run);
+    }
     
     /**
      * 用于从图库选择二维码图片的启动器
@@ -80,6 +99,9 @@ public class MainActivity extends AppCompatActivity {    private ActivityMainBin
 
         super.onCreate(savedInstanceState);
 
+        // 调试版本可通过启动参数关闭列表投影或运行启动基准，需在联系人列表开始观察数据前设置
+        applyBenchmarkOptions(getIntent());
+
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
@@ -87,7 +109,6 @@ public class MainActivity extends AppCompatActivity {    private ActivityMainBin
         setupStatusBar();
         
         qrCodeUtil = new QRCodeUtil(this);
-        fileUtil = new FileUtil(this);
 
         // 适配状态栏
         adjustTopBarToStatusBar();
@@ -109,8 +130,47 @@ public class MainActivity extends AppCompatActivity {    private ActivityMainBin
                     .show();
         });
 
-        initializeData();
+        // 只在首次启动时写入打包的示例数据，之后的启动只检查一次标记
+        Context appContext = getApplicationContext();
+        AppExecutors.io().execute(() -> SeedData.seedIfNeeded(appContext));
         setupNavigation();
+        warnIfDataUnreadable(appContext);
+    }
+
+    /**
+     * 数据无法读取时提示用户（例如从备份恢复后本机没有数据密钥），此时仓库拒绝一切修改
+     *
+     * @param appContext 应用上下文
+     */
+    private void warnIfDataUnreadable(Context appContext) {
+        AppExecutors.runAsync(() -> ContactRepository.getInstance(appContext).isReadFailed()).observe(this, result -> {
+            if (result.isSuccess() && Boolean.TRUE.equals(result.getValue())) {
+                new AlertDialog.Builder(this)
+                        .setTitle("数据无法读取")
+                        .setMessage("通讯录数据已损坏或无法解密，为避免覆盖原有数据，暂时不能修改联系人和分组。")
+                        .setPositiveButton("确定", null)
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * 处理启动基准相关的启动参数，仅在可调试版本中生效
+     *
+     * @param launchIntent 启动Intent
+     */
+    private void applyBenchmarkOptions(Intent launchIntent) {
+        if (launchIntent == null || !StartupBenchmark.isAvailable(this)) {
+            return;
+        }
+        boolean disableProjection = launchIntent.getBooleanExtra(StartupBenchmark.EXTRA_DISABLE_LIST_PROJECTION, false);
+        ContactRepository.getInstance(this).setListProjectionEnabled(!disableProjection);
+        Context appContext = getApplicationContext();
+        for (Map.Entry<String, Consumer<Context>> benchmark : BENCHMARKS.entrySet()) {
+            if (launchIntent.getBooleanExtra(benchmark.getKey(), false)) {
+                AppExecutors.io().execute(() -> benchmark.getValue().accept(appContext));
+            }
+        }
     }
 
     /**
@@ -198,32 +258,6 @@ public class MainActivity extends AppCompatActivity {    private ActivityMainBin
         });
     }
 
-    /**
-     * 初始化示例数据
-     * 包括联系人列表、分组信息和个人名片
-     */
-    private void initializeData() {        // 添加联系人数据
-            String contactsJson = "[{\"id\":1,\"name\":\"王志强\",\"mobileNumber\":\"13812345678\",\"telephoneNumber\":\"01087654321\",\"email\":\"zhiqiang.wang@example.com\",\"address\":\"北京市海淀区中关村南大街5号\",\"groupIds\":[1,2]},{\"id\":2,\"name\":\"李晓红\",\"mobileNumber\":\"13987654321\",\"telephoneNumber\":\"02112345678\",\"email\":\"xiaohong.li@example.com\",\"address\":\"上海市浦东新区张江高科技园区\",\"groupIds\":[1,4]},{\"id\":3,\"name\":\"张伟\",\"mobileNumber\":\"13511112222\",\"telephoneNumber\":\"075533221100\",\"email\":\"wei.zhang@example.com\",\"address\":\"深圳市南山区科技园路8号\",\"groupIds\":[2,3]},{\"id\":4,\"name\":\"刘芳\",\"mobileNumber\":\"13622223333\",\"telephoneNumber\":\"02087654321\",\"email\":\"fang.liu@example.com\",\"address\":\"广州市天河区体育西路123号\",\"groupIds\":[1,3]},{\"id\":5,\"name\":\"陈明\",\"mobileNumber\":\"13733334444\",\"telephoneNumber\":\"057112345678\",\"email\":\"ming.chen@example.com\",\"address\":\"杭州市西湖区文三路478号\",\"groupIds\":[2,4]},{\"id\":6,\"name\":\"赵阳\",\"mobileNumber\":\"13844445555\",\"telephoneNumber\":\"02887654321\",\"email\":\"yang.zhao@example.com\",\"address\":\"成都市高新区天府大道1199号\",\"groupIds\":[1,2]},{\"id\":7,\"name\":\"孙丽\",\"mobileNumber\":\"13955556666\",\"telephoneNumber\":\"02312345678\",\"email\":\"li.sun@example.com\",\"address\":\"重庆市渝中区解放碑步行街88号\",\"groupIds\":[3,4]},{\"id\":8,\"name\":\"周健\",\"mobileNumber\":\"13666667777\",\"telephoneNumber\":\"02487654321\",\"email\":\"jian.zhou@example.com\",\"address\":\"沈阳市和平区南京街5号\",\"groupIds\":[1,4]},{\"id\":9,\"name\":\"吴婷\",\"mobileNumber\":\"13777778888\",\"telephoneNumber\":\"041112345678\",\"email\":\"ting.wu@example.com\",\"address\":\"大连市中山区人民路25号\",\"groupIds\":[2,3]},{\"id\":10,\"name\":\"郑远\",\"mobileNumber\":\"13888889999\",\"telephoneNumber\":\"053287654321\",\"email\":\"yuan.zheng@example.com\",\"address\":\"青岛市市南区香港中路66号\",\"groupIds\":[1,4]},{\"id\":11,\"name\":\"冯强\",\"mobileNumber\":\"13999990000\",\"telephoneNumber\":\"02512345678\",\"email\":\"qiang.feng@example.com\",\"address\":\"南京市鼓楼区中山北路123号\",\"groupIds\":[1,2]},{\"id\":12,\"name\":\"陈佳\",\"mobileNumber\":\"15012345678\",\"telephoneNumber\":\"02787654321\",\"email\":\"jia.chen@example.com\",\"address\":\"武汉市武昌区珞瑜路205号\",\"groupIds\":[3,4]},{\"id\":13,\"name\":\"刘洋\",\"mobileNumber\":\"15123456789\",\"telephoneNumber\":\"037112345678\",\"email\":\"yang.liu@example.com\",\"address\":\"郑州市金水区花园路123号\",\"groupIds\":[1,3]},{\"id\":14,\"name\":\"黄晓明\",\"mobileNumber\":\"15234567890\",\"telephoneNumber\":\"043187654321\",\"email\":\"xiaoming.huang@example.com\",\"address\":\"长春市南关区人民大街2088号\",\"groupIds\":[2,4]},{\"id\":15,\"name\":\"周梅\",\"mobileNumber\":\"15345678901\",\"telephoneNumber\":\"045112345678\",\"email\":\"mei.zhou@example.com\",\"address\":\"哈尔滨市南岗区红旗大街235号\",\"groupIds\":[1,2]},{\"id\":16,\"name\":\"吴鹏\",\"mobileNumber\":\"15456789012\",\"telephoneNumber\":\"059187654321\",\"email\":\"peng.wu@example.com\",\"address\":\"福州市鼓楼区五一北路123号\",\"groupIds\":[3,4]},{\"id\":17,\"name\":\"郑晨\",\"mobileNumber\":\"15567890123\",\"telephoneNumber\":\"059212345678\",\"email\":\"chen.zheng@example.com\",\"address\":\"厦门市思明区湖滨南路358号\",\"groupIds\":[1,4]},{\"id\":18,\"name\":\"王辉\",\"mobileNumber\":\"15678901234\",\"telephoneNumber\":\"089887654321\",\"email\":\"hui.wang@example.com\",\"address\":\"海口市龙华区国贸大道56号\",\"groupIds\":[2,3]},{\"id\":19,\"name\":\"曾琳\",\"mobileNumber\":\"15789012345\",\"telephoneNumber\":\"087112345678\",\"email\":\"lin.zeng@example.com\",\"address\":\"昆明市盘龙区北京路155号\",\"groupIds\":[1,2]}]";        try {
-            fileUtil.saveRawJSON("contacts.json", contactsJson);
-            Log.d(TAG, "联系人数据初始化成功");
-        } catch (IOException e) {
-            Log.e(TAG, "初始化联系人数据失败", e);
-        }        // 添加分组数据
-        String groupsJson = "[{\"id\":1,\"name\":\"密切联系人\"},{\"id\":2,\"name\":\"大学同学\"},{\"id\":3,\"name\":\"工作伙伴\"},{\"id\":4,\"name\":\"家人亲友\"}]";
-        try {
-            fileUtil.saveRawJSON("groups.json", groupsJson);
-            Log.d(TAG, "分组数据初始化成功");
-        } catch (IOException e) {
-            Log.e(TAG, "初始化分组数据失败", e);
-        }        // 添加我的名片
-            String myCardJson = "{\"name\":\"张明远\",\"mobileNumber\":\"13912345678\",\"telephoneNumber\":\"01087654321\",\"email\":\"mingyuan.zhang@company.com\",\"address\":\"北京市朝阳区建国路88号现代城5层\",\"photo\":\"\",\"qq\":\"123456789\",\"wechat\":\"zhang_my\",\"website\":\"https://mingyuan.dev\",\"birthday\":\"1990-05-15\",\"company\":\"未来科技有限公司\",\"postalCode\":\"100022\",\"notes\":\"软件工程师，专注于移动应用开发\"}";        try {
-            fileUtil.saveRawJSON("my.json", myCardJson);
-            Log.d(TAG, "我的名片数据初始化成功");
-        } catch (IOException e) {
-            Log.e(TAG, "初始化我的名片数据失败", e);
-        }
-    }
-
     /**
      * 打开图库选择二维码图片
      */
@@ -239,12 +273,14 @@ public class MainActivity extends AppCompatActivity {    private ActivityMainBin
      * @param imageUri 选中图片的URI
      */
     private void processQRCodeImage(Uri imageUri) {
-        String qrCodeResult = qrCodeUtil.decodeQRCodeFromUri(imageUri);
-        if (qrCodeResult != null) {
-            processQRCodeResult(qrCodeResult);
-        } else {
-            Toast.makeText(this, "无法识别图片中的二维码", Toast.LENGTH_SHORT).show();
-        }
+        // 图片解码和二维码识别在后台线程执行
+        AppExecutors.runAsync(() -> qrCodeUtil.decodeQRCodeFromUri(imageUri)).observe(this, result -> {
+            if (result.isSuccess() && result.getValue() != null) {
+                processQRCodeResult(result.getValue());
+            } else {
+                Toast.makeText(this, "无法识别图片中的二维码", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -253,18 +289,26 @@ public class MainActivity extends AppCompatActivity {    private ActivityMainBin
      * @param qrContent 二维码内容字符串
      */
     private void processQRCodeResult(String qrContent) {
-        try {
+        Context appContext = getApplicationContext();
+        // 解析联系人并分配ID（可能需要先加载联系人数据）在后台线程执行
+        AppExecutors.runAsync(() -> {
             Contact newContact = qrCodeUtil.jsonToContact(qrContent);
-            newContact.generateNewId(this);
-
-            Intent intent = new Intent(this, ContactEditActivity.class);
-            intent.putExtra("contact", newContact);
-            startActivity(intent);
-
-            Toast.makeText(this, "已扫描联系人信息，请补充完善", Toast.LENGTH_SHORT).show();
-        } catch (JSONException e) {
-            Log.e(TAG, "二维码内容不是有效的JSON格式", e);
-            Toast.makeText(this, "无效的二维码格式", Toast.LENGTH_SHORT).show();
-        }
+            newContact.generateNewId(appContext);
+            return newContact;
+        }).observe(this, result -> {
+            if (result.isSuccess()) {
+                Intent intent = new Intent(this, ContactEditActivity.class);
+                intent.putExtra("contact", result.getValue());
+                startActivity(intent);
+
+                Toast.makeText(this, "已扫描联系人信息，请补充完善", Toast.LENGTH_SHORT).show();
+            } else if (result.getError() instanceof JSONException) {
+                Log.e(TAG, "二维码内容不是有效的JSON格式", result.getError());
+                Toast.makeText(this, "无效的二维码格式", Toast.LENGTH_SHORT).show();
+            } else {
+                Log.e(TAG, "处理二维码内容失败", result.getError());
+                Toast.makeText(this, "处理二维码失败", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
@@ -0,0 +1,89 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 记录格式基准
+ * 仅在可调试版本中生效：用当前联系人分别写出JSON文件和二进制记录文件，
+ * 对比文件大小以及FileUtil.readFile与二进制解码的解析耗时。
+ * 使用方式：
+ * adb shell am start -n com.example.contacthub/.MainActivity --ez benchmark_codec true
+ */
+public final class CodecBenchmark {
+    private static final String TAG = "CodecBenchmark";
+    public static final String EXTRA_RUN = "benchmark_codec";
+    private static final String JSON_FILE = "benchmark.contacts.json";
+    private static final String BINARY_FILE = "benchmark.contacts.bin";
+    private static final int ITERATIONS = 5;
+
+    private CodecBenchmark() {
+    }
+
+    /**
+     * 对比两种格式的大小和解析耗时，结果输出到日志
+     * 会阻塞调用线程，应在后台线程执行
+     *
+     * @param context 应用上下文
+     */
+    public static void run(Context context) {
+        FileUtil fileUtil = new FileUtil(context);
+        List<Contact> contacts = ContactRepository.getInstance(context).getContacts();
+        try {
+            fileUtil.saveJSON(contacts.toArray(new Contact[0]), JSON_FILE);
+            fileUtil.saveBinary(BINARY_FILE, out -> ContactRecordCodec.writeContacts(contacts, out));
+
+            long[] jsonMillis = new long[ITERATIONS];
+            long[] binaryMillis = new long[ITERATIONS];
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = SystemClock.elapsedRealtime();
+                Contact[] parsed = fileUtil.readFile(JSON_FILE, Contact[].class);
+                jsonMillis[i] = SystemClock.elapsedRealtime() - start;
+                if (parsed == null || parsed.length != contacts.size()) {
+                    Log.w(TAG, "JSON解析结果数量不一致");
+                }
+
+                start = SystemClock.elapsedRealtime();
+                List<Contact> decoded;
+                try (InputStream in = fileUtil.openBinary(BINARY_FILE)) {
+                    decoded = ContactRecordCodec.readContacts(in);
+                }
+                binaryMillis[i] = SystemClock.elapsedRealtime() - start;
+                if (decoded.size() != contacts.size()) {
+                    Log.w(TAG, "二进制解码结果数量不一致");
+                }
+            }
+
+            File filesDir = context.getFilesDir();
+            report("JSON", new File(filesDir, JSON_FILE).length(), median(jsonMillis), contacts.size());
+            report("二进制", new File(filesDir, BINARY_FILE).length(), median(binaryMillis), contacts.size());
+        } catch (IOException e) {
+            Log.e(TAG, "记录格式基准失败", e);
+        } finally {
+            fileUtil.deleteFile(JSON_FILE);
+            fileUtil.deleteFile(BINARY_FILE);
+        }
+    }
+
+    private static void report(String format, long bytes, long millis, int count) {
+        long perSecond = millis > 0 ? count * 1000L / millis : -1;
+        Log.i(TAG, format + ": " + bytes + "B，解析 " + millis + "ms（中位数），"
+                + (perSecond >= 0 ? perSecond + " 条/秒" : "耗时过短无法计算吞吐") + "，联系人: " + count);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,737 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.ContactIndexer;
+import com.example.contacthub.utils.DurableFile;
+import com.example.contacthub.utils.FileEncryption;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.RoaringIdSet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+/**
+ * 内存映射的列式联系人索引
+ * 供数量很大的通讯录使用的只读快照：ID、姓名排序序号、首字母分段表，
+ * 以及姓名、拼音、拼音首字母、电话号码等列表字段各自按列存放在同一个文件中，
+ * 通过MappedByteBuffer直接访问。电话号码另存一列只保留数字的号码，搜索号码时忽略分隔符。搜索和按首字母分段只扫描需要的列，
+ * 不为每条记录创建联系人对象，只有真正显示的行才会生成精简联系人。
+ * 行按首字母分段排序，段内保持联系人快照中的顺序，与{@link com.example.contacthub.utils.ContactIndexer#groupByFirstLetter}一致。
+ * 文本列中空字符串与null不作区分。
+ * 索引文件与其他数据文件一样带有校验尾，打开时在映射上校验CRC32，校验失败时回退到上一代备份。
+ * 启用加密后索引文件按块加密，无法直接映射，打开时解密到内存中，只读取到最后一列为止；
+ * 此时索引占用与文件大小相当的堆内存，不再有映射带来的按需分页。
+ * 索引生成之后的修改不改写文件，通过{@link #withChanges}叠加内存中的当前版本
+ */
+public final class ColumnarContactIndex {
+    private static final String TAG = "ColumnarContactIndex";
+    public static final String INDEX_FILE = "contacts.columns";
+    private static final int MAGIC = 0x43484331; // "CHC1"
+    private static final int FORMAT_VERSION = 2;
+
+    // 文本列，顺序与精简联系人的字段对应
+    private static final int TEXT_NAME = 0;
+    private static final int TEXT_PINYIN = 1;
+    private static final int TEXT_FIRST_LETTER = 2;
+    private static final int TEXT_MOBILE = 3;
+    private static final int TEXT_TELEPHONE = 4;
+    private static final int TEXT_ADDRESS = 5;
+    private static final int TEXT_PHOTO_REF = 6;
+    // 只保留数字的号码，只用于搜索
+    private static final int TEXT_MOBILE_DIGITS = 7;
+    private static final int TEXT_TELEPHONE_DIGITS = 8;
+    private static final int TEXT_COLUMNS = 9;
+
+    // 列目录中的列：ID、姓名排序序号、分段表，随后每个文本列各有偏移量列和字符列
+    private static final int COL_IDS = 0;
+    private static final int COL_NAME_RANK = 1;
+    private static final int COL_SECTIONS = 2;
+    private static final int COL_TEXT_BASE = 3;
+    private static final int COLUMN_COUNT = COL_TEXT_BASE + TEXT_COLUMNS * 2;
+    private static final int HEADER_SIZE = 16 + COLUMN_COUNT * 8;
+
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final int sectionCount;
+    private final int[] columnOffsets = new int[COLUMN_COUNT];
+    private final Rows allRows;
+
+    private ColumnarContactIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是列式索引文件");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("不支持的列式索引版本: " + buffer.getInt(4));
+        }
+        rowCount = buffer.getInt(8);
+        if (rowCount < 0 || buffer.getInt(12) != COLUMN_COUNT) {
+            throw new IOException("列式索引文件头损坏");
+        }
+        int[] lengths = new int[COLUMN_COUNT];
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            columnOffsets[column] = buffer.getInt(16 + column * 8);
+            lengths[column] = buffer.getInt(20 + column * 8);
+            if (columnOffsets[column] < HEADER_SIZE || lengths[column] < 0
+                    || (long) columnOffsets[column] + lengths[column] > buffer.capacity()) {
+                throw new IOException("列式索引列越界: " + column);
+            }
+        }
+        if (lengths[COL_IDS] != rowCount * 4 || lengths[COL_NAME_RANK] != rowCount * 4
+                || lengths[COL_SECTIONS] % 8 != 0) {
+            throw new IOException("列式索引列长度错误");
+        }
+        for (int field = 0; field < TEXT_COLUMNS; field++) {
+            int offsetsColumn = COL_TEXT_BASE + field * 2;
+            if (lengths[offsetsColumn] != (rowCount + 1) * 4
+                    || buffer.getInt(columnOffsets[offsetsColumn] + rowCount * 4) * 2L > lengths[offsetsColumn + 1]) {
+                throw new IOException("列式索引文本列损坏: " + field);
+            }
+        }
+        sectionCount = lengths[COL_SECTIONS] / 8;
+        allRows = new Rows(null, 0, rowCount);
+    }
+
+    /**
+     * 打开并映射列式索引
+     *
+     * @param context 应用上下文
+     * @return 列式索引，文件不存在或损坏时返回null
+     */
+    public static ColumnarContactIndex open(Context context) {
+        File file = new File(context.getFilesDir(), INDEX_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            // 映射在通道关闭后仍然有效，替换文件不会影响已映射的旧文件
+            ByteBuffer buffer = DurableFile.mapRead(file);
+            if (buffer.capacity() < 4 || buffer.getInt(0) == MAGIC) {
+                return new ColumnarContactIndex(buffer);
+            }
+            return new ColumnarContactIndex(readDecrypted(buffer));
+        } catch (IOException e) {
+            Log.e(TAG, "打开列式索引失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 把已校验的加密索引解密到内存中
+     * 先读取列目录得到数据的总长度，一次分配后读满，不读取最后一列之后的内容
+     *
+     * @param sealed 映射的加密索引，不含校验尾
+     * @return 索引数据
+     * @throws IOException 解密失败或列目录无效时抛出
+     */
+    private static ByteBuffer readDecrypted(ByteBuffer sealed) throws IOException {
+        long fileLength = sealed.capacity();
+        try (DataInputStream in = new DataInputStream(
+                FileEncryption.detect(new BufferInputStream(sealed), FileUtil.getEncryption()))) {
+            byte[] header = new byte[HEADER_SIZE];
+            in.readFully(header);
+            ByteBuffer directory = ByteBuffer.wrap(header);
+            if (directory.getInt(0) != MAGIC || directory.getInt(12) != COLUMN_COUNT) {
+                throw new IOException("不是列式索引文件");
+            }
+            long size = HEADER_SIZE;
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                size = Math.max(size, (long) directory.getInt(16 + column * 8) + directory.getInt(20 + column * 8));
+            }
+            if (size > fileLength) {
+                throw new IOException("列式索引列越界");
+            }
+            byte[] data = Arrays.copyOf(header, (int) size);
+            in.readFully(data, HEADER_SIZE, data.length - HEADER_SIZE);
+            return ByteBuffer.wrap(data);
+        }
+    }
+
+    /**
+     * 删除列式索引文件
+     *
+     * @param fileUtil 文件工具
+     */
+    public static void delete(FileUtil fileUtil) {
+        fileUtil.deleteFile(INDEX_FILE);
+    }
+
+    /**
+     * 用联系人快照生成列式索引文件
+     *
+     * @param fileUtil 文件工具
+     * @param contacts 联系人快照
+     * @throws IOException 写入失败时抛出，此时原索引文件保持不变
+     */
+    public static void write(FileUtil fileUtil, List<Contact> contacts) throws IOException {
+        // 只保留列表字段，缺少拼音的联系人在副本上补全，不修改快照中的对象
+        List<Contact> rows = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            Contact row = contact.toListProjection();
+            if (row.getFirstLetter() == null || row.getFirstLetter().isEmpty()) {
+                row.generatePinyin();
+            }
+            rows.add(row);
+        }
+        // 稳定排序，段内保持快照顺序
+        rows.sort(Comparator.comparing(ColumnarContactIndex::sectionOf));
+
+        int n = rows.size();
+        Integer[] byName = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byName[i] = i;
+        }
+        Arrays.sort(byName, Comparator.comparing(i -> rows.get(i).getName(),
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        int[] nameRank = new int[n];
+        for (int rank = 0; rank < n; rank++) {
+            nameRank[byName[rank]] = rank;
+        }
+
+        List<int[]> sections = new ArrayList<>();
+        String current = null;
+        for (int i = 0; i < n; i++) {
+            String section = sectionOf(rows.get(i));
+            if (!section.equals(current)) {
+                sections.add(new int[]{section.charAt(0), i});
+                current = section;
+            }
+        }
+
+        String[][] texts = new String[TEXT_COLUMNS][n];
+        int[] textChars = new int[TEXT_COLUMNS];
+        for (int i = 0; i < n; i++) {
+            Contact row = rows.get(i);
+            texts[TEXT_NAME][i] = row.getName();
+            texts[TEXT_PINYIN][i] = row.getPinyin();
+            texts[TEXT_FIRST_LETTER][i] = row.getFirstLetter();
+            texts[TEXT_MOBILE][i] = row.getMobileNumber();
+            texts[TEXT_TELEPHONE][i] = row.getTelephoneNumber();
+            texts[TEXT_ADDRESS][i] = row.getAddress();
+            texts[TEXT_PHOTO_REF][i] = row.getPhotoRef();
+            texts[TEXT_MOBILE_DIGITS][i] = ContactIndexer.phoneDigits(row.getMobileNumber());
+            texts[TEXT_TELEPHONE_DIGITS][i] = ContactIndexer.phoneDigits(row.getTelephoneNumber());
+            for (int field = 0; field < TEXT_COLUMNS; field++) {
+                if (texts[field][i] != null) {
+                    textChars[field] += texts[field][i].length();
+                }
+            }
+        }
+
+        // 先计算列目录，每列按4字节对齐
+        int[] offsets = new int[COLUMN_COUNT];
+        int[] lengths = new int[COLUMN_COUNT];
+        lengths[COL_IDS] = n * 4;
+        lengths[COL_NAME_RANK] = n * 4;
+        lengths[COL_SECTIONS] = sections.size() * 8;
+        for (int field = 0; field < TEXT_COLUMNS; field++) {
+            lengths[COL_TEXT_BASE + field * 2] = (n + 1) * 4;
+            lengths[COL_TEXT_BASE + field * 2 + 1] = textChars[field] * 2;
+        }
+        int position = HEADER_SIZE;
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            offsets[column] = position;
+            position += align(lengths[column]);
+        }
+
+        fileUtil.saveBinary(INDEX_FILE, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(n);
+            out.writeInt(COLUMN_COUNT);
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                out.writeInt(offsets[column]);
+                out.writeInt(lengths[column]);
+            }
+            for (Contact row : rows) {
+                out.writeInt(row.getId());
+            }
+            for (int rank : nameRank) {
+                out.writeInt(rank);
+            }
+            for (int[] section : sections) {
+                out.writeInt(section[0]);
+                out.writeInt(section[1]);
+            }
+            for (int field = 0; field < TEXT_COLUMNS; field++) {
+                int offset = 0;
+                out.writeInt(offset);
+                for (String text : texts[field]) {
+                    offset += text != null ? text.length() : 0;
+                    out.writeInt(offset);
+                }
+                for (String text : texts[field]) {
+                    if (text != null) {
+                        out.writeChars(text);
+                    }
+                }
+                for (int pad = lengths[COL_TEXT_BASE + field * 2 + 1]; pad % 4 != 0; pad++) {
+                    out.writeByte(0);
+                }
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * 联系人所属的首字母分段，与ContactIndexer的分组规则相同
+     */
+    private static String sectionOf(Contact row) {
+        String firstLetter = row.getFirstLetter();
+        return firstLetter != null && !firstLetter.isEmpty() ? firstLetter.substring(0, 1) : "#";
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * 获取索引中的联系人数
+     *
+     * @return 行数
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * 获取全部行，按首字母分段排序
+     *
+     * @return 按需生成精简联系人的只读列表
+     */
+    public Rows rows() {
+        return allRows;
+    }
+
+    /**
+     * 在索引上叠加索引生成之后的修改
+     * 修改过的联系人不再读取索引中的旧行，而使用内存中的当前版本，索引文件保持不变
+     *
+     * @param staleIds 索引生成之后修改、删除或新增的联系人ID
+     * @param changed 这些联系人中仍然存在的当前版本，按ID排列
+     * @return 与当前联系人一致的只读列表
+     */
+    public Overlay withChanges(RoaringIdSet staleIds, List<Contact> changed) {
+        if (staleIds.isEmpty()) {
+            return new Overlay(allRows, Collections.emptyList(), null);
+        }
+        int[] mapping = new int[rowCount];
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (!staleIds.contains(idAt(row))) {
+                mapping[count++] = row;
+            }
+        }
+        return new Overlay(new Rows(mapping, 0, count), changed, null);
+    }
+
+    /**
+     * 按行号读取联系人ID
+     *
+     * @param row 行号
+     * @return 联系人ID
+     */
+    public int idAt(int row) {
+        return buffer.getInt(columnOffsets[COL_IDS] + row * 4);
+    }
+
+    /**
+     * 生成一行的精简联系人，只包含列表显示所需的字段
+     *
+     * @param row 行号
+     * @return 精简联系人
+     */
+    public Contact materialize(int row) {
+        Contact contact = new Contact();
+        contact.setId(idAt(row));
+        contact.setName(text(TEXT_NAME, row));
+        contact.setPinyin(text(TEXT_PINYIN, row));
+        contact.setFirstLetter(text(TEXT_FIRST_LETTER, row));
+        contact.setMobileNumber(text(TEXT_MOBILE, row));
+        contact.setTelephoneNumber(text(TEXT_TELEPHONE, row));
+        contact.setAddress(text(TEXT_ADDRESS, row));
+        contact.setPhotoRef(text(TEXT_PHOTO_REF, row));
+        return contact;
+    }
+
+    private int nameRank(int row) {
+        return buffer.getInt(columnOffsets[COL_NAME_RANK] + row * 4);
+    }
+
+    private String sectionLetter(int section) {
+        return String.valueOf((char) buffer.getInt(columnOffsets[COL_SECTIONS] + section * 8));
+    }
+
+    private int sectionStart(int section) {
+        return section < sectionCount ? buffer.getInt(columnOffsets[COL_SECTIONS] + section * 8 + 4) : rowCount;
+    }
+
+    /**
+     * 按行号查找所在分段，分段表按起始行递增
+     */
+    private int sectionOfRow(int row) {
+        int low = 0;
+        int high = sectionCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (sectionStart(mid) <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int textStart(int field, int row) {
+        return buffer.getInt(columnOffsets[COL_TEXT_BASE + field * 2] + row * 4);
+    }
+
+    private String text(int field, int row) {
+        int start = textStart(field, row);
+        int end = textStart(field, row + 1);
+        if (end <= start) {
+            return null;
+        }
+        int base = columnOffsets[COL_TEXT_BASE + field * 2 + 1];
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar(base + (start + i) * 2);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 判断一行的文本列是否包含关键词，直接比较映射中的字符
+     *
+     * @param field 文本列
+     * @param row 行号
+     * @param keyword 已转为小写的关键词
+     * @param ignoreCase 是否忽略列中字符的大小写
+     * @return 包含时返回true
+     */
+    private boolean textContains(int field, int row, String keyword, boolean ignoreCase) {
+        int start = textStart(field, row);
+        int end = textStart(field, row + 1);
+        int base = columnOffsets[COL_TEXT_BASE + field * 2 + 1];
+        int length = keyword.length();
+        for (int from = start; from + length <= end; from++) {
+            int i = 0;
+            while (i < length) {
+                char c = buffer.getChar(base + (from + i) * 2);
+                if (ignoreCase) {
+                    c = Character.toLowerCase(c);
+                }
+                if (c != keyword.charAt(i)) {
+                    break;
+                }
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断一行是否匹配关键词，规则与ContactIndexer.search相同
+     */
+    private boolean matches(int row, String lowerKeyword, String phoneKeyword, boolean pinyinInitials) {
+        return textContains(TEXT_NAME, row, lowerKeyword, true)
+                || (phoneKeyword != null && textContains(TEXT_MOBILE_DIGITS, row, phoneKeyword, false))
+                || (phoneKeyword != null && textContains(TEXT_TELEPHONE_DIGITS, row, phoneKeyword, false))
+                || textContains(TEXT_PINYIN, row, lowerKeyword, true)
+                || (pinyinInitials && textContains(TEXT_FIRST_LETTER, row, lowerKeyword, true));
+    }
+
+    /**
+     * 按需生成精简联系人的只读行列表
+     * 可以是全部行、一个首字母分段或一组搜索结果
+     */
+    public final class Rows extends AbstractList<Contact> implements RandomAccess, ContactIndexer.IndexedContacts {
+        // 行号映射，为null时表示从start开始的连续行
+        private final int[] mapping;
+        private final int start;
+        private final int size;
+
+        private Rows(int[] mapping, int start, int size) {
+            this.mapping = mapping;
+            this.start = start;
+            this.size = size;
+        }
+
+        @Override
+        public Contact get(int index) {
+            return materialize(rowAt(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private int rowAt(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return mapping != null ? mapping[start + index] : start + index;
+        }
+
+        /**
+         * 按拼音首字母分组，只读取分段表或首字母列
+         *
+         * @return 按首字母分组的联系人映射表，每组都是按需生成的行列表
+         */
+        @Override
+        public Map<String, List<Contact>> groupByFirstLetter() {
+            Map<String, List<Contact>> map = new TreeMap<>();
+            if (mapping == null && start == 0 && size == rowCount) {
+                for (int section = 0; section < sectionCount; section++) {
+                    int from = sectionStart(section);
+                    map.put(sectionLetter(section), new Rows(null, from, sectionStart(section + 1) - from));
+                }
+                return map;
+            }
+
+            // 各分段的行号在全部行中连续，按分段计数后再分配
+            int[] sectionOfIndex = new int[size];
+            int[] counts = new int[sectionCount];
+            for (int i = 0; i < size; i++) {
+                sectionOfIndex[i] = sectionOfRow(rowAt(i));
+                counts[sectionOfIndex[i]]++;
+            }
+            int[][] grouped = new int[sectionCount][];
+            int[] filled = new int[sectionCount];
+            for (int i = 0; i < size; i++) {
+                int section = sectionOfIndex[i];
+                if (grouped[section] == null) {
+                    grouped[section] = new int[counts[section]];
+                }
+                grouped[section][filled[section]++] = rowAt(i);
+            }
+            for (int section = 0; section < sectionCount; section++) {
+                if (grouped[section] != null) {
+                    map.put(sectionLetter(section), new Rows(grouped[section], 0, counts[section]));
+                }
+            }
+            return map;
+        }
+
+        /**
+         * 在当前行中搜索，匹配规则与ContactIndexer.search相同
+         *
+         * @param keyword 搜索关键词
+         * @return 匹配的行，按姓名排序
+         */
+        @Override
+        public Rows search(String keyword) {
+            if (keyword == null || keyword.isEmpty()) {
+                return this;
+            }
+            String lowerKeyword = keyword.toLowerCase();
+            boolean pinyinInitials = lowerKeyword.matches("[a-z]+") && lowerKeyword.length() > 1;
+            String phoneKeyword = ContactIndexer.phoneKeyword(lowerKeyword);
+
+            // 高32位为姓名排序序号，低32位为行号，排序后即按姓名排列
+            long[] matched = new long[16];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int row = rowAt(i);
+                if (matches(row, lowerKeyword, phoneKeyword, pinyinInitials)) {
+                    if (count == matched.length) {
+                        matched = Arrays.copyOf(matched, count * 2);
+                    }
+                    matched[count++] = ((long) nameRank(row) << 32) | row;
+                }
+            }
+            Arrays.sort(matched, 0, count);
+            int[] rows = new int[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = (int) matched[i];
+            }
+            return new Rows(rows, 0, count);
+        }
+
+        /**
+         * 读取这些行对应的联系人ID
+         *
+         * @return 联系人ID，顺序与列表一致
+         */
+        public List<Integer> ids() {
+            if (size == 0) {
+                return Collections.emptyList();
+            }
+            List<Integer> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(idAt(rowAt(i)));
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * 索引行与内存中联系人合并而成的只读列表
+     * 分组和搜索时索引行仍只扫描需要的列，内存中的联系人按ContactIndexer的规则处理后按原有顺序合并
+     */
+    public final class Overlay extends AbstractList<Contact> implements RandomAccess, ContactIndexer.IndexedContacts {
+        private final Rows rows;
+        private final List<Contact> extra;
+        // 合并后的顺序，非负数为行列表下标，负数为~内存联系人下标；为null时行列表在前
+        private final int[] order;
+
+        private Overlay(Rows rows, List<Contact> extra, int[] order) {
+            this.rows = rows;
+            this.extra = extra;
+            this.order = order;
+        }
+
+        @Override
+        public Contact get(int index) {
+            if (order != null) {
+                int position = order[index];
+                return position >= 0 ? rows.get(position) : extra.get(~position);
+            }
+            return index < rows.size() ? rows.get(index) : extra.get(index - rows.size());
+        }
+
+        @Override
+        public int size() {
+            return rows.size() + extra.size();
+        }
+
+        /**
+         * 按拼音首字母分组，同一分段内按ID合并，与索引分段内的快照顺序一致
+         *
+         * @return 按首字母分组的联系人映射表
+         */
+        @Override
+        public Map<String, List<Contact>> groupByFirstLetter() {
+            Map<String, List<Contact>> map = rows.groupByFirstLetter();
+            if (extra.isEmpty()) {
+                return map;
+            }
+            for (Map.Entry<String, List<Contact>> entry : ContactIndexer.groupByFirstLetter(extra).entrySet()) {
+                List<Contact> section = map.get(entry.getKey());
+                map.put(entry.getKey(), section == null ? entry.getValue()
+                        : merge((Rows) section, entry.getValue(), false));
+            }
+            return map;
+        }
+
+        /**
+         * 搜索联系人，结果按姓名排序
+         *
+         * @param keyword 搜索关键词
+         * @return 匹配的联系人
+         */
+        @Override
+        public Overlay search(String keyword) {
+            if (keyword == null || keyword.isEmpty()) {
+                return this;
+            }
+            List<Contact> matched = ContactIndexer.search(extra, keyword);
+            matched.sort(Comparator.comparing(Contact::getName, Comparator.nullsLast(Comparator.naturalOrder())));
+            return merge(rows.search(keyword), matched, true);
+        }
+
+        /**
+         * 读取这些联系人的ID
+         *
+         * @return 联系人ID，顺序与列表一致
+         */
+        public List<Integer> ids() {
+            List<Integer> ids = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++) {
+                int position = order != null ? order[i] : i < rows.size() ? i : ~(i - rows.size());
+                ids.add(position >= 0 ? idAt(rows.rowAt(position)) : extra.get(~position).getId());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * 按ID或姓名合并两个已排好序的列表，相同时行列表在前
+     */
+    private Overlay merge(Rows rows, List<Contact> extra, boolean byName) {
+        if (extra.isEmpty()) {
+            return new Overlay(rows, extra, null);
+        }
+        Comparator<String> names = Comparator.nullsLast(Comparator.naturalOrder());
+        int[] order = new int[rows.size() + extra.size()];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < order.length; k++) {
+            boolean takeRow;
+            if (i == rows.size()) {
+                takeRow = false;
+            } else if (j == extra.size()) {
+                takeRow = true;
+            } else if (byName) {
+                takeRow = names.compare(text(TEXT_NAME, rows.rowAt(i)), extra.get(j).getName()) <= 0;
+            } else {
+                takeRow = idAt(rows.rowAt(i)) <= extra.get(j).getId();
+            }
+            order[k] = takeRow ? i++ : ~j++;
+        }
+        return new Overlay(rows, extra, order);
+    }
+
+    /**
+     * 读取映射缓冲区的输入流，用于解密加密的索引
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
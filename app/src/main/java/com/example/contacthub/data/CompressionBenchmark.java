@@ -0,0 +1,77 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileCompression;
+import com.example.contacthub.utils.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 文件压缩基准
+ * 仅在可调试版本中生效：用当前联系人按每种压缩方式写出JSON文件，
+ * 对比写入耗时（含fsync）、落盘大小和读取解析耗时，用于为不同档次的设备选择快照的压缩方式。
+ * 使用方式：
+ * adb shell am start -n com.example.contacthub/.MainActivity --ez benchmark_compression true
+ */
+public final class CompressionBenchmark {
+    private static final String TAG = "CompressionBenchmark";
+    public static final String EXTRA_RUN = "benchmark_compression";
+    private static final String FILE_PREFIX = "benchmark.compression.";
+    private static final int ITERATIONS = 5;
+
+    private CompressionBenchmark() {
+    }
+
+    /**
+     * 依次测试每种压缩方式，结果输出到日志
+     * 会阻塞调用线程，应在后台线程执行
+     *
+     * @param context 应用上下文
+     */
+    public static void run(Context context) {
+        FileUtil fileUtil = new FileUtil(context);
+        List<Contact> contacts = ContactRepository.getInstance(context).getContacts();
+        Contact[] array = contacts.toArray(new Contact[0]);
+        for (FileCompression compression : FileCompression.values()) {
+            String filename = FILE_PREFIX + compression.name().toLowerCase();
+            FileUtil.setCompression(filename, compression);
+            try {
+                long[] writeMillis = new long[ITERATIONS];
+                long[] readMillis = new long[ITERATIONS];
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long start = SystemClock.elapsedRealtime();
+                    fileUtil.saveJSON(array, filename);
+                    writeMillis[i] = SystemClock.elapsedRealtime() - start;
+
+                    start = SystemClock.elapsedRealtime();
+                    Contact[] parsed = fileUtil.readFile(filename, Contact[].class);
+                    readMillis[i] = SystemClock.elapsedRealtime() - start;
+                    if (parsed == null || parsed.length != array.length) {
+                        Log.w(TAG, compression.getLabel() + " 读取结果数量不一致");
+                    }
+                }
+                long bytes = new File(context.getFilesDir(), filename).length();
+                Log.i(TAG, compression.getLabel() + ": " + bytes + "B，写入 " + median(writeMillis)
+                        + "ms，读取 " + median(readMillis) + "ms（中位数），联系人: " + array.length);
+            } catch (IOException e) {
+                Log.e(TAG, compression.getLabel() + " 压缩基准失败", e);
+            } finally {
+                fileUtil.deleteFile(filename);
+                FileUtil.setCompression(filename, FileCompression.NONE);
+            }
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
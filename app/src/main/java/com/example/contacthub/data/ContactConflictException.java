@@ -0,0 +1,54 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.ContactField;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 联系人保存冲突
+ * 编辑期间联系人已被其他修改改变，且与本次修改的字段改成了不同的值，或联系人已被删除
+ */
+public class ContactConflictException extends Exception {
+    private final Contact current;
+    private final Set<ContactField> fields;
+
+    /**
+     * 构造函数
+     *
+     * @param current 仓库中的当前版本，联系人已被删除时为null
+     * @param fields 冲突的字段
+     */
+    public ContactConflictException(Contact current, Set<ContactField> fields) {
+        super(current == null ? "联系人已被删除" : "联系人已被其他修改改变: " + describe(fields));
+        this.current = current;
+        this.fields = fields.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    /**
+     * 获取仓库中的当前版本，可作为重新编辑的基准
+     *
+     * @return 当前版本，联系人已被删除时返回null
+     */
+    public Contact getCurrent() {
+        return current;
+    }
+
+    public Set<ContactField> getFields() {
+        return fields;
+    }
+
+    private static String describe(Set<ContactField> fields) {
+        StringBuilder builder = new StringBuilder();
+        for (ContactField field : fields) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(field.getKey());
+        }
+        return builder.toString();
+    }
+}
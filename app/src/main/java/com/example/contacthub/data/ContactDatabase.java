@@ -0,0 +1,72 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * 联系人SQLite数据库
+ * contacts表以JSON保存完整记录，并把ID和电话号码提取为带索引的列；
+ * contacts_fts为姓名、拼音、号码和备注的全文索引。
+ * contact_groups表是旧版本随联系人写入的分组成员关系，成员关系已改为单独保存在group_members.bin中，
+ * 该表只在删除联系人时清理残留的行
+ */
+public class ContactDatabase extends SQLiteOpenHelper {
+    public static final String DATABASE_NAME = "contacts.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static final String TABLE_CONTACTS = "contacts";
+    public static final String TABLE_CONTACT_GROUPS = "contact_groups";
+    public static final String TABLE_CONTACTS_FTS = "contacts_fts";
+    public static final String TABLE_GROUPS = "group_info";
+
+    private static ContactDatabase instance;
+
+    /**
+     * 获取数据库实例
+     *
+     * @param context 任意上下文，内部只保存应用上下文
+     * @return 进程内唯一的数据库实例
+     */
+    public static synchronized ContactDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ContactDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // 写前日志模式下读写互不阻塞，后台写入时界面仍可查询
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CONTACTS + " ("
+                + "id INTEGER PRIMARY KEY, "
+                + "mobile TEXT, "
+                + "telephone TEXT, "
+                + "data TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX idx_contacts_mobile ON " + TABLE_CONTACTS + " (mobile)");
+        db.execSQL("CREATE INDEX idx_contacts_telephone ON " + TABLE_CONTACTS + " (telephone)");
+
+        db.execSQL("CREATE TABLE " + TABLE_CONTACT_GROUPS + " ("
+                + "group_id INTEGER NOT NULL, "
+                + "contact_id INTEGER NOT NULL, "
+                + "PRIMARY KEY (group_id, contact_id)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX idx_contact_groups_contact ON " + TABLE_CONTACT_GROUPS + " (contact_id)");
+
+        // docid与联系人ID一致；keys列保存姓名、拼音、首字母和号码的所有后缀，使前缀查询等价于子串匹配
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_CONTACTS_FTS + " USING fts4(keys, notes)");
+
+        db.execSQL("CREATE TABLE " + TABLE_GROUPS + " ("
+                + "id INTEGER PRIMARY KEY, "
+                + "name TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // 目前只有一个版本
+    }
+}
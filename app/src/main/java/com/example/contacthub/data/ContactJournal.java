@@ -0,0 +1,524 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.ContactField;
+import com.example.contacthub.utils.FileEncryption;
+import com.example.contacthub.utils.FileLocks;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.JsonArrayIterator;
+import com.example.contacthub.utils.StorageMetrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 联系人变更日志
+ * 以追加方式记录单条联系人的新增/修改/删除操作，每行一条记录：8位十六进制CRC32、空格、JSON。
+ * 增量修改只记录修改过的字段，重放时合并到已有的联系人上
+ * 每次追加后fsync；加载时在快照之上按顺序重放，重放操作是幂等的。
+ * 每条记录带有联系人数据的版本，旧版记录在重放时逐条升级。
+ * 启用加密后每行改为前缀字符加Base64编码的AES-GCM密文，由认证标签代替CRC32校验
+ */
+public class ContactJournal {
+    private static final String TAG = "ContactJournal";
+    static final String OP_UPSERT = "upsert";
+    static final String OP_DELETE = "delete";
+    static final String OP_PATCH = "patch";
+    // 加密记录行的前缀，CRC32的十六进制文本和JSON都不会以该字符开头
+    private static final char ENCRYPTED_PREFIX = '~';
+
+    private final Context context;
+    private final String filename;
+    private final SchemaMigrator migrator;
+    private final Gson gson = new Gson();
+
+    /**
+     * 单条日志记录
+     */
+    static class Record {
+        String op;
+        Integer id;
+        Contact contact;
+        // 增量记录中修改过的字段名，contact中只包含这些字段
+        List<String> fields;
+        // contact的数据版本，旧版记录没有该字段
+        Integer v;
+
+        Record(String op, Integer id, Contact contact) {
+            this.op = op;
+            this.id = id;
+            this.contact = contact;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     * @param filename 日志文件名
+     * @param migrator 联系人数据迁移器，用于升级旧版记录
+     */
+    public ContactJournal(Context context, String filename, SchemaMigrator migrator) {
+        this.context = context;
+        this.filename = filename;
+        this.migrator = migrator;
+    }
+
+    /**
+     * 追加一条新增或修改记录
+     *
+     * @param contact 新增或修改后的联系人
+     * @throws IOException 写入失败时抛出
+     */
+    public void appendUpsert(Contact contact) throws IOException {
+        append(Collections.singletonList(new Record(OP_UPSERT, contact.getId(), contact)));
+    }
+
+    /**
+     * 批量追加新增或修改记录，只打开一次文件
+     *
+     * @param contacts 新增或修改后的联系人集合
+     * @throws IOException 写入失败时抛出
+     */
+    public void appendUpserts(Collection<Contact> contacts) throws IOException {
+        List<Record> records = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            records.add(new Record(OP_UPSERT, contact.getId(), contact));
+        }
+        append(records);
+    }
+
+    /**
+     * 批量追加增量修改记录，每条记录只包含修改过的字段
+     *
+     * @param patches 增量修改
+     * @throws IOException 写入失败时抛出
+     */
+    public void appendPatches(Collection<ContactPatch> patches) throws IOException {
+        List<Record> records = new ArrayList<>(patches.size());
+        for (ContactPatch patch : patches) {
+            Contact partial = new Contact();
+            partial.setId(patch.getContact().getId());
+            List<String> fields = new ArrayList<>(patch.getFields().size());
+            for (ContactField field : patch.getFields()) {
+                field.copy(partial, patch.getContact());
+                fields.add(field.getKey());
+            }
+            Record record = new Record(OP_PATCH, partial.getId(), partial);
+            record.fields = fields;
+            records.add(record);
+        }
+        append(records);
+    }
+
+    /**
+     * 追加一条删除记录
+     *
+     * @param contactId 被删除联系人的ID
+     * @throws IOException 写入失败时抛出
+     */
+    public void appendDelete(int contactId) throws IOException {
+        append(Collections.singletonList(new Record(OP_DELETE, contactId, null)));
+    }
+
+    /**
+     * 批量追加删除记录，只打开一次文件
+     *
+     * @param contactIds 被删除联系人的ID集合
+     * @throws IOException 写入失败时抛出
+     */
+    public void appendDeletes(Collection<Integer> contactIds) throws IOException {
+        List<Record> records = new ArrayList<>(contactIds.size());
+        for (Integer contactId : contactIds) {
+            records.add(new Record(OP_DELETE, contactId, null));
+        }
+        append(records);
+    }
+
+    /**
+     * 追加一批记录，写入后fsync，保证返回时记录已落盘
+     * 追加期间持有日志文件的锁，与其他写入方的追加和压缩互斥。
+     * 上次追加中途崩溃留下没有换行的半行时先补一个换行，避免新记录拼接到半行后面一起被丢弃；
+     * 不截断半行，日志只追加，压缩时记下的前缀长度仍然有效
+     *
+     * @param records 日志记录
+     * @throws IOException 写入失败时抛出
+     */
+    private void append(List<Record> records) throws IOException {
+        long startNanos = System.nanoTime();
+        File file = getFile();
+        try (FileLocks.Handle ignored = FileLocks.acquire(file);
+             FileOutputStream fos = context.openFileOutput(filename, Context.MODE_PRIVATE | Context.MODE_APPEND)) {
+            long startPosition = fos.getChannel().position();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+            if (startPosition > 0 && !endsWithNewline(file)) {
+                Log.w(TAG, "日志末尾有不完整的记录，补齐换行后继续追加: " + filename);
+                writer.write('\n');
+            }
+            for (Record record : records) {
+                writeRecord(writer, record);
+            }
+            writer.flush();
+
+            long syncStart = System.nanoTime();
+            fos.getFD().sync();
+            long syncNanos = System.nanoTime() - syncStart;
+
+            StorageMetrics.recordWrite(filename, fos.getChannel().position() - startPosition,
+                    System.nanoTime() - startNanos, syncNanos);
+        }
+    }
+
+    /**
+     * 检查文件最后一个字节是否为换行符
+     *
+     * @param file 非空的日志文件
+     * @return 最后一个字节是换行符时返回true
+     * @throws IOException 读取失败时抛出
+     */
+    private static boolean endsWithNewline(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            if (length == 0) {
+                return true;
+            }
+            raf.seek(length - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /**
+     * 将记录序列化为一行：CRC32校验值、空格、JSON；启用加密时为前缀和加密后的JSON
+     *
+     * @param writer 输出流
+     * @param record 日志记录
+     * @throws IOException 写入失败时抛出
+     */
+    private void writeRecord(Writer writer, Record record) throws IOException {
+        record.v = migrator.getCurrentVersion();
+        String json = gson.toJson(record);
+        FileEncryption encryption = FileUtil.getEncryption();
+        if (encryption != null) {
+            byte[] sealed = encryption.seal(json.getBytes(StandardCharsets.UTF_8));
+            writer.write(ENCRYPTED_PREFIX);
+            writer.write(Base64.encodeToString(sealed, Base64.NO_WRAP));
+        } else {
+            writer.write(String.format(Locale.ROOT, "%08x ", checksum(json)));
+            writer.write(json);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * 计算记录内容的CRC32
+     *
+     * @param json 记录的JSON文本
+     * @return CRC32校验值
+     */
+    private static long checksum(String json) {
+        CRC32 crc = new CRC32();
+        crc.update(json.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * 解析一行日志记录并校验
+     *
+     * @param line 日志中的一行
+     * @return 解析出的JSON文本，校验失败时返回null
+     */
+    private static String verifyLine(String line) {
+        if (line.startsWith("{")) {
+            // 未带校验值的旧格式记录
+            return line;
+        }
+        if (line.charAt(0) == ENCRYPTED_PREFIX) {
+            return decryptLine(line);
+        }
+        if (line.length() < 10 || line.charAt(8) != ' ') {
+            return null;
+        }
+        String json = line.substring(9);
+        try {
+            long expected = Long.parseLong(line.substring(0, 8), 16);
+            return expected == checksum(json) ? json : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解密一行加密记录并校验
+     *
+     * @param line 以加密前缀开头的一行
+     * @return 解密出的JSON文本，没有密钥或认证失败时返回null
+     */
+    private static String decryptLine(String line) {
+        FileEncryption encryption = FileUtil.getEncryption();
+        if (encryption == null) {
+            Log.e(TAG, "日志记录已加密，但没有可用的密钥");
+            return null;
+        }
+        try {
+            byte[] json = encryption.open(Base64.decode(line.substring(1), Base64.NO_WRAP));
+            return json != null ? new String(json, StandardCharsets.UTF_8) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 检查日志文件中是否有加密记录
+     *
+     * @param file 日志文件
+     * @return 有任何以加密前缀开头的记录时返回true，文件无法读取时返回false
+     */
+    static boolean containsEncryptedRecords(File file) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && line.charAt(0) == ENCRYPTED_PREFIX) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "无法读取日志: " + file.getName(), e);
+        }
+        return false;
+    }
+
+    /**
+     * 将日志中前limit字节的记录重放到联系人映射表上
+     * 不完整或损坏的记录（例如写入中途进程被杀留下的半行）会被跳过，之后的记录照常重放。
+     * 读取日志文件本身失败时抛出异常，不返回只重放了一部分的结果，
+     * 否则调用方（例如压缩）会把未重放的记录当作已合并而丢弃。
+     * 字节数按文件中的原始字节计算，与记录内容能否按UTF-8解码无关
+     *
+     * @param contacts 以ID为键的联系人映射表，重放结果直接写入其中
+     * @param limit 最多读取的字节数，传入Long.MAX_VALUE表示读取整个日志
+     * @return 实际重放的记录数
+     * @throws IOException 日志文件存在但读取失败时抛出
+     */
+    public int replay(Map<Integer, Contact> contacts, long limit) throws IOException {
+        int applied = 0;
+        long consumed = 0;
+        try (InputStream in = new BufferedInputStream(context.openFileInput(filename))) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int length;
+            while ((length = readLine(in, buffer)) != -1) {
+                consumed += length;
+                if (consumed > limit) {
+                    break;
+                }
+                if (buffer.size() == 0) {
+                    continue;
+                }
+                String json = verifyLine(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+                if (json == null) {
+                    Log.w(TAG, "日志记录校验失败，跳过该记录: " + filename);
+                    continue;
+                }
+                Record record;
+                try {
+                    record = gson.fromJson(json, Record.class);
+                    if (record != null && record.contact != null && !isCurrent(record)) {
+                        record = upgrade(json, record);
+                    }
+                } catch (JsonParseException e) {
+                    Log.w(TAG, "忽略损坏的日志记录: " + filename, e);
+                    continue;
+                }
+                if (record == null || record.id == null) {
+                    continue;
+                }
+                if (OP_UPSERT.equals(record.op) && record.contact != null) {
+                    contacts.put(record.id, record.contact);
+                    applied++;
+                } else if (OP_DELETE.equals(record.op)) {
+                    contacts.remove(record.id);
+                    applied++;
+                } else if (OP_PATCH.equals(record.op) && record.contact != null && record.fields != null) {
+                    if (applyPatch(contacts, record)) {
+                        applied++;
+                    }
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // 没有日志文件，说明快照之后没有任何变更；文件存在却打不开（例如没有权限）属于读取失败
+            if (getFile().exists()) {
+                throw e;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 读取一行的原始字节
+     *
+     * @param in 日志输入流
+     * @param line 接收一行内容（不含换行符）的缓冲区，调用前的内容会被清空
+     * @return 本行占用的字节数（含换行符），已到文件末尾时返回-1
+     * @throws IOException 读取失败时抛出
+     */
+    private static int readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            length++;
+            if (b == '\n') {
+                return length;
+            }
+            line.write(b);
+        }
+        return length == 0 ? -1 : length;
+    }
+
+    private boolean isCurrent(Record record) {
+        return record.v != null && record.v >= migrator.getCurrentVersion();
+    }
+
+    /**
+     * 把旧版记录中的联系人升级到当前版本
+     *
+     * @param json 记录的JSON文本
+     * @param record 按原样解析出的记录
+     * @return 联系人已升级的记录
+     */
+    private Record upgrade(String json, Record record) {
+        JsonObject contact = JsonParser.parseString(json).getAsJsonObject().getAsJsonObject("contact");
+        int version = record.v != null ? record.v : JsonArrayIterator.LEGACY_SCHEMA_VERSION;
+        record.contact = gson.fromJson(migrator.upgrade(contact, version), Contact.class);
+        return record;
+    }
+
+    /**
+     * 把增量记录合并到已有的联系人上，生成新的联系人对象
+     *
+     * @param contacts 以ID为键的联系人映射表
+     * @param record 增量记录
+     * @return 联系人存在并已合并时返回true
+     */
+    private static boolean applyPatch(Map<Integer, Contact> contacts, Record record) {
+        Contact existing = contacts.get(record.id);
+        if (existing == null) {
+            Log.w(TAG, "增量记录对应的联系人不存在: " + record.id);
+            return false;
+        }
+        Contact merged = new Contact(existing);
+        for (String key : record.fields) {
+            ContactField field = ContactField.fromKey(key);
+            if (field != null) {
+                field.copy(merged, record.contact);
+            }
+        }
+        contacts.put(record.id, merged);
+        return true;
+    }
+
+    /**
+     * 丢弃日志中前prefixLength字节，保留之后追加的记录
+     * 压缩写出新快照后调用，保证压缩期间追加的记录不会丢失
+     *
+     * @param prefixLength 已合并进快照的日志字节数
+     * @throws IOException 读写失败时抛出
+     */
+    public void discardPrefix(long prefixLength) throws IOException {
+        File file = getFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (FileLocks.Handle ignored = FileLocks.acquire(file)) {
+            if (prefixLength >= file.length()) {
+                truncate();
+                return;
+            }
+            copyTail(file, prefixLength);
+        }
+    }
+
+    /**
+     * 用前prefixLength字节之后的内容替换日志文件，调用方需持有日志文件的锁
+     *
+     * @param file 日志文件
+     * @param prefixLength 要丢弃的字节数
+     * @throws IOException 读写失败时抛出
+     */
+    private void copyTail(File file, long prefixLength) throws IOException {
+        File tail = new File(file.getPath() + ".tail");
+        try (FileInputStream in = new FileInputStream(file);
+             FileOutputStream out = new FileOutputStream(tail)) {
+            long skipped = 0;
+            while (skipped < prefixLength) {
+                long n = in.skip(prefixLength - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            out.getFD().sync();
+        }
+        if (!tail.renameTo(file)) {
+            throw new IOException("无法替换日志文件: " + filename);
+        }
+    }
+
+    /**
+     * 清空日志
+     */
+    public void truncate() {
+        context.deleteFile(filename);
+    }
+
+    /**
+     * 获取日志当前大小
+     *
+     * @return 日志字节数，文件不存在时返回0
+     */
+    public long length() {
+        return getFile().length();
+    }
+
+    /**
+     * 获取日志文件
+     *
+     * @return 应用私有目录下的日志文件
+     */
+    private File getFile() {
+        return new File(context.getFilesDir(), filename);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.JsonArrayIterator;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 联系人列表投影文件
+ * 与联系人存储并存的精简副本，只包含绘制联系人列表所需的字段。
+ * 冷启动时先读取投影绘制首屏，完整记录在后台加载或按ID按需读取。
+ * 投影只用于显示，可能略旧于联系人存储，完整数据加载后即被替换
+ */
+public class ContactListProjection {
+    private static final String TAG = "ContactListProjection";
+    public static final String PROJECTION_FILE = "contacts.list.json";
+
+    private final Context context;
+    private final FileUtil fileUtil;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public ContactListProjection(Context context) {
+        this.context = context;
+        this.fileUtil = new FileUtil(context);
+    }
+
+    /**
+     * 判断投影文件是否存在
+     *
+     * @return 存在返回true
+     */
+    public boolean exists() {
+        return new File(context.getFilesDir(), PROJECTION_FILE).exists();
+    }
+
+    /**
+     * 读取投影
+     *
+     * @return 只包含列表字段的联系人列表；投影不存在或损坏时返回null
+     */
+    public List<Contact> read() {
+        List<Contact> contacts = new ArrayList<>();
+        try (JsonArrayIterator<Contact> iterator = fileUtil.iterateArray(PROJECTION_FILE, Contact.class)) {
+            while (iterator.hasNext()) {
+                Contact contact = iterator.next();
+                if (contact != null && contact.getId() != null) {
+                    contacts.add(contact);
+                }
+            }
+            return contacts;
+        } catch (FileNotFoundException e) {
+            Log.d(TAG, "联系人列表投影不存在");
+            return null;
+        } catch (Exception e) {
+            Log.e(TAG, "读取联系人列表投影失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 用完整联系人重写投影
+     *
+     * @param contacts 全部联系人，保持列表顺序
+     * @throws IOException 写入失败时抛出，此时原投影保持不变
+     */
+    public void write(Collection<Contact> contacts) throws IOException {
+        Contact[] rows = new Contact[contacts.size()];
+        int i = 0;
+        for (Contact contact : contacts) {
+            rows[i++] = contact.toListProjection();
+        }
+        fileUtil.saveJSON(rows, PROJECTION_FILE);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.PersistentIntMap;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 联系人列表投影和列式索引的维护
+ * 两者都由发布的版本派生，只用于列表显示和搜索，整体重写的耗时与联系人总数成正比，因此不在每次提交后重写，
+ * 而是在修改累计到联系人数的一定比例后才在持久化线程上重写，每次修改分摊的写入量与联系人总数无关。
+ * 在此之前列表投影保持旧内容，列式索引文件保持不变，修改过的联系人由发布的版本叠加。
+ * 上次重写之后第一次提交联系人修改前同步记录过期标记，中途退出时下次加载不会使用过期的索引
+ */
+class ContactListSidecars {
+    private static final String TAG = "ContactListSidecars";
+    private static final String KEY_PROJECTION_STALE = "projection_stale";
+    // 联系人达到该数量时维护列式索引，联系人列表和搜索改为扫描索引列
+    static final int COLUMNAR_INDEX_MIN_CONTACTS = 20000;
+    // 上次重写之后提交的联系人修改数达到联系人数的该比例，且不少于下限时，才整体重写列表投影和列式索引
+    private static final double REBUILD_RATIO = 0.1;
+    private static final int REBUILD_MIN_CHANGES = 32;
+
+    /**
+     * 重写所依据的数据和重写结果的接收方
+     */
+    interface Host {
+        /**
+         * 获取重写所依据的版本
+         *
+         * @return 当前发布的版本，数据无法读取时返回null，此时不重写
+         */
+        DataSnapshot snapshotToWrite();
+
+        /**
+         * 重写完成后使用新的列式索引
+         *
+         * @param index 新索引，联系人数量不足时为null
+         * @param base 新索引对应的联系人
+         */
+        void onRebuilt(ColumnarContactIndex index, PersistentIntMap<Contact> base);
+    }
+
+    private final Context context;
+    private final FileUtil fileUtil;
+    private final SharedPreferences prefs;
+    private final ContactListProjection listProjection;
+    private final Executor executor;
+    private final Host host;
+    // 数据被绕过仓库改写后两者可能已过期，在下一次加载后重写；只在持有仓库锁时访问
+    private boolean stale;
+    // 上次重写之后提交的联系人修改数，只在持久化线程上访问
+    private int pendingChanges;
+    // 已登记重写任务，只在持久化线程上访问
+    private boolean rebuildScheduled;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     * @param prefs 保存过期标记的设置
+     * @param executor 持久化线程，重写在该线程上执行
+     * @param host 重写所依据的数据和结果的接收方
+     */
+    ContactListSidecars(Context context, SharedPreferences prefs, Executor executor, Host host) {
+        this.context = context;
+        this.fileUtil = new FileUtil(context);
+        this.prefs = prefs;
+        this.listProjection = new ContactListProjection(context);
+        this.executor = executor;
+        this.host = host;
+    }
+
+    /**
+     * 标记列表投影和列式索引已过期，下一次加载后重写
+     */
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * 打开与加载结果对应的列式索引
+     * 上次运行中有未写入投影和索引的修改，或数据被绕过仓库改写过时，索引已过期，不再使用
+     *
+     * @param contactCount 加载的联系人数
+     * @return 列式索引；联系人数量不足、索引已过期、无法打开或行数不一致时返回null
+     */
+    ColumnarContactIndex openIndex(int contactCount) {
+        if (contactCount < COLUMNAR_INDEX_MIN_CONTACTS || isStale()) {
+            return null;
+        }
+        ColumnarContactIndex index = ColumnarContactIndex.open(context);
+        return index != null && index.size() == contactCount ? index : null;
+    }
+
+    /**
+     * 加载完成后判断是否需要重写一次：已过期、列表投影缺失，或需要列式索引但没有可用的索引
+     *
+     * @param contactCount 加载的联系人数
+     * @param index 加载时打开的列式索引
+     * @return 需要重写时返回true
+     */
+    boolean needsRebuildAfterLoad(int contactCount, ColumnarContactIndex index) {
+        boolean rebuild = isStale() || !listProjection.exists()
+                || (contactCount >= COLUMNAR_INDEX_MIN_CONTACTS && index == null);
+        stale = false;
+        return rebuild;
+    }
+
+    private boolean isStale() {
+        return stale || prefs.getBoolean(KEY_PROJECTION_STALE, false);
+    }
+
+    /**
+     * 读取冷启动时先行显示的联系人列表
+     * 大通讯录存在列式索引时直接映射索引文件，不需要解析列表投影
+     *
+     * @return 不可修改的联系人列表，只包含列表显示所需字段；两者都不存在或无法读取时返回null
+     */
+    List<Contact> readRows() {
+        ColumnarContactIndex index = ColumnarContactIndex.open(context);
+        if (index != null) {
+            return index.rows();
+        }
+        List<Contact> rows = listProjection.read();
+        return rows != null ? Collections.unmodifiableList(rows) : null;
+    }
+
+    /**
+     * 提交联系人修改之前调用，在持久化线程上执行
+     * 上次重写之后第一次修改时同步记录过期标记，写入中途退出时下次加载不会使用过期的索引
+     */
+    void beforeContactWrites() {
+        if (pendingChanges == 0) {
+            prefs.edit().putBoolean(KEY_PROJECTION_STALE, true).commit();
+        }
+    }
+
+    /**
+     * 提交完成后累计修改数，达到阈值或要求立即重写时登记重写任务，在持久化线程上执行
+     * 重写作为单独的任务执行，不计入本次提交
+     *
+     * @param changes 本次提交的联系人修改数
+     * @param contactCount 当前的联系人数
+     * @param force 是否不等待修改累计，立即重写
+     */
+    void afterCommit(int changes, int contactCount, boolean force) {
+        pendingChanges += changes;
+        int threshold = Math.max(REBUILD_MIN_CHANGES, (int) (contactCount * REBUILD_RATIO));
+        if (rebuildScheduled || (!force && pendingChanges < threshold)) {
+            return;
+        }
+        rebuildScheduled = true;
+        executor.execute(this::rebuild);
+    }
+
+    /**
+     * 用当前发布的版本重写列表投影和列式索引，在持久化线程上执行
+     * 联系人数量达到阈值时重建列式索引，否则删除已有的索引；新索引对应重写时的版本，
+     * 此后发布的修改继续叠加在新索引上。写入失败时保留过期标记，下次加载后重写
+     */
+    private void rebuild() {
+        rebuildScheduled = false;
+        DataSnapshot snapshot = host.snapshotToWrite();
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            listProjection.write(snapshot.getContacts());
+            ColumnarContactIndex index = null;
+            if (snapshot.contactMap().size() >= COLUMNAR_INDEX_MIN_CONTACTS) {
+                ColumnarContactIndex.write(fileUtil, snapshot.getContacts());
+                index = ColumnarContactIndex.open(context);
+            } else {
+                ColumnarContactIndex.delete(fileUtil);
+            }
+            host.onRebuilt(index, snapshot.contactMap());
+            pendingChanges = 0;
+            prefs.edit().putBoolean(KEY_PROJECTION_STALE, false).apply();
+        } catch (IOException e) {
+            Log.e(TAG, "重写列表投影和列式索引失败", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.ContactField;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 联系人的增量修改
+ * 包含修改后的完整联系人和相对已保存版本修改过的字段，
+ * 支持增量写入的存储只持久化这些字段
+ */
+public final class ContactPatch {
+    private final Contact contact;
+    private final Set<ContactField> fields;
+
+    /**
+     * 构造函数
+     *
+     * @param contact 修改后的完整联系人，ID不能为空
+     * @param fields 修改过的字段
+     */
+    public ContactPatch(Contact contact, Set<ContactField> fields) {
+        this.contact = contact;
+        this.fields = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    public Contact getContact() {
+        return contact;
+    }
+
+    public Set<ContactField> getFields() {
+        return fields;
+    }
+}
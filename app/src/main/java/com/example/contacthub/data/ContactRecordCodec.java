@@ -0,0 +1,437 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 联系人和分组的紧凑二进制记录格式
+ * 文件结构：魔数、格式版本、记录类型、记录数，随后是逐条记录。
+ * 每条记录以长度前缀开头，记录内依次为可选字段的存在位图、变长整数编码的ID和存在的字段，
+ * 字符串按长度前缀加UTF-8写入。解码时忽略记录末尾未知的字段，
+ * 同一格式版本内只允许在字段表末尾追加新字段
+ */
+public final class ContactRecordCodec {
+    private static final int MAGIC = 0x43485231; // "CHR1"
+    public static final int FORMAT_VERSION = 1;
+    private static final int KIND_CONTACT = 1;
+    private static final int KIND_GROUP = 2;
+    // 单条记录的长度上限，用于识别损坏的长度前缀
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    // 联系人可选字段在存在位图中的位置，只能追加，不能调整顺序
+    private static final int F_NAME = 0;
+    private static final int F_MOBILE = 1;
+    private static final int F_TELEPHONE = 2;
+    private static final int F_EMAIL = 3;
+    private static final int F_ADDRESS = 4;
+    private static final int F_GROUP_IDS = 5;
+    private static final int F_PHOTO = 6;
+    private static final int F_PHOTO_REF = 7;
+    private static final int F_PINYIN = 8;
+    private static final int F_FIRST_LETTER = 9;
+    private static final int F_QQ = 10;
+    private static final int F_WECHAT = 11;
+    private static final int F_WEBSITE = 12;
+    private static final int F_BIRTHDAY = 13;
+    private static final int F_COMPANY = 14;
+    private static final int F_POSTAL_CODE = 15;
+    private static final int F_NOTES = 16;
+
+    // 分组可选字段
+    private static final int G_NAME = 0;
+
+    private ContactRecordCodec() {
+    }
+
+    /**
+     * 将联系人写为二进制记录
+     *
+     * @param contacts 联系人，ID不能为空
+     * @param out 输出流，调用方负责缓冲和关闭
+     * @throws IOException 写入失败时抛出
+     */
+    public static void writeContacts(Collection<Contact> contacts, OutputStream out) throws IOException {
+        writeHeader(out, KIND_CONTACT, contacts.size());
+        RecordBuffer record = new RecordBuffer();
+        for (Contact contact : contacts) {
+            record.reset();
+            encodeContact(contact, record);
+            record.writeTo(out);
+        }
+    }
+
+    /**
+     * 读取二进制联系人记录
+     *
+     * @param in 输入流，调用方负责缓冲和关闭
+     * @return 联系人列表，保持写入顺序
+     * @throws IOException 格式错误、版本不支持或读取失败时抛出
+     */
+    public static List<Contact> readContacts(InputStream in) throws IOException {
+        int count = readHeader(in, KIND_CONTACT);
+        List<Contact> contacts = new ArrayList<>(Math.min(count, 4096));
+        RecordReader record = new RecordReader();
+        for (int i = 0; i < count; i++) {
+            record.load(in);
+            contacts.add(decodeContact(record));
+        }
+        return contacts;
+    }
+
+    /**
+     * 将分组写为二进制记录
+     *
+     * @param groups 分组
+     * @param out 输出流，调用方负责缓冲和关闭
+     * @throws IOException 写入失败时抛出
+     */
+    public static void writeGroups(Collection<Group> groups, OutputStream out) throws IOException {
+        writeHeader(out, KIND_GROUP, groups.size());
+        RecordBuffer record = new RecordBuffer();
+        for (Group group : groups) {
+            record.reset();
+            int presence = group.getName() != null ? 1 << G_NAME : 0;
+            record.writeVarint(presence);
+            record.writeSignedVarint(group.getId());
+            if (group.getName() != null) {
+                record.writeString(group.getName());
+            }
+            record.writeTo(out);
+        }
+    }
+
+    /**
+     * 读取二进制分组记录
+     *
+     * @param in 输入流，调用方负责缓冲和关闭
+     * @return 分组列表，保持写入顺序
+     * @throws IOException 格式错误、版本不支持或读取失败时抛出
+     */
+    public static List<Group> readGroups(InputStream in) throws IOException {
+        int count = readHeader(in, KIND_GROUP);
+        List<Group> groups = new ArrayList<>(Math.min(count, 4096));
+        RecordReader record = new RecordReader();
+        for (int i = 0; i < count; i++) {
+            record.load(in);
+            int presence = record.readVarint();
+            Group group = new Group();
+            group.setId(record.readSignedVarint());
+            if (has(presence, G_NAME)) {
+                group.setName(record.readString());
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * 把JSON格式的联系人数组转换为二进制记录
+     * 逐个读取JSON元素，再一次性写出，以便在文件头中写入记录数
+     *
+     * @param json JSON数组输入
+     * @param out 二进制输出流
+     * @return 转换的联系人数
+     * @throws IOException 读取、解析或写入失败时抛出
+     */
+    public static int convertJsonToBinary(Reader json, OutputStream out) throws IOException {
+        Gson gson = new Gson();
+        List<Contact> contacts = new ArrayList<>();
+        try {
+            JsonReader reader = new JsonReader(json);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                Contact contact = gson.fromJson(reader, Contact.class);
+                if (contact.getId() != null) {
+                    contacts.add(contact);
+                }
+            }
+            reader.endArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("联系人JSON格式错误", e);
+        }
+        writeContacts(contacts, out);
+        return contacts.size();
+    }
+
+    /**
+     * 把二进制联系人记录转换为与联系人文件相同结构的JSON数组
+     *
+     * @param in 二进制输入流
+     * @param json JSON输出
+     * @return 转换的联系人数
+     * @throws IOException 读取或写入失败时抛出
+     */
+    public static int convertBinaryToJson(InputStream in, Writer json) throws IOException {
+        Gson gson = new Gson();
+        List<Contact> contacts = readContacts(in);
+        JsonWriter writer = new JsonWriter(json);
+        writer.beginArray();
+        for (Contact contact : contacts) {
+            gson.toJson(contact, Contact.class, writer);
+        }
+        writer.endArray();
+        writer.flush();
+        return contacts.size();
+    }
+
+    private static void encodeContact(Contact contact, RecordBuffer record) {
+        if (contact.getId() == null) {
+            throw new IllegalArgumentException("联系人ID不能为空");
+        }
+        String[] strings = {
+                contact.getName(), contact.getMobileNumber(), contact.getTelephoneNumber(),
+                contact.getEmail(), contact.getAddress(), null, contact.getPhoto(),
+                contact.getPhotoRef(), contact.getPinyin(), contact.getFirstLetter(),
+                contact.getQq(), contact.getWechat(), contact.getWebsite(),
+                contact.getBirthday(), contact.getCompany(), contact.getPostalCode(),
+                contact.getNotes()
+        };
+        List<Integer> groupIds = contact.getGroupIds();
+
+        int presence = 0;
+        for (int field = 0; field < strings.length; field++) {
+            if (strings[field] != null) {
+                presence |= 1 << field;
+            }
+        }
+        if (groupIds != null) {
+            presence |= 1 << F_GROUP_IDS;
+        }
+
+        record.writeVarint(presence);
+        record.writeSignedVarint(contact.getId());
+        for (int field = 0; field < strings.length; field++) {
+            if (field == F_GROUP_IDS) {
+                if (groupIds != null) {
+                    writeGroupIds(groupIds, record);
+                }
+            } else if (strings[field] != null) {
+                record.writeString(strings[field]);
+            }
+        }
+    }
+
+    private static void writeGroupIds(List<Integer> groupIds, RecordBuffer record) {
+        int count = 0;
+        for (Integer groupId : groupIds) {
+            if (groupId != null) {
+                count++;
+            }
+        }
+        record.writeVarint(count);
+        for (Integer groupId : groupIds) {
+            if (groupId != null) {
+                record.writeSignedVarint(groupId);
+            }
+        }
+    }
+
+    private static Contact decodeContact(RecordReader record) throws IOException {
+        int presence = record.readVarint();
+        Contact contact = new Contact();
+        contact.setId(record.readSignedVarint());
+        contact.setName(readOptional(record, presence, F_NAME));
+        contact.setMobileNumber(readOptional(record, presence, F_MOBILE));
+        contact.setTelephoneNumber(readOptional(record, presence, F_TELEPHONE));
+        contact.setEmail(readOptional(record, presence, F_EMAIL));
+        contact.setAddress(readOptional(record, presence, F_ADDRESS));
+        if (has(presence, F_GROUP_IDS)) {
+            int count = record.readVarint();
+            List<Integer> groupIds = new ArrayList<>(Math.min(count, 64));
+            for (int i = 0; i < count; i++) {
+                groupIds.add(record.readSignedVarint());
+            }
+            contact.setGroupIds(groupIds);
+        }
+        contact.setPhoto(readOptional(record, presence, F_PHOTO));
+        contact.setPhotoRef(readOptional(record, presence, F_PHOTO_REF));
+        contact.setPinyin(readOptional(record, presence, F_PINYIN));
+        contact.setFirstLetter(readOptional(record, presence, F_FIRST_LETTER));
+        contact.setQq(readOptional(record, presence, F_QQ));
+        contact.setWechat(readOptional(record, presence, F_WECHAT));
+        contact.setWebsite(readOptional(record, presence, F_WEBSITE));
+        contact.setBirthday(readOptional(record, presence, F_BIRTHDAY));
+        contact.setCompany(readOptional(record, presence, F_COMPANY));
+        contact.setPostalCode(readOptional(record, presence, F_POSTAL_CODE));
+        contact.setNotes(readOptional(record, presence, F_NOTES));
+        return contact;
+    }
+
+    private static String readOptional(RecordReader record, int presence, int field) throws IOException {
+        return has(presence, field) ? record.readString() : null;
+    }
+
+    private static boolean has(int presence, int field) {
+        return (presence & (1 << field)) != 0;
+    }
+
+    private static void writeHeader(OutputStream out, int kind, int count) throws IOException {
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(FORMAT_VERSION);
+        out.write(kind);
+        writeVarint(out, count);
+    }
+
+    private static int readHeader(InputStream in, int expectedKind) throws IOException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = (magic << 8) | readByte(in);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("不是二进制记录文件");
+        }
+        int version = readByte(in);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的记录格式版本: " + version);
+        }
+        int kind = readByte(in);
+        if (kind != expectedKind) {
+            throw new IOException("记录类型不匹配: " + kind);
+        }
+        return readVarint(in);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("记录文件不完整");
+        }
+        return b;
+    }
+
+    /**
+     * 单条记录的写缓冲，写出时加上长度前缀
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(256);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeSignedVarint(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public synchronized void writeTo(OutputStream out) throws IOException {
+            ContactRecordCodec.writeVarint(out, count);
+            out.write(buf, 0, count);
+        }
+    }
+
+    /**
+     * 单条记录的读缓冲，读取超出记录长度时报错，未读完的字段直接丢弃
+     */
+    private static final class RecordReader {
+        private byte[] buf = new byte[256];
+        private int length;
+        private int position;
+
+        void load(InputStream in) throws IOException {
+            int size = ContactRecordCodec.readVarint(in);
+            if (size < 0 || size > MAX_RECORD_SIZE) {
+                throw new IOException("记录长度错误: " + size);
+            }
+            if (buf.length < size) {
+                buf = new byte[Math.max(size, buf.length * 2)];
+            }
+            int read = 0;
+            while (read < size) {
+                int n = in.read(buf, read, size - read);
+                if (n < 0) {
+                    throw new EOFException("记录文件不完整");
+                }
+                read += n;
+            }
+            length = size;
+            position = 0;
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= length) {
+                    throw new IOException("记录内容不完整");
+                }
+                int b = buf[position++] & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("变长整数格式错误");
+        }
+
+        int readSignedVarint() throws IOException {
+            int raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString() throws IOException {
+            int size = readVarint();
+            if (size < 0 || size > length - position) {
+                throw new IOException("字符串长度错误: " + size);
+            }
+            String value = new String(buf, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,1655 @@
+package com.example.contacthub.data;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.ContactField;
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.AppExecutors;
+import com.example.contacthub.utils.ContactIndexer;
+import com.example.contacthub.utils.DurableFile;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.PersistentIntMap;
+import com.example.contacthub.utils.RoaringIdSet;
+import com.example.contacthub.utils.StorageMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 联系人数据仓库
+ * 进程内唯一的数据来源：联系人、分组和个人名片只加载一次并缓存在内存中，
+ * 所有界面通过仓库读取不可修改的快照；修改先作用于内存，再由后台线程按顺序持久化。
+ * 读取不加锁：每次修改在仓库锁内完成后发布一个带版本的{@link DataSnapshot}，读取方总是拿到某一版本的完整数据，
+ * 不会等待正在进行的修改，也不会看到修改了一半的数据。
+ * 界面应通过observe系列方法获取数据：首次加载在后台I/O线程执行，结果以LiveData投递。
+ * 冷启动时联系人列表可先从列表投影绘制；投影在联系人修改累计到一定数量后才整体重写，可能略旧于存储。
+ * 完整数据加载之前按ID读取联系人只读取该联系人的记录，不加载全部数据。
+ * 联系人数量很大时另外维护内存映射的列式索引，联系人列表和搜索直接扫描索引列；
+ * 索引同样在修改累计到一定数量后才在后台重建，在此之前修改过的联系人从内存快照中读取。
+ * 启用加密后索引无法映射，打开时整体解密到内存中。
+ * 删除的联系人先移入回收站，只记录墓碑，可在保留期内恢复，之后由后台批量物理删除。
+ * 导入联系人、删除联系人以及修改或删除分组可以多级撤销和重做：撤销记录保存操作之前的持久化映射，
+ * 与当前版本共享结构，每层只额外占用被修改的联系人及其路径上的节点。
+ * JSON文件、变更日志、头像、列式索引和迁移暂存文件加密保存，密钥由Android Keystore保护；
+ * SQLite存储引擎的数据库不在加密范围内，需要页级加密，选择该引擎时联系人以明文保存。
+ * 仓库负责加锁、发布版本和登记写入；数据密钥、启动迁移、列表投影和列式索引以及撤销记录
+ * 分别由{@link DataKeyLoader}、{@link StartupMigrations}、{@link ContactListSidecars}和{@link UndoHistory}维护
+ */
+public class ContactRepository {
+    private static final String TAG = "ContactRepository";
+    public static final String MY_CARD_FILE = "my.json";
+    private static final String PREFS_NAME = "contact_repository";
+    private static final String KEY_STORAGE_ENGINE = "storage_engine";
+    // 没有产生撤销记录时返回的撤销标识
+    public static final long NO_UNDO = 0;
+
+    private static ContactRepository instance;
+
+    private final Context context;
+    private final FileUtil fileUtil;
+    // 存储引擎只在持久化线程上切换，切换前已提交的写入都会先完成
+    private volatile StorageEngine engine;
+    private volatile ContactStore contactStore;
+    private volatile GroupStore groupStore;
+    private final PhotoStore photoStore;
+    private final SharedPreferences prefs;
+    private final DataKeyLoader dataKey;
+    private final StartupMigrations migrations;
+    private final IdSequence contactIdSequence;
+    private final IdSequence groupIdSequence;
+    // 单线程执行持久化任务，保证写入顺序与内存修改顺序一致
+    private final ScheduledExecutorService persistExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final WriteScheduler writeScheduler = new WriteScheduler(persistExecutor, this::commitBatch);
+    private final ContactListSidecars sidecars;
+
+    // 以下工作数据只在持有仓库锁时访问，读取方通过发布的快照访问
+    // 持久化映射，每次修改生成新版本，与发布的快照和撤销记录共享结构
+    private PersistentIntMap<Contact> contacts = PersistentIntMap.empty();
+    // 分组成员关系，独立于联系人持久化，与联系人一起发布
+    private final GroupMembershipIndex membershipIndex = new GroupMembershipIndex();
+    private final ContactTrash trash = new ContactTrash();
+    private final UndoHistory history = new UndoHistory();
+    private final List<Group> groups = new ArrayList<>();
+    private Contact myCard;
+    private volatile boolean loaded;
+    // 数据存在但无法读取（校验失败、无法解密等），此时加载结果不完整，拒绝一切修改、迁移和重写
+    private volatile boolean readFailed;
+    // 最近一次加载开始时存储中没有任何数据文件，即全新安装
+    private volatile boolean storageEmptyAtLoad;
+    private volatile boolean listProjectionEnabled = true;
+    private final AtomicBoolean projectionRequested = new AtomicBoolean(false);
+
+    // 当前发布的数据版本，读取方无锁获取；只在持有仓库锁时替换
+    private final AtomicReference<DataSnapshot> published = new AtomicReference<>(DataSnapshot.EMPTY);
+    // 本次修改中变化、需要在下一版本中重新生成的部分
+    private boolean contactsDirty;
+    private boolean groupsDirty;
+    private boolean myCardDirty;
+
+    private final MutableLiveData<List<Contact>> contactsLiveData = new MutableLiveData<>();
+    private final MutableLiveData<List<Contact>> contactListLiveData = new MutableLiveData<>();
+    private final MutableLiveData<List<Group>> groupsLiveData = new MutableLiveData<>();
+    private final MutableLiveData<Contact> myCardLiveData = new MutableLiveData<>();
+
+    /**
+     * 获取仓库实例
+     *
+     * @param context 任意上下文，内部只保存应用上下文
+     * @return 进程内唯一的仓库实例
+     */
+    public static synchronized ContactRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 私有构造函数
+     *
+     * @param context 应用上下文
+     */
+    private ContactRepository(Context context) {
+        this.context = context;
+        this.fileUtil = new FileUtil(context);
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.engine = StorageEngine.fromName(prefs.getString(KEY_STORAGE_ENGINE, StorageEngine.JSON.name()));
+        this.contactStore = engine.createContactStore(context);
+        this.groupStore = engine.createGroupStore(context);
+        this.photoStore = new PhotoStore(context);
+        this.dataKey = new DataKeyLoader(context);
+        this.migrations = new StartupMigrations(context, prefs, photoStore);
+        this.sidecars = new ContactListSidecars(context, prefs, persistExecutor, new SidecarHost());
+        this.contactIdSequence = new IdSequence(context, "contact");
+        this.groupIdSequence = new IdSequence(context, "group");
+
+        // 界面进入后台时立即提交待写入的修改；Android进程通常被直接杀死，不依赖退出回调
+        if (context instanceof Application) {
+            ((Application) context).registerActivityLifecycleCallbacks(new FlushOnStopCallbacks());
+        }
+    }
+
+    /**
+     * 首次读写数据文件之前加载数据密钥，只执行一次
+     * 加载Keystore、读取密钥文件和检查已有加密数据都是磁盘I/O，因此不在构造函数中执行，
+     * 由后台线程上的加载、冷启动投影和按ID读取，以及绕过仓库直接读取存储的基准在访问数据文件前调用
+     */
+    void ensureEncryption() {
+        dataKey.ensureLoaded();
+    }
+
+    /**
+     * 首次访问时从存储加载全部数据
+     * 加载完成后直接返回当前版本，不加锁
+     *
+     * @return 当前发布的数据版本
+     */
+    private DataSnapshot ensureLoaded() {
+        DataSnapshot snapshot = published.get();
+        if (snapshot.isLoaded()) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                load();
+            }
+            return published.get();
+        }
+    }
+
+    /**
+     * 加载数据并确认可以修改，调用方持有仓库锁
+     * 数据无法读取时内存中的数据不完整，任何修改写回存储都可能覆盖无法读取的数据，因此拒绝修改
+     *
+     * @throws IllegalStateException 数据无法读取时抛出
+     */
+    private void ensureWritable() {
+        ensureLoaded();
+        if (readFailed) {
+            throw new IllegalStateException("数据无法读取，暂不能修改");
+        }
+    }
+
+    /**
+     * 数据是否无法读取
+     * 为true时界面只能显示已读取到的部分数据，所有修改都会被拒绝
+     *
+     * @return 数据存在但无法读取或无法解密时返回true
+     */
+    public boolean isReadFailed() {
+        ensureLoaded();
+        return readFailed;
+    }
+
+    /**
+     * 存储中是否没有任何数据文件
+     * 以加载开始前的文件为准，而不是加载结果：存储无法读取时加载结果同样为空，但不是全新安装
+     *
+     * @return 加载前任何存储引擎都没有写过数据时返回true
+     */
+    public boolean isStorageEmptyAtLoad() {
+        ensureLoaded();
+        return storageEmptyAtLoad;
+    }
+
+    /**
+     * 检查是否有任何存储引擎写过的数据文件，包括只剩上一代备份的文件
+     *
+     * @return 存在任何数据文件时返回true
+     */
+    private boolean hasStoredData() {
+        File directory = context.getFilesDir();
+        String[] dataFiles = {JsonContactStore.SNAPSHOT_FILE, JsonContactStore.JOURNAL_FILE,
+                ShardedContactStore.MANIFEST_FILE, JsonGroupStore.GROUPS_FILE, MY_CARD_FILE,
+                GroupMembershipIndex.INDEX_FILE, ContactTrash.TRASH_FILE};
+        for (String name : dataFiles) {
+            if (new File(directory, name).exists() || new File(directory, name + DurableFile.BACKUP_SUFFIX).exists()) {
+                return true;
+            }
+        }
+        return context.getDatabasePath(ContactDatabase.DATABASE_NAME).exists();
+    }
+
+    /**
+     * 从存储加载全部数据并发布第一个完整版本，调用方持有仓库锁
+     */
+    private void load() {
+        ensureEncryption();
+        // 在加载期间的迁移写入任何文件之前检查
+        storageEmptyAtLoad = !hasStoredData();
+        int maxContactId = 0;
+        // 加载和迁移期间在普通映射上修改，完成后一次性转为持久化映射
+        Map<Integer, Contact> loadedContacts = new LinkedHashMap<>();
+        try {
+            for (Contact contact : contactStore.loadAll()) {
+                loadedContacts.put(contact.getId(), contact);
+                maxContactId = Math.max(maxContactId, contact.getId());
+            }
+            readFailed = dataKey.isUnavailable();
+        } catch (IOException e) {
+            // 不把无法读取的存储当作空通讯录：跳过所有基于加载结果整体重写的迁移
+            Log.e(TAG, "联系人存储无法读取，跳过数据迁移", e);
+            readFailed = true;
+        }
+        if (migrations.isMembershipMigrated()) {
+            loadMemberships(loadedContacts);
+        } else if (!readFailed) {
+            migrations.migrateEmbeddedMemberships(loadedContacts, membershipIndex, contactStore);
+        }
+        contactIdSequence.ensureAbove(maxContactId);
+
+        int maxGroupId = 0;
+        groups.clear();
+        groups.addAll(groupStore.loadAll());
+        for (Group group : groups) {
+            maxGroupId = Math.max(maxGroupId, group.getId());
+        }
+        groupIdSequence.ensureAbove(maxGroupId);
+
+        // 头像清理依据加载到的全部引用，联系人和个人名片都确认读取成功后才能执行
+        boolean referencesVerified = !readFailed;
+        try {
+            myCard = fileUtil.readExisting(MY_CARD_FILE, Contact.class);
+        } catch (IOException e) {
+            Log.e(TAG, "读取个人名片失败", e);
+            myCard = null;
+            referencesVerified = false;
+        }
+        if (!readFailed && myCard != null) {
+            myCard = migrations.upgradeMyCard(myCard);
+        }
+        loadTrash(loadedContacts);
+        contacts = PersistentIntMap.copyOf(loadedContacts);
+        synchronized (contactListLiveData) {
+            loaded = true;
+        }
+        ColumnarContactIndex index = sidecars.openIndex(contacts.size());
+        // 联系人、分组和个人名片一起发布，索引对应这一版本
+        published.set(new DataSnapshot(published.get().getVersion() + 1, true, contacts,
+                Collections.unmodifiableList(new ArrayList<>(groups)),
+                membershipIndex.publish(), myCard, index, index != null ? contacts : null));
+        contactsDirty = groupsDirty = myCardDirty = false;
+        postSnapshot(published.get(), true, true, true);
+        // 过期的投影和索引在加载后重写一次
+        if (sidecars.needsRebuildAfterLoad(contacts.size(), index)) {
+            writeScheduler.markProjectionDirty();
+        }
+        Log.d(TAG, "数据加载完成，存储引擎: " + engine + "，联系人: " + contacts.size() + "，分组: " + groups.size());
+        if (referencesVerified) {
+            scheduleOrphanPhotoCleanup();
+        } else {
+            Log.w(TAG, "数据没有完整读取，跳过头像清理");
+        }
+        if (!readFailed && migrations.needsDataEncryption()) {
+            scheduleDataEncryption();
+        }
+    }
+
+    /**
+     * 从成员关系文件加载分组成员，并填充联系人的分组列表
+     * 只有联系人确认读取成功时才移除已不存在的联系人的成员关系，否则会清空成员关系文件
+     *
+     * @param loadedContacts 从存储加载的全部联系人，按ID索引
+     */
+    private void loadMemberships(Map<Integer, Contact> loadedContacts) {
+        if (!membershipIndex.load(fileUtil) && !loadedContacts.isEmpty()) {
+            Log.w(TAG, "成员关系文件缺失或无法读取，分组成员为空");
+        }
+        if (readFailed) {
+            // 联系人没有读到，成员关系只保留在索引中，不填充到联系人上
+            Log.w(TAG, "联系人没有完整读取，保留成员关系文件原样");
+            return;
+        }
+        if (membershipIndex.retainContacts(loadedContacts::containsKey)) {
+            writeScheduler.markMembershipDirty();
+        }
+        membershipIndex.fillGroupIds(loadedContacts);
+    }
+
+    /**
+     * 读取回收站，把已删除的联系人移出可见数据，并物理删除超过保留期的联系人
+     * 需在加载成员关系之后调用，回收站中的联系人保留各自的分组列表。
+     * 回收站文件无法读取时与联系人存储无法读取同样处理：数据只读，不重写回收站，保留原有的墓碑
+     *
+     * @param loadedContacts 从存储加载的全部联系人，按ID索引，回收站中的联系人会被移出
+     */
+    private void loadTrash(Map<Integer, Contact> loadedContacts) {
+        boolean stale;
+        try {
+            stale = trash.load(fileUtil, loadedContacts);
+        } catch (IOException e) {
+            // 已删除的联系人此时会重新出现，修改后写回会永久丢失墓碑，因此拒绝一切修改
+            Log.e(TAG, "回收站无法读取，数据只读", e);
+            readFailed = true;
+            return;
+        }
+        if (stale) {
+            writeScheduler.markTrashDirty();
+        }
+        for (Contact contact : trash.contacts()) {
+            membershipIndex.replace(contact, null);
+        }
+        purgeTrash(trash.purgeable(System.currentTimeMillis()));
+    }
+
+    /**
+     * 物理删除回收站中的联系人，调用方持有仓库锁
+     * 只登记写入，在持久化线程上先删除联系人记录，再重写回收站和成员关系
+     *
+     * @param contactIds 要物理删除的联系人ID
+     */
+    private void purgeTrash(List<Integer> contactIds) {
+        if (contactIds.isEmpty()) {
+            return;
+        }
+        for (Integer id : contactIds) {
+            trash.remove(id);
+        }
+        writeScheduler.deleteContacts(contactIds);
+        writeScheduler.markTrashDirty();
+        writeScheduler.markMembershipDirty();
+        Log.d(TAG, "物理删除回收站中的联系人: " + contactIds.size() + "，剩余: " + trash.size());
+    }
+
+    /**
+     * 生成用于持久化的联系人副本
+     * 成员关系单独保存，联系人记录不包含分组列表
+     *
+     * @param contact 内存中的联系人
+     * @return 不含分组列表的副本
+     */
+    static Contact toStored(Contact contact) {
+        Contact stored = new Contact(contact);
+        stored.setGroupIds(null);
+        return stored;
+    }
+
+    static List<Contact> toStored(Collection<Contact> contacts) {
+        List<Contact> stored = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            stored.add(toStored(contact));
+        }
+        return stored;
+    }
+
+    /**
+     * 登记一次性迁移：把启用加密之前写入的明文数据重写为加密格式，调用方持有仓库锁
+     * 成员关系、回收站、列表投影和列式索引随下一次提交重写；联系人（包括回收站中的）、分组和个人名片
+     * 在持久化线程上先提交已登记的写入，再按当时的数据整体重写，失败时下次启动重试
+     */
+    private void scheduleDataEncryption() {
+        writeScheduler.markMembershipDirty();
+        writeScheduler.markTrashDirty();
+        writeScheduler.markProjectionDirty();
+        persistExecutor.execute(() -> {
+            try {
+                writeScheduler.commitNow();
+                List<Contact> stored;
+                List<Group> storedGroups;
+                Contact card;
+                synchronized (this) {
+                    stored = toStored(contacts.values());
+                    stored.addAll(toStored(trash.contacts()));
+                    storedGroups = new ArrayList<>(groups);
+                    card = myCard;
+                }
+                migrations.encryptExistingData(engine, contactStore, groupStore, stored, storedGroups, card);
+            } catch (IOException e) {
+                Log.e(TAG, "加密已有数据失败，下次启动重试", e);
+            }
+        });
+    }
+
+    /**
+     * 在后台清理不再被任何联系人引用的头像
+     * 只能在联系人和个人名片都确认读取成功后调用：读取失败时引用集合不完整，会误删仍在使用的头像
+     */
+    private void scheduleOrphanPhotoCleanup() {
+        Set<String> referenced = new HashSet<>();
+        for (Contact contact : contacts.values()) {
+            if (contact.getPhotoRef() != null) {
+                referenced.add(contact.getPhotoRef());
+            }
+        }
+        for (Contact contact : trash.contacts()) {
+            if (contact.getPhotoRef() != null) {
+                referenced.add(contact.getPhotoRef());
+            }
+        }
+        // 撤销和重做记录中的联系人恢复后仍需要头像
+        history.forEachContact(contact -> {
+            if (contact.getPhotoRef() != null) {
+                referenced.add(contact.getPhotoRef());
+            }
+        });
+        if (myCard != null && myCard.getPhotoRef() != null) {
+            referenced.add(myCard.getPhotoRef());
+        }
+        persistExecutor.execute(() -> photoStore.removeUnreferenced(referenced));
+    }
+
+    /**
+     * 获取当前使用的存储引擎
+     *
+     * @return 存储引擎
+     */
+    public StorageEngine getStorageEngine() {
+        return engine;
+    }
+
+    /**
+     * 切换存储引擎
+     * 在持久化线程上等待已提交的写入完成后，把当前存储中的数据迁移到新引擎，
+     * 校验通过后切换并记录设置。旧引擎的数据保留不删除。会阻塞调用线程，不应在主线程调用
+     *
+     * @param target 目标存储引擎
+     * @throws IOException 迁移失败时抛出，此时继续使用原存储引擎
+     */
+    public void switchStorageEngine(StorageEngine target) throws IOException {
+        ensureWritable();
+        runOnPersistThread(() -> {
+            writeScheduler.commitNow();
+            if (target == engine) {
+                return;
+            }
+            ContactStore targetContacts = target.createContactStore(context);
+            GroupStore targetGroups = target.createGroupStore(context);
+            StoreMigrator.migrate(contactStore, groupStore, targetContacts, targetGroups);
+            if (!prefs.edit().putString(KEY_STORAGE_ENGINE, target.name()).commit()) {
+                throw new IOException("存储引擎设置保存失败");
+            }
+            contactStore = targetContacts;
+            groupStore = targetGroups;
+            engine = target;
+            Log.d(TAG, "存储引擎已切换为: " + target);
+        });
+    }
+
+    /**
+     * 搜索联系人
+     * 存储引擎带有全文索引时使用索引查询，否则在内存快照中过滤。
+     * 全文索引随后台持久化更新，刚提交的修改可能要稍后才能被搜到；列式索引叠加了内存中的修改，总是与当前版本一致。
+     * 会阻塞调用线程，应在后台线程调用
+     *
+     * @param keyword 搜索关键词
+     * @return 匹配的联系人，按姓名排序
+     */
+    public List<Contact> searchContacts(String keyword) {
+        DataSnapshot snapshot = ensureLoaded();
+        List<Integer> ids = contactStore.search(keyword);
+        if (ids == null) {
+            ColumnarContactIndex.Overlay indexed = snapshot.getIndexedContacts();
+            if (indexed == null) {
+                return ContactIndexer.search(snapshot.getContacts(), keyword);
+            }
+            // 扫描索引列得到已按姓名排序的匹配行，只为匹配的联系人取完整对象
+            ids = indexed.search(keyword).ids();
+            return getContacts(snapshot, ids);
+        }
+        List<Contact> result = getContacts(ensureLoaded(), ids);
+        result.sort(Comparator.comparing(Contact::getName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    private static List<Contact> getContacts(DataSnapshot snapshot, List<Integer> ids) {
+        List<Contact> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Contact contact = snapshot.getContact(id);
+            if (contact != null) {
+                result.add(contact);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取头像存储
+     *
+     * @return 头像存储
+     */
+    public PhotoStore getPhotoStore() {
+        return photoStore;
+    }
+
+    /**
+     * 尚未加载时在后台I/O线程加载数据，加载完成后通过LiveData通知观察者
+     */
+    public void loadAsync() {
+        if (!loaded) {
+            AppExecutors.io().execute(this::ensureLoaded);
+        }
+    }
+
+    /**
+     * 丢弃内存缓存并立即从存储重新加载，会阻塞调用线程，不应在主线程调用
+     * 仅在存储被绕过仓库直接改写（例如写入示例数据）后使用
+     */
+    public synchronized void reload() {
+        loaded = false;
+        sidecars.markStale();
+        load();
+    }
+
+    /**
+     * 标记联系人已修改，在下一版本中重新生成
+     */
+    private void markContactsChanged() {
+        contactsDirty = true;
+    }
+
+    /**
+     * 发布下一版本，在每次修改结束时调用，调用方持有仓库锁
+     * 只重新生成本次修改涉及的部分，其余部分沿用当前版本
+     */
+    private void publish() {
+        if (!contactsDirty && !groupsDirty && !myCardDirty) {
+            return;
+        }
+        DataSnapshot current = published.get();
+        PersistentIntMap<Contact> contactsById = current.contactMap();
+        GroupMembershipIndex.Snapshot membership = current.getMembership();
+        if (contactsDirty) {
+            contactsById = contacts;
+            membership = membershipIndex.publish();
+        }
+        List<Group> groupList = groupsDirty ? Collections.unmodifiableList(new ArrayList<>(groups)) : current.getGroups();
+        // 列式索引保持不变，之后修改的联系人在读取时从本版本叠加
+        DataSnapshot next = new DataSnapshot(current.getVersion() + 1, current.isLoaded(), contactsById,
+                groupList, membership, myCard, current.getColumnarIndex(), current.getColumnarBase());
+        published.set(next);
+        postSnapshot(next, contactsDirty, groupsDirty, myCardDirty);
+        contactsDirty = groupsDirty = myCardDirty = false;
+    }
+
+    /**
+     * 把发布的版本投递给观察者
+     *
+     * @param snapshot 新版本
+     * @param contactsChanged 联系人是否变化
+     * @param groupsChanged 分组是否变化
+     * @param myCardChanged 个人名片是否变化
+     */
+    private void postSnapshot(DataSnapshot snapshot, boolean contactsChanged, boolean groupsChanged,
+                              boolean myCardChanged) {
+        if (contactsChanged) {
+            contactsLiveData.postValue(snapshot.getContacts());
+            List<Contact> indexed = snapshot.getIndexedContacts();
+            contactListLiveData.postValue(indexed != null ? indexed : snapshot.getContacts());
+        }
+        if (groupsChanged) {
+            groupsLiveData.postValue(snapshot.getGroups());
+        }
+        if (myCardChanged) {
+            myCardLiveData.postValue(snapshot.getMyCard());
+        }
+    }
+
+    /**
+     * 立即提交合并窗口内待写入的修改，不阻塞调用线程
+     * 在界面进入后台等刷新点调用
+     */
+    public void flush() {
+        writeScheduler.flush();
+    }
+
+    /**
+     * 提交待写入的修改并等待完成
+     * 会阻塞调用线程，不应在主线程调用
+     *
+     * @throws IOException 提交失败时抛出
+     */
+    public void flushAndWait() throws IOException {
+        runOnPersistThread(writeScheduler::commitNow);
+    }
+
+    /**
+     * 将合并后的批次写入存储，在持久化线程上执行
+     *
+     * @param batch 合并后的批次
+     * @return 实际执行的写入次数
+     * @throws IOException 写入失败时抛出
+     */
+    private int commitBatch(WriteScheduler.Batch batch) throws IOException {
+        if (readFailed) {
+            // 加载期间登记的重写（列表投影、回收站、成员关系等）基于不完整的数据，全部丢弃
+            Log.w(TAG, "数据无法读取，丢弃待写入的修改: " + batch.requests);
+            return 0;
+        }
+        int writes = 0;
+        // 墓碑变化同样改变可见的联系人，列表投影和列式索引随之过期
+        boolean contactsChanged = !batch.contactDeletes.isEmpty() || !batch.contactUpserts.isEmpty()
+                || batch.trashDirty;
+        if (contactsChanged) {
+            sidecars.beforeContactWrites();
+        }
+        if (!batch.contactDeletes.isEmpty()) {
+            contactStore.deleteAll(batch.contactDeletes);
+            writes++;
+        }
+        if (!batch.contactUpserts.isEmpty()) {
+            List<Contact> full = new ArrayList<>();
+            List<ContactPatch> patches = new ArrayList<>();
+            for (Contact contact : batch.contactUpserts.values()) {
+                EnumSet<ContactField> fields = batch.contactPatchFields.get(contact.getId());
+                if (fields != null) {
+                    patches.add(new ContactPatch(contact, fields));
+                } else {
+                    full.add(contact);
+                }
+            }
+            if (!full.isEmpty()) {
+                contactStore.upsertAll(full);
+                writes++;
+            }
+            if (!patches.isEmpty()) {
+                contactStore.applyPatches(patches);
+                writes++;
+            }
+        }
+
+        int groupChanges = batch.groupDeletes.size() + batch.groupUpserts.size();
+        if (groupChanges > 1) {
+            // 多个分组变化时直接写出最新的分组快照，只需一次写入
+            groupStore.replaceAll(published.get().getGroups());
+            writes++;
+        } else if (groupChanges == 1) {
+            for (Integer groupId : batch.groupDeletes) {
+                groupStore.delete(groupId);
+            }
+            for (Group group : batch.groupUpserts.values()) {
+                groupStore.upsert(group);
+            }
+            writes++;
+        }
+
+        if (batch.trashDirty || batch.membershipDirty) {
+            Map<Integer, Long> tombstones;
+            GroupMembershipIndex.Snapshot membership;
+            List<Contact> trashed;
+            synchronized (this) {
+                tombstones = trash.tombstones();
+                membership = published.get().getMembership();
+                trashed = trash.contacts();
+            }
+            // 联系人之后写入：中途退出时残留的墓碑和成员关系中已删除的联系人会在加载时移除
+            if (batch.trashDirty) {
+                ContactTrash.write(fileUtil, tombstones);
+                writes++;
+            }
+            if (batch.membershipDirty) {
+                // 回收站中的联系人保留成员关系，删除和恢复都不需要重写成员关系
+                GroupMembershipIndex.write(fileUtil, membership, trashed);
+                writes++;
+            }
+        }
+
+        if (batch.myCard != null) {
+            fileUtil.saveObject(batch.myCard, MY_CARD_FILE);
+            writes++;
+        }
+        if (contactsChanged || batch.projectionDirty) {
+            sidecars.afterCommit(batch.contactDeletes.size() + batch.contactUpserts.size() + (batch.trashDirty ? 1 : 0),
+                    published.get().contactMap().size(), batch.projectionDirty);
+        }
+        return writes;
+    }
+
+    /**
+     * 读取列表投影并在完整数据加载完成前先行发布
+     */
+    private void publishProjection() {
+        ensureEncryption();
+        List<Contact> rows = sidecars.readRows();
+        if (rows == null) {
+            return;
+        }
+        synchronized (contactListLiveData) {
+            if (!loaded) {
+                contactListLiveData.postValue(rows);
+                Log.d(TAG, "冷启动先行发布联系人: " + rows.size());
+            }
+        }
+    }
+
+    /**
+     * 设置冷启动时是否先从列表投影绘制联系人列表，仅用于启动性能对比
+     *
+     * @param enabled 是否启用
+     */
+    public void setListProjectionEnabled(boolean enabled) {
+        listProjectionEnabled = enabled;
+    }
+
+    /**
+     * 是否启用了列表投影
+     *
+     * @return 启用时返回true
+     */
+    public boolean isListProjectionEnabled() {
+        return listProjectionEnabled;
+    }
+
+    /**
+     * 观察联系人快照
+     * 尚未加载时触发后台加载；此后每次修改都会发出新的快照
+     *
+     * @return 联系人快照的LiveData
+     */
+    public LiveData<List<Contact>> observeContacts() {
+        loadAsync();
+        return contactsLiveData;
+    }
+
+    /**
+     * 观察用于联系人列表显示的快照
+     * 冷启动时先发出列表投影中的精简联系人（只包含列表显示所需字段），
+     * 完整数据加载完成后发出完整快照。需要完整字段时应按ID通过{@link #getContact(int)}读取
+     *
+     * @return 联系人列表快照的LiveData
+     */
+    public LiveData<List<Contact>> observeContactList() {
+        if (!loaded && listProjectionEnabled && projectionRequested.compareAndSet(false, true)) {
+            AppExecutors.io().execute(this::publishProjection);
+        }
+        loadAsync();
+        return contactListLiveData;
+    }
+
+    /**
+     * 观察分组快照
+     *
+     * @return 分组快照的LiveData
+     */
+    public LiveData<List<Group>> observeGroups() {
+        loadAsync();
+        return groupsLiveData;
+    }
+
+    /**
+     * 观察个人名片
+     *
+     * @return 个人名片的LiveData，没有名片时值为null
+     */
+    public LiveData<Contact> observeMyCard() {
+        loadAsync();
+        return myCardLiveData;
+    }
+
+    /**
+     * 获取当前版本的完整数据，不加锁
+     * 需要同时读取联系人、分组和成员等多项数据时应使用同一版本，保证彼此一致。
+     * 尚未加载时会同步加载，主线程应改用observe系列方法
+     *
+     * @return 当前发布的数据版本
+     */
+    public DataSnapshot getSnapshot() {
+        return ensureLoaded();
+    }
+
+    /**
+     * 获取最近发布的数据版本，不触发加载，可在主线程调用
+     * 供已由observe系列方法收到数据的界面读取一致的数据
+     *
+     * @return 当前发布的数据版本，尚未加载时为空版本
+     */
+    public DataSnapshot getPublishedSnapshot() {
+        return published.get();
+    }
+
+    /**
+     * 获取全部联系人的快照
+     * 返回的列表不可修改，其中的联系人对象也不应被修改，修改需通过仓库方法提交。
+     * 尚未加载时会同步加载，主线程应改用{@link #observeContacts()}
+     *
+     * @return 联系人快照
+     */
+    public List<Contact> getContacts() {
+        return ensureLoaded().getContacts();
+    }
+
+    /**
+     * 按ID获取联系人
+     * 完整数据尚未加载时只从存储读取该联系人，不触发全部数据的加载；会阻塞调用线程，应在后台线程调用
+     *
+     * @param contactId 联系人ID
+     * @return 联系人，不存在或已在回收站中时返回null
+     */
+    public Contact getContact(int contactId) {
+        DataSnapshot snapshot = published.get();
+        if (snapshot.isLoaded()) {
+            return snapshot.getContact(contactId);
+        }
+        return readContact(contactId);
+    }
+
+    /**
+     * 从存储读取单个联系人
+     * 分组列表按成员关系文件填充，回收站中的联系人视为不存在。读取结果不进入缓存，
+     * 完整数据加载后以加载的版本为准
+     *
+     * @param contactId 联系人ID
+     * @return 联系人，不存在、已在回收站中或无法读取时返回null
+     */
+    private Contact readContact(int contactId) {
+        ensureEncryption();
+        Contact contact = contactStore.load(contactId);
+        if (contact == null) {
+            return null;
+        }
+        Map<Integer, Contact> single = new HashMap<>();
+        single.put(contactId, contact);
+        try {
+            new ContactTrash().load(fileUtil, single);
+        } catch (IOException e) {
+            Log.e(TAG, "回收站无法读取，无法确认联系人是否已删除: " + contactId, e);
+            return null;
+        }
+        if (single.isEmpty()) {
+            return null;
+        }
+        // 迁移之前分组列表仍内嵌在联系人记录中
+        if (migrations.isMembershipMigrated()) {
+            GroupMembershipIndex memberships = new GroupMembershipIndex();
+            memberships.load(fileUtil);
+            contact.setGroupIds(memberships.groupIdsOf(contactId));
+        }
+        return contact;
+    }
+
+    /**
+     * 获取全部分组的快照
+     *
+     * @return 不可修改的分组列表
+     */
+    public List<Group> getGroups() {
+        return ensureLoaded().getGroups();
+    }
+
+    /**
+     * 获取分组成员的快照，可在主线程调用
+     * 成员数为O(1)，成员ID按ID排列，多个分组的交集和并集按位计算
+     *
+     * @return 分组成员快照，尚未加载时为空
+     */
+    public GroupMembershipIndex.Snapshot getGroupMembership() {
+        return published.get().getMembership();
+    }
+
+    /**
+     * 获取分组的成员联系人
+     * 只访问该分组的成员，耗时与成员数成正比
+     *
+     * @param groupId 分组ID
+     * @return 成员联系人，按ID排列
+     */
+    public List<Contact> getGroupMembers(int groupId) {
+        return ensureLoaded().getGroupMembers(groupId);
+    }
+
+    /**
+     * 获取个人名片
+     *
+     * @return 个人名片，没有时返回null
+     */
+    public Contact getMyCard() {
+        return ensureLoaded().getMyCard();
+    }
+
+    /**
+     * 分配一个新的联系人ID
+     *
+     * @return 未被使用过的联系人ID
+     */
+    public int allocateContactId() {
+        ensureLoaded();
+        return contactIdSequence.next();
+    }
+
+    /**
+     * 为批量导入分配一段连续的联系人ID
+     *
+     * @param count 需要的ID数量
+     * @return 第一个ID，分配到的ID为[返回值, 返回值 + count)
+     */
+    public int allocateContactIds(int count) {
+        ensureLoaded();
+        return contactIdSequence.nextBlock(count);
+    }
+
+    /**
+     * 保证之后分配的ID都大于给定值
+     * 写入自带ID的外部数据（例如首次启动的示例数据）前调用，避免新分配的ID与之冲突
+     *
+     * @param maxContactId 外部数据中的最大联系人ID
+     * @param maxGroupId 外部数据中的最大分组ID
+     */
+    public void ensureIdsAbove(int maxContactId, int maxGroupId) {
+        ensureLoaded();
+        contactIdSequence.ensureAbove(maxContactId);
+        groupIdSequence.ensureAbove(maxGroupId);
+    }
+
+    /**
+     * 分配一个新的分组ID
+     *
+     * @return 未被使用过的分组ID
+     */
+    public int allocateGroupId() {
+        ensureLoaded();
+        return groupIdSequence.next();
+    }
+
+    /**
+     * 新增或更新联系人
+     *
+     * @param contact 要保存的联系人，ID不能为空；仓库保存其副本
+     */
+    public void saveContact(Contact contact) {
+        saveContacts(Collections.singletonList(contact));
+    }
+
+    /**
+     * 保存在基准版本上编辑的联系人，检查编辑期间是否有其他修改
+     * 当前版本与基准版本相同时直接保存；否则按字段合并：只修改了一方的字段取修改后的值，
+     * 分组列表按加入和移出的分组分别合并，双方把同一字段改成不同的值时拒绝保存
+     *
+     * @param base 开始编辑时读取的联系人
+     * @param edited 编辑后的联系人，ID与基准版本相同
+     * @return 实际保存的联系人，合并了编辑期间的其他修改
+     * @throws ContactConflictException 修改冲突或联系人已被删除时抛出，此时不保存任何修改
+     */
+    public Contact saveContact(Contact base, Contact edited) throws ContactConflictException {
+        if (edited.getId() == null || !edited.getId().equals(base.getId())) {
+            throw new IllegalArgumentException("联系人ID与基准版本不一致");
+        }
+        synchronized (this) {
+            Contact current = ensureLoaded().getContact(edited.getId());
+            if (current == null) {
+                throw new ContactConflictException(null, EnumSet.noneOf(ContactField.class));
+            }
+            EnumSet<ContactField> theirs = current.changedFields(base);
+            if (theirs.isEmpty()) {
+                saveContact(edited);
+                return new Contact(edited);
+            }
+            EnumSet<ContactField> mine = edited.changedFields(base);
+            EnumSet<ContactField> conflicts = EnumSet.noneOf(ContactField.class);
+            Contact merged = new Contact(current);
+            for (ContactField field : mine) {
+                if (field == ContactField.GROUP_IDS) {
+                    merged.setGroupIds(mergeGroupIds(base.getGroupIds(), edited.getGroupIds(), current.getGroupIds()));
+                } else if (theirs.contains(field) && !field.equalsIn(edited, current)) {
+                    conflicts.add(field);
+                } else {
+                    field.copy(merged, edited);
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                Log.w(TAG, "联系人 " + edited.getId() + " 保存冲突: " + conflicts);
+                throw new ContactConflictException(new Contact(current), conflicts);
+            }
+            Log.d(TAG, "联系人 " + edited.getId() + " 已合并编辑期间的修改: " + theirs);
+            saveContact(merged);
+            return merged;
+        }
+    }
+
+    /**
+     * 三方合并分组列表：在当前列表上应用编辑时加入和移出的分组
+     *
+     * @param base 基准版本的分组
+     * @param edited 编辑后的分组
+     * @param current 当前版本的分组
+     * @return 合并后的分组
+     */
+    private static List<Integer> mergeGroupIds(List<Integer> base, List<Integer> edited, List<Integer> current) {
+        Set<Integer> before = base != null ? new HashSet<>(base) : Collections.emptySet();
+        Set<Integer> after = edited != null ? new HashSet<>(edited) : Collections.emptySet();
+        List<Integer> merged = new ArrayList<>();
+        if (current != null) {
+            for (Integer groupId : current) {
+                if (after.contains(groupId) || !before.contains(groupId)) {
+                    merged.add(groupId);
+                }
+            }
+        }
+        for (Integer groupId : after) {
+            if (!before.contains(groupId) && !merged.contains(groupId)) {
+                merged.add(groupId);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 批量新增或更新联系人
+     * 与已保存版本逐字段比较：没有修改的联系人直接跳过，已有联系人只持久化修改过的字段，
+     * 新联系人完整写入。分组列表的变化只写入成员关系文件
+     *
+     * @param updated 要保存的联系人，ID均不能为空；仓库保存其副本
+     */
+    public void saveContacts(Collection<Contact> updated) {
+        List<Contact> created = new ArrayList<>();
+        List<ContactPatch> patches = new ArrayList<>();
+        int skipped = 0;
+        boolean membershipChanged = false;
+        boolean trashChanged = false;
+        synchronized (this) {
+            ensureWritable();
+            for (Contact contact : updated) {
+                if (contact.getId() == null) {
+                    throw new IllegalArgumentException("联系人ID不能为空");
+                }
+                Contact existing = contacts.get(contact.getId());
+                if (existing == null) {
+                    // 保存已移入回收站的联系人时按新联系人完整写入，并去掉其墓碑
+                    trashChanged |= trash.remove(contact.getId()) != null;
+                }
+                EnumSet<ContactField> changedFields = existing != null ? contact.changedFields(existing) : null;
+                if (changedFields != null && changedFields.isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                Contact copy = new Contact(contact);
+                if (copy.getGroupIds() == null) {
+                    copy.setGroupIds(new ArrayList<>());
+                }
+                contacts = contacts.plus(copy.getId(), copy);
+                membershipChanged |= membershipIndex.replace(existing, copy);
+                if (changedFields == null) {
+                    created.add(toStored(copy));
+                } else {
+                    changedFields.remove(ContactField.GROUP_IDS);
+                    if (!changedFields.isEmpty()) {
+                        patches.add(new ContactPatch(toStored(copy), changedFields));
+                    }
+                }
+            }
+            if (!created.isEmpty() || !patches.isEmpty()) {
+                markContactsChanged();
+            } else if (membershipChanged) {
+                markContactsChanged();
+            }
+            publish();
+        }
+        StorageMetrics.recordContactSaves(skipped, patches.size(), created.size());
+        writeScheduler.upsertContacts(created);
+        writeScheduler.patchContacts(patches);
+        if (membershipChanged) {
+            writeScheduler.markMembershipDirty();
+        }
+        if (trashChanged) {
+            writeScheduler.markTrashDirty();
+        }
+    }
+
+    /**
+     * 导入联系人，整批作为一次可撤销的操作
+     * 写入方式与{@link #saveContacts(Collection)}相同，撤销时导入的联系人一起移入回收站
+     *
+     * @param imported 要导入的联系人，ID均不能为空
+     * @return 本次操作的撤销标识，没有任何修改时返回{@link #NO_UNDO}
+     */
+    public long importContacts(Collection<Contact> imported) {
+        synchronized (this) {
+            ensureWritable();
+            UndoHistory.Entry before = captureVersion("导入联系人");
+            saveContacts(imported);
+            if (contacts == before.contacts) {
+                return NO_UNDO;
+            }
+            return history.record(before);
+        }
+    }
+
+    /**
+     * 删除联系人，移入回收站
+     *
+     * @param contactId 要删除的联系人ID
+     */
+    public void deleteContact(int contactId) {
+        deleteContacts(Collections.singletonList(contactId));
+    }
+
+    /**
+     * 批量删除联系人，移入回收站
+     * 只写入回收站的墓碑，不改写联系人和成员关系，可通过{@link #restoreContacts(Collection)}恢复。
+     * 回收站超过数量上限时，最早删除的联系人在后台物理删除
+     *
+     * @param contactIds 要删除的联系人ID
+     * @return 本次操作的撤销标识，可传给{@link #undo(long)}；没有删除任何联系人时返回{@link #NO_UNDO}
+     */
+    public long deleteContacts(Collection<Integer> contactIds) {
+        long now = System.currentTimeMillis();
+        long token;
+        synchronized (this) {
+            ensureWritable();
+            UndoHistory.Entry before = captureVersion("删除联系人");
+            boolean deleted = false;
+            for (Integer id : contactIds) {
+                Contact contact = contacts.get(id);
+                if (contact != null) {
+                    contacts = contacts.minus(id);
+                    membershipIndex.replace(contact, null);
+                    trash.add(contact, now);
+                    deleted = true;
+                }
+            }
+            if (!deleted) {
+                return NO_UNDO;
+            }
+            token = history.record(before);
+            markContactsChanged();
+            purgeTrash(trash.purgeable(now));
+            publish();
+        }
+        writeScheduler.markTrashDirty();
+        return token;
+    }
+
+    /**
+     * 从回收站恢复联系人，连同删除前的分组
+     * 只写入回收站的墓碑
+     *
+     * @param contactIds 要恢复的联系人ID，不在回收站中的忽略
+     */
+    public void restoreContacts(Collection<Integer> contactIds) {
+        synchronized (this) {
+            ensureWritable();
+            boolean restored = false;
+            for (Integer id : contactIds) {
+                Contact contact = trash.remove(id);
+                if (contact != null) {
+                    contacts = contacts.plus(id, contact);
+                    membershipIndex.replace(null, contact);
+                    restored = true;
+                }
+            }
+            if (!restored) {
+                return;
+            }
+            markContactsChanged();
+            publish();
+        }
+        writeScheduler.markTrashDirty();
+    }
+
+    /**
+     * 获取回收站中的联系人
+     *
+     * @return 联系人列表，最近删除的在前
+     */
+    public List<Contact> getTrashedContacts() {
+        synchronized (this) {
+            ensureLoaded();
+            return Collections.unmodifiableList(trash.contacts());
+        }
+    }
+
+    /**
+     * 清空回收站，在后台物理删除其中的全部联系人
+     */
+    public void emptyTrash() {
+        synchronized (this) {
+            ensureWritable();
+            List<Integer> ids = new ArrayList<>();
+            for (Contact contact : trash.contacts()) {
+                ids.add(contact.getId());
+            }
+            purgeTrash(ids);
+        }
+    }
+
+    /**
+     * 新增或更新分组
+     *
+     * @param group 要保存的分组，仓库保存其副本
+     */
+    public void saveGroup(Group group) {
+        Group copy = new Group(group);
+        synchronized (this) {
+            ensureWritable();
+            int index = indexOfGroup(copy.getId());
+            if (index >= 0) {
+                groups.set(index, copy);
+            } else {
+                groups.add(copy);
+            }
+            groupsDirty = true;
+            publish();
+        }
+        writeScheduler.upsertGroup(copy);
+    }
+
+    /**
+     * 更新分组名称和成员
+     * 只写入分组数据和成员关系文件，不改写联系人
+     *
+     * @param groupId 分组ID
+     * @param newName 新的分组名称
+     * @param memberIds 分组的全部成员ID
+     * @return 本次操作的撤销标识，没有任何修改时返回{@link #NO_UNDO}
+     */
+    public long updateGroup(int groupId, String newName, Collection<Integer> memberIds) {
+        return updateGroup(groupId, newName, RoaringIdSet.of(memberIds));
+    }
+
+    /**
+     * 更新分组名称和成员
+     * 与现有成员按位求差，得到需要移出和加入的联系人；只写入分组数据和成员关系文件，不改写联系人
+     *
+     * @param groupId 分组ID
+     * @param newName 新的分组名称
+     * @param members 分组的全部成员ID
+     * @return 本次操作的撤销标识，没有任何修改时返回{@link #NO_UNDO}
+     */
+    public long updateGroup(int groupId, String newName, RoaringIdSet members) {
+        Group renamed = null;
+        boolean membershipChanged = false;
+        long token = NO_UNDO;
+        synchronized (this) {
+            ensureWritable();
+            UndoHistory.Entry before = captureVersion("修改分组");
+            int index = indexOfGroup(groupId);
+            // 名称没有变化时不重写分组，也不产生撤销记录
+            if (index >= 0 && !Objects.equals(groups.get(index).getName(), newName)) {
+                renamed = new Group(groups.get(index));
+                renamed.setName(newName);
+                groups.set(index, renamed);
+                groupsDirty = true;
+            }
+
+            // 只访问成员关系变化的联系人，不扫描全部联系人
+            List<Contact> changed = new ArrayList<>();
+            RoaringIdSet current = membershipIndex.currentMemberIds(groupId);
+            RoaringIdSet.andNot(current, members).forEachId(contactId -> {
+                Contact copy = new Contact(contacts.get(contactId));
+                copy.getGroupIds().remove(Integer.valueOf(groupId));
+                changed.add(copy);
+            });
+            RoaringIdSet.andNot(members, current).forEachId(contactId -> {
+                Contact contact = contacts.get(contactId);
+                if (contact == null) {
+                    return;
+                }
+                Contact copy = new Contact(contact);
+                copy.getGroupIds().add(groupId);
+                changed.add(copy);
+            });
+            for (Contact copy : changed) {
+                Contact previous = contacts.get(copy.getId());
+                contacts = contacts.plus(copy.getId(), copy);
+                membershipChanged |= membershipIndex.replace(previous, copy);
+            }
+            if (membershipChanged) {
+                markContactsChanged();
+            }
+            if (renamed != null || membershipChanged) {
+                token = history.record(before);
+            }
+            publish();
+        }
+        if (renamed != null) {
+            writeScheduler.upsertGroup(renamed);
+        }
+        if (membershipChanged) {
+            writeScheduler.markMembershipDirty();
+        }
+        return token;
+    }
+
+    /**
+     * 删除分组及其全部成员关系
+     * 只写入分组数据和成员关系文件，不改写联系人
+     *
+     * @param groupId 要删除的分组ID
+     * @return 本次操作的撤销标识，分组不存在时返回{@link #NO_UNDO}
+     */
+    public long deleteGroup(int groupId) {
+        boolean membershipChanged;
+        long token = NO_UNDO;
+        synchronized (this) {
+            ensureWritable();
+            UndoHistory.Entry before = captureVersion("删除分组");
+            int index = indexOfGroup(groupId);
+            if (index >= 0) {
+                groups.remove(index);
+                groupsDirty = true;
+            }
+            membershipIndex.currentMemberIds(groupId).forEachId(contactId -> {
+                Contact copy = new Contact(contacts.get(contactId));
+                copy.getGroupIds().remove(Integer.valueOf(groupId));
+                contacts = contacts.plus(contactId, copy);
+            });
+            membershipChanged = membershipIndex.removeGroup(groupId);
+            if (membershipChanged) {
+                markContactsChanged();
+            }
+            // 回收站中的联系人保留了成员关系，同样移除，恢复时不再加入已删除的分组；撤销时随分组一起恢复
+            membershipChanged |= trash.removeGroup(groupId);
+            if (index >= 0 || membershipChanged) {
+                token = history.record(before);
+            }
+            publish();
+        }
+        writeScheduler.deleteGroup(groupId);
+        if (membershipChanged) {
+            writeScheduler.markMembershipDirty();
+        }
+        return token;
+    }
+
+    /**
+     * 保存个人名片
+     *
+     * @param card 个人名片，仓库保存其副本
+     */
+    public void saveMyCard(Contact card) {
+        Contact copy = new Contact(card);
+        synchronized (this) {
+            ensureWritable();
+            if (myCard != null && copy.changedFields(myCard).isEmpty()) {
+                StorageMetrics.recordContactSaves(1, 0, 0);
+                return;
+            }
+            myCard = copy;
+            myCardDirty = true;
+            publish();
+        }
+        StorageMetrics.recordContactSaves(0, 0, 1);
+        writeScheduler.saveMyCard(copy);
+    }
+
+    /**
+     * 是否有可撤销的操作
+     *
+     * @return 有可撤销的操作时返回true
+     */
+    public synchronized boolean canUndo() {
+        return history.canUndo();
+    }
+
+    /**
+     * 是否有可重做的操作
+     *
+     * @return 有可重做的操作时返回true
+     */
+    public synchronized boolean canRedo() {
+        return history.canRedo();
+    }
+
+    /**
+     * 撤销最近一次可撤销的操作，撤销后可以重做
+     * 只比较当前版本与操作之前的版本之间不同的联系人和分组，通过普通的修改方法写回，耗时与差异量成正比
+     *
+     * @return 被撤销的操作名称，没有可撤销的操作时返回null
+     */
+    public synchronized String undo() {
+        ensureWritable();
+        UndoHistory.Entry target = history.pollUndo();
+        if (target == null) {
+            return null;
+        }
+        history.pushRedo(captureVersion(target.token, target.label));
+        restoreVersion(target);
+        Log.d(TAG, "已撤销: " + target.label);
+        return target.label;
+    }
+
+    /**
+     * 撤销指定的操作
+     * 只有该操作仍是最近一次可撤销的操作时才撤销，之后已有其他可撤销的操作或已被撤销时不做任何修改
+     *
+     * @param token 操作返回的撤销标识
+     * @return 被撤销的操作名称，无法撤销时返回null
+     */
+    public synchronized String undo(long token) {
+        ensureWritable();
+        UndoHistory.Entry top = history.peekUndo();
+        if (token == NO_UNDO || top == null || top.token != token) {
+            return null;
+        }
+        return undo();
+    }
+
+    /**
+     * 重做最近一次被撤销的操作
+     *
+     * @return 被重做的操作名称，没有可重做的操作时返回null
+     */
+    public synchronized String redo() {
+        ensureWritable();
+        UndoHistory.Entry target = history.pollRedo();
+        if (target == null) {
+            return null;
+        }
+        history.pushUndo(captureVersion(target.token, target.label));
+        restoreVersion(target);
+        Log.d(TAG, "已重做: " + target.label);
+        return target.label;
+    }
+
+    /**
+     * 重做指定的操作
+     * 只有该操作是最近一次被撤销的操作时才重做
+     *
+     * @param token 操作返回的撤销标识
+     * @return 被重做的操作名称，无法重做时返回null
+     */
+    public synchronized String redo(long token) {
+        ensureWritable();
+        UndoHistory.Entry top = history.peekRedo();
+        if (token == NO_UNDO || top == null || top.token != token) {
+            return null;
+        }
+        return redo();
+    }
+
+    /**
+     * 记录当前版本，调用方持有仓库锁
+     *
+     * @param label 操作名称
+     * @return 当前版本的撤销记录，带有新的撤销标识
+     */
+    private UndoHistory.Entry captureVersion(String label) {
+        return captureVersion(history.nextToken(), label);
+    }
+
+    private UndoHistory.Entry captureVersion(long token, String label) {
+        return new UndoHistory.Entry(token, label, contacts, Collections.unmodifiableList(new ArrayList<>(groups)),
+                trash.contacts());
+    }
+
+    /**
+     * 把联系人和分组恢复为给定版本，调用方持有仓库锁
+     * 先恢复分组，再按联系人的差异恢复：目标版本中没有的联系人移入回收站，回收站中的联系人直接恢复，
+     * 其余不同的联系人按目标版本保存，最后恢复回收站中联系人的分组列表
+     *
+     * @param target 目标版本
+     */
+    private void restoreVersion(UndoHistory.Entry target) {
+        history.setRestoring(true);
+        try {
+            Set<Integer> targetGroupIds = new HashSet<>();
+            for (Group group : target.groups) {
+                targetGroupIds.add(group.getId());
+                int index = indexOfGroup(group.getId());
+                if (index < 0 || !sameGroup(groups.get(index), group)) {
+                    saveGroup(group);
+                }
+            }
+            for (Group group : new ArrayList<>(groups)) {
+                if (!targetGroupIds.contains(group.getId())) {
+                    deleteGroup(group.getId());
+                }
+            }
+
+            List<Integer> removed = new ArrayList<>();
+            List<Integer> trashed = new ArrayList<>();
+            List<Contact> changed = new ArrayList<>();
+            PersistentIntMap.diff(contacts, target.contacts, (contactId, current, wanted) -> {
+                if (wanted == null) {
+                    removed.add(contactId);
+                    return;
+                }
+                if (current == null && trash.contains(contactId)) {
+                    trashed.add(contactId);
+                }
+                changed.add(wanted);
+            });
+            restoreContacts(trashed);
+            // 从回收站恢复的联系人与目标版本相同时会被跳过
+            saveContacts(changed);
+            deleteContacts(removed);
+
+            // 删除分组时回收站中的联系人也移出了该分组，随分组一起恢复
+            boolean trashGroupsChanged = false;
+            for (Contact saved : target.trashed) {
+                trashGroupsChanged |= trash.restoreGroups(saved);
+            }
+            if (trashGroupsChanged) {
+                writeScheduler.markMembershipDirty();
+            }
+        } finally {
+            history.setRestoring(false);
+        }
+    }
+
+    private static boolean sameGroup(Group a, Group b) {
+        return Objects.equals(a.getName(), b.getName()) && a.isExpanded() == b.isExpanded();
+    }
+
+    /**
+     * 查找分组在列表中的位置
+     *
+     * @param groupId 分组ID
+     * @return 分组下标，不存在时返回-1
+     */
+    private int indexOfGroup(int groupId) {
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i).getId() == groupId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 持久化任务
+     */
+    private interface PersistTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * 在持久化线程上执行任务并等待完成，保证在此之前提交的写入都已完成
+     *
+     * @param task 持久化任务
+     * @throws IOException 任务失败或等待被中断时抛出
+     */
+    private void runOnPersistThread(PersistTask task) throws IOException {
+        Future<?> future = persistExecutor.submit(() -> {
+            task.run();
+            return null;
+        });
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待持久化任务被中断", e);
+        }
+    }
+
+    /**
+     * 列表投影和列式索引按当前发布的版本重写，重写后的索引挂到最新的版本上
+     */
+    private final class SidecarHost implements ContactListSidecars.Host {
+        @Override
+        public DataSnapshot snapshotToWrite() {
+            return readFailed ? null : published.get();
+        }
+
+        @Override
+        public void onRebuilt(ColumnarContactIndex index, PersistentIntMap<Contact> base) {
+            synchronized (ContactRepository.this) {
+                DataSnapshot current = published.get();
+                if (index != null || current.getColumnarIndex() != null) {
+                    DataSnapshot next = current.withColumnarIndex(index, base);
+                    published.set(next);
+                    List<Contact> indexed = next.getIndexedContacts();
+                    contactListLiveData.postValue(indexed != null ? indexed : next.getContacts());
+                }
+            }
+        }
+    }
+
+    /**
+     * 任意界面进入后台时提交待写入的修改
+     */
+    private final class FlushOnStopCallbacks implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityStopped(Activity activity) {
+            flush();
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
+}
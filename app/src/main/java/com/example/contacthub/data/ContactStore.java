@@ -0,0 +1,79 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 联系人存储接口
+ * 仓库通过该接口读写联系人，不关心底层是JSON文件还是数据库
+ */
+public interface ContactStore {
+
+    /**
+     * 加载全部联系人
+     * 读取失败时必须抛出异常而不是返回空列表，调用方据此区分空存储和无法读取的存储
+     *
+     * @return 联系人列表，存储为空时返回空列表
+     * @throws IOException 数据存在但无法读取时抛出，例如校验失败或无法解密
+     */
+    List<Contact> loadAll() throws IOException;
+
+    /**
+     * 按ID读取单个联系人
+     *
+     * @param contactId 联系人ID
+     * @return 联系人，不存在时返回null
+     */
+    Contact load(int contactId);
+
+    /**
+     * 批量新增或更新联系人
+     *
+     * @param contacts 要保存的联系人集合，ID均不能为空
+     * @throws IOException 写入失败时抛出
+     */
+    void upsertAll(Collection<Contact> contacts) throws IOException;
+
+    /**
+     * 批量保存联系人的增量修改
+     * 默认按完整联系人保存，支持增量写入的存储只写入修改过的字段
+     *
+     * @param patches 增量修改，联系人均已存在于存储中
+     * @throws IOException 写入失败时抛出
+     */
+    default void applyPatches(Collection<ContactPatch> patches) throws IOException {
+        List<Contact> contacts = new ArrayList<>(patches.size());
+        for (ContactPatch patch : patches) {
+            contacts.add(patch.getContact());
+        }
+        upsertAll(contacts);
+    }
+
+    /**
+     * 批量删除联系人
+     *
+     * @param contactIds 要删除的联系人ID集合
+     * @throws IOException 写入失败时抛出
+     */
+    void deleteAll(Collection<Integer> contactIds) throws IOException;
+
+    /**
+     * 用给定列表整体替换所有联系人
+     *
+     * @param contacts 新的完整联系人列表
+     * @throws IOException 写入失败时抛出，此时原数据保持不变
+     */
+    void replaceAll(List<Contact> contacts) throws IOException;
+
+    /**
+     * 使用存储自身的索引搜索联系人
+     *
+     * @param keyword 搜索关键词
+     * @return 匹配的联系人ID；存储没有搜索索引时返回null，由调用方在内存中过滤
+     */
+    List<Integer> search(String keyword);
+}
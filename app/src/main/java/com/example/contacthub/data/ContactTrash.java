@@ -0,0 +1,223 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回收站：已删除但尚未物理移除的联系人
+ * 删除联系人只在trash.bin中记录墓碑（联系人ID和删除时间），联系人记录和成员关系仍留在存储中，
+ * 加载时按墓碑把联系人移出可见数据，因此删除和恢复都只需写入该文件，与删除数量成正比。
+ * 超过保留期或数量超过上限的墓碑由仓库在后台物理删除。
+ * 修改方法不加锁，由仓库在持有自身锁时调用
+ */
+final class ContactTrash {
+    static final String TRASH_FILE = "trash.bin";
+    private static final int MAGIC = 0x43485431; // "CHT1"
+    private static final int FORMAT_VERSION = 1;
+    // 删除超过该时长的联系人被物理删除
+    static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+    // 回收站超过该数量时物理删除最早删除的联系人
+    static final int MAX_ENTRIES = 500;
+
+    // 按删除时间从早到晚排列
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>();
+
+    private static final class Entry {
+        final Contact contact;
+        final long deletedAt;
+
+        Entry(Contact contact, long deletedAt) {
+            this.contact = contact;
+            this.deletedAt = deletedAt;
+        }
+    }
+
+    /**
+     * 把联系人移入回收站
+     *
+     * @param contact 被删除的联系人，保留其分组列表用于恢复
+     * @param deletedAt 删除时间
+     */
+    void add(Contact contact, long deletedAt) {
+        entries.remove(contact.getId());
+        entries.put(contact.getId(), new Entry(contact, deletedAt));
+    }
+
+    /**
+     * 把联系人移出回收站
+     *
+     * @param contactId 联系人ID
+     * @return 被移出的联系人，不在回收站中时返回null
+     */
+    Contact remove(int contactId) {
+        Entry entry = entries.remove(contactId);
+        return entry != null ? entry.contact : null;
+    }
+
+    boolean contains(int contactId) {
+        return entries.containsKey(contactId);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 从回收站中联系人的分组列表里移除已删除的分组，恢复时不再加入该分组
+     *
+     * @param groupId 被删除的分组ID
+     * @return 有联系人属于该分组时返回true
+     */
+    boolean removeGroup(int groupId) {
+        boolean changed = false;
+        for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+            Contact contact = entry.getValue().contact;
+            if (contact.getGroupIds() != null && contact.getGroupIds().contains(groupId)) {
+                Contact copy = new Contact(contact);
+                copy.getGroupIds().remove(Integer.valueOf(groupId));
+                entry.setValue(new Entry(copy, entry.getValue().deletedAt));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 把回收站中联系人的分组列表恢复为之前的版本，删除时间不变，用于撤销删除分组
+     *
+     * @param saved 之前版本中回收站里的联系人
+     * @return 该联系人仍在回收站中且分组列表不同时返回true
+     */
+    boolean restoreGroups(Contact saved) {
+        Entry entry = entries.get(saved.getId());
+        if (entry == null || Objects.equals(entry.contact.getGroupIds(), saved.getGroupIds())) {
+            return false;
+        }
+        Contact copy = new Contact(entry.contact);
+        copy.setGroupIds(saved.getGroupIds() != null ? new ArrayList<>(saved.getGroupIds()) : new ArrayList<>());
+        entries.put(saved.getId(), new Entry(copy, entry.deletedAt));
+        return true;
+    }
+
+    /**
+     * 获取回收站中的联系人
+     *
+     * @return 联系人列表，最近删除的在前
+     */
+    List<Contact> contacts() {
+        List<Contact> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            result.add(entry.contact);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 找出需要物理删除的联系人：超过保留期的，以及超出数量上限的最早删除的
+     *
+     * @param now 当前时间
+     * @return 需要物理删除的联系人ID，按删除时间从早到晚排列
+     */
+    List<Integer> purgeable(long now) {
+        List<Integer> result = new ArrayList<>();
+        int excess = entries.size() - MAX_ENTRIES;
+        for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+            if (excess > 0 || now - entry.getValue().deletedAt >= RETENTION_MILLIS) {
+                result.add(entry.getKey());
+                excess--;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取全部墓碑，用于在持久化线程上写入
+     *
+     * @return 联系人ID到删除时间的副本，按删除时间从早到晚排列
+     */
+    Map<Integer, Long> tombstones() {
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().deletedAt);
+        }
+        return result;
+    }
+
+    /**
+     * 读取墓碑，把对应的联系人从加载的联系人中移入回收站
+     *
+     * 回收站文件不存在时回收站为空；文件存在但无法读取时不能当作空回收站，否则已删除的联系人会重新出现，
+     * 之后重写回收站还会永久丢失原有的墓碑，因此抛出异常由调用方按数据无法读取处理
+     *
+     * @param fileUtil 文件工具
+     * @param contacts 从存储加载的全部联系人，按ID索引
+     * @return 存在已没有对应联系人的墓碑时返回true，此时应重写回收站文件
+     * @throws IOException 回收站文件存在但无法读取、校验失败或格式无效时抛出，此时回收站为空
+     */
+    boolean load(FileUtil fileUtil, Map<Integer, Contact> contacts) throws IOException {
+        entries.clear();
+        Map<Integer, Long> tombstones = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(fileUtil.openBinary(TRASH_FILE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("回收站文件格式无效");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int contactId = in.readInt();
+                tombstones.put(contactId, in.readLong());
+            }
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        boolean stale = false;
+        for (Map.Entry<Integer, Long> tombstone : tombstones.entrySet()) {
+            Contact contact = contacts.remove(tombstone.getKey());
+            if (contact != null) {
+                entries.put(tombstone.getKey(), new Entry(contact, tombstone.getValue()));
+            } else {
+                // 物理删除联系人之后、重写回收站之前退出时残留的墓碑
+                stale = true;
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * 写入回收站文件
+     * 格式：[MAGIC][格式版本][墓碑数]，每个墓碑为[联系人ID][删除时间]
+     *
+     * @param fileUtil 文件工具
+     * @param tombstones 联系人ID到删除时间
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    static void write(FileUtil fileUtil, Map<Integer, Long> tombstones) throws IOException {
+        fileUtil.saveBinary(TRASH_FILE, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(tombstones.size());
+            for (Map.Entry<Integer, Long> entry : tombstones.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.utils.FileEncryption;
+import com.example.contacthub.utils.FileUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * 数据密钥的加载
+ * 首次读写数据文件之前加载一次，之后所有数据文件都按块加密。
+ * 加载Keystore、读取密钥文件和检查已有加密数据都是磁盘I/O，只应在后台线程上触发
+ */
+class DataKeyLoader {
+    private static final String TAG = "DataKeyLoader";
+
+    private final Context context;
+    // 是否已加载数据密钥
+    private volatile boolean loaded;
+    // 已有加密数据但数据密钥不可用（例如从备份恢复到新设备），数据无法解密
+    private volatile boolean unavailable;
+
+    /**
+     * 构造函数，不访问磁盘
+     *
+     * @param context 应用上下文
+     */
+    DataKeyLoader(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 加载数据密钥，只执行一次，并发调用时等待首次加载完成
+     */
+    void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                unavailable = !enableEncryption(context);
+                loaded = true;
+            }
+        }
+    }
+
+    /**
+     * 数据密钥是否不可用
+     *
+     * @return 已有加密数据但密钥不可用时返回true，此时数据只能按无法读取处理
+     */
+    boolean isUnavailable() {
+        return unavailable;
+    }
+
+    /**
+     * 启用数据文件加密，之后所有写入都按块加密
+     * 已由调用方设置了加密方式时保持不变。没有可用的密钥时，只有在还没有任何加密数据时才生成新密钥；
+     * 已有加密数据时不生成新密钥也不回退到明文，数据在密钥恢复前只能按无法读取处理
+     *
+     * @param context 应用上下文
+     * @return 已有加密数据但密钥不可用时返回false
+     */
+    private static boolean enableEncryption(Context context) {
+        if (FileUtil.getEncryption() != null) {
+            return true;
+        }
+        try {
+            FileUtil.setEncryption(FileEncryption.forDevice(context, false));
+            return true;
+        } catch (GeneralSecurityException | IOException e) {
+            if (hasEncryptedData(context.getFilesDir())) {
+                Log.e(TAG, "已有加密数据，但数据密钥不可用，数据只读", e);
+                return false;
+            }
+            Log.i(TAG, "没有可用的数据密钥，也没有加密数据，生成新密钥");
+        }
+        try {
+            FileUtil.setEncryption(FileEncryption.forDevice(context, true));
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e(TAG, "无法生成数据密钥，按明文保存", e);
+        }
+        return true;
+    }
+
+    /**
+     * 检查目录下是否有加密的数据文件或加密的日志记录
+     *
+     * @param directory 应用数据目录
+     * @return 找到任何加密数据时返回true
+     */
+    private static boolean hasEncryptedData(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return false;
+        }
+        for (File file : files) {
+            if (file.isDirectory() ? hasEncryptedData(file) : isEncryptedFile(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEncryptedFile(File file) {
+        if (file.getName().equals(JsonContactStore.JOURNAL_FILE)) {
+            return ContactJournal.containsEncryptedRecords(file);
+        }
+        byte[] header = new byte[4];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int count = 0;
+            while (count < header.length) {
+                int n = in.read(header, count, header.length - count);
+                if (n == -1) {
+                    return false;
+                }
+                count += n;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "无法读取文件头: " + file.getName(), e);
+            return false;
+        }
+        return FileEncryption.isEncrypted(header);
+    }
+}
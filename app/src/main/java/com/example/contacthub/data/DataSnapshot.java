@@ -0,0 +1,201 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.PersistentIntMap;
+import com.example.contacthub.utils.RoaringIdSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 仓库数据在某一版本的不可变快照
+ * 联系人、分组、分组成员和个人名片作为一个整体发布，读取方拿到的各部分总是属于同一版本，读取时不需要加锁。
+ * 写入方在仓库锁内修改工作数据，完成后生成下一版本并原子替换，未变化的部分直接沿用上一版本的对象；
+ * 联系人保存在持久化映射中，相邻版本共享绝大部分节点。
+ * 旧版本不再被任何读取方引用后由垃圾回收释放
+ */
+public final class DataSnapshot {
+    static final DataSnapshot EMPTY = new DataSnapshot(0, false, PersistentIntMap.empty(),
+            Collections.emptyList(), GroupMembershipIndex.Snapshot.EMPTY, null, null, null);
+
+    private final long version;
+    private final boolean loaded;
+    private final PersistentIntMap<Contact> contactsById;
+    // 按ID排列的联系人列表，首次读取时生成
+    private volatile List<Contact> contacts;
+    private final List<Group> groups;
+    private final GroupMembershipIndex.Snapshot membership;
+    private final Contact myCard;
+    // 列式索引及生成索引时的联系人，没有索引时均为null
+    private final ColumnarContactIndex columnarIndex;
+    private final PersistentIntMap<Contact> columnarBase;
+    // 叠加了之后修改的索引行列表，首次读取时生成
+    private volatile ColumnarContactIndex.Overlay indexedContacts;
+
+    /**
+     * 构造函数
+     * 集合参数必须已经是不可修改的，之后也不会再被修改
+     */
+    DataSnapshot(long version, boolean loaded, PersistentIntMap<Contact> contactsById,
+                 List<Group> groups, GroupMembershipIndex.Snapshot membership, Contact myCard,
+                 ColumnarContactIndex columnarIndex, PersistentIntMap<Contact> columnarBase) {
+        this.version = version;
+        this.loaded = loaded;
+        this.contactsById = contactsById;
+        this.groups = groups;
+        this.membership = membership;
+        this.myCard = myCard;
+        this.columnarIndex = columnarIndex;
+        this.columnarBase = columnarBase;
+    }
+
+    /**
+     * 生成只替换列式索引的下一版本
+     *
+     * @param index 新的列式索引，为null时不再使用索引
+     * @param base 生成索引时的联系人，可以早于本版本
+     * @return 新版本
+     */
+    DataSnapshot withColumnarIndex(ColumnarContactIndex index, PersistentIntMap<Contact> base) {
+        DataSnapshot next = new DataSnapshot(version + 1, loaded, contactsById, groups, membership, myCard,
+                index, index != null ? base : null);
+        next.contacts = contacts;
+        return next;
+    }
+
+    /**
+     * 获取版本号，每次发布递增
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 是否已从存储加载
+     *
+     * @return 加载完成后发布的版本返回true
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 获取全部联系人
+     *
+     * @return 不可修改的联系人列表，按ID排列，其中的联系人对象也不应被修改
+     */
+    public List<Contact> getContacts() {
+        List<Contact> list = contacts;
+        if (list == null) {
+            list = Collections.unmodifiableList(new ArrayList<>(contactsById.values()));
+            contacts = list;
+        }
+        return list;
+    }
+
+    /**
+     * 按ID获取联系人
+     *
+     * @param contactId 联系人ID
+     * @return 联系人，不存在时返回null
+     */
+    public Contact getContact(int contactId) {
+        return contactsById.get(contactId);
+    }
+
+    /**
+     * 按ID集合获取联系人，例如分组成员的交集或并集
+     *
+     * @param ids 联系人ID集合
+     * @return 存在的联系人，按ID排列
+     */
+    public List<Contact> getContactsById(RoaringIdSet ids) {
+        List<Contact> result = new ArrayList<>(ids.cardinality());
+        ids.forEachId(contactId -> {
+            Contact contact = contactsById.get(contactId);
+            if (contact != null) {
+                result.add(contact);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取分组的成员联系人
+     *
+     * @param groupId 分组ID
+     * @return 成员联系人，按ID排列
+     */
+    public List<Contact> getGroupMembers(int groupId) {
+        return getContactsById(membership.memberIds(groupId));
+    }
+
+    /**
+     * 获取全部分组
+     *
+     * @return 不可修改的分组列表
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * 获取分组成员
+     *
+     * @return 与本版本联系人一致的分组成员快照
+     */
+    public GroupMembershipIndex.Snapshot getMembership() {
+        return membership;
+    }
+
+    /**
+     * 获取个人名片
+     *
+     * @return 个人名片，没有时返回null
+     */
+    public Contact getMyCard() {
+        return myCard;
+    }
+
+    PersistentIntMap<Contact> contactMap() {
+        return contactsById;
+    }
+
+    ColumnarContactIndex getColumnarIndex() {
+        return columnarIndex;
+    }
+
+    PersistentIntMap<Contact> getColumnarBase() {
+        return columnarBase;
+    }
+
+    /**
+     * 获取与本版本一致的索引行列表
+     * 生成索引之后修改、删除和新增的联系人按两个版本的差异找出，改用本版本中的联系人，耗时与修改量成正比
+     *
+     * @return 叠加了修改的索引行列表，没有列式索引时返回null
+     */
+    ColumnarContactIndex.Overlay getIndexedContacts() {
+        if (columnarIndex == null) {
+            return null;
+        }
+        ColumnarContactIndex.Overlay list = indexedContacts;
+        if (list == null) {
+            RoaringIdSet staleIds = new RoaringIdSet();
+            List<Contact> changed = new ArrayList<>();
+            PersistentIntMap.diff(columnarBase, contactsById, (contactId, before, after) -> {
+                staleIds.add(contactId);
+                if (after != null) {
+                    changed.add(after);
+                }
+            });
+            list = columnarIndex.withChanges(staleIds, Collections.unmodifiableList(changed));
+            indexedContacts = list;
+        }
+        return list;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.DurableFile;
+import com.example.contacthub.utils.FileEncryption;
+import com.example.contacthub.utils.FileUtil;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 文件加密基准
+ * 仅在可调试版本中生效：把当前联系人序列化为JSON（不足时重复到至少4MB），分别以明文和分块加密
+ * 写入（含fsync）并完整读取，对比吞吐量；另外测试只读取最后一块时的耗时，
+ * 加密文件跳过的块不会被解密（打开文件时的CRC校验仍会读取整个文件）。
+ * 使用方式：
+ * adb shell am start -n com.example.contacthub/.MainActivity --ez benchmark_encryption true
+ */
+public final class EncryptionBenchmark {
+    private static final String TAG = "EncryptionBenchmark";
+    public static final String EXTRA_RUN = "benchmark_encryption";
+    private static final String FILE_PREFIX = "benchmark.encryption.";
+    private static final int ITERATIONS = 5;
+    private static final int MIN_PAYLOAD_BYTES = 4 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private EncryptionBenchmark() {
+    }
+
+    /**
+     * 依次测试明文和加密的写入、读取，结果输出到日志
+     * 会阻塞调用线程，应在后台线程执行
+     *
+     * @param context 应用上下文
+     */
+    public static void run(Context context) {
+        // 先加载数据，数据密钥随加载一起载入
+        List<Contact> contacts = ContactRepository.getInstance(context).getContacts();
+        FileEncryption encryption = FileUtil.getEncryption();
+        if (encryption == null) {
+            Log.w(TAG, "未启用加密，跳过加密基准");
+            return;
+        }
+        byte[] payload = buildPayload(contacts);
+        for (FileEncryption mode : new FileEncryption[]{null, encryption}) {
+            String label = mode == null ? "明文" : "加密";
+            File file = new File(context.getFilesDir(), FILE_PREFIX + (mode == null ? "plain" : "sealed"));
+            try {
+                long[] writeNanos = new long[ITERATIONS];
+                long[] readNanos = new long[ITERATIONS];
+                long[] tailNanos = new long[ITERATIONS];
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long start = System.nanoTime();
+                    write(file, payload, mode);
+                    writeNanos[i] = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    long read = read(file, encryption, 0);
+                    readNanos[i] = System.nanoTime() - start;
+                    if (read != payload.length) {
+                        Log.w(TAG, label + " 读取长度不一致: " + read);
+                    }
+
+                    // 只读取最后一块：之前的块整块跳过
+                    start = System.nanoTime();
+                    read(file, encryption, payload.length - 1);
+                    tailNanos[i] = System.nanoTime() - start;
+                }
+                Log.i(TAG, String.format(Locale.ROOT,
+                        "%s: %dB -> %dB，写入 %.1fMB/s，读取 %.1fMB/s，只读最后一块 %.2fms（中位数）",
+                        label, payload.length, file.length(), throughput(payload.length, median(writeNanos)),
+                        throughput(payload.length, median(readNanos)), median(tailNanos) / 1e6));
+            } catch (IOException e) {
+                Log.e(TAG, label + " 加密基准失败", e);
+            } finally {
+                DurableFile.delete(file);
+            }
+        }
+    }
+
+    private static byte[] buildPayload(List<Contact> contacts) {
+        byte[] json = new Gson().toJson(contacts).getBytes(StandardCharsets.UTF_8);
+        int copies = Math.max(1, (MIN_PAYLOAD_BYTES + json.length - 1) / Math.max(json.length, 1));
+        byte[] payload = new byte[json.length * copies];
+        for (int i = 0; i < copies; i++) {
+            System.arraycopy(json, 0, payload, i * json.length, json.length);
+        }
+        return payload;
+    }
+
+    private static void write(File file, byte[] payload, FileEncryption mode) throws IOException {
+        try (DurableFile.CommitOutputStream out = DurableFile.openWrite(file);
+             OutputStream sealed = mode != null ? mode.wrap(out) : out) {
+            for (int offset = 0; offset < payload.length; offset += BUFFER_SIZE) {
+                sealed.write(payload, offset, Math.min(BUFFER_SIZE, payload.length - offset));
+            }
+            FileEncryption.finish(sealed);
+            out.commit();
+        }
+    }
+
+    /**
+     * 跳过前skip字节后读取到文件末尾
+     *
+     * @return 跳过和读取的总字节数
+     */
+    private static long read(File file, FileEncryption encryption, long skip) throws IOException {
+        try (InputStream in = FileEncryption.detect(DurableFile.openRead(file), encryption)) {
+            long total = 0;
+            while (total < skip) {
+                long skipped = in.skip(skip - total);
+                if (skipped <= 0) {
+                    break;
+                }
+                total += skipped;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return bytes / 1048576.0 / (nanos / 1e9);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
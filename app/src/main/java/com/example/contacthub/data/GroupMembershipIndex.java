@@ -0,0 +1,382 @@
+package com.example.contacthub.data;
+
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.RoaringIdSet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 分组与联系人的成员关系
+ * 成员关系独立于联系人保存在group_members.bin中，是(分组ID, 联系人ID)关系的唯一来源，
+ * 联系人记录不再包含分组列表，修改分组只需写入分组数据和该文件。
+ * 每个分组的成员保存为压缩位图，展开分组只需访问该分组的成员，成员数为O(1)，
+ * 并支持按位计算多个分组的交集和并集。
+ * 修改方法不加锁，由仓库在持有自身锁时调用；读取方通过发布的不可变快照访问，
+ * 发布时只重新复制本次修改涉及的分组，其余分组沿用上一份快照中的位图
+ */
+public class GroupMembershipIndex {
+    private static final String TAG = "GroupMembershipIndex";
+    public static final String INDEX_FILE = "group_members.bin";
+    private static final int MAGIC = 0x43484731; // "CHG1"
+    // 1：随联系人写入重建的派生索引，带联系人数；2：成员关系的唯一来源
+    private static final int FORMAT_VERSION = 2;
+    private static final RoaringIdSet EMPTY_SET = new RoaringIdSet().freeze();
+
+    private final Map<Integer, RoaringIdSet> members = new HashMap<>();
+    // 上次发布之后成员发生变化的分组
+    private final Set<Integer> dirtyGroups = new HashSet<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 某一时刻的分组成员，不可修改
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyMap());
+
+        private final Map<Integer, RoaringIdSet> members;
+
+        private Snapshot(Map<Integer, RoaringIdSet> members) {
+            this.members = members;
+        }
+
+        /**
+         * 获取分组的成员ID
+         *
+         * @param groupId 分组ID
+         * @return 已冻结的成员ID集合，按ID排列
+         */
+        public RoaringIdSet memberIds(int groupId) {
+            RoaringIdSet ids = members.get(groupId);
+            return ids != null ? ids : EMPTY_SET;
+        }
+
+        /**
+         * 获取分组的成员数
+         *
+         * @param groupId 分组ID
+         * @return 成员数
+         */
+        public int memberCount(int groupId) {
+            RoaringIdSet ids = members.get(groupId);
+            return ids != null ? ids.cardinality() : 0;
+        }
+
+        /**
+         * 获取同时属于全部给定分组的联系人ID
+         *
+         * @param groupIds 分组ID
+         * @return 新的成员ID集合，未给出分组时为空
+         */
+        public RoaringIdSet intersection(int... groupIds) {
+            if (groupIds.length == 0) {
+                return new RoaringIdSet();
+            }
+            RoaringIdSet result = memberIds(groupIds[0]).copy();
+            for (int i = 1; i < groupIds.length && !result.isEmpty(); i++) {
+                result = RoaringIdSet.and(result, memberIds(groupIds[i]));
+            }
+            return result;
+        }
+
+        /**
+         * 获取属于任一给定分组的联系人ID
+         *
+         * @param groupIds 分组ID
+         * @return 新的成员ID集合
+         */
+        public RoaringIdSet union(int... groupIds) {
+            RoaringIdSet result = new RoaringIdSet();
+            for (int groupId : groupIds) {
+                result = RoaringIdSet.or(result, memberIds(groupId));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 根据联系人中的分组列表重建索引，用于从旧版内嵌在联系人中的分组列表迁移
+     *
+     * @param contacts 全部联系人
+     */
+    void rebuild(Collection<Contact> contacts) {
+        dirtyGroups.addAll(members.keySet());
+        members.clear();
+        for (Contact contact : contacts) {
+            replace(null, contact);
+        }
+    }
+
+    /**
+     * 用联系人的新版本替换旧版本，只处理分组列表的差异
+     *
+     * @param previous 旧版本，新增联系人时为null
+     * @param current 新版本，删除联系人时为null
+     * @return 成员关系发生变化时返回true
+     */
+    boolean replace(Contact previous, Contact current) {
+        List<Integer> before = previous != null ? previous.getGroupIds() : null;
+        List<Integer> after = current != null ? current.getGroupIds() : null;
+        if (before == after) {
+            return false;
+        }
+        boolean changed = false;
+        if (before != null) {
+            for (Integer groupId : before) {
+                if (groupId != null && (after == null || !after.contains(groupId))) {
+                    changed |= remove(groupId, previous.getId());
+                }
+            }
+        }
+        if (after != null) {
+            for (Integer groupId : after) {
+                if (groupId != null && (before == null || !before.contains(groupId))) {
+                    changed |= add(groupId, current.getId());
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 移除已不存在的联系人的成员关系
+     * 联系人和成员关系分别写入，两次写入之间退出时成员关系中可能残留已删除的联系人
+     *
+     * @param exists 判断联系人是否存在
+     * @return 移除了成员关系时返回true
+     */
+    boolean retainContacts(IntPredicate exists) {
+        boolean changed = false;
+        for (Map.Entry<Integer, RoaringIdSet> entry : new ArrayList<>(members.entrySet())) {
+            RoaringIdSet missing = new RoaringIdSet();
+            entry.getValue().forEachId(contactId -> {
+                if (!exists.test(contactId)) {
+                    missing.add(contactId);
+                }
+            });
+            if (!missing.isEmpty()) {
+                missing.forEachId(contactId -> remove(entry.getKey(), contactId));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 按成员关系填充联系人的分组列表，供仍通过{@link Contact#getGroupIds()}读取分组的调用方使用
+     * 只应在联系人发布之前调用；成员关系中不存在的联系人跳过
+     *
+     * @param contacts 全部联系人，按ID索引
+     */
+    void fillGroupIds(Map<Integer, Contact> contacts) {
+        for (Contact contact : contacts.values()) {
+            contact.setGroupIds(new ArrayList<>());
+        }
+        for (Map.Entry<Integer, RoaringIdSet> entry : members.entrySet()) {
+            Integer groupId = entry.getKey();
+            entry.getValue().forEachId(contactId -> {
+                Contact contact = contacts.get(contactId);
+                if (contact != null) {
+                    contact.getGroupIds().add(groupId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 移除分组的全部成员关系
+     *
+     * @param groupId 分组ID
+     * @return 分组原先有成员时返回true
+     */
+    boolean removeGroup(int groupId) {
+        if (members.remove(groupId) != null) {
+            dirtyGroups.add(groupId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 获取联系人所属的分组，逐个分组按位查找，不遍历成员
+     *
+     * @param contactId 联系人ID
+     * @return 分组ID列表
+     */
+    List<Integer> groupIdsOf(int contactId) {
+        List<Integer> groupIds = new ArrayList<>();
+        for (Map.Entry<Integer, RoaringIdSet> entry : members.entrySet()) {
+            if (entry.getValue().contains(contactId)) {
+                groupIds.add(entry.getKey());
+            }
+        }
+        return groupIds;
+    }
+
+    /**
+     * 获取分组当前的成员ID，供仓库在持有锁时使用
+     *
+     * @param groupId 分组ID
+     * @return 成员ID集合的副本
+     */
+    RoaringIdSet currentMemberIds(int groupId) {
+        RoaringIdSet ids = members.get(groupId);
+        return ids != null ? ids.copy() : new RoaringIdSet();
+    }
+
+    /**
+     * 发布新的快照
+     * 只复制上次发布之后发生变化的分组
+     *
+     * @return 新快照；没有变化时返回当前快照
+     */
+    Snapshot publish() {
+        if (dirtyGroups.isEmpty()) {
+            return snapshot;
+        }
+        Map<Integer, RoaringIdSet> published = new HashMap<>(snapshot.members);
+        for (Integer groupId : dirtyGroups) {
+            RoaringIdSet ids = members.get(groupId);
+            if (ids == null || ids.isEmpty()) {
+                published.remove(groupId);
+            } else {
+                published.put(groupId, ids.copy().freeze());
+            }
+        }
+        dirtyGroups.clear();
+        snapshot = new Snapshot(published);
+        return snapshot;
+    }
+
+    /**
+     * 获取最近发布的快照，可在任意线程调用
+     *
+     * @return 分组成员快照
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 从成员关系文件加载
+     *
+     * @param fileUtil 文件工具
+     * @return 加载成功时返回true；文件不存在或无法读取时返回false，此时索引为空
+     */
+    boolean load(FileUtil fileUtil) {
+        dirtyGroups.addAll(members.keySet());
+        members.clear();
+        Map<Integer, RoaringIdSet> loaded = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(fileUtil.openBinary(INDEX_FILE))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.e(TAG, "成员关系文件格式无效");
+                return false;
+            }
+            int groupCount = in.readInt();
+            for (int i = 0; i < groupCount; i++) {
+                int groupId = in.readInt();
+                loaded.put(groupId, RoaringIdSet.readFrom(in));
+            }
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            Log.e(TAG, "读取成员关系失败", e);
+            return false;
+        }
+        members.putAll(loaded);
+        dirtyGroups.addAll(loaded.keySet());
+        return true;
+    }
+
+    /**
+     * 把快照写入成员关系文件
+     * 格式：[MAGIC][格式版本][分组数]，每个分组为[分组ID][成员位图]
+     *
+     * @param fileUtil 文件工具
+     * @param snapshot 分组成员快照
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    static void write(FileUtil fileUtil, Snapshot snapshot) throws IOException {
+        write(fileUtil, snapshot, Collections.emptyList());
+    }
+
+    /**
+     * 把快照连同不在快照中但仍需保留的成员关系一起写入成员关系文件
+     * 回收站中的联系人不属于可见的分组成员，但其成员关系要保留到物理删除，恢复时不需要再写入
+     *
+     * @param fileUtil 文件工具
+     * @param snapshot 分组成员快照
+     * @param retained 成员关系需要一并写入的联系人，按其分组列表写入
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    static void write(FileUtil fileUtil, Snapshot snapshot, Collection<Contact> retained) throws IOException {
+        Map<Integer, RoaringIdSet> members = snapshot.members;
+        if (!retained.isEmpty()) {
+            members = new HashMap<>(members);
+            Set<Integer> copied = new HashSet<>();
+            for (Contact contact : retained) {
+                if (contact.getGroupIds() == null) {
+                    continue;
+                }
+                for (Integer groupId : contact.getGroupIds()) {
+                    if (copied.add(groupId)) {
+                        RoaringIdSet ids = members.get(groupId);
+                        members.put(groupId, ids != null ? ids.copy() : new RoaringIdSet());
+                    }
+                    members.get(groupId).add(contact.getId());
+                }
+            }
+        }
+        Map<Integer, RoaringIdSet> written = members;
+        fileUtil.saveBinary(INDEX_FILE, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(written.size());
+            for (Map.Entry<Integer, RoaringIdSet> entry : written.entrySet()) {
+                out.writeInt(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            out.flush();
+        });
+    }
+
+    private boolean add(int groupId, int contactId) {
+        RoaringIdSet ids = members.get(groupId);
+        if (ids == null) {
+            ids = new RoaringIdSet();
+            members.put(groupId, ids);
+        }
+        if (ids.add(contactId)) {
+            dirtyGroups.add(groupId);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean remove(int groupId, int contactId) {
+        RoaringIdSet ids = members.get(groupId);
+        if (ids != null && ids.remove(contactId)) {
+            if (ids.isEmpty()) {
+                members.remove(groupId);
+            }
+            dirtyGroups.add(groupId);
+            return true;
+        }
+        return false;
+    }
+}
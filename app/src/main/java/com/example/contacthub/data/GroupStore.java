@@ -0,0 +1,43 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Group;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 分组存储接口
+ */
+public interface GroupStore {
+
+    /**
+     * 加载全部分组
+     *
+     * @return 分组列表，存储为空或读取失败时返回空列表
+     */
+    List<Group> loadAll();
+
+    /**
+     * 新增或更新分组
+     *
+     * @param group 要保存的分组
+     * @throws IOException 写入失败时抛出
+     */
+    void upsert(Group group) throws IOException;
+
+    /**
+     * 删除分组
+     *
+     * @param groupId 要删除的分组ID
+     * @throws IOException 写入失败时抛出
+     */
+    void delete(int groupId) throws IOException;
+
+    /**
+     * 用给定列表整体替换所有分组
+     *
+     * @param groups 新的完整分组列表
+     * @throws IOException 写入失败时抛出，此时原数据保持不变
+     */
+    void replaceAll(List<Group> groups) throws IOException;
+}
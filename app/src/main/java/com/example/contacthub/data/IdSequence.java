@@ -0,0 +1,104 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * 持久化的单调递增ID分配器
+ * 已预留ID的上界保存在SharedPreferences中，每次从持久化存储预留一整段ID，
+ * 段内的分配只在内存中递增，分配为O(1)。进程重启后从上界之后继续分配，
+ * 未用完的段会留下空号，但不会重复分配
+ */
+public class IdSequence {
+    private static final String TAG = "IdSequence";
+    private static final String PREFS_NAME = "id_sequences";
+    // 每次预留的ID数量
+    private static final int BLOCK_SIZE = 64;
+    // 预留上界写入失败时的尝试次数
+    private static final int COMMIT_ATTEMPTS = 3;
+
+    private final SharedPreferences prefs;
+    private final String key;
+    // 下一个待分配的ID
+    private long next;
+    // 已持久化预留的最大ID（包含）
+    private long reservedUpTo;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     * @param name 序列名称，不同序列相互独立
+     */
+    public IdSequence(Context context, String name) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.key = name;
+        this.reservedUpTo = prefs.getLong(key, 0);
+        this.next = reservedUpTo + 1;
+    }
+
+    /**
+     * 分配一个新ID
+     *
+     * @return 新ID
+     * @throws IllegalStateException ID已耗尽或预留上界无法写入时抛出
+     */
+    public synchronized int next() {
+        return nextBlock(1);
+    }
+
+    /**
+     * 分配一段连续的ID，用于批量导入
+     *
+     * @param count 需要的ID数量
+     * @return 这一段中的第一个ID，分配到的ID为[返回值, 返回值 + count)
+     * @throws IllegalStateException ID已耗尽或预留上界无法写入时抛出
+     */
+    public synchronized int nextBlock(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("ID数量必须大于0");
+        }
+        long first = next;
+        long last = first + count - 1;
+        if (last > Integer.MAX_VALUE) {
+            throw new IllegalStateException("ID已耗尽: " + key);
+        }
+        if (last > reservedUpTo) {
+            reserveThrough(Math.min(last + BLOCK_SIZE, Integer.MAX_VALUE));
+        }
+        next = last + 1;
+        return (int) first;
+    }
+
+    /**
+     * 保证之后分配的ID都大于给定值
+     * 加载已有数据后调用，使序列与旧数据（例如由旧版本或示例数据写入的ID）保持一致
+     *
+     * @param existingMaxId 已存在的最大ID
+     */
+    public synchronized void ensureAbove(int existingMaxId) {
+        if (existingMaxId >= next) {
+            next = (long) existingMaxId + 1;
+        }
+    }
+
+    /**
+     * 将预留上界持久化
+     * 使用同步提交，保证分配出去的ID在进程被杀后也不会被再次分配；
+     * 只有写入成功后才推进内存中的上界，写入失败时重试，仍然失败则不分配
+     *
+     * @param upTo 新的预留上界
+     * @throws IllegalStateException 上界无法写入时抛出
+     */
+    private void reserveThrough(long upTo) {
+        for (int attempt = 1; attempt <= COMMIT_ATTEMPTS; attempt++) {
+            if (prefs.edit().putLong(key, upTo).commit()) {
+                reservedUpTo = upTo;
+                return;
+            }
+            Log.w(TAG, "ID预留上界写入失败: " + key + "，第" + attempt + "次");
+        }
+        throw new IllegalStateException("ID预留上界无法写入: " + key);
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileCompression;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.JsonArrayIterator;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于JSON文件的联系人存储
+ * 由完整快照contacts.json和追加日志contacts.journal组成：
+ * 单条修改只追加一条日志记录，日志超过快照一定比例后在后台合并为新快照
+ */
+public class JsonContactStore implements ContactStore {
+    private static final String TAG = "JsonContactStore";
+    public static final String SNAPSHOT_FILE = "contacts.json";
+    public static final String JOURNAL_FILE = "contacts.journal";
+
+    // 日志大小超过快照的该比例时触发压缩
+    private static final double COMPACTION_RATIO = 0.5;
+    // 日志小于该大小时不压缩，避免小通讯录频繁重写快照
+    private static final long MIN_COMPACTION_BYTES = 64 * 1024;
+
+    // 进程内所有实例共享同一把锁和压缩线程，保证日志追加与压缩互斥
+    private static final Object LOCK = new Object();
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+    // 快照和日志被整体替换的次数，只在持有LOCK时访问；压缩据此放弃基于旧数据合并出的快照
+    private static long generation;
+
+    static {
+        // 快照是文本JSON，压缩率高；日志按行追加，保持不压缩
+        FileUtil.setCompression(SNAPSHOT_FILE, FileCompression.GZIP);
+    }
+
+    private final Context context;
+    private final FileUtil fileUtil;
+    private final ContactJournal journal;
+    private final SchemaMigrator migrator;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public JsonContactStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.fileUtil = new FileUtil(this.context);
+        this.migrator = SchemaMigrator.forContacts(this.context);
+        this.journal = new ContactJournal(this.context, JOURNAL_FILE, migrator);
+    }
+
+    /**
+     * 加载全部联系人
+     * 先流式读取快照，再重放日志中的变更
+     *
+     * @return 联系人列表，保持快照中的顺序，新增联系人排在末尾
+     * @throws IOException 快照存在但无法读取，或日志读取失败时抛出
+     */
+    @Override
+    public List<Contact> loadAll() throws IOException {
+        return new ArrayList<>(loadState(Long.MAX_VALUE, null).values());
+    }
+
+    /**
+     * 按ID读取单个联系人
+     * JSON文件没有索引，需要流式扫描整个快照，但只保留该联系人，再重放日志
+     *
+     * @param contactId 联系人ID
+     * @return 联系人，不存在时返回null
+     */
+    @Override
+    public Contact load(int contactId) {
+        try {
+            return loadState(Long.MAX_VALUE, id -> id == contactId).get(contactId);
+        } catch (IOException e) {
+            Log.e(TAG, "读取联系人失败: " + contactId, e);
+            return null;
+        }
+    }
+
+    /**
+     * JSON文件没有搜索索引
+     *
+     * @param keyword 搜索关键词
+     * @return 始终返回null，由调用方在内存中过滤
+     */
+    @Override
+    public List<Integer> search(String keyword) {
+        return null;
+    }
+
+    /**
+     * 读取快照并重放前journalLimit字节的日志
+     * 只有快照不存在时才视为空快照；快照及其备份都校验失败或无法解密时抛出异常，
+     * 不能只用日志中的联系人代替，否则写回时会丢失快照中的全部联系人。
+     * 日志文件读取失败时同样抛出异常，不返回只重放了一部分的结果
+     *
+     * @param journalLimit 重放的日志字节上限
+     * @param filter 只保留快照中ID满足条件的联系人，为null时保留全部；日志中的记录全部重放
+     * @return 以ID为键、保持插入顺序的联系人映射表
+     * @throws IOException 快照存在但无法读取，或日志读取失败时抛出
+     */
+    private Map<Integer, Contact> loadState(long journalLimit, IntPredicate filter) throws IOException {
+        Map<Integer, Contact> contacts = new LinkedHashMap<>();
+        try (JsonArrayIterator<Contact> iterator = migrator.openCurrent(SNAPSHOT_FILE, Contact.class)) {
+            while (iterator.hasNext()) {
+                Contact contact = iterator.next();
+                if (contact != null && contact.getId() != null && (filter == null || filter.test(contact.getId()))) {
+                    contacts.put(contact.getId(), contact);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            Log.d(TAG, "联系人快照不存在，仅从日志加载");
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("读取联系人快照失败", e);
+        }
+        journal.replay(contacts, journalLimit);
+        return contacts;
+    }
+
+    /**
+     * 新增或更新单个联系人，只追加一条日志记录
+     *
+     * @param contact 要保存的联系人，ID不能为空
+     * @throws IOException 写入失败时抛出
+     */
+    public void upsert(Contact contact) throws IOException {
+        if (contact.getId() == null) {
+            throw new IllegalArgumentException("联系人ID不能为空");
+        }
+        synchronized (LOCK) {
+            journal.appendUpsert(contact);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 批量新增或更新联系人，所有记录在一次追加中写入
+     *
+     * @param contacts 要保存的联系人集合，ID均不能为空
+     * @throws IOException 写入失败时抛出
+     */
+    @Override
+    public void upsertAll(Collection<Contact> contacts) throws IOException {
+        if (contacts.isEmpty()) {
+            return;
+        }
+        for (Contact contact : contacts) {
+            if (contact.getId() == null) {
+                throw new IllegalArgumentException("联系人ID不能为空");
+            }
+        }
+        synchronized (LOCK) {
+            journal.appendUpserts(contacts);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 批量保存增量修改，日志记录中只包含修改过的字段
+     *
+     * @param patches 增量修改
+     * @throws IOException 写入失败时抛出
+     */
+    @Override
+    public void applyPatches(Collection<ContactPatch> patches) throws IOException {
+        if (patches.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            journal.appendPatches(patches);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 删除单个联系人，只追加一条删除记录
+     *
+     * @param contactId 要删除的联系人ID
+     * @throws IOException 写入失败时抛出
+     */
+    public void delete(int contactId) throws IOException {
+        synchronized (LOCK) {
+            journal.appendDelete(contactId);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 批量删除联系人，所有删除记录在一次追加中写入
+     *
+     * @param contactIds 要删除的联系人ID集合
+     * @throws IOException 写入失败时抛出
+     */
+    @Override
+    public void deleteAll(Collection<Integer> contactIds) throws IOException {
+        if (contactIds.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            journal.appendDeletes(contactIds);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 用给定列表整体替换所有联系人
+     * 直接写出新快照并清空日志，适合批量导入等大范围变更
+     *
+     * @param contacts 新的完整联系人列表
+     * @throws IOException 写入失败时抛出，此时原快照和日志保持不变
+     */
+    @Override
+    public void replaceAll(List<Contact> contacts) throws IOException {
+        synchronized (LOCK) {
+            fileUtil.saveVersionedJSON(contacts.toArray(new Contact[0]), SNAPSHOT_FILE, migrator.getCurrentVersion());
+            journal.truncate();
+            generation++;
+        }
+    }
+
+    /**
+     * 清空日志
+     * 快照被外部直接覆盖（例如写入示例数据）后调用，避免旧日志重放到新快照上
+     */
+    public void clearJournal() {
+        synchronized (LOCK) {
+            journal.truncate();
+            generation++;
+        }
+    }
+
+    /**
+     * 日志超过快照大小的一定比例时，在后台线程执行压缩
+     */
+    private void scheduleCompactionIfNeeded() {
+        long journalBytes = journal.length();
+        long snapshotBytes = new File(context.getFilesDir(), SNAPSHOT_FILE).length();
+        if (journalBytes < MIN_COMPACTION_BYTES || journalBytes < snapshotBytes * COMPACTION_RATIO) {
+            return;
+        }
+        if (compactionScheduled.compareAndSet(false, true)) {
+            COMPACTOR.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 将快照与日志合并为新快照
+     * 只合并压缩开始时已存在的日志记录，期间新追加的记录保留在日志中。
+     * 由于重放是幂等的，新快照写出后、日志截断前被读取也不会得到错误结果。
+     * 快照或日志无法读取时放弃压缩，保留原快照、备份和日志，避免丢弃未能重放的日志记录；
+     * 读取期间快照被整体替换时同样放弃，避免用旧数据覆盖新快照
+     */
+    public void compact() {
+        long journalLength;
+        long startGeneration;
+        synchronized (LOCK) {
+            journalLength = journal.length();
+            startGeneration = generation;
+        }
+        if (journalLength == 0) {
+            return;
+        }
+
+        Map<Integer, Contact> contacts;
+        try {
+            contacts = loadState(journalLength, null);
+        } catch (IOException e) {
+            Log.e(TAG, "联系人快照或日志无法读取，放弃日志压缩", e);
+            return;
+        }
+
+        synchronized (LOCK) {
+            if (generation != startGeneration) {
+                Log.d(TAG, "压缩期间联系人被整体替换，放弃本次压缩");
+                return;
+            }
+            try {
+                fileUtil.saveVersionedJSON(contacts.values().toArray(new Contact[0]), SNAPSHOT_FILE,
+                        migrator.getCurrentVersion());
+                journal.discardPrefix(journalLength);
+                Log.d(TAG, "日志压缩完成，合并 " + journalLength + " 字节，联系人数: " + contacts.size());
+            } catch (IOException e) {
+                // 快照写入失败时原快照不变，日志保留，下次压缩重试
+                Log.e(TAG, "联系人日志压缩失败", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.JsonArrayIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于JSON文件的分组存储
+ * 分组数量很少，每次修改都整体重写groups.json
+ */
+public class JsonGroupStore implements GroupStore {
+    public static final String GROUPS_FILE = "groups.json";
+
+    private static final String TAG = "JsonGroupStore";
+
+    private final FileUtil fileUtil;
+    private final SchemaMigrator migrator;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public JsonGroupStore(Context context) {
+        this.fileUtil = new FileUtil(context);
+        this.migrator = SchemaMigrator.forGroups(context);
+    }
+
+    @Override
+    public synchronized List<Group> loadAll() {
+        try {
+            return readGroups();
+        } catch (IOException e) {
+            Log.e(TAG, "读取分组失败", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 读取全部分组
+     * 单个分组的修改需要先读取再整体重写，文件无法读取时必须放弃修改，不能只写回修改的分组
+     *
+     * @return 分组列表，还没有保存过分组时返回空列表
+     * @throws IOException 文件存在但无法读取时抛出
+     */
+    private List<Group> readGroups() throws IOException {
+        List<Group> groups = new ArrayList<>();
+        try (JsonArrayIterator<Group> iterator = migrator.openCurrent(GROUPS_FILE, Group.class)) {
+            while (iterator.hasNext()) {
+                Group group = iterator.next();
+                if (group != null) {
+                    groups.add(group);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // 还没有保存过分组
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("读取分组失败", e);
+        }
+        return groups;
+    }
+
+    @Override
+    public synchronized void upsert(Group group) throws IOException {
+        List<Group> groups = readGroups();
+        boolean replaced = false;
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i).getId() == group.getId()) {
+                groups.set(i, group);
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            groups.add(group);
+        }
+        replaceAll(groups);
+    }
+
+    @Override
+    public synchronized void delete(int groupId) throws IOException {
+        List<Group> groups = readGroups();
+        if (groups.removeIf(group -> group.getId() == groupId)) {
+            replaceAll(groups);
+        }
+    }
+
+    @Override
+    public synchronized void replaceAll(List<Group> groups) throws IOException {
+        fileUtil.saveVersionedJSON(groups.toArray(new Group[0]), GROUPS_FILE, migrator.getCurrentVersion());
+    }
+}
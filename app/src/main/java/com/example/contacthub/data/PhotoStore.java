@@ -0,0 +1,366 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileEncryption;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.PhotoUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+/**
+ * 按内容寻址的头像存储
+ * 每张图片以其SHA-256摘要命名保存在应用私有目录photos下，联系人只保存摘要作为引用，
+ * 内容相同的图片只保存一份。图片文件写入后不再修改，读取方可以直接流式访问。
+ * 启用加密后图片按块加密保存，摘要按明文计算，读取时自动识别加密和未加密的文件
+ */
+public class PhotoStore {
+    private static final String TAG = "PhotoStore";
+    public static final String PHOTO_DIR = "photos";
+    private static final String TEMP_PREFIX = "incoming-";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // 未被引用的图片至少保留该时长才会被清理，避免删除刚写入但联系人尚未保存的图片
+    private static final long ORPHAN_GRACE_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final File directory;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public PhotoStore(Context context) {
+        this.directory = new File(context.getFilesDir(), PHOTO_DIR);
+    }
+
+    /**
+     * 保存图片数据
+     *
+     * @param data 图片的原始字节
+     * @return 图片引用（SHA-256摘要的十六进制字符串）
+     * @throws IOException 写入失败时抛出
+     */
+    public String put(byte[] data) throws IOException {
+        return put(out -> out.write(data));
+    }
+
+    /**
+     * 以流的方式保存图片数据，数据边写入边计算摘要，不会整体读入内存
+     *
+     * @param in 图片数据输入流，由调用方负责关闭
+     * @return 图片引用
+     * @throws IOException 读取或写入失败时抛出
+     */
+    public String put(InputStream in) throws IOException {
+        return put(out -> {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        });
+    }
+
+    /**
+     * 将位图压缩为PNG后保存
+     *
+     * @param bitmap 位图
+     * @return 图片引用
+     * @throws IOException 写入失败时抛出
+     */
+    public String putBitmap(Bitmap bitmap) throws IOException {
+        return put(out -> PhotoUtil.saveBitmapToStream(bitmap, out));
+    }
+
+    /**
+     * 图片写入操作
+     */
+    private interface BlobWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 先写入临时文件并计算摘要，再重命名为以摘要命名的正式文件；已存在相同内容时直接丢弃临时文件
+     *
+     * @param writer 图片写入操作
+     * @return 图片引用
+     * @throws IOException 写入失败时抛出
+     */
+    private String put(BlobWriter writer) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建头像目录: " + directory);
+        }
+        File temp = File.createTempFile(TEMP_PREFIX, null, directory);
+        try {
+            MessageDigest digest = newDigest();
+            try (FileOutputStream fos = new FileOutputStream(temp);
+                 OutputStream sealed = FileUtil.encrypt(fos);
+                 DigestOutputStream out = new DigestOutputStream(new BufferedOutputStream(sealed, BUFFER_SIZE), digest)) {
+                writer.write(out);
+                out.flush();
+                FileEncryption.finish(sealed);
+                fos.getFD().sync();
+            }
+            String ref = toHex(digest.digest());
+            File target = getFile(ref);
+            if (target.exists()) {
+                // 相同内容的图片已存在，复用已有文件
+                return ref;
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("无法保存头像文件: " + ref);
+            }
+            return ref;
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                Log.w(TAG, "无法删除临时文件: " + temp.getName());
+            }
+        }
+    }
+
+    /**
+     * 打开图片读取流
+     *
+     * @param ref 图片引用
+     * @return 图片数据输入流，由调用方负责关闭
+     * @throws IOException 图片不存在或读取失败时抛出
+     */
+    public InputStream open(String ref) throws IOException {
+        if (!isValidRef(ref)) {
+            throw new FileNotFoundException("无效的头像引用: " + ref);
+        }
+        return new BufferedInputStream(FileUtil.decrypt(new FileInputStream(getFile(ref))), BUFFER_SIZE);
+    }
+
+    /**
+     * 读取图片的全部字节，用于需要字节数组的场景（例如写入vCard）
+     *
+     * @param ref 图片引用
+     * @return 图片的原始字节
+     * @throws IOException 图片不存在或读取失败时抛出
+     */
+    public byte[] readBytes(String ref) throws IOException {
+        try (InputStream in = open(ref)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) getFile(ref).length());
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 判断图片是否存在
+     *
+     * @param ref 图片引用
+     * @return 存在返回true
+     */
+    public boolean contains(String ref) {
+        return isValidRef(ref) && getFile(ref).exists();
+    }
+
+    /**
+     * 解码联系人的头像
+     * 优先读取头像存储中的图片，尚未迁移的旧数据回退到内联的Base64
+     *
+     * @param contact 联系人
+     * @return 头像位图，没有头像或解码失败时返回null
+     */
+    public Bitmap loadBitmap(Contact contact) {
+        if (contact == null) {
+            return null;
+        }
+        String ref = contact.getPhotoRef();
+        if (ref != null && !ref.isEmpty()) {
+            try (InputStream in = open(ref)) {
+                return BitmapFactory.decodeStream(in);
+            } catch (IOException e) {
+                Log.e(TAG, "读取头像失败: " + ref, e);
+                return null;
+            }
+        }
+        return PhotoUtil.base64ToBitmap(contact.getPhoto());
+    }
+
+    /**
+     * 将联系人内联的Base64头像移入头像存储
+     *
+     * @param contact 联系人，迁移后photo被清空、photoRef指向存储中的图片
+     * @return 联系人被修改时返回true
+     */
+    public boolean migrateInlinePhoto(Contact contact) {
+        String inline = contact.getPhoto();
+        if (inline == null) {
+            return false;
+        }
+        if (inline.isEmpty()) {
+            contact.setPhoto(null);
+            return true;
+        }
+        try {
+            String base64 = inline;
+            if (base64.startsWith("data:image/")) {
+                base64 = base64.substring(base64.indexOf(',') + 1);
+            }
+            contact.setPhotoRef(put(Base64.decode(base64, Base64.DEFAULT)));
+            contact.setPhoto(null);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            // 迁移失败时保留内联数据
+            Log.e(TAG, "迁移联系人头像失败: " + contact.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 把启用加密之前保存的明文图片重写为加密格式
+     * 逐个写入临时文件后替换原文件，引用不变；未启用加密时不做任何事
+     *
+     * @return 全部图片都已是加密格式时返回true
+     */
+    public boolean encryptExisting() {
+        FileEncryption encryption = FileUtil.getEncryption();
+        File[] files = directory.listFiles();
+        if (encryption == null || files == null) {
+            return encryption != null;
+        }
+        boolean complete = true;
+        int encrypted = 0;
+        byte[] header = new byte[4];
+        for (File file : files) {
+            if (!isValidRef(file.getName())) {
+                continue;
+            }
+            try {
+                int count;
+                try (InputStream in = new FileInputStream(file)) {
+                    count = in.read(header);
+                }
+                if (count == header.length && FileEncryption.isEncrypted(header)) {
+                    continue;
+                }
+                File temp = File.createTempFile(TEMP_PREFIX, null, directory);
+                try {
+                    try (InputStream in = new FileInputStream(file);
+                         FileOutputStream fos = new FileOutputStream(temp);
+                         OutputStream sealed = encryption.wrap(new BufferedOutputStream(fos, BUFFER_SIZE))) {
+                        byte[] buffer = new byte[BUFFER_SIZE];
+                        int n;
+                        while ((n = in.read(buffer)) != -1) {
+                            sealed.write(buffer, 0, n);
+                        }
+                        FileEncryption.finish(sealed);
+                        fos.getFD().sync();
+                    }
+                    if (!temp.renameTo(file)) {
+                        throw new IOException("无法替换头像文件: " + file.getName());
+                    }
+                    encrypted++;
+                } finally {
+                    if (temp.exists() && !temp.delete()) {
+                        Log.w(TAG, "无法删除临时文件: " + temp.getName());
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "加密头像失败: " + file.getName(), e);
+                complete = false;
+            }
+        }
+        Log.d(TAG, "已加密头像: " + encrypted + (complete ? "" : "（部分失败）"));
+        return complete;
+    }
+
+    /**
+     * 删除没有被任何联系人引用的图片
+     * 只删除超过保留期的文件，保证刚写入、尚未随联系人保存的图片不会被误删
+     *
+     * @param referenced 仍被引用的图片引用集合
+     * @return 删除的文件数
+     */
+    public int removeUnreferenced(Set<String> referenced) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - ORPHAN_GRACE_MILLIS;
+        int removed = 0;
+        for (File file : files) {
+            if (referenced.contains(file.getName()) || file.lastModified() > cutoff) {
+                continue;
+            }
+            if (file.delete()) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            Log.d(TAG, "清理未引用的头像: " + removed);
+        }
+        return removed;
+    }
+
+    /**
+     * 获取图片文件
+     *
+     * @param ref 图片引用
+     * @return 图片文件
+     */
+    private File getFile(String ref) {
+        return new File(directory, ref);
+    }
+
+    /**
+     * 校验引用格式，防止通过引用访问头像目录之外的文件
+     *
+     * @param ref 图片引用
+     * @return 是合法的SHA-256十六进制字符串时返回true
+     */
+    private static boolean isValidRef(String ref) {
+        if (ref == null || ref.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
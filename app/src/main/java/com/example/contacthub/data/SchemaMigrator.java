@@ -0,0 +1,327 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Base64;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.FileEncryption;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.JsonArrayIterator;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 数据文件的版本迁移
+ * 数据文件带有版本头，版本低于当前版本时逐条升级记录：
+ * 从旧文件流式读取，升级后的记录逐行写入暂存文件，全部完成后再原子替换旧文件，内存占用与文件大小无关。
+ * 每处理一定数量的记录保存一次进度，迁移中断后下次从上次的进度继续；旧文件在替换前保持不变。
+ * 启用加密时暂存文件中的每条记录单独加密，与变更日志的加密记录格式相同
+ */
+public class SchemaMigrator {
+    private static final String TAG = "SchemaMigrator";
+    // 联系人数据的当前版本
+    // 1：没有版本头的旧版文件；2：内联的Base64头像已移入头像存储
+    public static final int CONTACT_SCHEMA_VERSION = 2;
+    // 分组数据的当前版本
+    public static final int GROUP_SCHEMA_VERSION = 1;
+
+    private static final String STAGING_SUFFIX = ".migrating";
+    private static final String CHECKPOINT_SUFFIX = ".migration";
+    // 暂存文件中加密记录的前缀，其后为Base64编码的AES-GCM密文
+    private static final char ENCRYPTED_PREFIX = '~';
+    // 每处理该数量的记录保存一次进度
+    private static final int CHECKPOINT_INTERVAL = 500;
+
+    private final File filesDir;
+    private final FileUtil fileUtil;
+    private final Gson gson = new Gson();
+    private final int currentVersion;
+    private final Step[] steps;
+
+    /**
+     * 单步升级，把一条记录从版本N升级到N+1
+     * 升级可能因中断而对同一条记录重复执行，实现必须是幂等的
+     */
+    public interface Step {
+        JsonObject upgrade(JsonObject record);
+    }
+
+    /**
+     * 迁移进度
+     */
+    private static final class Checkpoint {
+        int fromVersion;
+        int toVersion;
+        // 开始迁移时旧文件的大小，用于判断旧文件在中断期间是否被替换
+        long sourceLength;
+        // 已写入暂存文件的记录数
+        int records;
+        // 暂存文件中已落盘的字节数
+        long stagedBytes;
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     * @param currentVersion 当前版本
+     * @param steps 升级步骤，steps[i]把版本i+1升级到i+2，数量必须等于currentVersion-1
+     */
+    public SchemaMigrator(Context context, int currentVersion, Step... steps) {
+        if (steps.length != currentVersion - JsonArrayIterator.LEGACY_SCHEMA_VERSION) {
+            throw new IllegalArgumentException("升级步骤数量与版本不一致: " + steps.length + "/" + currentVersion);
+        }
+        this.filesDir = context.getFilesDir();
+        this.fileUtil = new FileUtil(context);
+        this.currentVersion = currentVersion;
+        this.steps = steps;
+    }
+
+    /**
+     * 创建联系人数据的迁移器
+     *
+     * @param context 应用上下文
+     * @return 联系人数据迁移器
+     */
+    public static SchemaMigrator forContacts(Context context) {
+        PhotoStore photoStore = new PhotoStore(context);
+        return new SchemaMigrator(context, CONTACT_SCHEMA_VERSION,
+                record -> moveInlinePhoto(photoStore, record));
+    }
+
+    /**
+     * 创建分组数据的迁移器
+     *
+     * @param context 应用上下文
+     * @return 分组数据迁移器
+     */
+    public static SchemaMigrator forGroups(Context context) {
+        return new SchemaMigrator(context, GROUP_SCHEMA_VERSION);
+    }
+
+    /**
+     * 获取当前版本
+     *
+     * @return 当前版本号
+     */
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    /**
+     * 把单独保存、没有版本头的联系人（例如个人名片）升级到当前版本
+     * 升级步骤是幂等的，因此总是从最早的版本开始执行
+     *
+     * @param contact 联系人，不会被修改
+     * @return 升级后的联系人；没有变化时返回原对象
+     */
+    public Contact upgradeContact(Contact contact) {
+        JsonObject record = gson.toJsonTree(contact).getAsJsonObject();
+        JsonObject upgraded = upgrade(record.deepCopy(), JsonArrayIterator.LEGACY_SCHEMA_VERSION);
+        return upgraded.equals(record) ? contact : gson.fromJson(upgraded, Contact.class);
+    }
+
+    /**
+     * 把一条记录从指定版本升级到当前版本
+     *
+     * @param record 记录，可能被直接修改
+     * @param fromVersion 记录的版本
+     * @return 升级后的记录
+     */
+    public JsonObject upgrade(JsonObject record, int fromVersion) {
+        JsonObject upgraded = record;
+        for (int version = Math.max(fromVersion, JsonArrayIterator.LEGACY_SCHEMA_VERSION);
+             version < currentVersion; version++) {
+            upgraded = steps[version - JsonArrayIterator.LEGACY_SCHEMA_VERSION].upgrade(upgraded);
+        }
+        return upgraded;
+    }
+
+    /**
+     * 打开数据文件的流式迭代器，文件版本过旧时先迁移
+     * 版本已是最新时只读取一次文件，不增加额外开销；迁移失败时按原样读取旧文件
+     *
+     * @param filename 文件名
+     * @param elementClass 数组元素类型
+     * @param <T> 元素类型
+     * @return 数组元素迭代器
+     * @throws IOException 文件打开失败时抛出
+     */
+    public <T> JsonArrayIterator<T> openCurrent(String filename, Class<T> elementClass) throws IOException {
+        JsonArrayIterator<T> iterator = fileUtil.iterateArray(filename, elementClass);
+        int version;
+        try {
+            version = iterator.getSchemaVersion();
+        } catch (JsonParseException e) {
+            iterator.close();
+            throw new IOException("无法读取数据版本: " + filename, e);
+        }
+        if (version == currentVersion || !iterator.hasNext()) {
+            return iterator;
+        }
+        if (version > currentVersion) {
+            Log.w(TAG, filename + " 的版本" + version + "高于当前版本" + currentVersion + "，按原样读取");
+            return iterator;
+        }
+        iterator.close();
+        try {
+            migrate(filename, version);
+        } catch (IOException | JsonParseException e) {
+            Log.e(TAG, "迁移失败，按原样读取，下次启动继续: " + filename, e);
+        }
+        return fileUtil.iterateArray(filename, elementClass);
+    }
+
+    /**
+     * 把数据文件从指定版本迁移到当前版本
+     *
+     * @param filename 文件名
+     * @param fromVersion 文件当前的版本
+     * @throws IOException 读写失败时抛出，已完成的进度会保留
+     */
+    private void migrate(String filename, int fromVersion) throws IOException {
+        long start = System.currentTimeMillis();
+        File source = new File(filesDir, filename);
+        File staging = new File(filesDir, filename + STAGING_SUFFIX);
+        String checkpointFile = filename + CHECKPOINT_SUFFIX;
+
+        Checkpoint checkpoint = staging.exists() ? fileUtil.readFile(checkpointFile, Checkpoint.class) : null;
+        if (checkpoint == null || checkpoint.fromVersion != fromVersion || checkpoint.toVersion != currentVersion
+                || checkpoint.sourceLength != source.length() || checkpoint.stagedBytes > staging.length()) {
+            checkpoint = new Checkpoint();
+            checkpoint.fromVersion = fromVersion;
+            checkpoint.toVersion = currentVersion;
+            checkpoint.sourceLength = source.length();
+        } else {
+            Log.d(TAG, "从第" + checkpoint.records + "条记录继续迁移: " + filename);
+        }
+
+        try (FileOutputStream fos = new FileOutputStream(staging, true);
+             JsonArrayIterator<JsonObject> iterator = fileUtil.iterateArray(filename, JsonObject.class)) {
+            // 丢弃上次进度之后写入但未确认的部分
+            FileChannel channel = fos.getChannel();
+            channel.truncate(checkpoint.stagedBytes);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+
+            int index = 0;
+            while (iterator.hasNext()) {
+                JsonObject record = iterator.next();
+                if (index++ < checkpoint.records || record == null) {
+                    continue;
+                }
+                writeStagedLine(writer, gson.toJson(upgrade(record, fromVersion)));
+                checkpoint.records = index;
+                if (index % CHECKPOINT_INTERVAL == 0) {
+                    writer.flush();
+                    fos.getFD().sync();
+                    checkpoint.stagedBytes = channel.position();
+                    fileUtil.saveObject(checkpoint, checkpointFile);
+                }
+            }
+            writer.flush();
+            fos.getFD().sync();
+        }
+
+        fileUtil.saveVersionedRecords(filename, currentVersion, writer -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(staging), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        writer.jsonValue(readStagedLine(line));
+                    }
+                }
+            }
+        });
+        if (!staging.delete()) {
+            Log.w(TAG, "无法删除迁移暂存文件: " + staging.getName());
+        }
+        fileUtil.deleteFile(checkpointFile);
+        Log.d(TAG, filename + " 已从版本" + fromVersion + "迁移到" + currentVersion
+                + "，耗时: " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 向暂存文件写入一条记录，启用加密时写入加密后的记录
+     *
+     * @param writer 暂存文件的输出流
+     * @param json 升级后的记录
+     * @throws IOException 写入或加密失败时抛出
+     */
+    private static void writeStagedLine(Writer writer, String json) throws IOException {
+        FileEncryption encryption = FileUtil.getEncryption();
+        if (encryption != null) {
+            writer.write(ENCRYPTED_PREFIX);
+            writer.write(Base64.encodeToString(encryption.seal(json.getBytes(StandardCharsets.UTF_8)), Base64.NO_WRAP));
+        } else {
+            writer.write(json);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * 读取暂存文件中的一条记录
+     * 迁移中断前后加密设置可能不同，每行按前缀分别识别
+     *
+     * @param line 暂存文件中的一行
+     * @return 记录的JSON文本
+     * @throws IOException 加密记录无法解密时抛出，此时不替换旧文件
+     */
+    private static String readStagedLine(String line) throws IOException {
+        if (line.charAt(0) != ENCRYPTED_PREFIX) {
+            return line;
+        }
+        FileEncryption encryption = FileUtil.getEncryption();
+        byte[] json = null;
+        if (encryption != null) {
+            try {
+                json = encryption.open(Base64.decode(line.substring(1), Base64.NO_WRAP));
+            } catch (IllegalArgumentException e) {
+                json = null;
+            }
+        }
+        if (json == null) {
+            throw new IOException("迁移暂存记录无法解密");
+        }
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 版本1到2：把内联的Base64头像移入头像存储，记录中只保留引用
+     * 头像按内容寻址，重复执行只会得到相同的引用；移入失败时保留内联数据，仍可正常显示
+     *
+     * @param photoStore 头像存储
+     * @param record 联系人记录
+     * @return 升级后的记录
+     */
+    private static JsonObject moveInlinePhoto(PhotoStore photoStore, JsonObject record) {
+        JsonElement photo = record.get("photo");
+        if (photo == null || !photo.isJsonPrimitive()) {
+            return record;
+        }
+        Contact holder = new Contact();
+        holder.setPhoto(photo.getAsString());
+        if (photoStore.migrateInlinePhoto(holder)) {
+            record.remove("photo");
+            if (holder.getPhotoRef() != null) {
+                record.addProperty("photoRef", holder.getPhotoRef());
+            }
+        }
+        return record;
+    }
+}
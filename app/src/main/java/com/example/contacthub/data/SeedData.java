@@ -0,0 +1,155 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.StorageMetrics;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 首次启动的示例数据
+ * 示例数据打包在assets/seed_data.json中，只在首次启动时流式读取并通过仓库写入当前的存储引擎，
+ * 写入完成后记录标记，之后的启动只读取一次标记，不再有任何文件读写。
+ * 写入中途进程被杀时标记停留在“进行中”，下次启动重新写入；重复写入相同数据会被仓库跳过
+ */
+public final class SeedData {
+    private static final String TAG = "SeedData";
+    public static final String ASSET_FILE = "seed_data.json";
+    private static final String PREFS_NAME = "seed_data";
+    private static final String KEY_STATE = "state";
+    private static final int STATE_NONE = 0;
+    private static final int STATE_IN_PROGRESS = 1;
+    private static final int STATE_DONE = 2;
+    // 联系人每攒够该数量提交一次，示例数据再大也不会整体读入内存
+    private static final int BATCH_SIZE = 200;
+
+    private SeedData() {
+    }
+
+    /**
+     * 首次启动时写入示例数据
+     * 已有数据文件的安装（包括旧版每次启动都写入示例数据的安装和数据无法读取的安装）只记录标记，不覆盖用户数据。
+     * 会阻塞调用线程，应在后台线程执行
+     *
+     * @param context 应用上下文
+     * @return 本次写入了示例数据时返回true
+     */
+    public static boolean seedIfNeeded(Context context) {
+        long start = SystemClock.elapsedRealtime();
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        int state = prefs.getInt(KEY_STATE, STATE_NONE);
+        if (state == STATE_DONE) {
+            Log.i(TAG, "示例数据已写入过，跳过；检查耗时 " + (SystemClock.elapsedRealtime() - start) + "ms，写入 0 字节");
+            return false;
+        }
+
+        ContactRepository repository = ContactRepository.getInstance(context);
+        if (state == STATE_NONE && hasUserData(repository)) {
+            prefs.edit().putInt(KEY_STATE, STATE_DONE).apply();
+            Log.i(TAG, "已有数据，不写入示例数据");
+            return false;
+        }
+
+        prefs.edit().putInt(KEY_STATE, STATE_IN_PROGRESS).commit();
+        long bytesBefore = StorageMetrics.getTotalBytes();
+        long writesBefore = StorageMetrics.getTotalWrites();
+        try {
+            int count = stream(context, repository);
+            repository.flushAndWait();
+            prefs.edit().putInt(KEY_STATE, STATE_DONE).commit();
+            Log.i(TAG, "示例数据写入完成，联系人: " + count + "，耗时 " + (SystemClock.elapsedRealtime() - start)
+                    + "ms，写入 " + (StorageMetrics.getTotalWrites() - writesBefore) + " 次、"
+                    + (StorageMetrics.getTotalBytes() - bytesBefore) + " 字节");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "写入示例数据失败，下次启动重试", e);
+            return false;
+        }
+    }
+
+    /**
+     * 判断是否已有用户数据
+     * 以数据文件是否存在为准：存储无法读取时仓库中同样没有数据，此时写入示例数据会覆盖用户的联系人
+     *
+     * @param repository 联系人仓库
+     * @return 加载前已有任何数据文件时返回true
+     */
+    private static boolean hasUserData(ContactRepository repository) {
+        return !repository.isStorageEmptyAtLoad();
+    }
+
+    /**
+     * 流式读取示例数据并写入仓库
+     * 文件为一个对象，包含groups、myCard和contacts三个字段，联系人逐个读取并分批提交
+     *
+     * @param context 应用上下文
+     * @param repository 联系人仓库
+     * @return 写入的联系人数
+     * @throws IOException 读取失败时抛出
+     */
+    private static int stream(Context context, ContactRepository repository) throws IOException {
+        Gson gson = new Gson();
+        int count = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                context.getAssets().open(ASSET_FILE), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "groups":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Group group = gson.fromJson(reader, Group.class);
+                            repository.ensureIdsAbove(0, group.getId());
+                            repository.saveGroup(group);
+                        }
+                        reader.endArray();
+                        break;
+                    case "myCard":
+                        repository.saveMyCard(gson.fromJson(reader, Contact.class));
+                        break;
+                    case "contacts":
+                        List<Contact> batch = new ArrayList<>(BATCH_SIZE);
+                        int maxId = 0;
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Contact contact = gson.fromJson(reader, Contact.class);
+                            batch.add(contact);
+                            maxId = Math.max(maxId, contact.getId());
+                            if (batch.size() == BATCH_SIZE) {
+                                count += commit(repository, batch, maxId);
+                            }
+                        }
+                        reader.endArray();
+                        count += commit(repository, batch, maxId);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        return count;
+    }
+
+    private static int commit(ContactRepository repository, List<Contact> batch, int maxId) {
+        int size = batch.size();
+        if (size > 0) {
+            repository.ensureIdsAbove(maxId, 0);
+            repository.saveContacts(batch);
+            batch.clear();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.AppExecutors;
+import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.JsonArrayIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 按ID范围分片的联系人存储
+ * 联系人按ID划分到固定大小的分片文件中，清单文件记录分片大小和现有分片。
+ * 新增、修改和删除只重写受影响的分片，加载时多个分片并行读取。
+ * 清单始终是现有分片的超集：新建分片前先写清单，删除分片后再写清单，
+ * 清单中列出但文件不存在的分片按空分片处理
+ */
+public class ShardedContactStore implements ContactStore {
+    private static final String TAG = "ShardedContactStore";
+    public static final String MANIFEST_FILE = "contacts.shards.json";
+    private static final String SHARD_FILE_FORMAT = "contacts.shard-%04d.json";
+    // 每个分片容纳的ID数量
+    private static final int DEFAULT_SHARD_SIZE = 512;
+
+    private static final Object LOCK = new Object();
+
+    private final FileUtil fileUtil;
+    private final SchemaMigrator migrator;
+
+    /**
+     * 分片清单
+     */
+    private static final class Manifest {
+        int shardSize;
+        TreeSet<Integer> shards;
+
+        Manifest(int shardSize, TreeSet<Integer> shards) {
+            this.shardSize = shardSize;
+            this.shards = shards;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public ShardedContactStore(Context context) {
+        this.fileUtil = new FileUtil(context);
+        this.migrator = SchemaMigrator.forContacts(context);
+    }
+
+    /**
+     * 并行读取全部分片
+     *
+     * @return 联系人列表，按分片顺序排列
+     * @throws IOException 任一分片存在但无法读取时抛出
+     */
+    @Override
+    public List<Contact> loadAll() throws IOException {
+        Manifest manifest;
+        synchronized (LOCK) {
+            manifest = readManifest();
+        }
+        List<Future<List<Contact>>> futures = new ArrayList<>(manifest.shards.size());
+        for (int shard : manifest.shards) {
+            futures.add(AppExecutors.parallel().submit(() -> new ArrayList<>(readShard(shard).values())));
+        }
+
+        List<Contact> contacts = new ArrayList<>();
+        for (Future<List<Contact>> future : futures) {
+            try {
+                contacts.addAll(future.get());
+            } catch (ExecutionException e) {
+                throw new IOException("读取联系人分片失败", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("读取联系人分片被中断", e);
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * 只读取联系人所在的分片
+     *
+     * @param contactId 联系人ID
+     * @return 联系人，不存在时返回null
+     */
+    @Override
+    public Contact load(int contactId) {
+        int shardSize;
+        synchronized (LOCK) {
+            shardSize = readManifest().shardSize;
+        }
+        try {
+            return readShard(shardOf(contactId, shardSize)).get(contactId);
+        } catch (IOException e) {
+            Log.e(TAG, "读取联系人失败: " + contactId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void upsertAll(Collection<Contact> contacts) throws IOException {
+        if (contacts.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            Manifest manifest = readManifest();
+            Map<Integer, List<Contact>> byShard = new TreeMap<>();
+            for (Contact contact : contacts) {
+                if (contact.getId() == null) {
+                    throw new IllegalArgumentException("联系人ID不能为空");
+                }
+                byShard.computeIfAbsent(shardOf(contact.getId(), manifest.shardSize), k -> new ArrayList<>())
+                        .add(contact);
+            }
+
+            // 先把新分片登记到清单，保证写出的分片文件一定能被加载到
+            if (manifest.shards.addAll(byShard.keySet())) {
+                writeManifest(manifest);
+            }
+            for (Map.Entry<Integer, List<Contact>> entry : byShard.entrySet()) {
+                Map<Integer, Contact> shard = readShard(entry.getKey());
+                for (Contact contact : entry.getValue()) {
+                    shard.put(contact.getId(), contact);
+                }
+                writeShard(entry.getKey(), shard);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<Integer> contactIds) throws IOException {
+        if (contactIds.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            Manifest manifest = readManifest();
+            Map<Integer, List<Integer>> byShard = new TreeMap<>();
+            for (Integer contactId : contactIds) {
+                byShard.computeIfAbsent(shardOf(contactId, manifest.shardSize), k -> new ArrayList<>())
+                        .add(contactId);
+            }
+
+            boolean manifestChanged = false;
+            for (Map.Entry<Integer, List<Integer>> entry : byShard.entrySet()) {
+                int index = entry.getKey();
+                if (!manifest.shards.contains(index)) {
+                    continue;
+                }
+                Map<Integer, Contact> shard = readShard(index);
+                boolean changed = false;
+                for (Integer contactId : entry.getValue()) {
+                    changed |= shard.remove(contactId) != null;
+                }
+                if (shard.isEmpty()) {
+                    fileUtil.deleteFile(shardFile(index));
+                    manifest.shards.remove(index);
+                    manifestChanged = true;
+                } else if (changed) {
+                    writeShard(index, shard);
+                }
+            }
+            if (manifestChanged) {
+                writeManifest(manifest);
+            }
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Contact> contacts) throws IOException {
+        synchronized (LOCK) {
+            Manifest manifest = readManifest();
+            Map<Integer, Map<Integer, Contact>> shards = new TreeMap<>();
+            for (Contact contact : contacts) {
+                shards.computeIfAbsent(shardOf(contact.getId(), manifest.shardSize), k -> new LinkedHashMap<>())
+                        .put(contact.getId(), contact);
+            }
+
+            TreeSet<Integer> stale = new TreeSet<>(manifest.shards);
+            stale.removeAll(shards.keySet());
+            if (manifest.shards.addAll(shards.keySet())) {
+                writeManifest(manifest);
+            }
+            for (Map.Entry<Integer, Map<Integer, Contact>> entry : shards.entrySet()) {
+                writeShard(entry.getKey(), entry.getValue());
+            }
+            for (int index : stale) {
+                fileUtil.deleteFile(shardFile(index));
+            }
+            if (!stale.isEmpty()) {
+                manifest.shards.removeAll(stale);
+                writeManifest(manifest);
+            }
+        }
+    }
+
+    /**
+     * 分片文件没有搜索索引
+     *
+     * @param keyword 搜索关键词
+     * @return 始终返回null，由调用方在内存中过滤
+     */
+    @Override
+    public List<Integer> search(String keyword) {
+        return null;
+    }
+
+    /**
+     * 读取清单，清单不存在时返回空清单
+     *
+     * @return 分片清单
+     */
+    private Manifest readManifest() {
+        Manifest manifest = fileUtil.readFile(MANIFEST_FILE, Manifest.class);
+        if (manifest == null || manifest.shardSize <= 0) {
+            return new Manifest(DEFAULT_SHARD_SIZE, new TreeSet<>());
+        }
+        if (manifest.shards == null) {
+            manifest.shards = new TreeSet<>();
+        }
+        return manifest;
+    }
+
+    private void writeManifest(Manifest manifest) throws IOException {
+        fileUtil.saveObject(manifest, MANIFEST_FILE);
+    }
+
+    /**
+     * 读取单个分片
+     *
+     * @param index 分片序号
+     * @return 以ID为键、保持文件顺序的联系人映射表，分片不存在时返回空映射表
+     * @throws IOException 分片存在但无法读取时抛出，此时不能写回该分片
+     */
+    private Map<Integer, Contact> readShard(int index) throws IOException {
+        Map<Integer, Contact> contacts = new LinkedHashMap<>();
+        try (JsonArrayIterator<Contact> iterator = migrator.openCurrent(shardFile(index), Contact.class)) {
+            while (iterator.hasNext()) {
+                Contact contact = iterator.next();
+                if (contact != null && contact.getId() != null) {
+                    contacts.put(contact.getId(), contact);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // 清单中登记但尚未写出的分片
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("读取联系人分片失败: " + index, e);
+        }
+        return contacts;
+    }
+
+    private void writeShard(int index, Map<Integer, Contact> contacts) throws IOException {
+        fileUtil.saveVersionedJSON(contacts.values().toArray(new Contact[0]), shardFile(index),
+                migrator.getCurrentVersion());
+    }
+
+    private static int shardOf(int contactId, int shardSize) {
+        return Math.floorDiv(contactId, shardSize);
+    }
+
+    private static String shardFile(int index) {
+        return String.format(Locale.ROOT, SHARD_FILE_FORMAT, index);
+    }
+}
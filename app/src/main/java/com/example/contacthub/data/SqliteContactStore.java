@@ -0,0 +1,279 @@
+package com.example.contacthub.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 基于SQLite的联系人存储
+ * 每个联系人对应一行，修改只写入受影响的行；搜索通过FTS全文索引完成，不需要加载全部联系人
+ */
+public class SqliteContactStore implements ContactStore {
+    private static final String TAG = "SqliteContactStore";
+
+    private final ContactDatabase database;
+    private final Gson gson = new Gson();
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public SqliteContactStore(Context context) {
+        this.database = ContactDatabase.getInstance(context);
+    }
+
+    @Override
+    public List<Contact> loadAll() throws IOException {
+        List<Contact> contacts = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT data FROM " + ContactDatabase.TABLE_CONTACTS + " ORDER BY id", null)) {
+            while (cursor.moveToNext()) {
+                Contact contact = parse(cursor.getString(0));
+                if (contact != null) {
+                    contacts.add(contact);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("读取联系人失败", e);
+        }
+        return contacts;
+    }
+
+    @Override
+    public Contact load(int contactId) {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT data FROM " + ContactDatabase.TABLE_CONTACTS + " WHERE id = ?",
+                new String[]{String.valueOf(contactId)})) {
+            return cursor.moveToFirst() ? parse(cursor.getString(0)) : null;
+        } catch (SQLException e) {
+            Log.e(TAG, "读取联系人失败: " + contactId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void upsertAll(Collection<Contact> contacts) throws IOException {
+        if (contacts.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = database.getWritableDatabase();
+        try {
+            db.beginTransaction();
+            try {
+                for (Contact contact : contacts) {
+                    if (contact.getId() == null) {
+                        throw new IllegalArgumentException("联系人ID不能为空");
+                    }
+                    writeRow(db, contact);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            throw new IOException("保存联系人失败", e);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<Integer> contactIds) throws IOException {
+        if (contactIds.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = database.getWritableDatabase();
+        try {
+            db.beginTransaction();
+            try {
+                for (Integer contactId : contactIds) {
+                    deleteRow(db, contactId);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            throw new IOException("删除联系人失败", e);
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Contact> contacts) throws IOException {
+        SQLiteDatabase db = database.getWritableDatabase();
+        try {
+            db.beginTransaction();
+            try {
+                db.delete(ContactDatabase.TABLE_CONTACTS, null, null);
+                db.delete(ContactDatabase.TABLE_CONTACT_GROUPS, null, null);
+                db.delete(ContactDatabase.TABLE_CONTACTS_FTS, null, null);
+                for (Contact contact : contacts) {
+                    writeRow(db, contact);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            throw new IOException("替换联系人失败", e);
+        }
+    }
+
+    /**
+     * 通过全文索引搜索联系人
+     * 匹配姓名、拼音、拼音首字母和电话号码中的子串，以及备注中以关键词开头的词
+     *
+     * @param keyword 搜索关键词
+     * @return 匹配的联系人ID
+     */
+    @Override
+    public List<Integer> search(String keyword) {
+        List<Integer> ids = new ArrayList<>();
+        String query = toMatchQuery(keyword);
+        if (query.isEmpty()) {
+            return ids;
+        }
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT docid FROM " + ContactDatabase.TABLE_CONTACTS_FTS + " WHERE "
+                        + ContactDatabase.TABLE_CONTACTS_FTS + " MATCH ?",
+                new String[]{query})) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "搜索联系人失败: " + keyword, e);
+        }
+        return ids;
+    }
+
+    /**
+     * 写入联系人行和全文索引
+     * 调用方负责开启事务
+     *
+     * @param db 可写数据库
+     * @param contact 联系人
+     */
+    private void writeRow(SQLiteDatabase db, Contact contact) {
+        int id = contact.getId();
+        deleteRow(db, id);
+
+        ContentValues row = new ContentValues();
+        row.put("id", id);
+        row.put("mobile", contact.getMobileNumber());
+        row.put("telephone", contact.getTelephoneNumber());
+        row.put("data", gson.toJson(contact));
+        db.insertOrThrow(ContactDatabase.TABLE_CONTACTS, null, row);
+
+        ContentValues fts = new ContentValues();
+        fts.put("docid", id);
+        fts.put("keys", buildSearchKeys(contact));
+        fts.put("notes", contact.getNotes());
+        db.insertOrThrow(ContactDatabase.TABLE_CONTACTS_FTS, null, fts);
+    }
+
+    /**
+     * 删除联系人行及其分组成员关系和全文索引
+     *
+     * @param db 可写数据库
+     * @param contactId 联系人ID
+     */
+    private static void deleteRow(SQLiteDatabase db, int contactId) {
+        String[] args = {String.valueOf(contactId)};
+        db.delete(ContactDatabase.TABLE_CONTACTS, "id = ?", args);
+        db.delete(ContactDatabase.TABLE_CONTACT_GROUPS, "contact_id = ?", args);
+        db.delete(ContactDatabase.TABLE_CONTACTS_FTS, "docid = ?", args);
+    }
+
+    /**
+     * 生成全文索引的keys列
+     * 全文索引只支持按词前缀查询，这里把每个字段的所有后缀作为独立的词写入，
+     * 使"前缀匹配某个后缀"等价于子串匹配，与内存搜索的行为一致
+     *
+     * @param contact 联系人
+     * @return 以空格分隔的索引词
+     */
+    static String buildSearchKeys(Contact contact) {
+        Set<String> keys = new LinkedHashSet<>();
+        addSuffixes(keys, contact.getName());
+        addSuffixes(keys, contact.getPinyin());
+        addSuffixes(keys, contact.getFirstLetter());
+        addSuffixes(keys, contact.getMobileNumber());
+        addSuffixes(keys, contact.getTelephoneNumber());
+        return String.join(" ", keys);
+    }
+
+    private static void addSuffixes(Set<String> keys, String value) {
+        String token = normalize(value);
+        for (int i = 0; i < token.length(); i++) {
+            keys.add(token.substring(i));
+        }
+    }
+
+    /**
+     * 将关键词转换为FTS查询语句，每个词按前缀匹配，多个词之间为与关系
+     *
+     * @param keyword 搜索关键词
+     * @return FTS查询语句，关键词不含可检索字符时返回空字符串
+     */
+    static String toMatchQuery(String keyword) {
+        StringBuilder query = new StringBuilder();
+        if (keyword == null) {
+            return "";
+        }
+        for (String word : keyword.trim().split("\\s+")) {
+            String token = normalize(word);
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(token).append('*');
+        }
+        return query.toString();
+    }
+
+    /**
+     * 转为小写并去掉分词器不会作为词的一部分的字符，同时避免FTS查询语法字符
+     *
+     * @param value 原始字符串
+     * @return 只包含字母、数字和非ASCII字符的字符串
+     */
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c >= 128) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private Contact parse(String json) {
+        try {
+            return gson.fromJson(json, Contact.class);
+        } catch (JsonParseException e) {
+            Log.e(TAG, "联系人记录损坏", e);
+            return null;
+        }
+    }
+}
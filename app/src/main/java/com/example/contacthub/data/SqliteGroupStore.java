@@ -0,0 +1,95 @@
+package com.example.contacthub.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.contacthub.model.Group;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于SQLite的分组存储，与联系人共用同一个数据库
+ */
+public class SqliteGroupStore implements GroupStore {
+    private static final String TAG = "SqliteGroupStore";
+
+    private final ContactDatabase database;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public SqliteGroupStore(Context context) {
+        this.database = ContactDatabase.getInstance(context);
+    }
+
+    @Override
+    public List<Group> loadAll() {
+        List<Group> groups = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT id, name FROM " + ContactDatabase.TABLE_GROUPS + " ORDER BY rowid", null)) {
+            while (cursor.moveToNext()) {
+                groups.add(new Group(cursor.getInt(0), false, cursor.getString(1)));
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "读取分组失败", e);
+        }
+        return groups;
+    }
+
+    @Override
+    public void upsert(Group group) throws IOException {
+        try {
+            SQLiteDatabase db = database.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put("name", group.getName());
+            int updated = db.update(ContactDatabase.TABLE_GROUPS, values, "id = ?",
+                    new String[]{String.valueOf(group.getId())});
+            if (updated == 0) {
+                values.put("id", group.getId());
+                db.insertOrThrow(ContactDatabase.TABLE_GROUPS, null, values);
+            }
+        } catch (SQLException e) {
+            throw new IOException("保存分组失败: " + group.getId(), e);
+        }
+    }
+
+    @Override
+    public void delete(int groupId) throws IOException {
+        try {
+            database.getWritableDatabase().delete(ContactDatabase.TABLE_GROUPS, "id = ?",
+                    new String[]{String.valueOf(groupId)});
+        } catch (SQLException e) {
+            throw new IOException("删除分组失败: " + groupId, e);
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Group> groups) throws IOException {
+        SQLiteDatabase db = database.getWritableDatabase();
+        try {
+            db.beginTransaction();
+            try {
+                db.delete(ContactDatabase.TABLE_GROUPS, null, null);
+                for (Group group : groups) {
+                    ContentValues values = new ContentValues();
+                    values.put("id", group.getId());
+                    values.put("name", group.getName());
+                    db.insertOrThrow(ContactDatabase.TABLE_GROUPS, null, values);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            throw new IOException("替换分组失败", e);
+        }
+    }
+}
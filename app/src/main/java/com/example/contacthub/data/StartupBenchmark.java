@@ -0,0 +1,111 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.StorageMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 启动性能基准
+ * 仅在可调试版本中生效：记录从进程启动到联系人列表首帧的耗时，
+ * 同时报告启动期间的文件写入量，并可对比读取列表投影与完整加载联系人存储的耗时。
+ * 使用方式：
+ * adb shell am start -n com.example.contacthub/.MainActivity --ez benchmark_startup true
+ * 追加 --ez benchmark_disable_list_projection true 可关闭列表投影，对比首帧耗时
+ */
+public final class StartupBenchmark {
+    private static final String TAG = "StartupBenchmark";
+    public static final String EXTRA_RUN = "benchmark_startup";
+    public static final String EXTRA_DISABLE_LIST_PROJECTION = "benchmark_disable_list_projection";
+    private static final int ITERATIONS = 5;
+
+    private static final AtomicBoolean firstFrameReported = new AtomicBoolean(false);
+
+    private StartupBenchmark() {
+    }
+
+    /**
+     * 判断当前是否为可调试版本
+     *
+     * @param context 上下文
+     * @return 可调试版本返回true
+     */
+    public static boolean isAvailable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * 记录联系人列表首帧，每个进程只记录一次
+     * 应在列表数据设置后的下一帧回调中调用
+     *
+     * @param context 上下文
+     * @param contactCount 首帧显示的联系人数
+     * @param projectionEnabled 是否启用了列表投影
+     */
+    public static void reportFirstListFrame(Context context, int contactCount, boolean projectionEnabled) {
+        if (!isAvailable(context) || !firstFrameReported.compareAndSet(false, true)) {
+            return;
+        }
+        long elapsed = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        // 启动期间的写入次数和字节数：示例数据只在首次启动写入，之后的启动应为0
+        Log.i(TAG, "联系人列表首帧耗时: " + elapsed + "ms，联系人: " + contactCount
+                + "，列表投影: " + (projectionEnabled ? "开" : "关")
+                + "，启动以来写入 " + StorageMetrics.getTotalWrites() + " 次、" + StorageMetrics.getTotalBytes() + " 字节");
+    }
+
+    /**
+     * 对比读取列表投影与完整加载联系人的耗时，结果输出到日志
+     * 会阻塞调用线程，应在后台线程执行
+     *
+     * @param context 应用上下文
+     */
+    public static void run(Context context) {
+        ContactListProjection projection = new ContactListProjection(context);
+        ContactRepository repository = ContactRepository.getInstance(context);
+        // 直接读取存储，需要先载入数据密钥
+        repository.ensureEncryption();
+        StorageEngine engine = repository.getStorageEngine();
+        ContactStore store = engine.createContactStore(context);
+
+        long[] projectionMillis = new long[ITERATIONS];
+        long[] fullMillis = new long[ITERATIONS];
+        int projectionCount = 0;
+        int fullCount = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = SystemClock.elapsedRealtime();
+            List<Contact> rows = projection.read();
+            projectionMillis[i] = SystemClock.elapsedRealtime() - start;
+            projectionCount = rows != null ? rows.size() : 0;
+
+            start = SystemClock.elapsedRealtime();
+            try {
+                fullCount = store.loadAll().size();
+            } catch (IOException e) {
+                Log.e(TAG, "完整加载联系人失败", e);
+                return;
+            }
+            fullMillis[i] = SystemClock.elapsedRealtime() - start;
+        }
+
+        File filesDir = context.getFilesDir();
+        Log.i(TAG, "列表投影: " + median(projectionMillis) + "ms（中位数），联系人: " + projectionCount
+                + "，文件大小: " + new File(filesDir, ContactListProjection.PROJECTION_FILE).length() + "B");
+        Log.i(TAG, "完整加载（" + engine.getLabel() + "）: " + median(fullMillis) + "ms（中位数），联系人: " + fullCount);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
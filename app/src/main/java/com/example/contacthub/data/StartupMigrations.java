@@ -0,0 +1,141 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.FileUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 加载数据时执行的一次性迁移
+ * 迁移基于加载结果整体重写数据，只能在数据确认读取成功后执行。
+ * 需要记录迁移标记的迁移全部成功后才记录，失败时下次启动重试
+ */
+class StartupMigrations {
+    private static final String TAG = "StartupMigrations";
+    private static final String KEY_MEMBERSHIP_MIGRATED = "membership_migrated";
+    private static final String KEY_DATA_ENCRYPTED = "data_encrypted";
+
+    private final Context context;
+    private final FileUtil fileUtil;
+    private final SharedPreferences prefs;
+    private final PhotoStore photoStore;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     * @param prefs 保存迁移标记的设置
+     * @param photoStore 头像存储
+     */
+    StartupMigrations(Context context, SharedPreferences prefs, PhotoStore photoStore) {
+        this.context = context;
+        this.fileUtil = new FileUtil(context);
+        this.prefs = prefs;
+        this.photoStore = photoStore;
+    }
+
+    /**
+     * 分组列表是否已从联系人记录移入成员关系文件
+     *
+     * @return 已迁移时返回true，此后成员关系以成员关系文件为准
+     */
+    boolean isMembershipMigrated() {
+        return prefs.getBoolean(KEY_MEMBERSHIP_MIGRATED, false);
+    }
+
+    /**
+     * 将旧版内嵌在联系人中的分组列表移入成员关系文件
+     * 先写入成员关系文件并记录迁移标记，此后成员关系以该文件为准；再整体重写联系人，去掉内嵌的分组列表。
+     * 记录标记前失败时下次启动重新迁移；重写联系人失败时残留的分组列表会被忽略，并在联系人下次保存时去掉
+     *
+     * @param loadedContacts 从存储加载的全部联系人，按ID索引
+     * @param membershipIndex 成员关系索引，迁移后与联系人的分组列表一致
+     * @param contactStore 联系人存储
+     */
+    void migrateEmbeddedMemberships(Map<Integer, Contact> loadedContacts, GroupMembershipIndex membershipIndex,
+                                    ContactStore contactStore) {
+        membershipIndex.rebuild(loadedContacts.values());
+        try {
+            GroupMembershipIndex.write(fileUtil, membershipIndex.publish());
+            if (!prefs.edit().putBoolean(KEY_MEMBERSHIP_MIGRATED, true).commit()) {
+                throw new IOException("成员关系迁移标记保存失败");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "迁移分组成员关系失败，下次启动重试", e);
+            membershipIndex.fillGroupIds(loadedContacts);
+            return;
+        }
+        membershipIndex.fillGroupIds(loadedContacts);
+        try {
+            contactStore.replaceAll(ContactRepository.toStored(loadedContacts.values()));
+        } catch (IOException e) {
+            Log.e(TAG, "去掉联系人中的分组列表失败", e);
+        }
+        Log.d(TAG, "分组成员关系已迁移，联系人: " + loadedContacts.size());
+    }
+
+    /**
+     * 把个人名片升级到联系人数据的当前版本
+     * 个人名片单独保存、没有版本头，加载时按联系人数据的迁移步骤升级，有变化时写回
+     *
+     * @param card 读取到的个人名片
+     * @return 升级并写回后的名片；没有变化或写回失败时返回原名片
+     */
+    Contact upgradeMyCard(Contact card) {
+        Contact upgraded = SchemaMigrator.forContacts(context).upgradeContact(card);
+        if (upgraded == card) {
+            return card;
+        }
+        try {
+            fileUtil.saveObject(upgraded, ContactRepository.MY_CARD_FILE);
+            return upgraded;
+        } catch (IOException e) {
+            Log.e(TAG, "保存升级后的个人名片失败，下次启动重试", e);
+            return card;
+        }
+    }
+
+    /**
+     * 是否需要把启用加密之前写入的明文数据重写为加密格式
+     *
+     * @return 已启用加密但还没有完成重写时返回true
+     */
+    boolean needsDataEncryption() {
+        return FileUtil.getEncryption() != null && !prefs.getBoolean(KEY_DATA_ENCRYPTED, false);
+    }
+
+    /**
+     * 把启用加密之前写入的明文数据重写为加密格式，在持久化线程上执行
+     * 联系人、分组和个人名片按调用方取得的数据整体重写，之后的修改照常追加到新的日志；头像逐个重写。
+     * SQLite数据库不经过文件加密，不重写联系人和分组
+     *
+     * @param engine 当前的存储引擎
+     * @param contactStore 联系人存储
+     * @param groupStore 分组存储
+     * @param storedContacts 全部联系人（包括回收站中的），不含分组列表
+     * @param groups 全部分组
+     * @param card 个人名片，没有时为null
+     * @throws IOException 重写失败时抛出，不记录迁移标记
+     */
+    void encryptExistingData(StorageEngine engine, ContactStore contactStore, GroupStore groupStore,
+                             List<Contact> storedContacts, List<Group> groups, Contact card) throws IOException {
+        if (engine != StorageEngine.SQLITE) {
+            contactStore.replaceAll(storedContacts);
+            groupStore.replaceAll(groups);
+        }
+        if (card != null) {
+            fileUtil.saveObject(card, ContactRepository.MY_CARD_FILE);
+        }
+        if (photoStore.encryptExisting()) {
+            prefs.edit().putBoolean(KEY_DATA_ENCRYPTED, true).apply();
+            Log.d(TAG, "已有数据已重写为加密格式");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+
+/**
+ * 联系人和分组的存储引擎
+ * 分组成员关系与引擎无关，由{@link GroupMembershipIndex}单独保存，切换引擎时不需要迁移
+ */
+public enum StorageEngine {
+    /**
+     * JSON文件：contacts.json快照加追加日志，groups.json整体重写
+     */
+    JSON("JSON文件"),
+    /**
+     * 分片JSON文件：联系人按ID范围分片，修改只重写受影响的分片，加载时并行读取
+     */
+    SHARDED("分片JSON文件"),
+    /**
+     * SQLite数据库：单行写入，带电话号码索引和全文搜索索引；数据库文件不加密
+     */
+    SQLITE("SQLite数据库（不加密）");
+
+    private final String label;
+
+    StorageEngine(String label) {
+        this.label = label;
+    }
+
+    /**
+     * 获取用于界面显示的名称
+     *
+     * @return 显示名称
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 创建该引擎的联系人存储
+     *
+     * @param context 应用上下文
+     * @return 联系人存储
+     */
+    public ContactStore createContactStore(Context context) {
+        switch (this) {
+            case SQLITE:
+                return new SqliteContactStore(context);
+            case SHARDED:
+                return new ShardedContactStore(context);
+            default:
+                return new JsonContactStore(context);
+        }
+    }
+
+    /**
+     * 创建该引擎的分组存储
+     *
+     * @param context 应用上下文
+     * @return 分组存储
+     */
+    public GroupStore createGroupStore(Context context) {
+        return this == SQLITE ? new SqliteGroupStore(context) : new JsonGroupStore(context);
+    }
+
+    /**
+     * 按名称查找引擎
+     *
+     * @param name 引擎名称
+     * @return 对应的引擎，名称无效时返回JSON
+     */
+    public static StorageEngine fromName(String name) {
+        for (StorageEngine engine : values()) {
+            if (engine.name().equals(name)) {
+                return engine;
+            }
+        }
+        return JSON;
+    }
+}
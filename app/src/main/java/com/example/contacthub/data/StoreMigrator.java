@@ -0,0 +1,51 @@
+package com.example.contacthub.data;
+
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 存储引擎之间的数据迁移
+ * 从源存储读取全部联系人和分组，整体写入目标存储并校验数量。
+ * 源存储的数据保持不变，迁移失败时仍可继续使用源存储
+ */
+public final class StoreMigrator {
+    private static final String TAG = "StoreMigrator";
+
+    private StoreMigrator() {
+    }
+
+    /**
+     * 将源存储的全部数据复制到目标存储
+     *
+     * @param sourceContacts 源联系人存储
+     * @param sourceGroups 源分组存储
+     * @param targetContacts 目标联系人存储，原有数据会被替换
+     * @param targetGroups 目标分组存储，原有数据会被替换
+     * @return 迁移的联系人数
+     * @throws IOException 写入失败或校验不一致时抛出
+     */
+    public static int migrate(ContactStore sourceContacts, GroupStore sourceGroups,
+                              ContactStore targetContacts, GroupStore targetGroups) throws IOException {
+        long start = System.currentTimeMillis();
+        List<Contact> contacts = sourceContacts.loadAll();
+        List<Group> groups = sourceGroups.loadAll();
+
+        targetContacts.replaceAll(contacts);
+        targetGroups.replaceAll(groups);
+
+        int migratedContacts = targetContacts.loadAll().size();
+        int migratedGroups = targetGroups.loadAll().size();
+        if (migratedContacts != contacts.size() || migratedGroups != groups.size()) {
+            throw new IOException("迁移校验失败，联系人: " + migratedContacts + "/" + contacts.size()
+                    + "，分组: " + migratedGroups + "/" + groups.size());
+        }
+        Log.d(TAG, "迁移完成，联系人: " + migratedContacts + "，分组: " + migratedGroups
+                + "，耗时: " + (System.currentTimeMillis() - start) + "ms");
+        return migratedContacts;
+    }
+}
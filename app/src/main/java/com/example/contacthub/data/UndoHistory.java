@@ -0,0 +1,164 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.PersistentIntMap;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 撤销和重做记录
+ * 每条记录保存一个可撤销操作之前的数据版本，最近的在栈顶；记录数超过上限时丢弃最早的记录。
+ * 不做同步，只在持有仓库锁时访问
+ */
+class UndoHistory {
+    // 撤销记录的层数上限，超过时丢弃最早的记录
+    static final int MAX_UNDO_LEVELS = 20;
+
+    /**
+     * 一个可撤销操作之前的数据版本
+     * 联系人是持久化映射，不复制；分组数量很少，保存列表副本；回收站有数量上限，保存其中联系人的引用，
+     * 用于恢复删除分组时从回收站联系人中移除的成员关系
+     */
+    static final class Entry {
+        // 操作的标识，撤销后移入重做记录时保持不变
+        final long token;
+        final String label;
+        final PersistentIntMap<Contact> contacts;
+        final List<Group> groups;
+        final List<Contact> trashed;
+
+        Entry(long token, String label, PersistentIntMap<Contact> contacts, List<Group> groups,
+              List<Contact> trashed) {
+            this.token = token;
+            this.label = label;
+            this.contacts = contacts;
+            this.groups = groups;
+            this.trashed = trashed;
+        }
+    }
+
+    private final Deque<Entry> undoStack = new ArrayDeque<>();
+    private final Deque<Entry> redoStack = new ArrayDeque<>();
+    // 正在撤销或重做，此时的修改不再产生撤销记录
+    private boolean restoring;
+    // 下一条撤销记录的标识
+    private long nextToken = ContactRepository.NO_UNDO + 1;
+
+    /**
+     * 分配一个新的撤销标识
+     *
+     * @return 撤销标识，不会等于{@link ContactRepository#NO_UNDO}
+     */
+    long nextToken() {
+        return nextToken++;
+    }
+
+    /**
+     * 保存操作之前的版本，并清空重做记录；撤销或重做过程中的修改不记录
+     *
+     * @param before 操作之前的版本
+     * @return 撤销标识，没有记录时返回{@link ContactRepository#NO_UNDO}
+     */
+    long record(Entry before) {
+        if (restoring) {
+            return ContactRepository.NO_UNDO;
+        }
+        pushUndo(before);
+        redoStack.clear();
+        return before.token;
+    }
+
+    boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * 查看最近一条撤销记录
+     *
+     * @return 撤销记录，没有时返回null
+     */
+    Entry peekUndo() {
+        return undoStack.peek();
+    }
+
+    /**
+     * 查看最近一条重做记录
+     *
+     * @return 重做记录，没有时返回null
+     */
+    Entry peekRedo() {
+        return redoStack.peek();
+    }
+
+    /**
+     * 取出最近一条撤销记录
+     *
+     * @return 撤销记录，没有时返回null
+     */
+    Entry pollUndo() {
+        return undoStack.poll();
+    }
+
+    /**
+     * 取出最近一条重做记录
+     *
+     * @return 重做记录，没有时返回null
+     */
+    Entry pollRedo() {
+        return redoStack.poll();
+    }
+
+    /**
+     * 放入撤销记录，不影响重做记录，用于重做
+     *
+     * @param entry 重做之前的版本
+     */
+    void pushUndo(Entry entry) {
+        undoStack.push(entry);
+        while (undoStack.size() > MAX_UNDO_LEVELS) {
+            undoStack.removeLast();
+        }
+    }
+
+    /**
+     * 放入重做记录，用于撤销
+     *
+     * @param entry 撤销之前的版本
+     */
+    void pushRedo(Entry entry) {
+        redoStack.push(entry);
+    }
+
+    /**
+     * 设置是否正在撤销或重做
+     *
+     * @param restoring 恢复版本期间为true
+     */
+    void setRestoring(boolean restoring) {
+        this.restoring = restoring;
+    }
+
+    /**
+     * 遍历撤销和重做记录中的全部联系人，同一联系人可能出现多次
+     *
+     * @param action 对每个联系人执行的操作
+     */
+    void forEachContact(Consumer<Contact> action) {
+        for (Deque<Entry> stack : Arrays.asList(undoStack, redoStack)) {
+            for (Entry entry : stack) {
+                for (Contact contact : entry.contacts.values()) {
+                    action.accept(contact);
+                }
+            }
+        }
+    }
+}
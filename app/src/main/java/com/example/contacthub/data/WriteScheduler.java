@@ -0,0 +1,355 @@
+package com.example.contacthub.data;
+
+import android.util.Log;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.ContactField;
+import com.example.contacthub.model.Group;
+import com.example.contacthub.utils.StorageMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并写入调度器
+ * 修改先登记为待提交状态，在短时间窗口内到达的多次修改合并为一次提交：
+ * 同一联系人或分组的多次修改只保留最后一次，新增后又删除的记录直接抵消。
+ * 只有增量修改的联系人合并修改过的字段，提交时只写入这些字段。
+ * 提交在持久化线程上执行，界面不可见时等显式刷新点会立即提交。
+ * 提交失败的批次合并回待提交状态，按指数退避重新安排提交，连续失败时不会频繁重试
+ */
+class WriteScheduler {
+    private static final String TAG = "WriteScheduler";
+    // 合并窗口：第一次修改后等待该时长再提交
+    static final long COMMIT_DELAY_MILLIS = 300;
+    // 提交失败后重试的最长间隔
+    static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+    /**
+     * 一次合并后的提交内容
+     */
+    static final class Batch {
+        final Map<Integer, Contact> contactUpserts = new LinkedHashMap<>();
+        // contactUpserts中只需增量写入的联系人及其修改过的字段，不在其中的联系人完整写入
+        final Map<Integer, EnumSet<ContactField>> contactPatchFields = new HashMap<>();
+        final Set<Integer> contactDeletes = new LinkedHashSet<>();
+        final Map<Integer, Group> groupUpserts = new LinkedHashMap<>();
+        final Set<Integer> groupDeletes = new LinkedHashSet<>();
+        Contact myCard;
+        // 分组成员关系是否需要写入
+        boolean membershipDirty;
+        // 回收站墓碑是否需要写入
+        boolean trashDirty;
+        boolean projectionDirty;
+        // 合并进本批次的修改请求数
+        int requests;
+
+        boolean isEmpty() {
+            return contactUpserts.isEmpty() && contactDeletes.isEmpty()
+                    && groupUpserts.isEmpty() && groupDeletes.isEmpty()
+                    && myCard == null && !membershipDirty && !trashDirty && !projectionDirty;
+        }
+
+        /**
+         * 把较早失败的批次合并到当前批次之前，已被较新修改覆盖的记录以较新的为准
+         *
+         * @param older 较早的批次
+         */
+        void mergeOlder(Batch older) {
+            for (Map.Entry<Integer, Contact> entry : older.contactUpserts.entrySet()) {
+                Integer id = entry.getKey();
+                EnumSet<ContactField> olderFields = older.contactPatchFields.get(id);
+                if (!contactUpserts.containsKey(id) && !contactDeletes.contains(id)) {
+                    contactUpserts.put(id, entry.getValue());
+                    if (olderFields != null) {
+                        contactPatchFields.put(id, EnumSet.copyOf(olderFields));
+                    }
+                } else if (contactPatchFields.containsKey(id)) {
+                    // 较新的增量修改之前还有未写入的修改：较早的是完整写入则整体写入，否则合并字段
+                    if (olderFields == null) {
+                        contactPatchFields.remove(id);
+                    } else {
+                        contactPatchFields.get(id).addAll(olderFields);
+                    }
+                }
+            }
+            for (Integer id : older.contactDeletes) {
+                if (!contactUpserts.containsKey(id)) {
+                    contactDeletes.add(id);
+                }
+            }
+            for (Map.Entry<Integer, Group> entry : older.groupUpserts.entrySet()) {
+                if (!groupUpserts.containsKey(entry.getKey()) && !groupDeletes.contains(entry.getKey())) {
+                    groupUpserts.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Integer id : older.groupDeletes) {
+                if (!groupUpserts.containsKey(id)) {
+                    groupDeletes.add(id);
+                }
+            }
+            if (myCard == null) {
+                myCard = older.myCard;
+            }
+            membershipDirty |= older.membershipDirty;
+            trashDirty |= older.trashDirty;
+            projectionDirty |= older.projectionDirty;
+            requests += older.requests;
+        }
+    }
+
+    /**
+     * 批次的实际写入操作
+     */
+    interface Sink {
+        /**
+         * 将批次写入存储
+         *
+         * @param batch 合并后的批次
+         * @return 实际执行的写入次数
+         * @throws IOException 写入失败时抛出，批次会重新排队
+         */
+        int commit(Batch batch) throws IOException;
+    }
+
+    private final ScheduledExecutorService executor;
+    private final Sink sink;
+    private Batch pending = new Batch();
+    private ScheduledFuture<?> scheduled;
+    // 连续提交失败的次数，决定下次重试的间隔
+    private int failures;
+
+    /**
+     * 构造函数
+     *
+     * @param executor 持久化线程，所有提交都在该线程上按顺序执行
+     * @param sink 批次的实际写入操作
+     */
+    WriteScheduler(ScheduledExecutorService executor, Sink sink) {
+        this.executor = executor;
+        this.sink = sink;
+    }
+
+    /**
+     * 登记联系人的新增或更新
+     *
+     * @param contacts 联系人副本，提交前不应再被修改
+     */
+    synchronized void upsertContacts(Collection<Contact> contacts) {
+        if (contacts.isEmpty()) {
+            return;
+        }
+        for (Contact contact : contacts) {
+            pending.contactDeletes.remove(contact.getId());
+            pending.contactPatchFields.remove(contact.getId());
+            pending.contactUpserts.put(contact.getId(), contact);
+        }
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 登记联系人的增量修改
+     * 同一联系人已有待写入的完整写入时仍然完整写入，已有增量修改时合并字段
+     *
+     * @param patches 增量修改，其中的联系人提交前不应再被修改
+     */
+    synchronized void patchContacts(Collection<ContactPatch> patches) {
+        if (patches.isEmpty()) {
+            return;
+        }
+        for (ContactPatch patch : patches) {
+            Integer id = patch.getContact().getId();
+            EnumSet<ContactField> fields = pending.contactPatchFields.get(id);
+            if (pending.contactUpserts.containsKey(id)) {
+                if (fields != null) {
+                    fields.addAll(patch.getFields());
+                }
+            } else {
+                pending.contactDeletes.remove(id);
+                pending.contactPatchFields.put(id, EnumSet.copyOf(patch.getFields()));
+            }
+            pending.contactUpserts.put(id, patch.getContact());
+        }
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 登记联系人的删除
+     *
+     * @param contactIds 联系人ID
+     */
+    synchronized void deleteContacts(Collection<Integer> contactIds) {
+        if (contactIds.isEmpty()) {
+            return;
+        }
+        for (Integer id : contactIds) {
+            pending.contactUpserts.remove(id);
+            pending.contactPatchFields.remove(id);
+            pending.contactDeletes.add(id);
+        }
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 登记分组的新增或更新
+     *
+     * @param group 分组副本
+     */
+    synchronized void upsertGroup(Group group) {
+        pending.groupDeletes.remove(group.getId());
+        pending.groupUpserts.put(group.getId(), group);
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 登记分组的删除
+     *
+     * @param groupId 分组ID
+     */
+    synchronized void deleteGroup(int groupId) {
+        pending.groupUpserts.remove(groupId);
+        pending.groupDeletes.add(groupId);
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 登记个人名片的保存
+     *
+     * @param card 个人名片副本
+     */
+    synchronized void saveMyCard(Contact card) {
+        pending.myCard = card;
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 标记分组成员关系需要写入
+     * 成员关系整体写出最新快照，多次修改只需写入一次
+     */
+    synchronized void markMembershipDirty() {
+        pending.membershipDirty = true;
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 标记回收站需要写入
+     * 回收站整体写出最新的墓碑，多次删除和恢复只需写入一次
+     */
+    synchronized void markTrashDirty() {
+        pending.trashDirty = true;
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 标记联系人列表投影需要重写
+     */
+    synchronized void markProjectionDirty() {
+        pending.projectionDirty = true;
+        pending.requests++;
+        scheduleCommit();
+    }
+
+    /**
+     * 立即提交待写入的修改，不等待合并窗口结束
+     * 在界面进入后台等刷新点调用，不阻塞调用线程
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = null;
+        executor.execute(this::commitPending);
+    }
+
+    /**
+     * 在持久化线程上提交待写入的修改
+     * 只能在持久化线程上调用，用于在整体替换或切换存储前清空待写入的修改
+     *
+     * @throws IOException 写入失败时抛出，修改保留在队列中
+     */
+    void commitNow() throws IOException {
+        Batch batch = takePending();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            int writes = sink.commit(batch);
+            StorageMetrics.recordCoalescedCommit(batch.requests, writes);
+        } catch (IOException | RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+        resetFailures();
+    }
+
+    /**
+     * 合并窗口结束后提交
+     */
+    private void commitPending() {
+        try {
+            commitNow();
+        } catch (IOException | RuntimeException e) {
+            // 修改已重新排队并安排了重试
+            Log.e(TAG, "提交合并写入失败", e);
+        }
+    }
+
+    private synchronized Batch takePending() {
+        Batch batch = pending;
+        pending = new Batch();
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        return batch;
+    }
+
+    /**
+     * 把失败的批次合并回待提交状态，并按连续失败次数退避后重试
+     * 已安排的提交被取消，等待期间到达的修改不会提前触发重试，刷新点仍会立即提交
+     *
+     * @param failed 提交失败的批次
+     */
+    private synchronized void requeue(Batch failed) {
+        pending.mergeOlder(failed);
+        long delay = Math.min(COMMIT_DELAY_MILLIS << Math.min(failures, 16), MAX_RETRY_DELAY_MILLIS);
+        failures++;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = executor.schedule(this::commitPending, delay, TimeUnit.MILLISECONDS);
+        Log.w(TAG, "第" + failures + "次提交失败，" + delay + "ms后重试");
+    }
+
+    private synchronized void resetFailures() {
+        failures = 0;
+    }
+
+    private void scheduleCommit() {
+        if (scheduled == null || scheduled.isDone()) {
+            scheduled = executor.schedule(this::commitPending, COMMIT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -3,16 +3,14 @@ package com.example.contacthub.model;
 import static com.example.contacthub.utils.ChineseSurnameCorrection.SURNAME_PINYIN;
 
 import android.content.Context;
-import android.util.Log;
 
+import com.example.contacthub.data.ContactRepository;
 import com.example.contacthub.utils.ChineseSurnameCorrection;
 import com.github.promeg.pinyinhelper.Pinyin;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.FileInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 
 /**
@@ -26,8 +24,9 @@ public class Contact implements Serializable {
     private String telephoneNumber;
     private String email;
     private String address;
-    private List<Integer> groupIds;
-    private String photo; // 存储头像的base64编码
+    private List<Integer> groupIds; // 所属分组，由仓库按成员关系填充；成员关系单独保存，不随联系人写入
+    private String photo; // 旧版内联的头像base64编码，仅用于读取未迁移的数据
+    private String photoRef; // 头像在PhotoStore中的引用
     private String pinyin; // 姓名拼音
     private String firstLetter; // 姓名拼音首字母
 
@@ -45,6 +44,33 @@ public class Contact implements Serializable {
     public Contact() {
     }
 
+    /**
+     * 拷贝构造方法
+     * 分组ID列表会被复制，修改副本不会影响原对象
+     *
+     * @param other 要复制的联系人
+     */
+    public Contact(Contact other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.mobileNumber = other.mobileNumber;
+        this.telephoneNumber = other.telephoneNumber;
+        this.email = other.email;
+        this.address = other.address;
+        this.groupIds = other.groupIds != null ? new ArrayList<>(other.groupIds) : null;
+        this.photo = other.photo;
+        this.photoRef = other.photoRef;
+        this.pinyin = other.pinyin;
+        this.firstLetter = other.firstLetter;
+        this.qq = other.qq;
+        this.wechat = other.wechat;
+        this.website = other.website;
+        this.birthday = other.birthday;
+        this.company = other.company;
+        this.postalCode = other.postalCode;
+        this.notes = other.notes;
+    }
+
     /**
      * 生成联系人姓名的拼音和首字母索引
      * 支持中文、英文和特殊字符的处理
@@ -113,47 +139,78 @@ public class Contact implements Serializable {
     }
 
     /**
-     * 为联系人生成新的唯一ID
-     * 通过读取现有联系人文件确定最大ID值并加1
-     * 若读取失败则使用基于时间戳的ID生成方式
+     * 为联系人分配新的唯一ID
+     * ID由持久化的ID序列分配，不需要扫描现有联系人
      * 
-     * @param context 应用上下文，用于访问文件
+     * @param context 应用上下文
      */
     public void generateNewId(Context context) {
-        int newId = 0;
-        try {
-            // 读取现有联系人列表找到最大ID
-            FileInputStream fis = context.openFileInput("contacts.json");
-            byte[] buffer = new byte[fis.available()];
-            fis.read(buffer);
-            fis.close();
-
-            String json = new String(buffer);
-            JSONArray contactsArray = new JSONArray(json);
-
-            // 找出最大ID
-            int maxId = 0;
-            for (int i = 0; i < contactsArray.length(); i++) {
-                JSONObject contact = contactsArray.getJSONObject(i);
-                int id = contact.getInt("id");
-                if (id > maxId) {
-                    maxId = id;
+        this.id = ContactRepository.getInstance(context).allocateContactId();
+    }
+
+    /**
+     * 生成只包含列表显示字段的精简副本
+     * 用于联系人列表投影，不包含备注、头像等列表不需要的字段
+     *
+     * @return 精简副本
+     */
+    public Contact toListProjection() {
+        Contact row = new Contact();
+        row.id = id;
+        row.name = name;
+        row.pinyin = pinyin;
+        row.firstLetter = firstLetter;
+        row.mobileNumber = mobileNumber;
+        row.telephoneNumber = telephoneNumber;
+        row.address = address;
+        row.photoRef = photoRef;
+        return row;
+    }
+
+
+    /**
+     * 计算联系人内容的指纹
+     * 对除ID以外的所有可持久化字段做64位FNV-1a散列，内容相同的联系人指纹一定相同，
+     * 可用于快速判断加载后是否被修改。空字符串和空列表与未设置视为相同
+     *
+     * @return 内容指纹
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        for (ContactField field : ContactField.values()) {
+            Object value = field.normalizedValue(this);
+            // 用不同的分隔值区分null与空字符串，避免相邻字段拼接产生歧义
+            hash = mix(hash, value == null ? 0 : 1);
+            if (value != null) {
+                String text = value.toString();
+                for (int i = 0; i < text.length(); i++) {
+                    hash = mix(hash, text.charAt(i));
                 }
             }
-
-            // 新ID为最大ID加1
-            newId = maxId + 1;
-        } catch (Exception e) {
-            Log.e("Contact", "生成新ID失败，使用时间戳ID", e);
-            // 使用时间戳生成唯一ID
-            long timestamp = System.currentTimeMillis();
-            newId = (int) (timestamp % Integer.MAX_VALUE);
-            if (newId < 10000) newId += 10000; // 确保ID至少有5位数
-        } finally {
-            this.id = newId;
+            hash = mix(hash, 0xFFFF);
         }
+        return hash;
     }
 
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * 比较与基准版本之间修改了哪些字段
+     *
+     * @param baseline 基准版本，通常是仓库中已保存的联系人
+     * @return 值不同的字段，没有修改时返回空集合
+     */
+    public EnumSet<ContactField> changedFields(Contact baseline) {
+        EnumSet<ContactField> changed = EnumSet.noneOf(ContactField.class);
+        for (ContactField field : ContactField.values()) {
+            if (!field.equalsIn(this, baseline)) {
+                changed.add(field);
+            }
+        }
+        return changed;
+    }
 
     public String getPinyin() { 
         return pinyin; 
@@ -162,6 +219,15 @@ public class Contact implements Serializable {
     public String getFirstLetter() { 
         return firstLetter; 
     }
+
+    public void setPinyin(String pinyin) {
+        this.pinyin = pinyin;
+    }
+
+    public void setFirstLetter(String firstLetter) {
+        this.firstLetter = firstLetter;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -222,6 +288,12 @@ public class Contact implements Serializable {
     public void setPhoto(String photo) {
         this.photo = photo;
     }
+    public String getPhotoRef() {
+        return photoRef;
+    }
+    public void setPhotoRef(String photoRef) {
+        this.photoRef = photoRef;
+    }
     public String getQq() {
         return qq;
     }
@@ -0,0 +1,117 @@
+package com.example.contacthub.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 联系人的可持久化字段
+ * 用于比较两个版本之间修改了哪些字段，以及只复制指定字段实现增量保存。
+ * key与JSON中的字段名一致，日志中按key记录修改的字段
+ */
+public enum ContactField {
+    NAME("name", Contact::getName, (to, from) -> to.setName(from.getName())),
+    MOBILE_NUMBER("mobileNumber", Contact::getMobileNumber, (to, from) -> to.setMobileNumber(from.getMobileNumber())),
+    TELEPHONE_NUMBER("telephoneNumber", Contact::getTelephoneNumber,
+            (to, from) -> to.setTelephoneNumber(from.getTelephoneNumber())),
+    EMAIL("email", Contact::getEmail, (to, from) -> to.setEmail(from.getEmail())),
+    ADDRESS("address", Contact::getAddress, (to, from) -> to.setAddress(from.getAddress())),
+    GROUP_IDS("groupIds", Contact::getGroupIds, (to, from) -> to.setGroupIds(
+            from.getGroupIds() != null ? new ArrayList<>(from.getGroupIds()) : null)),
+    PHOTO("photo", Contact::getPhoto, (to, from) -> to.setPhoto(from.getPhoto())),
+    PHOTO_REF("photoRef", Contact::getPhotoRef, (to, from) -> to.setPhotoRef(from.getPhotoRef())),
+    PINYIN("pinyin", Contact::getPinyin, (to, from) -> to.setPinyin(from.getPinyin())),
+    FIRST_LETTER("firstLetter", Contact::getFirstLetter, (to, from) -> to.setFirstLetter(from.getFirstLetter())),
+    QQ("qq", Contact::getQq, (to, from) -> to.setQq(from.getQq())),
+    WECHAT("wechat", Contact::getWechat, (to, from) -> to.setWechat(from.getWechat())),
+    WEBSITE("website", Contact::getWebsite, (to, from) -> to.setWebsite(from.getWebsite())),
+    BIRTHDAY("birthday", Contact::getBirthday, (to, from) -> to.setBirthday(from.getBirthday())),
+    COMPANY("company", Contact::getCompany, (to, from) -> to.setCompany(from.getCompany())),
+    POSTAL_CODE("postalCode", Contact::getPostalCode, (to, from) -> to.setPostalCode(from.getPostalCode())),
+    NOTES("notes", Contact::getNotes, (to, from) -> to.setNotes(from.getNotes()));
+
+    private final String key;
+    private final Function<Contact, Object> getter;
+    private final BiConsumer<Contact, Contact> copier;
+
+    ContactField(String key, Function<Contact, Object> getter, BiConsumer<Contact, Contact> copier) {
+        this.key = key;
+        this.getter = getter;
+        this.copier = copier;
+    }
+
+    /**
+     * 获取字段在JSON中的名称
+     *
+     * @return 字段名
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 读取字段值
+     *
+     * @param contact 联系人
+     * @return 字段值
+     */
+    public Object get(Contact contact) {
+        return getter.apply(contact);
+    }
+
+    /**
+     * 把字段值从一个联系人复制到另一个联系人
+     *
+     * @param to 目标联系人
+     * @param from 来源联系人
+     */
+    public void copy(Contact to, Contact from) {
+        copier.accept(to, from);
+    }
+
+    /**
+     * 读取用于比较的字段值，空字符串和空列表视为null
+     * 编辑界面会把未填写的字段保存为空字符串，与未设置的字段在显示上没有区别
+     *
+     * @param contact 联系人
+     * @return 规范化后的字段值
+     */
+    public Object normalizedValue(Contact contact) {
+        Object value = get(contact);
+        if (value instanceof String && ((String) value).isEmpty()) {
+            return null;
+        }
+        if (value instanceof Collection && ((Collection<?>) value).isEmpty()) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * 判断两个联系人的该字段是否相同，空字符串和空列表视为未设置
+     *
+     * @param a 联系人
+     * @param b 联系人
+     * @return 字段值相同时返回true
+     */
+    public boolean equalsIn(Contact a, Contact b) {
+        return Objects.equals(normalizedValue(a), normalizedValue(b));
+    }
+
+    /**
+     * 按JSON字段名查找字段
+     *
+     * @param key 字段名
+     * @return 对应的字段，不存在时返回null
+     */
+    public static ContactField fromKey(String key) {
+        for (ContactField field : values()) {
+            if (field.key.equals(key)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -1,12 +1,8 @@
 package com.example.contacthub.model;
 
 import android.content.Context;
-import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.FileInputStream;
+import com.example.contacthub.data.ContactRepository;
 
 /**
  * 联系人分组实体类
@@ -39,6 +35,15 @@ public class Group {
         this.expanded = false;
     }
 
+    /**
+     * 拷贝构造方法
+     *
+     * @param other 要复制的分组
+     */
+    public Group(Group other) {
+        this(other.id, other.expanded, other.name);
+    }
+
     public int getId() {
         return id;
     }
@@ -73,44 +78,12 @@ public class Group {
     }
 
     /**
-     * 为分组生成新的唯一ID
-     * 通过读取现有分组文件确定最大ID值并加1
-     * 若读取失败则使用基于时间戳的ID生成方式
+     * 为分组分配新的唯一ID
+     * ID由持久化的ID序列分配，不需要扫描现有分组
      * 
-     * @param context 应用上下文，用于访问文件
+     * @param context 应用上下文
      */
     public void generateNewId(Context context) {
-        int newId = 0;
-        try {
-            // 读取现有分组列表找到最大ID
-            FileInputStream fis = context.openFileInput("groups.json");
-            byte[] buffer = new byte[fis.available()];
-            fis.read(buffer);
-            fis.close();
-
-            String json = new String(buffer);
-            JSONArray groupsArray = new JSONArray(json);
-
-            // 找出最大ID
-            int maxId = 0;
-            for (int i = 0; i < groupsArray.length(); i++) {
-                JSONObject group = groupsArray.getJSONObject(i);
-                int id = group.getInt("id");
-                if (id > maxId) {
-                    maxId = id;
-                }
-            }
-
-            // 新ID为最大ID加1
-            newId = maxId + 1;
-        } catch (Exception e) {
-            Log.e("Group", "生成新ID失败，使用时间戳ID", e);
-            // 使用时间戳生成唯一ID
-            long timestamp = System.currentTimeMillis();
-            newId = (int) (timestamp % Integer.MAX_VALUE);
-            if (newId < 10000) newId += 10000; // 确保ID至少有5位数
-        } finally {
-            this.id = newId;
-        }
+        this.id = ContactRepository.getInstance(context).allocateGroupId();
     }
 }
@@ -9,6 +9,7 @@ import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.TextUtils;
 import android.text.style.ForegroundColorSpan;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -19,9 +20,11 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.contacthub.R;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.PhotoStore;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.ui.view.contactDetail.ContactDetailActivity;
-import com.example.contacthub.utils.PhotoUtil;
+import com.example.contacthub.utils.AppExecutors;
 
 import java.util.List;
 
@@ -39,6 +42,14 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ViewHold
     private static final String KEY_SHOW_TELEPHONE = "show_telephone";
     private static final String KEY_SHOW_ADDRESS = "show_address";
 
+    // 已解码头像的缓存，以头像引用为键，所有列表共享，容量按字节计算
+    private static final LruCache<String, Bitmap> AVATAR_CACHE = new LruCache<String, Bitmap>(4 * 1024 * 1024) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
     /**
      * 联系人点击监听器接口
      */
@@ -118,16 +129,7 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ViewHold
         }
 
         // 设置联系人头像
-        if (!TextUtils.isEmpty(contact.getPhoto())) {
-            Bitmap avatarBitmap = PhotoUtil.base64ToBitmap(contact.getPhoto());
-            if (avatarBitmap != null) {
-                holder.profileImageView.setImageBitmap(avatarBitmap);
-            } else {
-                holder.profileImageView.setImageResource(R.drawable.ic_person);
-            }
-        } else {
-            holder.profileImageView.setImageResource(R.drawable.ic_person);
-        }
+        bindAvatar(holder, contact);
 
         // 设置点击事件处理
         holder.itemView.setOnClickListener(v -> {
@@ -135,12 +137,51 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ViewHold
                 listener.onContactClick(contact);
             }
 
+            // 列表中的联系人可能只包含列表字段，详情页按ID读取完整记录
             Intent intent = new Intent(context, ContactDetailActivity.class);
-            intent.putExtra("contact", contact);
+            intent.putExtra(ContactDetailActivity.EXTRA_CONTACT_ID, contact.getId().intValue());
             context.startActivity(intent);
         });
     }
 
+    /**
+     * 绑定联系人头像
+     * 已解码的头像直接从缓存读取；否则先显示默认头像，在后台读取并解码后再更新，
+     * 期间列表项被复用给其他联系人时丢弃旧结果
+     * 
+     * @param holder 列表项的ViewHolder
+     * @param contact 联系人
+     */
+    private void bindAvatar(ViewHolder holder, Contact contact) {
+        String key = !TextUtils.isEmpty(contact.getPhotoRef()) ? contact.getPhotoRef()
+                : !TextUtils.isEmpty(contact.getPhoto()) ? "inline:" + contact.getId() : null;
+        holder.profileImageView.setTag(key);
+        if (key == null) {
+            holder.profileImageView.setImageResource(R.drawable.ic_person);
+            return;
+        }
+        Bitmap cached = AVATAR_CACHE.get(key);
+        if (cached != null) {
+            holder.profileImageView.setImageBitmap(cached);
+            return;
+        }
+
+        holder.profileImageView.setImageResource(R.drawable.ic_person);
+        PhotoStore photoStore = ContactRepository.getInstance(holder.itemView.getContext()).getPhotoStore();
+        AppExecutors.io().execute(() -> {
+            Bitmap avatarBitmap = photoStore.loadBitmap(contact);
+            if (avatarBitmap == null) {
+                return;
+            }
+            AVATAR_CACHE.put(key, avatarBitmap);
+            AppExecutors.mainThread().execute(() -> {
+                if (key.equals(holder.profileImageView.getTag())) {
+                    holder.profileImageView.setImageBitmap(avatarBitmap);
+                }
+            });
+        });
+    }
+
     /**
      * 设置高亮文本
      *
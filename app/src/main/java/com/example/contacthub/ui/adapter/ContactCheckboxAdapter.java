@@ -11,11 +11,10 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.contacthub.R;
 import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.RoaringIdSet;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 联系人复选框适配器，用于选择多个联系人
@@ -24,18 +23,18 @@ public class ContactCheckboxAdapter extends RecyclerView.Adapter<ContactCheckbox
 
     private final List<Contact> contacts; // 所有联系人
     private final List<Contact> filteredContacts; // 过滤后的联系人
-    private final Set<Integer> selectedContactIds; // 已选择的联系人ID集合
+    private final RoaringIdSet selectedContactIds; // 已选择的联系人ID集合
 
     /**
      * 构造函数
      *
      * @param contacts 联系人列表
-     * @param groupMemberIds 群组成员ID列表，用于预选中已在群组中的联系人
+     * @param groupMemberIds 群组成员ID集合，用于预选中已在群组中的联系人，不会被修改
      */
-    public ContactCheckboxAdapter(List<Contact> contacts, List<Integer> groupMemberIds) {
+    public ContactCheckboxAdapter(List<Contact> contacts, RoaringIdSet groupMemberIds) {
         this.contacts = contacts;
         this.filteredContacts = new ArrayList<>(contacts);
-        this.selectedContactIds = new HashSet<>(groupMemberIds != null ? groupMemberIds : new ArrayList<>());
+        this.selectedContactIds = groupMemberIds != null ? groupMemberIds.copy() : new RoaringIdSet();
     }
 
     /**
@@ -100,12 +99,12 @@ public class ContactCheckboxAdapter extends RecyclerView.Adapter<ContactCheckbox
     }
 
     /**
-     * 获取已选择的联系人ID列表
+     * 获取已选择的联系人ID集合
      *
-     * @return 已选择联系人ID的列表
+     * @return 已选择联系人ID集合的副本
      */
-    public List<Integer> getSelectedContactIds() {
-        return new ArrayList<>(selectedContactIds);
+    public RoaringIdSet getSelectedContactIds() {
+        return selectedContactIds.copy();
     }
 
     /**
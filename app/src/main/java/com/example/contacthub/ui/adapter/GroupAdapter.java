@@ -15,7 +15,6 @@ import com.example.contacthub.R;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.model.Group;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,17 +22,38 @@ import java.util.List;
  */
 public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.ViewHolder> {
     private List<Group> groups; // 所有分组
-    private List<Contact> allContacts; // 所有联系人
+    private final MemberSource memberSource; // 分组成员来源
+
+    /**
+     * 分组成员来源，由分组成员索引提供，不需要扫描全部联系人
+     */
+    public interface MemberSource {
+        /**
+         * 获取分组的成员数
+         *
+         * @param groupId 分组ID
+         * @return 成员数
+         */
+        int memberCount(int groupId);
+
+        /**
+         * 获取分组的成员联系人
+         *
+         * @param groupId 分组ID
+         * @return 成员联系人列表
+         */
+        List<Contact> members(int groupId);
+    }
 
     /**
      * 构造函数
      *
      * @param groups 分组列表
-     * @param allContacts 所有联系人列表
+     * @param memberSource 分组成员来源
      */
-    public GroupAdapter(List<Group> groups, List<Contact> allContacts) {
+    public GroupAdapter(List<Group> groups, MemberSource memberSource) {
         this.groups = groups;
-        this.allContacts = allContacts;
+        this.memberSource = memberSource;
     }
 
     /**
@@ -63,6 +83,7 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.ViewHolder>
 
         // 设置分组名称
         holder.nameTextView.setText(group.getName());
+        holder.memberCountTextView.setText(memberSource.memberCount(group.getId()) + "人");
 
         // 根据分组展开状态设置图标
         holder.expandIcon.setImageResource(
@@ -82,13 +103,8 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.ViewHolder>
 
         // 如果分组已展开，则显示其中的联系人
         if (group.isExpanded()) {
-            // 筛选属于当前分组的联系人
-            List<Contact> groupContacts = new ArrayList<>();
-            for (Contact contact : allContacts) {
-                if (contact.getGroupIds().contains(group.getId())) {
-                    groupContacts.add(contact);
-                }
-            }
+            // 从成员索引获取属于当前分组的联系人
+            List<Contact> groupContacts = memberSource.members(group.getId());
 
             // 设置联系人列表的适配器和布局管理器
             ContactAdapter contactAdapter = new ContactAdapter(groupContacts);
@@ -112,6 +128,7 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.ViewHolder>
      */
     static class ViewHolder extends RecyclerView.ViewHolder {
         TextView nameTextView;
+        TextView memberCountTextView;
         ImageView expandIcon;
         RecyclerView membersRecyclerView;
         RelativeLayout groupHeader;
@@ -124,6 +141,7 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.ViewHolder>
         ViewHolder(View itemView) {
             super(itemView);
             nameTextView = itemView.findViewById(R.id.group_name);
+            memberCountTextView = itemView.findViewById(R.id.group_member_count);
             expandIcon = itemView.findViewById(R.id.expand_icon);
             membersRecyclerView = itemView.findViewById(R.id.recycler_members);
             groupHeader = itemView.findViewById(R.id.group_header);
@@ -2,6 +2,7 @@ package com.example.contacthub.ui.view.contactDetail;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.MenuItem;
 import android.widget.Toast;
 
@@ -11,20 +12,17 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.contacthub.R;
+import com.example.contacthub.data.ContactRepository;
 import com.example.contacthub.model.Contact;
-import com.example.contacthub.utils.FileUtil;
 import com.example.contacthub.ui.widget.ContactCardView;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
+import com.example.contacthub.utils.AppExecutors;
 
 public class ContactDetailActivity extends AppCompatActivity implements ContactCardView.OnContactUpdatedListener {
 
+    private static final String TAG = "ContactDetailActivity";
+    public static final String EXTRA_CONTACT_ID = "contactId";
     private ContactCardView contactCardView;
     private Contact contact;
-    private FileUtil fileUtil;
 
     /**
      * 初始化Activity，设置UI组件并获取联系人数据
@@ -44,7 +42,9 @@ public class ContactDetailActivity extends AppCompatActivity implements ContactC
 
         getSupportActionBar().setDisplayShowTitleEnabled(false);
 
-        if (getIntent().hasExtra("contact")) {
+        if (getIntent().hasExtra(EXTRA_CONTACT_ID)) {
+            loadContact(getIntent().getIntExtra(EXTRA_CONTACT_ID, -1));
+        } else if (getIntent().hasExtra("contact")) {
             contact = (Contact) getIntent().getSerializableExtra("contact");
             displayContactDetails();
         } else {
@@ -57,12 +57,17 @@ public class ContactDetailActivity extends AppCompatActivity implements ContactC
                 .setTitle("删除联系人")
                 .setMessage("确定要删除此联系人吗？")
                 .setPositiveButton("是", (dialog, which) -> {
-                    fileUtil = new FileUtil(this);
-                    Contact[] contacts = fileUtil.readFile("contacts.json", Contact[].class);
-                    List<Contact> contactList = new ArrayList<>(Arrays.asList(contacts));
-                    contactList.removeIf(c -> Objects.equals(c.getId(), contact.getId()));
-                    Contact[] updatedContacts = contactList.toArray(new Contact[0]);
-                    fileUtil.saveJSON(updatedContacts, "contacts.json");
+                    if (contact == null) {
+                        return;
+                    }
+                    try {
+                        ContactRepository.getInstance(this).deleteContact(contact.getId());
+                    } catch (IllegalStateException e) {
+                        Log.e(TAG, "删除联系人失败", e);
+                        Toast.makeText(this, "删除失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    Log.d(TAG, "联系人已删除: " + contact.getId());
                     Toast.makeText(this, "联系人已删除", Toast.LENGTH_SHORT).show();
                     finish();
                 })
@@ -71,6 +76,24 @@ public class ContactDetailActivity extends AppCompatActivity implements ContactC
         });
     }
 
+    /**
+     * 按ID在后台读取完整的联系人记录后显示
+     *
+     * @param contactId 联系人ID
+     */
+    private void loadContact(int contactId) {
+        ContactRepository repository = ContactRepository.getInstance(this);
+        AppExecutors.runAsync(() -> repository.getContact(contactId)).observe(this, result -> {
+            if (!result.isSuccess() || result.getValue() == null) {
+                Toast.makeText(this, "没有联系人信息", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+            contact = result.getValue();
+            displayContactDetails();
+        });
+    }
+
     /**
      * 在视图中显示联系人详细信息
      */
@@ -17,10 +17,13 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.contacthub.R;
+import com.example.contacthub.data.ContactConflictException;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.PhotoStore;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.model.Group;
-import com.example.contacthub.utils.FileUtil;
-import com.example.contacthub.utils.PhotoUtil;
+import com.example.contacthub.utils.AppExecutors;
+import com.example.contacthub.utils.StorageMetrics;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
@@ -29,7 +32,6 @@ import com.google.android.material.imageview.ShapeableImageView;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,26 +46,51 @@ public class ContactEditActivity extends AppCompatActivity {
     private MaterialCardView groupsCard;
 
     private Contact contact;
-    private FileUtil fileUtil;
+    // 打开编辑页时联系人内容的指纹，用于判断保存时是否有修改
+    private long loadedFingerprint;
+    // 打开编辑页时的联系人，保存时据此检查编辑期间是否有其他修改
+    private Contact baseContact;
+    private ContactRepository repository;
     private List<Group> allGroups;
     private final Map<Integer, CheckBox> groupCheckboxes = new HashMap<>();
+    // 正在后台为新建的联系人分配ID，期间忽略重复的保存操作
+    private boolean allocatingId;
+
+    /**
+     * 后台处理完成的头像：用于显示的位图和头像存储中的引用
+     */
+    private static final class PickedAvatar {
+        final Bitmap bitmap;
+        final String photoRef;
+
+        PickedAvatar(Bitmap bitmap, String photoRef) {
+            this.bitmap = bitmap;
+            this.photoRef = photoRef;
+        }
+    }
 
     private final ActivityResultLauncher<Intent> imagePickerLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    try {
-                        Uri selectedImageUri = result.getData().getData();
+                    Uri selectedImageUri = result.getData().getData();
+                    // 图片解码、缩放和写入头像存储在后台线程执行
+                    PhotoStore photoStore = repository.getPhotoStore();
+                    AppExecutors.runAsync(() -> {
                         Bitmap selectedBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), selectedImageUri);
                         Bitmap resizedBitmap = resizeBitmap(selectedBitmap, 500);
-                        editContactAvatar.setImageBitmap(resizedBitmap);
-                        String base64Image = PhotoUtil.bitmapToBase64(resizedBitmap);
-                        contact.setPhoto(base64Image);
-                        Log.d(TAG, "头像已更新为Base64数据");
-                    } catch (Exception e) {
-                        Log.e(TAG, "处理选择的图片失败", e);
-                        Toast.makeText(ContactEditActivity.this, "加载图片失败", Toast.LENGTH_SHORT).show();
-                    }
+                        return new PickedAvatar(resizedBitmap, photoStore.putBitmap(resizedBitmap));
+                    }).observe(this, taskResult -> {
+                        if (taskResult.isSuccess()) {
+                            editContactAvatar.setImageBitmap(taskResult.getValue().bitmap);
+                            contact.setPhotoRef(taskResult.getValue().photoRef);
+                            contact.setPhoto(null);
+                            Log.d(TAG, "头像已保存到头像存储: " + taskResult.getValue().photoRef);
+                        } else {
+                            Log.e(TAG, "处理选择的图片失败", taskResult.getError());
+                            Toast.makeText(ContactEditActivity.this, "加载图片失败", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 }
             }
         );
@@ -103,7 +130,7 @@ public class ContactEditActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_contact_edit);
 
-        fileUtil = new FileUtil(this);
+        repository = ContactRepository.getInstance(this);
 
         MaterialToolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -137,6 +164,11 @@ public class ContactEditActivity extends AppCompatActivity {
         // 获取传递过来的联系人
         if (getIntent().hasExtra("contact")) {
             contact = (Contact) getIntent().getSerializableExtra("contact");
+            // 只有已保存的联系人才有基准版本，新建的联系人直接保存
+            if (contact.getId() != null && !getIntent().getBooleanExtra("isNewContact", false)) {
+                baseContact = new Contact(contact);
+            }
+            loadedFingerprint = contact.fingerprint();
             populateContactInfo();
         } else {
             // 如果是新建联系人
@@ -157,16 +189,33 @@ public class ContactEditActivity extends AppCompatActivity {
     }
 
     /**
-     * 从文件中加载分组数据
+     * 观察仓库中的分组数据
+     * 分组在后台加载，到达后再生成分组复选框
      */
     private void loadGroups() {
-        try {
-            Group[] groups = fileUtil.readFile("groups.json", Group[].class);
-            allGroups = new ArrayList<>(Arrays.asList(groups));
+        repository.observeGroups().observe(this, groups -> {
+            allGroups = groups != null ? new ArrayList<>(groups) : new ArrayList<>();
             Log.d(TAG, "加载分组成功: " + allGroups.size() + "个分组");
-        } catch (Exception e) {
-            Log.e(TAG, "加载分组失败", e);
-            allGroups = new ArrayList<>();
+            boolean isMyCard = getIntent().getBooleanExtra("isMyCard", false);
+            if (contact != null && getIntent().hasExtra("contact") && !isMyCard) {
+                createGroupCheckboxes();
+            }
+        });
+    }
+
+    /**
+     * 以仓库中的最新版本重新开始编辑
+     *
+     * @param current 最新版本
+     */
+    private void reloadContact(Contact current) {
+        contact = new Contact(current);
+        baseContact = new Contact(current);
+        loadedFingerprint = contact.fingerprint();
+        populateContactInfo();
+        List<Integer> groupIds = contact.getGroupIds();
+        for (Map.Entry<Integer, CheckBox> entry : groupCheckboxes.entrySet()) {
+            entry.getValue().setChecked(groupIds != null && groupIds.contains(entry.getKey()));
         }
     }
 
@@ -197,12 +246,15 @@ public class ContactEditActivity extends AppCompatActivity {
                 createGroupCheckboxes();
             }
 
-            // 如果联系人有头像数据，则显示
-            if (contact.getPhoto() != null && !contact.getPhoto().isEmpty()) {
-                Bitmap avatarBitmap = PhotoUtil.base64ToBitmap(contact.getPhoto());
-                if (avatarBitmap != null) {
-                    editContactAvatar.setImageBitmap(avatarBitmap);
-                }
+            // 如果联系人有头像，在后台读取并解码后显示
+            Contact shown = contact;
+            if (shown.getPhotoRef() != null || (shown.getPhoto() != null && !shown.getPhoto().isEmpty())) {
+                PhotoStore photoStore = repository.getPhotoStore();
+                AppExecutors.runAsync(() -> photoStore.loadBitmap(shown)).observe(this, taskResult -> {
+                    if (taskResult.isSuccess() && taskResult.getValue() != null) {
+                        editContactAvatar.setImageBitmap(taskResult.getValue());
+                    }
+                });
             }
         }
     }
@@ -262,6 +314,7 @@ public class ContactEditActivity extends AppCompatActivity {
 
         // 更新联系人信息
         contact.setName(name);
+        contact.generatePinyin();
         contact.setMobileNumber(etMobile.getText().toString().trim());
         contact.setTelephoneNumber(etTelephone.getText().toString().trim());
         contact.setEmail(etEmail.getText().toString().trim());
@@ -276,41 +329,68 @@ public class ContactEditActivity extends AppCompatActivity {
         contact.setNotes(etNotes.getText().toString().trim());
 
         boolean isMyCard = getIntent().getBooleanExtra("isMyCard", false);
+        if (!isMyCard) {
+            updateContactGroups();
+        }
+
+        // 打开后没有任何修改时不提交，避免无意义的写入
+        if (getIntent().hasExtra("contact") && contact.fingerprint() == loadedFingerprint) {
+            StorageMetrics.recordContactSaves(1, 0, 0);
+            Toast.makeText(this, "联系人未修改", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        if (!isMyCard && contact.getId() == null) {
+            // 新建的联系人还没有ID，分配ID可能需要先加载联系人数据并同步写入ID预留上界，在后台线程执行
+            if (allocatingId) {
+                return;
+            }
+            allocatingId = true;
+            AppExecutors.runAsync(repository::allocateContactId).observe(this, taskResult -> {
+                allocatingId = false;
+                if (taskResult.isSuccess()) {
+                    contact.setId(taskResult.getValue());
+                    commitContact(false);
+                } else {
+                    Log.e(TAG, "分配联系人ID失败", taskResult.getError());
+                    Toast.makeText(this, "保存失败: " + taskResult.getError().getMessage(), Toast.LENGTH_SHORT).show();
+                }
+            });
+            return;
+        }
+        commitContact(isMyCard);
+    }
 
-        // 保存联系人到文件
+    /**
+     * 把编辑后的联系人提交到仓库，成功后关闭界面并传回联系人
+     *
+     * @param isMyCard 是否保存为我的名片
+     */
+    private void commitContact(boolean isMyCard) {
+        // 提交到仓库，文件在后台写入
         try {
             if (isMyCard) {
-                // 保存到my.json
+                // 保存为我的名片
                 contact.setId(null); // 移除ID字段
-                fileUtil.saveObject(contact, "my.json");
+                repository.saveMyCard(contact);
                 Log.d(TAG, "我的名片已更新");
             } else {
-                updateContactGroups();
-
-                // 读取现有联系人列表
-                Contact[] contacts = fileUtil.readFile("contacts.json", Contact[].class);
-                List<Contact> contactList = new ArrayList<>(Arrays.asList(contacts));
-
-                // 查找并更新联系人
-                boolean found = false;
-                for (int i = 0; i < contactList.size(); i++) {
-                    if (contactList.get(i).getId().equals(contact.getId())) {
-                        contactList.set(i, contact);
-                        found = true;
-                        break;
-                    }
-                }
-
-                // 如果没找到，说明是新联系人，添加到列表
-                if (!found) {
-                    contactList.add(contact);
+                // 仓库与已保存版本比较，只持久化修改过的字段；编辑期间的其他修改按字段合并
+                if (baseContact != null) {
+                    contact = repository.saveContact(baseContact, contact);
+                } else {
+                    repository.saveContact(contact);
                 }
-
-                // 保存到文件
-                Contact[] updatedContacts = contactList.toArray(new Contact[0]);
-                fileUtil.saveJSON(updatedContacts, "contacts.json");
                 Log.d(TAG, "联系人保存成功");
             }
+        } catch (ContactConflictException e) {
+            Log.w(TAG, "保存联系人冲突", e);
+            Toast.makeText(this, "保存失败: " + e.getMessage() + "，已载入最新内容，请重新修改", Toast.LENGTH_LONG).show();
+            if (e.getCurrent() != null) {
+                reloadContact(e.getCurrent());
+            }
+            return;
         } catch (Exception e) {
             Log.e(TAG, "保存联系人失败", e);
             Toast.makeText(this, "保存失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -330,6 +410,10 @@ public class ContactEditActivity extends AppCompatActivity {
      * 更新联系人分组信息
      */
     private void updateContactGroups() {
+        if (allGroups == null) {
+            // 分组尚未加载完成，复选框还未生成，保留联系人原有的分组
+            return;
+        }
         List<Integer> selectedGroups = new ArrayList<>();
 
         for (Map.Entry<Integer, CheckBox> entry : groupCheckboxes.entrySet()) {
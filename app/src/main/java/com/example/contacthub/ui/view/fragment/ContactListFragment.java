@@ -18,15 +18,17 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.example.contacthub.ui.adapter.ContactAdapter;
 import com.example.contacthub.ui.adapter.ContactSortByPinyinAdapter;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.StartupBenchmark;
 import com.example.contacthub.databinding.FragmentContactListBinding;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.ui.view.contactDetail.ContactEditActivity;
+import com.example.contacthub.utils.AppExecutors;
 import com.example.contacthub.utils.ContactIndexer;
-import com.example.contacthub.utils.FileUtil;
 import com.example.contacthub.ui.widget.AlphabetIndexView;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,9 +38,9 @@ import java.util.Map;
 public class ContactListFragment extends Fragment implements AlphabetIndexView.OnLetterSelectedListener {
 
     private FragmentContactListBinding binding;
-    private FileUtil fileUtil;
-    private List<Contact> allContacts;
-    private Map<String, List<Contact>> contactMapByPinyin;
+    private ContactRepository repository;
+    private List<Contact> allContacts = new ArrayList<>();
+    private Map<String, List<Contact>> contactMapByPinyin = new LinkedHashMap<>();
 
     private ActivityResultLauncher<Intent> addContactLauncher;
 
@@ -55,12 +57,11 @@ public class ContactListFragment extends Fragment implements AlphabetIndexView.O
         addContactLauncher = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
+                // 编辑页面已经保存到仓库，列表通过观察者刷新，这里不再重复保存
                 if (result.getResultCode() == getActivity().RESULT_OK && result.getData() != null) {
-                    // 获取更新后的联系人
                     Contact updatedContact = (Contact) result.getData().getSerializableExtra("updatedContact");
                     if (updatedContact != null) {
-                        // 保存新联系人并刷新列表
-                        saveNewContact(updatedContact);
+                        Log.d("ContactListFragment", "新联系人已保存: " + updatedContact.getName());
                     }
                 }
             }
@@ -94,11 +95,11 @@ public class ContactListFragment extends Fragment implements AlphabetIndexView.O
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        // 初始化文件工具类
-        fileUtil = new FileUtil(requireContext());
+        // 获取联系人仓库
+        repository = ContactRepository.getInstance(requireContext());
 
-        // 加载联系人数据并更新UI
-        loadContactsAndUpdateUI();
+        // 观察联系人列表快照：冷启动时先显示列表投影，完整数据在后台加载，加载完成或发生修改时更新UI
+        repository.observeContactList().observe(getViewLifecycleOwner(), this::onContactsChanged);
 
         // 设置搜索框监听器
         binding.editSearch.addTextChangedListener(new TextWatcher() {
@@ -120,27 +121,29 @@ public class ContactListFragment extends Fragment implements AlphabetIndexView.O
     }
 
     /**
-     * Fragment恢复可见状态时重新加载联系人数据
-     */
-    @Override
-    public void onResume() {
-        super.onResume();
-        loadContactsAndUpdateUI();
-        Log.d("ContactListFragment", "onResume: 重新加载联系人数据");
-    }
-
-    /**
-     * 加载联系人数据并更新UI
-     * 从本地存储加载所有联系人，并按拼音首字母分组
+     * 联系人快照变化时更新UI
+     * 按拼音首字母重新分组，并保留当前的搜索关键词
+     * 
+     * @param contacts 最新的联系人快照
      */
-    private void loadContactsAndUpdateUI() {
-        allContacts = loadContactList();
+    private void onContactsChanged(List<Contact> contacts) {
+        allContacts = contacts != null ? contacts : new ArrayList<>();
         contactMapByPinyin = ContactIndexer.groupByFirstLetter(allContacts);
-        updateContactList("");
+        updateContactList(binding.editSearch.getText().toString().trim().toLowerCase());
+        Log.d("ContactListFragment", "联系人数据已更新: " + allContacts.size());
+
+        int count = allContacts.size();
+        boolean projectionEnabled = repository.isListProjectionEnabled();
+        binding.recyclerContactList.post(() -> {
+            if (getContext() != null) {
+                StartupBenchmark.reportFirstListFrame(getContext(), count, projectionEnabled);
+            }
+        });
     }
 
     /**
      * 根据搜索关键词更新联系人列表
+     * 搜索在后台线程通过仓库执行，存储引擎带有全文索引时使用索引查询
      * 
      * @param key 搜索关键词，为空时显示所有联系人并按拼音分组
      */
@@ -150,41 +153,41 @@ public class ContactListFragment extends Fragment implements AlphabetIndexView.O
             binding.recyclerContactList.setLayoutManager(new LinearLayoutManager(requireContext()));
             binding.recyclerContactList.setAdapter(new ContactSortByPinyinAdapter(contactMapByPinyin));
             binding.alphabetIndex.setVisibility(View.VISIBLE);
-        } else {
-            // 搜索联系人
-            List<Contact> filteredContacts = ContactIndexer.search(allContacts, key);
+            return;
+        }
 
-            if (filteredContacts.isEmpty()) {
-                // 无搜索结果时显示空列表
-                binding.recyclerContactList.setLayoutManager(new LinearLayoutManager(requireContext()));
-                ContactAdapter adapter = new ContactAdapter(filteredContacts);
-                adapter.setSearchKeyword(key);
-                binding.recyclerContactList.setAdapter(adapter);
-                binding.alphabetIndex.setVisibility(View.GONE);
-            } else {
-                // 有搜索结果时仍然按拼音分组显示
-                Map<String, List<Contact>> filteredMap = ContactIndexer.groupByFirstLetter(filteredContacts);
-                binding.recyclerContactList.setLayoutManager(new LinearLayoutManager(requireContext()));
-                ContactSortByPinyinAdapter adapter = new ContactSortByPinyinAdapter(filteredMap);
-                adapter.setSearchKeyword(key);
-                binding.recyclerContactList.setAdapter(adapter);
-                binding.alphabetIndex.setVisibility(View.VISIBLE);
+        AppExecutors.runAsync(() -> repository.searchContacts(key)).observe(getViewLifecycleOwner(), result -> {
+            // 输入已经变化时丢弃过期的搜索结果
+            if (binding == null || !key.equals(binding.editSearch.getText().toString().trim().toLowerCase())) {
+                return;
             }
-        }
+            List<Contact> filteredContacts = result.isSuccess() ? result.getValue() : new ArrayList<>();
+            showSearchResults(key, filteredContacts);
+        });
     }
 
     /**
-     * 从存储加载联系人列表
+     * 显示搜索结果
      * 
-     * @return 加载的联系人列表，如果出错则返回空列表
+     * @param key 搜索关键词
+     * @param filteredContacts 匹配的联系人
      */
-    private List<Contact> loadContactList() {
-        try {
-            Contact[] contacts = fileUtil.readFile("contacts.json", Contact[].class);
-            return Arrays.asList(contacts);
-        } catch (Exception e) {
-            Log.e("ContactListFragment", "加载联系人失败", e);
-            return new ArrayList<>();
+    private void showSearchResults(String key, List<Contact> filteredContacts) {
+        if (filteredContacts.isEmpty()) {
+            // 无搜索结果时显示空列表
+            binding.recyclerContactList.setLayoutManager(new LinearLayoutManager(requireContext()));
+            ContactAdapter adapter = new ContactAdapter(filteredContacts);
+            adapter.setSearchKeyword(key);
+            binding.recyclerContactList.setAdapter(adapter);
+            binding.alphabetIndex.setVisibility(View.GONE);
+        } else {
+            // 有搜索结果时仍然按拼音分组显示
+            Map<String, List<Contact>> filteredMap = ContactIndexer.groupByFirstLetter(filteredContacts);
+            binding.recyclerContactList.setLayoutManager(new LinearLayoutManager(requireContext()));
+            ContactSortByPinyinAdapter adapter = new ContactSortByPinyinAdapter(filteredMap);
+            adapter.setSearchKeyword(key);
+            binding.recyclerContactList.setAdapter(adapter);
+            binding.alphabetIndex.setVisibility(View.VISIBLE);
         }
     }
 
@@ -209,43 +212,6 @@ public class ContactListFragment extends Fragment implements AlphabetIndexView.O
         addContactLauncher.launch(intent);
     }
 
-    /**
-     * 保存新联系人到存储并更新UI
-     * 
-     * @param newContact 需要保存的新联系人对象
-     */
-    private void saveNewContact(Contact newContact) {
-        // 为新联系人生成ID
-        if (newContact.getId() == null) {
-            int maxId = 0;
-            for (Contact contact : allContacts) {
-                if (contact.getId() != null && contact.getId() > maxId) {
-                    maxId = contact.getId();
-                }
-            }
-            newContact.setId(maxId + 1);
-        }
-
-        // 确保重新生成拼音信息
-        newContact.generatePinyin();
-
-        // 将新联系人添加到列表
-        List<Contact> updatedContacts = new ArrayList<>(allContacts);
-        updatedContacts.add(newContact);
-
-        // 保存到文件
-        try {
-            Contact[] contactsArray = updatedContacts.toArray(new Contact[0]);
-            fileUtil.saveJSON(contactsArray, "contacts.json");
-            Log.d("ContactListFragment", "新联系人已保存: " + newContact.getName());
-
-            // 重新加载列表
-            loadContactsAndUpdateUI();
-        } catch (Exception e) {
-            Log.e("ContactListFragment", "保存新联系人失败", e);
-        }
-    }
-
     /**
      * 处理字母索引被选中的事件
      * 
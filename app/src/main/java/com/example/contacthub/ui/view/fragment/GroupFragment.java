@@ -7,6 +7,7 @@ import android.graphics.Paint;
 import android.graphics.RectF;
 import android.os.Bundle;
 import android.text.Editable;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -26,10 +27,14 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.contacthub.R;
 import com.example.contacthub.ui.adapter.ContactCheckboxAdapter;
 import com.example.contacthub.ui.adapter.GroupAdapter;
+import com.example.contacthub.ui.widget.UndoSnackbar;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.DataSnapshot;
+import com.example.contacthub.data.GroupMembershipIndex;
 import com.example.contacthub.databinding.FragmentGroupBinding;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.model.Group;
-import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.utils.RoaringIdSet;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
@@ -43,9 +48,10 @@ import java.util.Map;
 public class GroupFragment extends Fragment {
 
     private FragmentGroupBinding binding;
-    private FileUtil fileUtil;
+    private ContactRepository repository;
     private GroupAdapter groupAdapter;
-    private List<Group> groups;
+    private List<Group> groups = new ArrayList<>();
+    private List<Contact> contacts = new ArrayList<>();
     // 用于跟踪删除按钮的矩形区域
     private Map<Integer, RectF> deleteButtonsMap = new HashMap<>();
     // 用于跟踪管理按钮的矩形区域
@@ -79,14 +85,19 @@ public class GroupFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        // 初始化文件工具类
-        fileUtil = new FileUtil(requireContext());
+        // 获取联系人仓库
+        repository = ContactRepository.getInstance(requireContext());
 
         // 设置浮动按钮点击事件
         binding.fabAddGroup.setOnClickListener(v -> showAddGroupDialog());
+        binding.fabQueryMembers.setOnClickListener(v -> showQueryMembersDialog());
 
-        // 加载数据并更新UI
-        loadDataAndUpdateUI();
+        // 观察联系人和分组快照，数据在后台加载，加载完成或发生修改时更新UI
+        repository.observeContacts().observe(getViewLifecycleOwner(), updated -> {
+            contacts = updated != null ? updated : new ArrayList<>();
+            loadDataAndUpdateUI();
+        });
+        repository.observeGroups().observe(getViewLifecycleOwner(), updated -> loadDataAndUpdateUI());
 
         // 设置滑动删除
         setupSwipeToDelete();
@@ -315,26 +326,11 @@ public class GroupFragment extends Fragment {
             int groupId = groupToDelete.getId();
 
             // 从内存列表中删除
-            groups.remove(position);                groupAdapter.notifyItemRemoved(position);            // 保存更新后的分组列表到文件
-            Group[] groupArray = groups.toArray(new Group[0]);
-            fileUtil.saveJSON(groupArray, "groups.json");
-
-            // 更新联系人的分组信息（从联系人的分组列表中移除该分组ID）
-            List<Contact> contacts = loadContacts();
-            boolean contactsUpdated = false;
-
-            for (Contact contact : contacts) {
-                List<Integer> contactGroupIds = contact.getGroupIds();
-                if (contactGroupIds != null && contactGroupIds.contains(groupId)) {
-                    contactGroupIds.remove(Integer.valueOf(groupId));
-                    contactsUpdated = true;
-                }            }            // 如果有联系人被更新，保存联系人数据
-            if (contactsUpdated) {
-                Contact[] contactArray = contacts.toArray(new Contact[0]);
-                fileUtil.saveJSON(contactArray, "contacts.json");
-            }
+            groups.remove(position);                groupAdapter.notifyItemRemoved(position);            // 由仓库删除分组并从联系人的分组列表中移除该分组ID
+            long undoToken = repository.deleteGroup(groupId);
 
-            Toast.makeText(requireContext(), "分组已删除", Toast.LENGTH_SHORT).show();
+            // 撤销时只恢复本次删除的分组及其成员，分组列表随仓库的通知刷新
+            UndoSnackbar.show(this, "分组已删除", undoToken);
             Log.d("GroupFragment", "分组已删除: " + groupToDelete.getName() + ", ID: " + groupId);
             
         } catch (Exception e) {
@@ -365,13 +361,8 @@ public class GroupFragment extends Fragment {
         // 加载所有联系人
         List<Contact> allContacts = loadContacts();
         
-        // 获取属于当前分组的联系人ID列表
-        List<Integer> groupMemberIds = new ArrayList<>();
-        for (Contact contact : allContacts) {
-            if (contact.getGroupIds() != null && contact.getGroupIds().contains(group.getId())) {
-                groupMemberIds.add(contact.getId());
-            }
-        }
+        // 从成员索引获取属于当前分组的联系人ID集合
+        RoaringIdSet groupMemberIds = repository.getGroupMembership().memberIds(group.getId());
 
         // 设置联系人列表
         recyclerContacts.setLayoutManager(new LinearLayoutManager(requireContext()));
@@ -405,7 +396,7 @@ public class GroupFragment extends Fragment {
         btnSave.setOnClickListener(v -> {
             String newGroupName = etGroupName.getText().toString().trim();
             if (!newGroupName.isEmpty()) {
-                List<Integer> selectedContactIds = adapter.getSelectedContactIds();
+                RoaringIdSet selectedContactIds = adapter.getSelectedContactIds();
                 updateGroupAndMembers(group, newGroupName, selectedContactIds, position);
                 dialog.dismiss();
                 closeItem(position);
@@ -422,74 +413,22 @@ public class GroupFragment extends Fragment {
      * 更新分组名称和成员
      * @param group 要更新的分组
      * @param newName 新的分组名称
-     * @param selectedContactIds 选中的联系人ID列表
+     * @param selectedContactIds 选中的联系人ID集合
      * @param position 分组在列表中的位置
      */
-    private void updateGroupAndMembers(Group group, String newName, List<Integer> selectedContactIds, int position) {
-        try {            // 更新内存中的分组名称
-            group.setName(newName);
-            groupAdapter.notifyItemChanged(position);
-
-            // 保存更新后的分组列表到文件
-            Group[] groupArray = groups.toArray(new Group[0]);
-            fileUtil.saveJSON(groupArray, "groups.json");
-
-            // 更新联系人的分组信息
-            List<Contact> contacts = loadContacts();
-            boolean contactsUpdated = false;
+    private void updateGroupAndMembers(Group group, String newName, RoaringIdSet selectedContactIds, int position) {
+        try {            // 由仓库更新分组名称，并只修改成员关系发生变化的联系人
+            long undoToken = repository.updateGroup(group.getId(), newName, selectedContactIds);
 
-            // 获取分组ID
-            int groupId = group.getId();
-
-            for (Contact contact : contacts) {
-                boolean isSelected = selectedContactIds.contains(contact.getId());
-                List<Integer> contactGroupIds = contact.getGroupIds();
-                
-                if (contactGroupIds == null) {
-                    contactGroupIds = new ArrayList<>();
-                    contact.setGroupIds(contactGroupIds);
-                }
-                
-                boolean containsGroup = contactGroupIds.contains(groupId);
-
-                if (isSelected && !containsGroup) {
-                    // 如果联系人被选中但不在分组中，添加到分组
-                    contactGroupIds.add(groupId);
-                    contactsUpdated = true;
-                } else if (!isSelected && containsGroup) {
-                    // 如果联系人未被选中但在分组中，从分组中移除
-                    contactGroupIds.remove(Integer.valueOf(groupId));
-                    contactsUpdated = true;
-                }
-            }            // 如果有联系人被更新，保存联系人数据
-            if (contactsUpdated) {
-                Contact[] contactArray = contacts.toArray(new Contact[0]);
-                fileUtil.saveJSON(contactArray, "contacts.json");
-            }
-
-            Toast.makeText(requireContext(), "分组已更新", Toast.LENGTH_SHORT).show();
+            UndoSnackbar.show(this, "分组已更新", undoToken);
             Log.d("GroupFragment", "分组已更新: " + newName + ", ID: " + group.getId() + 
-                    ", 成员数: " + selectedContactIds.size());
-            
-            // 刷新适配器数据，反映更新后的分组成员数量
-            loadDataAndUpdateUI();
+                    ", 成员数: " + selectedContactIds.cardinality());
         } catch (Exception e) {
             Log.e("GroupFragment", "更新分组失败", e);
             Toast.makeText(requireContext(), "更新分组失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
-    /**
-     * Fragment恢复可见状态时重新加载数据
-     */
-    @Override
-    public void onResume() {
-        super.onResume();
-        // 确保当联系人数据被修改后，分组视图也能反映最新变化
-        loadDataAndUpdateUI();
-        Log.d("GroupFragment", "onResume: 重新加载分组数据");
-    }
-
     /**
      * 显示添加分组对话框
      */
@@ -527,14 +466,8 @@ public class GroupFragment extends Fragment {
             Group newGroup = new Group(0, false, groupName);
             newGroup.generateNewId(requireContext());
 
-            // 读取现有分组并添加新分组
-            List<Group> groups = new ArrayList<>(loadGroups());
-            groups.add(newGroup);            // 保存到文件
-            Group[] groupArray = groups.toArray(new Group[0]);
-            fileUtil.saveJSON(groupArray, "groups.json");
-
-            // 刷新UI显示新的分组
-            loadDataAndUpdateUI();
+            // 提交到仓库，文件在后台写入
+            repository.saveGroup(newGroup);
 
             Toast.makeText(requireContext(), "分组 '" + groupName + "' 创建成功", Toast.LENGTH_SHORT).show();
             Log.d("GroupFragment", "新分组已创建: " + groupName + ", ID: " + newGroup.getId());
@@ -545,45 +478,105 @@ public class GroupFragment extends Fragment {
     }
 
     /**
-     * 加载数据并更新UI
+     * 显示多分组成员查询对话框
+     * 选择两个及以上分组，查询同时属于全部分组或属于任一分组的联系人
+     */
+    private void showQueryMembersDialog() {
+        List<Group> allGroups = repository.getPublishedSnapshot().getGroups();
+        if (allGroups.size() < 2) {
+            Toast.makeText(requireContext(), "至少需要两个分组", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String[] groupNames = new String[allGroups.size()];
+        boolean[] checkedItems = new boolean[allGroups.size()];
+        for (int i = 0; i < allGroups.size(); i++) {
+            groupNames[i] = allGroups.get(i).getName();
+        }
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle("查询分组成员")
+                .setMultiChoiceItems(groupNames, checkedItems, (dialog, which, isChecked) -> checkedItems[which] = isChecked)
+                .setPositiveButton("同时属于", (dialog, which) -> queryMembers(allGroups, checkedItems, true))
+                .setNeutralButton("属于任一", (dialog, which) -> queryMembers(allGroups, checkedItems, false))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    /**
+     * 按位求选中分组成员的交集或并集，并显示结果
+     * @param allGroups 对话框中列出的分组
+     * @param checkedItems 分组的选中状态
+     * @param intersect 为true时求交集，否则求并集
+     */
+    private void queryMembers(List<Group> allGroups, boolean[] checkedItems, boolean intersect) {
+        List<String> names = new ArrayList<>();
+        int[] groupIds = new int[allGroups.size()];
+        int selected = 0;
+        for (int i = 0; i < allGroups.size(); i++) {
+            if (checkedItems[i]) {
+                groupIds[selected++] = allGroups.get(i).getId();
+                names.add(allGroups.get(i).getName());
+            }
+        }
+        if (selected < 2) {
+            Toast.makeText(requireContext(), "请至少选择两个分组", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        groupIds = Arrays.copyOf(groupIds, selected);
+
+        // 成员关系和联系人取自同一版本
+        DataSnapshot snapshot = repository.getPublishedSnapshot();
+        GroupMembershipIndex.Snapshot membership = snapshot.getMembership();
+        RoaringIdSet memberIds = intersect ? membership.intersection(groupIds) : membership.union(groupIds);
+        List<Contact> members = snapshot.getContactsById(memberIds);
+        String[] memberNames = new String[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            memberNames[i] = members.get(i).getName();
+        }
+
+        String title = TextUtils.join(intersect ? " 且 " : " 或 ", names) + "（" + members.size() + "）";
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireContext())
+                .setTitle(title)
+                .setPositiveButton("关闭", null);
+        if (members.isEmpty()) {
+            builder.setMessage("没有符合条件的联系人");
+        } else {
+            builder.setItems(memberNames, null);
+        }
+        builder.show();
+        Log.d("GroupFragment", "分组成员查询: " + title);
+    }
+
+    /**
+     * 使用最新的快照更新UI
      */
     private void loadDataAndUpdateUI() {
-        // 加载数据
-        List<Contact> contacts = loadContacts();
-        groups = new ArrayList<>(loadGroups());
+        // 分组、成员数和展开的成员都取自同一版本，写入方发布新版本不会使列表前后不一致
+        DataSnapshot snapshot = repository.getPublishedSnapshot();
+        groups = new ArrayList<>(snapshot.getGroups());
 
         // 设置RecyclerView
         binding.recyclerGroups.setLayoutManager(new LinearLayoutManager(requireContext()));
-        groupAdapter = new GroupAdapter(groups, contacts);
+        groupAdapter = new GroupAdapter(groups, new GroupAdapter.MemberSource() {
+            @Override
+            public int memberCount(int groupId) {
+                return snapshot.getMembership().memberCount(groupId);
+            }
+
+            @Override
+            public List<Contact> members(int groupId) {
+                return snapshot.getGroupMembers(groupId);
+            }
+        });
         binding.recyclerGroups.setAdapter(groupAdapter);
     }
 
     /**
-     * 从JSON文件加载联系人数据
+     * 获取最近一次观察到的联系人快照
      * @return 联系人列表
      */
     private List<Contact> loadContacts() {
-        try {
-            Contact[] contacts = fileUtil.readFile("contacts.json", Contact[].class);
-            return Arrays.asList(contacts);
-        } catch (Exception e) {
-            Log.e("GroupFragment", "加载联系人失败", e);
-            return new ArrayList<>();
-        }
-    }
-
-    /**
-     * 从JSON文件加载分组数据
-     * @return 分组列表
-     */
-    private List<Group> loadGroups() {
-        try {
-            Group[] groups = fileUtil.readFile("groups.json", Group[].class);
-            return Arrays.asList(groups);
-        } catch (Exception e) {
-            Log.e("GroupFragment", "加载分组失败", e);
-            return new ArrayList<>();
-        }
+        return contacts;
     }
 
     /**
@@ -12,13 +12,13 @@ import androidx.fragment.app.Fragment;
 import com.example.contacthub.R;
 import com.example.contacthub.model.Contact;
 import com.example.contacthub.ui.widget.ContactCardView;
-import com.example.contacthub.utils.FileUtil;
+import com.example.contacthub.data.ContactRepository;
 
 public class MyFragment extends Fragment {
 
     private static final String TAG = "MyFragment";
     private ContactCardView contactCardView;
-    private FileUtil fileUtil;
+    private ContactRepository repository;
 
     /**
      * 创建Fragment视图
@@ -33,7 +33,7 @@ public class MyFragment extends Fragment {
                              Bundle savedInstanceState) {
         View root = inflater.inflate(R.layout.fragment_my, container, false);
 
-        fileUtil = new FileUtil(getContext());
+        repository = ContactRepository.getInstance(requireContext());
 
         // 获取ContactCardView引用并保存
         contactCardView = root.findViewById(R.id.contact_card_view);
@@ -41,8 +41,8 @@ public class MyFragment extends Fragment {
         // 设置为"我的名片"标记
         contactCardView.setMyCard(true);
 
-        // 加载并显示我的名片
-        loadMyCard();
+        // 观察我的名片，数据在后台加载，加载完成或名片被修改时更新视图
+        repository.observeMyCard().observe(getViewLifecycleOwner(), this::showMyCard);
 
         contactCardView.findViewById(R.id.btn_call).setVisibility(View.GONE);
         contactCardView.findViewById(R.id.btn_message).setVisibility(View.GONE);
@@ -62,32 +62,18 @@ public class MyFragment extends Fragment {
     public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
-        // 先尝试让ContactCardView处理结果
+        // 先尝试让ContactCardView处理结果，名片的更新由观察者负责显示
         contactCardView.handleActivityResult(requestCode, resultCode, data);
 
-        // 无论如何都重新加载我的名片数据以确保显示最新内容
-        loadMyCard();
-
-        Log.d(TAG, "已刷新我的名片数据");
+        Log.d(TAG, "名片编辑返回: " + resultCode);
     }
 
     /**
-     * Fragment恢复可见时的处理
-     * 确保显示最新的名片数据
-     */
-    @Override
-    public void onResume() {
-        super.onResume();
-        // 页面恢复时也刷新数据
-        loadMyCard();
-    }
-
-    /**
-     * 加载个人名片数据
-     * 从本地存储读取my.json并显示到视图中
+     * 显示个人名片数据
+     * 
+     * @param contact 仓库发出的个人名片，没有名片时为null
      */
-    private void loadMyCard() {
-        Contact contact = fileUtil.readFile("my.json", Contact.class);
+    private void showMyCard(Contact contact) {
         if (contact != null) {
             contactCardView.setContact(contact);
         }
@@ -1,6 +1,7 @@
 package com.example.contacthub.ui.view.fragment;
 
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -19,12 +20,14 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.PhotoStore;
+import com.example.contacthub.data.StorageEngine;
 import com.example.contacthub.databinding.FragmentSettingBinding;
 import com.example.contacthub.model.Contact;
+import com.example.contacthub.ui.widget.UndoSnackbar;
+import com.example.contacthub.utils.AppExecutors;
 import com.example.contacthub.utils.ContactIOUtil;
-import com.example.contacthub.utils.FileUtil;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.BufferedReader;
 import java.io.FileOutputStream;
@@ -32,7 +35,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -123,6 +126,52 @@ public class SettingFragment extends Fragment {
         binding.buttonExportContacts.setOnClickListener(v -> showExportOptions());
         binding.buttonContactDisplaySettings.setOnClickListener(v -> showContactDisplaySettings());
         binding.buttonBatchDeleteContacts.setOnClickListener(v -> showBatchDeleteContacts());
+        binding.buttonStorageEngine.setOnClickListener(v -> showStorageEngineOptions());
+        binding.buttonTrash.setOnClickListener(v -> showTrash());
+        binding.buttonUndo.setOnClickListener(v -> undoLastOperation(false));
+        binding.buttonRedo.setOnClickListener(v -> undoLastOperation(true));
+
+        // 任何修改、撤销和重做都会刷新联系人或分组，随之更新撤销和重做按钮的状态
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        repository.observeContacts().observe(getViewLifecycleOwner(), contacts -> updateUndoButtons());
+        repository.observeGroups().observe(getViewLifecycleOwner(), groups -> updateUndoButtons());
+    }
+
+    /**
+     * 根据仓库中是否有可撤销、可重做的操作更新按钮状态
+     */
+    private void updateUndoButtons() {
+        if (binding == null) {
+            return;
+        }
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        boolean canUndo = repository.canUndo();
+        boolean canRedo = repository.canRedo();
+        binding.buttonUndo.setEnabled(canUndo);
+        binding.buttonUndo.setAlpha(canUndo ? 1f : 0.4f);
+        binding.buttonRedo.setEnabled(canRedo);
+        binding.buttonRedo.setAlpha(canRedo ? 1f : 0.4f);
+    }
+
+    /**
+     * 撤销最近一次操作或重做最近一次被撤销的操作
+     * 在后台线程执行，完成后提示操作名称
+     *
+     * @param redo 为true时重做，否则撤销
+     */
+    private void undoLastOperation(boolean redo) {
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        String action = redo ? "重做" : "撤销";
+        AppExecutors.runAsync(() -> redo ? repository.redo() : repository.undo()).observe(getViewLifecycleOwner(), result -> {
+            if (!result.isSuccess()) {
+                showToast(action + "失败: " + result.getError().getMessage());
+            } else if (result.getValue() == null) {
+                showToast("没有可" + action + "的操作");
+            } else {
+                showToast("已" + action + result.getValue());
+            }
+            updateUndoButtons();
+        });
     }
 
     /**
@@ -152,57 +201,63 @@ public class SettingFragment extends Fragment {
      * @param format 导出格式，"csv"或"vcard"
      */
     private void exportContacts(String format) {
-        FileUtil fileUtil = new FileUtil(requireContext());
-        String contactsJson = fileUtil.readFile("contacts.json");
-        if (contactsJson == null) {
-            showToast("无法读取联系人数据");
-            return;
-        }
-
         String exportFileExtension;
         String exportMimeType;
-        try {
-            if ("csv".equals(format)) {
-                fileContent = ContactIOUtil.convertContactsToCSV(contactsJson);
-                exportMimeType = "text/csv";
-                exportFileExtension = ".csv";
-            } else {
-                fileContent = ContactIOUtil.convertContactsToVCard(contactsJson);
-                exportMimeType = "text/x-vcard";
-                exportFileExtension = ".vcf";
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "转换联系人失败", e);
-            showToast("转换联系人失败: " + e.getMessage());
-            return;
+        if ("csv".equals(format)) {
+            exportMimeType = "text/csv";
+            exportFileExtension = ".csv";
+        } else {
+            exportMimeType = "text/x-vcard";
+            exportFileExtension = ".vcf";
         }
 
-        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
-        intent.addCategory(Intent.CATEGORY_OPENABLE);
-        intent.setType(exportMimeType);
-        intent.putExtra(Intent.EXTRA_TITLE, "contacts" + exportFileExtension);
+        // 读取联系人和格式转换在后台线程执行，完成后再打开保存位置选择界面
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        AppExecutors.runAsync(() -> {
+            List<Contact> contacts = repository.getContacts();
+            return "csv".equals(format)
+                    ? ContactIOUtil.convertContactsToCSV(contacts)
+                    : ContactIOUtil.convertContactsToVCard(contacts, repository.getPhotoStore());
+        }).observe(this, result -> {
+            if (!result.isSuccess()) {
+                showToast("转换联系人失败: " + result.getError().getMessage());
+                return;
+            }
+            fileContent = result.getValue();
 
-        saveFileLauncher.launch(intent);
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType(exportMimeType);
+            intent.putExtra(Intent.EXTRA_TITLE, "contacts" + exportFileExtension);
+
+            saveFileLauncher.launch(intent);
+        });
     }
 
     /**
      * 将内容写入指定URI
-     * 用于完成导出联系人的文件写入
+     * 用于完成导出联系人的文件写入，写入在后台线程执行
      * 
      * @param uri 目标文件URI
      */
     private void writeContentToUri(Uri uri) {
-        try {
-            OutputStream outputStream = requireContext().getContentResolver().openOutputStream(uri);
-            if (outputStream != null) {
-                outputStream.write(fileContent.getBytes());
-                outputStream.close();
+        String content = fileContent;
+        ContentResolver resolver = requireContext().getContentResolver();
+        AppExecutors.runAsync(() -> {
+            try (OutputStream outputStream = resolver.openOutputStream(uri)) {
+                if (outputStream == null) {
+                    throw new IOException("无法打开目标文件");
+                }
+                outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            return uri;
+        }).observe(this, result -> {
+            if (result.isSuccess()) {
                 showToast("联系人导出成功: " + uri.getPath());
+            } else {
+                showToast("导出联系人失败: " + result.getError().getMessage());
             }
-        } catch (IOException e) {
-            Log.e(TAG, "导出联系人失败", e);
-            showToast("导出联系人失败: " + e.getMessage());
-        }
+        });
     }
 
     /**
@@ -216,78 +271,93 @@ public class SettingFragment extends Fragment {
 
     /**
      * 从URI导入联系人
-     * 读取并解析不同格式的联系人文件
+     * 文件读取、解析和保存都在后台线程执行
      * 
      * @param uri 联系人文件的URI
      */
     private void importContactsFromUri(Uri uri) {
-        try {
-            String fileName = getFileNameFromUri(uri);
-            String mimeType = requireContext().getContentResolver().getType(uri);
-            String fileContent = readTextFromUri(uri);
-
-            if (fileContent.isEmpty()) {
-                showToast("文件为空或无法读取");
+        ContentResolver resolver = requireContext().getContentResolver();
+        PhotoStore photoStore = ContactRepository.getInstance(requireContext()).getPhotoStore();
+        AppExecutors.runAsync(() -> parseContactsFromUri(resolver, photoStore, uri)).observe(this, result -> {
+            if (!result.isSuccess()) {
+                showToast("导入失败: " + result.getError().getMessage());
                 return;
             }
+            List<Contact> contacts = result.getValue();
+            if (contacts.isEmpty()) {
+                showToast("未找到有效联系人数据");
+                return;
+            }
+            saveImportedContacts(contacts);
+        });
+    }
+
+    /**
+     * 读取并解析不同格式的联系人文件
+     * 在后台线程调用
+     * 
+     * @param resolver 内容解析器
+     * @param photoStore 头像存储，vCard中的照片写入其中
+     * @param uri 联系人文件的URI
+     * @return 解析出的联系人列表
+     * @throws IOException 文件为空、无法读取或格式无法识别时抛出
+     */
+    private static List<Contact> parseContactsFromUri(ContentResolver resolver, PhotoStore photoStore, Uri uri) throws IOException {
+        String fileName = getFileNameFromUri(resolver, uri);
+        String mimeType = resolver.getType(uri);
+        String fileContent = readTextFromUri(resolver, uri);
 
-            List<Contact> contacts;
+        if (fileContent.isEmpty()) {
+            throw new IOException("文件为空或无法读取");
+        }
 
-            if (fileName.toLowerCase().endsWith(".csv") ||
-                (mimeType != null && (
-                    mimeType.contains("csv") ||
-                    mimeType.contains("comma") ||
-                    mimeType.equals("text/plain")))) {
+        List<Contact> contacts;
 
-                if (mimeType != null && mimeType.equals("text/plain") &&
-                    !fileContent.contains(",") && !fileName.toLowerCase().endsWith(".csv")) {
-                    contacts = ContactIOUtil.parseContactsFromVCard(fileContent);
-                } else {
-                    contacts = ContactIOUtil.parseContactsFromCSV(fileContent);
-                }
+        if (fileName.toLowerCase().endsWith(".csv") ||
+            (mimeType != null && (
+                mimeType.contains("csv") ||
+                mimeType.contains("comma") ||
+                mimeType.equals("text/plain")))) {
 
-            } else if (fileName.toLowerCase().endsWith(".vcf") ||
-                      (mimeType != null && (
-                          mimeType.contains("vcard") ||
-                          mimeType.contains("outlook")))) {
-                contacts = ContactIOUtil.parseContactsFromVCard(fileContent);
+            if (mimeType != null && mimeType.equals("text/plain") &&
+                !fileContent.contains(",") && !fileName.toLowerCase().endsWith(".csv")) {
+                contacts = ContactIOUtil.parseContactsFromVCard(fileContent, photoStore);
             } else {
-                // 无法确定文件类型，尝试检测内容
-                if (fileContent.startsWith("BEGIN:VCARD")) {
-                    contacts = ContactIOUtil.parseContactsFromVCard(fileContent);
-                } else if (fileContent.contains(",") &&
-                          (fileContent.toLowerCase().contains("姓名") ||
-                           fileContent.contains("name"))) {
-                    contacts = ContactIOUtil.parseContactsFromCSV(fileContent);
-                } else {
-                    showToast("无法识别的文件格式，请选择CSV或vCard文件");
-                    return;
-                }
+                contacts = ContactIOUtil.parseContactsFromCSV(fileContent);
             }
 
-            if (contacts.isEmpty()) {
-                showToast("未找到有效联系人数据");
-                return;
+        } else if (fileName.toLowerCase().endsWith(".vcf") ||
+                  (mimeType != null && (
+                      mimeType.contains("vcard") ||
+                      mimeType.contains("outlook")))) {
+            contacts = ContactIOUtil.parseContactsFromVCard(fileContent, photoStore);
+        } else {
+            // 无法确定文件类型，尝试检测内容
+            if (fileContent.startsWith("BEGIN:VCARD")) {
+                contacts = ContactIOUtil.parseContactsFromVCard(fileContent, photoStore);
+            } else if (fileContent.contains(",") &&
+                      (fileContent.toLowerCase().contains("姓名") ||
+                       fileContent.contains("name"))) {
+                contacts = ContactIOUtil.parseContactsFromCSV(fileContent);
+            } else {
+                throw new IOException("无法识别的文件格式，请选择CSV或vCard文件");
             }
-
-            saveImportedContacts(contacts);
-
-        } catch (Exception e) {
-            Log.e(TAG, "导入联系人失败", e);
-            showToast("导入失败: " + e.getMessage());
         }
+
+        return contacts;
     }
 
     /**
      * 从URI获取文件名
      * 
+     * @param resolver 内容解析器
      * @param uri 文件URI
      * @return 文件名
      */
-    private String getFileNameFromUri(Uri uri) {
+    private static String getFileNameFromUri(ContentResolver resolver, Uri uri) {
         String result = null;
         if (uri.getScheme().equals("content")) {
-            try (Cursor cursor = requireContext().getContentResolver().query(uri, null, null, null, null)) {
+            try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
                 if (cursor != null && cursor.moveToFirst()) {
                     int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
                     if (nameIndex != -1) {
@@ -311,13 +381,14 @@ public class SettingFragment extends Fragment {
     /**
      * 从URI读取文本内容
      * 
+     * @param resolver 内容解析器
      * @param uri 文件URI
      * @return 文件内容字符串
      * @throws IOException 读取失败时抛出异常
      */
-    private String readTextFromUri(Uri uri) throws IOException {
+    private static String readTextFromUri(ContentResolver resolver, Uri uri) throws IOException {
         StringBuilder stringBuilder = new StringBuilder();
-        try (InputStream inputStream = requireContext().getContentResolver().openInputStream(uri);
+        try (InputStream inputStream = resolver.openInputStream(uri);
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -329,41 +400,29 @@ public class SettingFragment extends Fragment {
 
     /**
      * 保存导入的联系人
-     * 合并现有联系人列表与新导入的联系人
+     * 新导入的联系人在后台线程一次性提交到仓库，以一批变更记录追加到联系人日志；
+     * 整批导入是一次可撤销的操作
      * 
      * @param newContacts 新导入的联系人列表
      */
     private void saveImportedContacts(List<Contact> newContacts) {
-        FileUtil fileUtil = new FileUtil(requireContext());
-        String contactsJson = fileUtil.readFile("contacts.json");
-
-        List<Contact> existingContacts = new ArrayList<>();
-        if (contactsJson != null && !contactsJson.isEmpty()) {
-            Type contactListType = new TypeToken<List<Contact>>(){}.getType();
-            existingContacts = new Gson().fromJson(contactsJson, contactListType);
-        }
-
-        // 为新联系人生成ID并添加拼音
-        int maxId = 0;
-        for (Contact contact : existingContacts) {
-            if (contact.getId() > maxId) {
-                maxId = contact.getId();
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        AppExecutors.runAsync(() -> {
+            // 一次性预留一段连续ID，为新联系人分配ID并添加拼音
+            int nextId = repository.allocateContactIds(newContacts.size());
+            for (Contact contact : newContacts) {
+                contact.setId(nextId++);
+                contact.generatePinyin();
             }
-        }
-
-        for (Contact contact : newContacts) {
-            contact.setId(++maxId);
-            contact.generatePinyin();
-            existingContacts.add(contact);
-        }        // 保存合并后的联系人列表
-        try {
-            Contact[] contactArray = existingContacts.toArray(new Contact[0]);
-            fileUtil.saveJSON(contactArray, "contacts.json");
-            showToast("成功导入 " + newContacts.size() + " 个联系人");
-        } catch (Exception e) {
-            Log.e(TAG, "保存导入的联系人失败", e);
-            showToast("保存联系人失败: " + e.getMessage());
-        }
+            return repository.importContacts(newContacts);
+        }).observe(this, result -> {
+            if (!result.isSuccess()) {
+                Log.e(TAG, "保存导入的联系人失败", result.getError());
+                showToast("保存联系人失败: " + result.getError().getMessage());
+                return;
+            }
+            UndoSnackbar.show(this, "成功导入 " + newContacts.size() + " 个联系人", result.getValue());
+        });
     }
 
     /**
@@ -399,22 +458,73 @@ public class SettingFragment extends Fragment {
         builder.create().show();
     }
 
+    /**
+     * 显示存储引擎选择对话框
+     * 切换时会把现有数据迁移到新的存储引擎
+     */
+    private void showStorageEngineOptions() {
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        StorageEngine[] engines = StorageEngine.values();
+        String[] labels = new String[engines.length];
+        for (int i = 0; i < engines.length; i++) {
+            labels[i] = engines[i].getLabel();
+        }
+        int current = repository.getStorageEngine().ordinal();
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle("存储引擎")
+                .setSingleChoiceItems(labels, current, (dialog, which) -> {
+                    dialog.dismiss();
+                    if (which != current) {
+                        switchStorageEngine(repository, engines[which]);
+                    }
+                })
+                .setNegativeButton("取消", (dialog, id) -> dialog.dismiss())
+                .show();
+    }
+
+    /**
+     * 在后台迁移数据并切换存储引擎
+     *
+     * @param repository 联系人仓库
+     * @param engine 目标存储引擎
+     */
+    private void switchStorageEngine(ContactRepository repository, StorageEngine engine) {
+        showToast("正在迁移数据到" + engine.getLabel());
+        AppExecutors.runAsync(() -> {
+            repository.switchStorageEngine(engine);
+            return engine;
+        }).observe(getViewLifecycleOwner(), result -> {
+            if (result.isSuccess()) {
+                showToast("已切换到" + engine.getLabel());
+            } else {
+                showToast("切换存储引擎失败: " + result.getError().getMessage());
+            }
+        });
+    }
+
     /**
      * 显示批量删除联系人对话框
      * 允许用户选择多个联系人进行删除
      */
     private void showBatchDeleteContacts() {
-        FileUtil fileUtil = new FileUtil(requireContext());
-        String contactsJson = fileUtil.readFile("contacts.json");
-
-        if (contactsJson == null || contactsJson.isEmpty()) {
-            showToast("无法读取联系人数据");
-            return;
-        }
-
-        Type contactListType = new TypeToken<List<Contact>>(){}.getType();
-        List<Contact> contacts = new Gson().fromJson(contactsJson, contactListType);
+        // 联系人尚未加载时在后台加载，完成后再显示对话框
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        AppExecutors.runAsync(repository::getContacts).observe(getViewLifecycleOwner(), result -> {
+            if (result.isSuccess()) {
+                showBatchDeleteDialog(result.getValue());
+            } else {
+                showToast("加载联系人失败: " + result.getError().getMessage());
+            }
+        });
+    }
 
+    /**
+     * 显示选择待删除联系人的对话框
+     * 
+     * @param contacts 所有联系人列表
+     */
+    private void showBatchDeleteDialog(List<Contact> contacts) {
         if (contacts.isEmpty()) {
             showToast("没有联系人可删除");
             return;
@@ -441,6 +551,89 @@ public class SettingFragment extends Fragment {
         builder.create().show();
     }
     
+    /**
+     * 显示回收站
+     * 回收站中的联系人在后台读取，读取完成后显示对话框
+     */
+    private void showTrash() {
+        ContactRepository repository = ContactRepository.getInstance(requireContext());
+        AppExecutors.runAsync(repository::getTrashedContacts).observe(getViewLifecycleOwner(), result -> {
+            if (result.isSuccess()) {
+                showTrashDialog(result.getValue());
+            } else {
+                showToast("加载回收站失败: " + result.getError().getMessage());
+            }
+        });
+    }
+
+    /**
+     * 显示回收站对话框，可以恢复选中的联系人或清空回收站
+     *
+     * @param trashed 回收站中的联系人，最近删除的在前
+     */
+    private void showTrashDialog(List<Contact> trashed) {
+        if (trashed.isEmpty()) {
+            showToast("回收站为空");
+            return;
+        }
+
+        String[] contactNames = new String[trashed.size()];
+        boolean[] checkedItems = new boolean[trashed.size()];
+        for (int i = 0; i < trashed.size(); i++) {
+            contactNames[i] = trashed.get(i).getName();
+        }
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle("回收站（" + trashed.size() + "）")
+                .setMultiChoiceItems(contactNames, checkedItems, (dialog, which, isChecked) -> {
+                    checkedItems[which] = isChecked;
+                })
+                .setPositiveButton("恢复", (dialog, id) -> {
+                    List<Integer> restoredIds = new ArrayList<>();
+                    for (int i = 0; i < trashed.size(); i++) {
+                        if (checkedItems[i]) {
+                            restoredIds.add(trashed.get(i).getId());
+                        }
+                    }
+                    if (restoredIds.isEmpty()) {
+                        showToast("未选择任何联系人");
+                        return;
+                    }
+                    try {
+                        ContactRepository.getInstance(requireContext()).restoreContacts(restoredIds);
+                        showToast("已恢复 " + restoredIds.size() + " 个联系人");
+                    } catch (Exception e) {
+                        Log.e(TAG, "恢复联系人失败", e);
+                        showToast("操作失败: " + e.getMessage());
+                    }
+                })
+                .setNeutralButton("清空回收站", (dialog, id) -> confirmEmptyTrash(trashed.size()))
+                .setNegativeButton("取消", (dialog, id) -> dialog.dismiss())
+                .show();
+    }
+
+    /**
+     * 确认后清空回收站，其中的联系人被物理删除，无法撤销
+     *
+     * @param count 回收站中的联系人数量
+     */
+    private void confirmEmptyTrash(int count) {
+        new AlertDialog.Builder(requireContext())
+                .setTitle("清空回收站")
+                .setMessage("将永久删除回收站中的 " + count + " 个联系人，此操作无法撤销。")
+                .setPositiveButton("清空", (dialog, id) -> {
+                    try {
+                        ContactRepository.getInstance(requireContext()).emptyTrash();
+                        showToast("回收站已清空");
+                    } catch (Exception e) {
+                        Log.e(TAG, "清空回收站失败", e);
+                        showToast("操作失败: " + e.getMessage());
+                    }
+                })
+                .setNegativeButton("取消", (dialog, id) -> dialog.dismiss())
+                .show();
+    }
+
     /**
      * 删除选中的联系人
      * 二次确认后执行删除操作
@@ -451,27 +644,25 @@ public class SettingFragment extends Fragment {
     private void deleteSelectedContacts(List<Contact> contacts, boolean[] checkedItems) {
         AlertDialog.Builder confirmBuilder = new AlertDialog.Builder(requireContext());
         confirmBuilder.setTitle("确认删除")
-                      .setMessage("确定要删除选中的联系人吗？此操作不可撤销。")
+                      .setMessage("确定要删除选中的联系人吗？删除后可以立即撤销。")
                       .setPositiveButton("确定", (dialog, which) -> {
-                          List<Contact> remainingContacts = new ArrayList<>();
-                          int deleteCount = 0;
+                          List<Integer> deletedIds = new ArrayList<>();
                           
                           for (int i = 0; i < contacts.size(); i++) {
-                              if (!checkedItems[i]) {
-                                  remainingContacts.add(contacts.get(i));
-                              } else {
-                                  deleteCount++;
+                              if (checkedItems[i]) {
+                                  deletedIds.add(contacts.get(i).getId());
                               }
                           }
+                          int deleteCount = deletedIds.size();
                             if (deleteCount == 0) {
                               showToast("未选择任何联系人");
                               return;
                           }
                             try {
-                              FileUtil fileUtil = new FileUtil(requireContext());
-                              Contact[] contactArray = remainingContacts.toArray(new Contact[0]);
-                              fileUtil.saveJSON(contactArray, "contacts.json");
-                              showToast("成功删除 " + deleteCount + " 个联系人");
+                              // 只记录被删除联系人的墓碑，撤销时只撤销本次删除
+                              ContactRepository repository = ContactRepository.getInstance(requireContext());
+                              long undoToken = repository.deleteContacts(deletedIds);
+                              UndoSnackbar.show(this, "成功删除 " + deleteCount + " 个联系人", undoToken);
                           } catch (Exception e) {
                               Log.e(TAG, "保存联系人失败", e);
                               showToast("操作失败: " + e.getMessage());
@@ -21,12 +21,20 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewTreeLifecycleOwner;
 
 import com.example.contacthub.ui.view.contactDetail.ContactEditActivity;
 import com.example.contacthub.R;
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.data.PhotoStore;
 import com.example.contacthub.model.Contact;
+import com.example.contacthub.utils.AppExecutors;
 import com.example.contacthub.utils.PhotoUtil;
 import com.example.contacthub.utils.QRCodeUtil;
+import com.example.contacthub.utils.TaskResult;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.imageview.ShapeableImageView;
@@ -38,6 +46,7 @@ import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
 /**
  * 联系人卡片视图，显示联系人详细信息并提供交互功能
@@ -176,17 +185,17 @@ public class ContactCardView extends FrameLayout {
         updateFieldVisibility(layoutPostalCode, tvPostalCode, currentContact.getPostalCode());
         updateFieldVisibility(layoutNotes, tvNotes, currentContact.getNotes());
 
-        // 更新头像
-        String photoBase64 = currentContact.getPhoto();
-        if (photoBase64 != null && !photoBase64.isEmpty()) {
-            Bitmap avatarBitmap = PhotoUtil.base64ToBitmap(photoBase64);
-            if (avatarBitmap != null) {
-                contactAvatar.setImageBitmap(avatarBitmap);
-            } else {
-                contactAvatar.setImageResource(R.drawable.ic_person);
-            }
-        } else {
-            contactAvatar.setImageResource(R.drawable.ic_person);
+        // 更新头像，图片读取和解码在后台线程执行
+        contactAvatar.setImageResource(R.drawable.ic_person);
+        if (hasPhoto(currentContact)) {
+            Contact requested = currentContact;
+            PhotoStore photoStore = ContactRepository.getInstance(getContext()).getPhotoStore();
+            runInBackground(() -> photoStore.loadBitmap(requested), result -> {
+                // 解码期间联系人已切换时丢弃旧结果
+                if (requested == currentContact && result.isSuccess() && result.getValue() != null) {
+                    contactAvatar.setImageBitmap(result.getValue());
+                }
+            });
         }
     }
 
@@ -427,17 +436,46 @@ public class ContactCardView extends FrameLayout {
      * 生成联系人二维码并显示在对话框中
      */
     private void generateAndShowQRCode() {
-        try {
-            Bitmap qrCodeBitmap = qrCodeUtil.generateContactQRCode(currentContact, 600);
-            if (qrCodeBitmap != null) {
-                showQRCodeDialog(qrCodeBitmap);
+        Contact contact = currentContact;
+        // 二维码编码和位图生成在后台线程执行
+        runInBackground(() -> qrCodeUtil.generateContactQRCode(contact, 600), result -> {
+            if (!result.isSuccess()) {
+                Toast.makeText(getContext(), "生成联系人信息失败: " + result.getError().getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "生成联系人二维码失败", result.getError());
+            } else if (result.getValue() != null) {
+                showQRCodeDialog(result.getValue());
             } else {
                 Toast.makeText(getContext(), "生成二维码失败", Toast.LENGTH_SHORT).show();
             }
-        } catch (Exception e) {
-            Toast.makeText(getContext(), "生成联系人信息失败: " + e.getMessage(),
-                    Toast.LENGTH_SHORT).show();
-            Log.e(TAG, "生成联系人二维码失败", e);
+        });
+    }
+
+    /**
+     * 判断联系人是否设置了头像
+     * 
+     * @param contact 联系人
+     * @return 有头像引用或旧版内联头像时返回true
+     */
+    private static boolean hasPhoto(Contact contact) {
+        return (contact.getPhotoRef() != null && !contact.getPhotoRef().isEmpty())
+                || (contact.getPhoto() != null && !contact.getPhoto().isEmpty());
+    }
+
+    /**
+     * 在后台线程执行任务，结果按所在界面的生命周期投递到主线程
+     * 
+     * @param task 后台任务
+     * @param callback 主线程上的结果回调
+     * @param <T> 结果类型
+     */
+    private <T> void runInBackground(Callable<T> task, Observer<TaskResult<T>> callback) {
+        LiveData<TaskResult<T>> result = AppExecutors.runAsync(task);
+        LifecycleOwner owner = ViewTreeLifecycleOwner.get(this);
+        if (owner != null) {
+            result.observe(owner, callback);
+        } else {
+            result.observeForever(callback);
         }
     }
 
@@ -478,11 +516,22 @@ public class ContactCardView extends FrameLayout {
         String fileName = "联系人_" + currentContact.getName() + "_"
                 + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".png";
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            saveImageWithMediaStore(bitmap, fileName);
-        } else {
-            saveImageToLegacyStorage(bitmap, fileName);
-        }
+        // PNG压缩和文件写入在后台线程执行
+        runInBackground(() -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                saveImageWithMediaStore(bitmap, fileName);
+            } else {
+                saveImageToLegacyStorage(bitmap, fileName);
+            }
+            return fileName;
+        }, result -> {
+            if (result.isSuccess()) {
+                Toast.makeText(getContext(), "二维码已保存到相册", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(getContext(), "保存失败: " + result.getError().getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "保存二维码失败", result.getError());
+            }
+        });
     }
 
     /**
@@ -490,22 +539,18 @@ public class ContactCardView extends FrameLayout {
      * 
      * @param bitmap 要保存的位图
      * @param fileName 文件名
+     * @throws IOException 创建或写入文件失败时抛出
      */
-    private void saveImageWithMediaStore(Bitmap bitmap, String fileName) {
+    private void saveImageWithMediaStore(Bitmap bitmap, String fileName) throws IOException {
         ContentValues values = new ContentValues();
         values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
         values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");
         values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/ContactHub");        Uri uri = getContext().getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-        if (uri != null) {
-            try (OutputStream out = getContext().getContentResolver().openOutputStream(uri)) {
-                PhotoUtil.saveBitmapToStream(bitmap, out);
-                Toast.makeText(getContext(), "二维码已保存到相册", Toast.LENGTH_SHORT).show();
-            } catch (IOException e) {
-                Toast.makeText(getContext(), "保存失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                Log.e(TAG, "保存二维码失败", e);
-            }
-        } else {
-            Toast.makeText(getContext(), "无法创建文件", Toast.LENGTH_SHORT).show();
+        if (uri == null) {
+            throw new IOException("无法创建文件");
+        }
+        try (OutputStream out = getContext().getContentResolver().openOutputStream(uri)) {
+            PhotoUtil.saveBitmapToStream(bitmap, out);
         }
     }
 
@@ -514,29 +559,24 @@ public class ContactCardView extends FrameLayout {
      * 
      * @param bitmap 要保存的位图
      * @param fileName 文件名
+     * @throws IOException 写入文件失败时抛出
      */
-    private void saveImageToLegacyStorage(Bitmap bitmap, String fileName) {
-        try {
-            File directory = new File(Environment.getExternalStoragePublicDirectory(
-                    Environment.DIRECTORY_PICTURES), "ContactHub");
-
-            if (!directory.exists()) {
-                directory.mkdirs();
-            }            File file = new File(directory, fileName);
-            FileOutputStream out = new FileOutputStream(file);
+    private void saveImageToLegacyStorage(Bitmap bitmap, String fileName) throws IOException {
+        File directory = new File(Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_PICTURES), "ContactHub");
+
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        File file = new File(directory, fileName);
+        try (FileOutputStream out = new FileOutputStream(file)) {
             PhotoUtil.saveBitmapToStream(bitmap, out);
             out.flush();
-            out.close();
-
-            // 通知媒体扫描器扫描新图片
-            Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-            mediaScanIntent.setData(Uri.fromFile(file));
-            getContext().sendBroadcast(mediaScanIntent);
-
-            Toast.makeText(getContext(), "二维码已保存到相册", Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
-            Toast.makeText(getContext(), "保存失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            Log.e(TAG, "保存二维码失败", e);
         }
+
+        // 通知媒体扫描器扫描新图片
+        Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
+        mediaScanIntent.setData(Uri.fromFile(file));
+        getContext().sendBroadcast(mediaScanIntent);
     }
 }
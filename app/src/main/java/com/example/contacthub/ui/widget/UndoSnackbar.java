@@ -0,0 +1,82 @@
+package com.example.contacthub.ui.widget;
+
+import android.util.Log;
+import android.view.View;
+
+import androidx.fragment.app.Fragment;
+
+import com.example.contacthub.data.ContactRepository;
+import com.example.contacthub.utils.AppExecutors;
+import com.google.android.material.snackbar.Snackbar;
+
+/**
+ * 带撤销操作的提示条
+ * 撤销只针对提示条对应的那一次操作（按仓库返回的撤销标识匹配），之后已有其他修改时不会撤销别的操作。
+ * 撤销和重做在后台线程执行，撤销完成后显示可重做该操作的提示条
+ */
+public final class UndoSnackbar {
+    private static final String TAG = "UndoSnackbar";
+
+    private UndoSnackbar() {
+    }
+
+    /**
+     * 显示操作结果，操作产生了撤销记录时带撤销按钮
+     *
+     * @param fragment 所在的Fragment，提示条显示在其视图上
+     * @param message 提示内容
+     * @param token 操作返回的撤销标识
+     */
+    public static void show(Fragment fragment, String message, long token) {
+        View view = fragment.getView();
+        if (view == null) {
+            return;
+        }
+        Snackbar snackbar = Snackbar.make(view, message, Snackbar.LENGTH_LONG);
+        if (token != ContactRepository.NO_UNDO) {
+            snackbar.setAction("撤销", v -> undo(fragment, token));
+        }
+        snackbar.show();
+    }
+
+    private static void undo(Fragment fragment, long token) {
+        ContactRepository repository = ContactRepository.getInstance(fragment.requireContext());
+        AppExecutors.runAsync(() -> repository.undo(token)).observe(fragment.getViewLifecycleOwner(), result -> {
+            View view = fragment.getView();
+            if (view == null) {
+                return;
+            }
+            if (!result.isSuccess()) {
+                Snackbar.make(view, "撤销失败: " + result.getError().getMessage(), Snackbar.LENGTH_SHORT).show();
+                return;
+            }
+            if (result.getValue() == null) {
+                Snackbar.make(view, "之后已有其他修改，无法撤销", Snackbar.LENGTH_SHORT).show();
+                return;
+            }
+            Log.d(TAG, "已撤销: " + result.getValue());
+            Snackbar.make(view, "已撤销" + result.getValue(), Snackbar.LENGTH_LONG)
+                    .setAction("重做", v -> redo(fragment, token))
+                    .show();
+        });
+    }
+
+    private static void redo(Fragment fragment, long token) {
+        ContactRepository repository = ContactRepository.getInstance(fragment.requireContext());
+        AppExecutors.runAsync(() -> repository.redo(token)).observe(fragment.getViewLifecycleOwner(), result -> {
+            View view = fragment.getView();
+            if (view == null) {
+                return;
+            }
+            if (!result.isSuccess()) {
+                Snackbar.make(view, "重做失败: " + result.getError().getMessage(), Snackbar.LENGTH_SHORT).show();
+                return;
+            }
+            if (result.getValue() == null) {
+                Snackbar.make(view, "之后已有其他修改，无法重做", Snackbar.LENGTH_SHORT).show();
+                return;
+            }
+            show(fragment, "已重做" + result.getValue(), token);
+        });
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.contacthub.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 应用级线程池
+ * 文件读写、JSON解析、导入导出和二维码解码等耗时操作统一提交到后台I/O线程池，
+ * 结果通过LiveData或Future返回，界面按自身生命周期观察，避免在主线程执行阻塞操作
+ */
+public final class AppExecutors {
+    private static final String TAG = "AppExecutors";
+    private static final int IO_THREADS = 2;
+    private static final int PARALLEL_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService IO = Executors.newFixedThreadPool(IO_THREADS, new NamedThreadFactory("contacthub-io"));
+    private static final ExecutorService PARALLEL = Executors.newFixedThreadPool(PARALLEL_THREADS, new NamedThreadFactory("contacthub-parallel"));
+    private static final Executor MAIN_THREAD = new MainThreadExecutor();
+
+    private AppExecutors() {
+    }
+
+    /**
+     * 获取后台I/O线程池
+     *
+     * @return I/O线程池
+     */
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    /**
+     * 获取并行线程池
+     * 用于把一次加载拆分到多个核心上执行（例如并行读取多个分片）。
+     * 与I/O线程池相互独立，I/O线程可以提交任务到该线程池并等待结果而不会互相阻塞
+     *
+     * @return 并行线程池
+     */
+    public static ExecutorService parallel() {
+        return PARALLEL;
+    }
+
+    /**
+     * 获取主线程执行器
+     *
+     * @return 将任务投递到主线程消息队列的执行器
+     */
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+
+    /**
+     * 在后台线程执行任务并返回Future
+     *
+     * @param task 要执行的任务
+     * @param <T> 结果类型
+     * @return 任务的Future
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return IO.submit(task);
+    }
+
+    /**
+     * 在后台线程执行任务，结果通过LiveData投递
+     * 调用方使用生命周期所有者观察返回值，界面不可见时不会收到回调，恢复可见后收到最新结果
+     *
+     * @param task 要执行的任务
+     * @param <T> 结果类型
+     * @return 只会发出一次结果的LiveData
+     */
+    public static <T> LiveData<TaskResult<T>> runAsync(Callable<T> task) {
+        MutableLiveData<TaskResult<T>> result = new MutableLiveData<>();
+        IO.execute(() -> {
+            try {
+                result.postValue(TaskResult.success(task.call()));
+            } catch (Exception e) {
+                Log.e(TAG, "后台任务执行失败", e);
+                result.postValue(TaskResult.failure(e));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 主线程执行器
+     */
+    private static final class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    }
+
+    /**
+     * 带名称前缀的线程工厂，便于在日志和性能分析中识别后台线程
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
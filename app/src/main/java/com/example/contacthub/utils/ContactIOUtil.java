@@ -1,6 +1,7 @@
 package com.example.contacthub.utils;
 
 import android.util.Log;
+import com.example.contacthub.data.PhotoStore;
 import com.example.contacthub.model.Contact;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -23,6 +24,7 @@ import ezvcard.property.StructuredName;
 import ezvcard.property.Telephone;
 import ezvcard.property.Url;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -50,15 +52,24 @@ public class ContactIOUtil {
      * @return 标准CSV格式的联系人数据
      */
     public static String convertContactsToCSV(String contactsJson) {
+        Gson gson = new Gson();
+        Type contactListType = new TypeToken<List<Contact>>(){}.getType();
+        List<Contact> contacts = gson.fromJson(contactsJson, contactListType);
+        return convertContactsToCSV(contacts);
+    }
+
+    /**
+     * 将联系人列表转换为标准CSV格式
+     *
+     * @param contacts 联系人列表
+     * @return 标准CSV格式的联系人数据
+     */
+    public static String convertContactsToCSV(List<Contact> contacts) {
         StringBuilder csvBuilder = new StringBuilder();
 
         // 使用标准字段名称，兼容主流应用
         csvBuilder.append("Name,Mobile Phone,Phone,E-mail Address,Home Address,QQ,WeChat,Website,Birthday,Company,Postal Code,Notes\n");
 
-        Gson gson = new Gson();
-        Type contactListType = new TypeToken<List<Contact>>(){}.getType();
-        List<Contact> contacts = gson.fromJson(contactsJson, contactListType);
-
         for (Contact contact : contacts) {
             csvBuilder.append(String.format("%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s\n",
                     escapeCsvField(contact.getName()),
@@ -104,7 +115,27 @@ public class ContactIOUtil {
         Gson gson = new Gson();
         Type contactListType = new TypeToken<List<Contact>>(){}.getType();
         List<Contact> contacts = gson.fromJson(contactsJson, contactListType);
-        
+        return convertContactsToVCard(contacts);
+    }
+
+    /**
+     * 将联系人列表转换为标准vCard 3.0格式
+     *
+     * @param contacts 联系人列表
+     * @return vCard 3.0格式的联系人数据
+     */
+    public static String convertContactsToVCard(List<Contact> contacts) {
+        return convertContactsToVCard(contacts, null);
+    }
+
+    /**
+     * 将联系人列表转换为标准vCard 3.0格式，头像从头像存储中读取原始字节写入
+     *
+     * @param contacts 联系人列表
+     * @param photoStore 头像存储，为null时只导出内联的Base64头像
+     * @return vCard 3.0格式的联系人数据
+     */
+    public static String convertContactsToVCard(List<Contact> contacts, PhotoStore photoStore) {
         List<VCard> vcards = new ArrayList<>();
         
         for (Contact contact : contacts) {
@@ -214,7 +245,13 @@ public class ContactIOUtil {
             }
             
             // 设置照片
-            if (!isEmpty(contact.getPhoto())) {
+            if (photoStore != null && !isEmpty(contact.getPhotoRef())) {
+                try {
+                    vcard.addPhoto(new Photo(photoStore.readBytes(contact.getPhotoRef()), null));
+                } catch (IOException e) {
+                    Log.e(TAG, "读取头像失败: " + contact.getPhotoRef(), e);
+                }
+            } else if (!isEmpty(contact.getPhoto())) {
                 try {
                     // 处理data URI格式的照片
                     String photoData = contact.getPhoto();
@@ -432,6 +469,17 @@ public class ContactIOUtil {
      * @return 解析后的联系人列表
      */
     public static List<Contact> parseContactsFromVCard(String vcardContent) {
+        return parseContactsFromVCard(vcardContent, null);
+    }
+
+    /**
+     * 解析vCard文件为联系人列表，照片原样写入头像存储
+     *
+     * @param vcardContent vCard文件内容
+     * @param photoStore 头像存储，为null时照片转换为内联的Base64
+     * @return 解析后的联系人列表
+     */
+    public static List<Contact> parseContactsFromVCard(String vcardContent, PhotoStore photoStore) {
         List<Contact> contacts = new ArrayList<>();
         if (vcardContent == null || vcardContent.isEmpty()) {
             Log.e(TAG, "vCard内容为空");
@@ -565,7 +613,15 @@ public class ContactIOUtil {
                 // 解析照片
                 if (!vcard.getPhotos().isEmpty()) {
                     Photo photo = vcard.getPhotos().get(0);
-                    if (photo.getData() != null) {
+                    if (photo.getData() != null && photoStore != null) {
+                        try {
+                            // 原始字节直接写入头像存储，不再解码和重新编码
+                            contact.setPhotoRef(photoStore.put(photo.getData()));
+                            Log.d(TAG, "成功保存照片数据");
+                        } catch (IOException e) {
+                            Log.e(TAG, "保存照片数据失败", e);
+                        }
+                    } else if (photo.getData() != null) {
                         try {
                             // 将字节数组转换为Bitmap
                             Bitmap photoBitmap = BitmapFactory.decodeByteArray(
@@ -16,19 +16,46 @@ import java.util.TreeMap;
  */
 public class ContactIndexer {
 
+    /**
+     * 自带索引的联系人列表
+     * 实现该接口的列表由自身完成分组和搜索，不逐个生成联系人对象
+     */
+    public interface IndexedContacts {
+        /**
+         * 按拼音首字母分组
+         *
+         * @return 按首字母分组的联系人映射表
+         */
+        Map<String, List<Contact>> groupByFirstLetter();
+
+        /**
+         * 搜索联系人，匹配规则与{@link ContactIndexer#search}相同
+         *
+         * @param keyword 搜索关键词
+         * @return 匹配的联系人列表
+         */
+        List<Contact> search(String keyword);
+    }
+
     /**
      * 按拼音首字母对联系人进行分组
+     * 自带索引的列表直接由列表分组；缺少拼音的联系人在副本上生成拼音，
+     * 不修改传入的联系人（它们可能属于已发布的只读快照）
      * 
      * @param contacts 需要分组的联系人列表
      * @return 按首字母分组的联系人映射表
      */
     public static Map<String, List<Contact>> groupByFirstLetter(List<Contact> contacts) {
+        if (contacts instanceof IndexedContacts) {
+            return ((IndexedContacts) contacts).groupByFirstLetter();
+        }
         Map<String, List<Contact>> map = new TreeMap<>();
 
         for (Contact contact : contacts) {
-            // 检查firstLetter是否为空
+            // 检查firstLetter是否为空，为空时在副本上重新生成拼音信息
             if (contact.getFirstLetter() == null || contact.getFirstLetter().isEmpty()) {
-                contact.generatePinyin(); // 重新生成拼音信息
+                contact = new Contact(contact);
+                contact.generatePinyin();
             }
 
             // 获取首字母，若仍为空则归类到"#"
@@ -49,12 +76,16 @@ public class ContactIndexer {
     /**
      * 搜索联系人
      * 支持按名称、拼音、手机号码和电话号码进行搜索
+     * 自带索引的列表直接由列表搜索
      * 
      * @param contacts 要搜索的联系人列表
      * @param keyword 搜索关键词
      * @return 匹配的联系人列表
      */
     public static List<Contact> search(List<Contact> contacts, String keyword) {
+        if (contacts instanceof IndexedContacts) {
+            return ((IndexedContacts) contacts).search(keyword);
+        }
         if (keyword == null || keyword.isEmpty()) {
             return new ArrayList<>(contacts);
         }
@@ -65,8 +96,8 @@ public class ContactIndexer {
         // 检查是否为拼音声母搜索(全是字母且长度大于1)
         boolean isPinyinInitials = lowerKeyword.matches("[a-z]+") && lowerKeyword.length() > 1;
 
-        // 检查是否为数字搜索（匹配电话号码）
-        boolean isNumberSearch = lowerKeyword.matches("[0-9]+");
+        // 检查是否为号码搜索，号码忽略分隔符匹配
+        String phoneKeyword = phoneKeyword(lowerKeyword);
 
         for (Contact contact : contacts) {
             // 姓名匹配
@@ -77,15 +108,15 @@ public class ContactIndexer {
             }
 
             // 手机号匹配
-            if (contact.getMobileNumber() != null &&
-                contact.getMobileNumber().contains(lowerKeyword)) {
+            if (phoneKeyword != null &&
+                phoneDigits(contact.getMobileNumber()).contains(phoneKeyword)) {
                 result.add(contact);
                 continue;
             }
 
             // 电话号匹配
-            if (contact.getTelephoneNumber() != null &&
-                contact.getTelephoneNumber().contains(lowerKeyword)) {
+            if (phoneKeyword != null &&
+                phoneDigits(contact.getTelephoneNumber()).contains(phoneKeyword)) {
                 result.add(contact);
                 continue;
             }
@@ -111,4 +142,39 @@ public class ContactIndexer {
 
         return result;
     }
+
+    /**
+     * 提取电话号码中的数字，去掉空格、短横线、括号等分隔符
+     *
+     * @param number 电话号码，可以为null
+     * @return 号码中的全部数字，没有时返回空字符串
+     */
+    public static String phoneDigits(String number) {
+        if (number == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * 把搜索关键词转换为匹配电话号码用的数字串
+     * 关键词只由数字和号码中常见的分隔符组成时才按号码匹配，"138 0000"和"138-0000"都能匹配"13800001234"
+     *
+     * @param keyword 搜索关键词
+     * @return 关键词中的数字，不是号码搜索时返回null
+     */
+    public static String phoneKeyword(String keyword) {
+        if (keyword == null || !keyword.matches("[0-9+\\-() ]+")) {
+            return null;
+        }
+        String digits = phoneDigits(keyword);
+        return digits.isEmpty() ? null : digits;
+    }
 }
@@ -0,0 +1,360 @@
+package com.example.contacthub.utils;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * 崩溃安全的文件读写
+ * 写入时先写临时文件并在末尾追加校验尾，fsync后通过原子重命名替换正式文件，
+ * 被替换的旧文件保留为上一代备份；读取时校验CRC32，校验失败则自动回退到上一代。
+ * 从打开写入流到关闭期间持有文件锁，多个写入方不会同时写入同一文件
+ *
+ * 文件格式：[数据][魔数 4字节][数据长度 8字节][CRC32 4字节]
+ * 没有校验尾的旧版文件按原样读取
+ */
+public final class DurableFile {
+    private static final String TAG = "DurableFile";
+    public static final String TEMP_SUFFIX = ".tmp";
+    public static final String BACKUP_SUFFIX = ".bak";
+
+    static final int FOOTER_MAGIC = 0x43484B31; // "CHK1"
+    static final int FOOTER_SIZE = 16;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private DurableFile() {
+    }
+
+    /**
+     * 打开经过校验的文件读取流
+     * 依次尝试正式文件和上一代备份，返回第一个校验通过的文件的数据部分
+     *
+     * @param file 正式文件
+     * @return 不包含校验尾的数据流
+     * @throws IOException 正式文件和备份都不存在时抛出FileNotFoundException；
+     *                     存在但都校验失败或读取失败时抛出IOException，调用方不能把它当作文件不存在
+     */
+    public static InputStream openRead(File file) throws IOException {
+        File backup = new File(file.getPath() + BACKUP_SUFFIX);
+        boolean found = false;
+        for (File candidate : new File[]{file, backup}) {
+            if (!candidate.exists()) {
+                continue;
+            }
+            found = true;
+            long payloadLength = verify(candidate);
+            if (payloadLength >= 0) {
+                if (candidate == backup) {
+                    Log.w(TAG, "正式文件不可用，回退到上一代备份: " + backup.getName());
+                }
+                return new BoundedInputStream(
+                        new BufferedInputStream(new FileInputStream(candidate), BUFFER_SIZE), payloadLength);
+            }
+            Log.e(TAG, "文件校验失败: " + candidate.getName());
+        }
+        if (found) {
+            throw new IOException("文件及其备份均校验失败: " + file.getName());
+        }
+        throw new FileNotFoundException("没有可用的文件版本: " + file.getName());
+    }
+
+    /**
+     * 以只读方式映射经过校验的文件
+     * 与{@link #openRead(File)}相同，依次尝试正式文件和上一代备份；CRC32直接在映射上计算，不复制数据。
+     * 映射在文件被替换或删除后仍然有效
+     *
+     * @param file 正式文件
+     * @return 只包含数据部分的只读缓冲区
+     * @throws IOException 正式文件和备份都不存在时抛出FileNotFoundException；
+     *                     存在但都校验失败或映射失败时抛出IOException
+     */
+    public static ByteBuffer mapRead(File file) throws IOException {
+        File backup = new File(file.getPath() + BACKUP_SUFFIX);
+        boolean found = false;
+        for (File candidate : new File[]{file, backup}) {
+            if (!candidate.exists()) {
+                continue;
+            }
+            found = true;
+            ByteBuffer payload;
+            try (RandomAccessFile raf = new RandomAccessFile(candidate, "r");
+                 FileChannel channel = raf.getChannel()) {
+                payload = verify(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            if (payload != null) {
+                if (candidate == backup) {
+                    Log.w(TAG, "正式文件不可用，回退到上一代备份: " + backup.getName());
+                }
+                return payload;
+            }
+            Log.e(TAG, "文件校验失败: " + candidate.getName());
+        }
+        if (found) {
+            throw new IOException("文件及其备份均校验失败: " + file.getName());
+        }
+        throw new FileNotFoundException("没有可用的文件版本: " + file.getName());
+    }
+
+    /**
+     * 校验映射的文件
+     *
+     * @param mapped 整个文件的映射
+     * @return 数据部分；校验失败时返回null
+     */
+    private static ByteBuffer verify(ByteBuffer mapped) {
+        int fileLength = mapped.capacity();
+        if (fileLength < FOOTER_SIZE || mapped.getInt(fileLength - FOOTER_SIZE) != FOOTER_MAGIC) {
+            // 旧版文件没有校验尾，无法校验，按原样使用
+            return mapped;
+        }
+        long payloadLength = mapped.getLong(fileLength - FOOTER_SIZE + 4);
+        if (payloadLength != fileLength - FOOTER_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = mapped.duplicate();
+        payload.limit((int) payloadLength);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != mapped.getInt(fileLength - 4)) {
+            return null;
+        }
+        return payload.slice();
+    }
+
+    /**
+     * 校验文件并返回数据部分的长度
+     *
+     * @param file 要校验的文件
+     * @return 数据长度；校验失败时返回-1
+     * @throws IOException 读取失败时抛出
+     */
+    static long verify(File file) throws IOException {
+        long fileLength = file.length();
+        long payloadLength;
+        long expectedCrc;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (fileLength < FOOTER_SIZE) {
+                return fileLength;
+            }
+            raf.seek(fileLength - FOOTER_SIZE);
+            if (raf.readInt() != FOOTER_MAGIC) {
+                // 旧版文件没有校验尾，无法校验，按原样使用
+                return fileLength;
+            }
+            payloadLength = raf.readLong();
+            expectedCrc = raf.readInt() & 0xFFFFFFFFL;
+        }
+        if (payloadLength != fileLength - FOOTER_SIZE) {
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = payloadLength;
+        try (InputStream in = new FileInputStream(file)) {
+            while (remaining > 0) {
+                int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count == -1) {
+                    return -1;
+                }
+                crc.update(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+        return crc.getValue() == expectedCrc ? payloadLength : -1;
+    }
+
+    /**
+     * 删除文件及其上一代备份
+     *
+     * @param file 正式文件
+     * @return 两个文件都已不存在时返回true
+     */
+    public static boolean delete(File file) {
+        File backup = new File(file.getPath() + BACKUP_SUFFIX);
+        try (FileLocks.Handle ignored = FileLocks.acquire(file)) {
+            boolean removed = !file.exists() || file.delete();
+            return (!backup.exists() || backup.delete()) && removed;
+        } catch (IOException e) {
+            Log.e(TAG, "无法锁定文件: " + file.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 打开原子写入流
+     * 写入完成后必须调用{@link CommitOutputStream#commit()}，未提交就关闭的写入会被丢弃
+     *
+     * @param file 正式文件
+     * @return 原子写入流
+     * @throws IOException 加锁或临时文件创建失败时抛出
+     */
+    public static CommitOutputStream openWrite(File file) throws IOException {
+        return new CommitOutputStream(file);
+    }
+
+    /**
+     * 原子写入流
+     * 数据先写入临时文件并计算CRC32，提交时追加校验尾、fsync并重命名为正式文件；关闭时释放文件锁
+     */
+    public static final class CommitOutputStream extends OutputStream {
+        private final File target;
+        private final File temp;
+        private final FileLocks.Handle lock;
+        private final FileOutputStream fileStream;
+        private final CRC32 crc = new CRC32();
+        private final long startNanos = System.nanoTime();
+        private long length;
+        private boolean committed;
+        private boolean closed;
+
+        CommitOutputStream(File target) throws IOException {
+            this.target = target;
+            this.temp = new File(target.getPath() + TEMP_SUFFIX);
+            this.lock = FileLocks.acquire(target);
+            try {
+                this.fileStream = new FileOutputStream(temp);
+            } catch (IOException e) {
+                lock.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            fileStream.write(b);
+            crc.update(b);
+            length++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            fileStream.write(b, off, len);
+            crc.update(b, off, len);
+            length += len;
+        }
+
+        /**
+         * 提交写入
+         * 追加校验尾并fsync临时文件，然后将正式文件降为上一代备份，再把临时文件重命名为正式文件
+         *
+         * @throws IOException 写入或重命名失败时抛出，此时正式文件保持不变
+         */
+        public void commit() throws IOException {
+            if (committed || closed) {
+                throw new IOException("写入流已关闭: " + target.getName());
+            }
+            DataOutputStream footer = new DataOutputStream(fileStream);
+            footer.writeInt(FOOTER_MAGIC);
+            footer.writeLong(length);
+            footer.writeInt((int) crc.getValue());
+            footer.flush();
+
+            long syncStart = System.nanoTime();
+            fileStream.getFD().sync();
+            long syncNanos = System.nanoTime() - syncStart;
+            fileStream.close();
+            closed = true;
+
+            // 两次重命名之间若进程被杀，正式文件缺失，读取时会自动使用备份
+            File backup = new File(target.getPath() + BACKUP_SUFFIX);
+            if (target.exists()) {
+                Files.move(target.toPath(), backup.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+
+            StorageMetrics.recordWrite(target.getName(), length + FOOTER_SIZE,
+                    System.nanoTime() - startNanos, syncNanos);
+        }
+
+        /**
+         * 关闭写入流并释放文件锁，未提交的临时文件会被删除
+         *
+         * @throws IOException 关闭失败时抛出
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!closed) {
+                    closed = true;
+                    fileStream.close();
+                }
+                if (!committed && temp.exists() && !temp.delete()) {
+                    Log.w(TAG, "无法删除未提交的临时文件: " + temp.getName());
+                }
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * 只允许读取前limit字节的输入流，用于隐藏文件末尾的校验尾
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(b, off, (int) Math.min(len, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
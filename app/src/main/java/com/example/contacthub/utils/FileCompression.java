@@ -0,0 +1,130 @@
+package com.example.contacthub.utils;
+
+import java.io.BufferedInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 数据文件的压缩方式
+ * 写入时按文件配置选择；读取时根据文件开头的魔数自动识别，
+ * 因此修改配置后旧格式的文件仍可正常读取，下次写入时转换为新格式
+ */
+public enum FileCompression {
+    /** 不压缩 */
+    NONE("不压缩"),
+    /** GZIP格式，带CRC校验和文件头 */
+    GZIP("GZIP"),
+    /** zlib格式的Deflate流，头尾开销比GZIP小 */
+    DEFLATE("Deflate");
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int ZLIB_METHOD_DEFLATE = 0x08;
+    private static final int ZLIB_FLAG_DICT = 0x20;
+
+    private final String label;
+
+    FileCompression(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 包装输出流
+     * 写入完成后必须调用{@link #finish(OutputStream)}写出压缩流的剩余数据，之后才能提交文件
+     *
+     * @param out 原始输出流
+     * @return 写入时压缩的输出流，不压缩时返回原始流的简单包装
+     * @throws IOException 写入压缩头失败时抛出
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case DEFLATE:
+                return new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION), BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            def.end();
+                        }
+                    }
+                };
+            case NONE:
+            default:
+                return new FilterOutputStream(out) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+                };
+        }
+    }
+
+    /**
+     * 写出压缩流中剩余的数据，不关闭底层流
+     *
+     * @param wrapped {@link #wrap(OutputStream)}返回的输出流
+     * @throws IOException 写入失败时抛出
+     */
+    public static void finish(OutputStream wrapped) throws IOException {
+        if (wrapped instanceof DeflaterOutputStream) {
+            ((DeflaterOutputStream) wrapped).finish();
+        } else {
+            wrapped.flush();
+        }
+    }
+
+    /**
+     * 根据魔数识别压缩格式并返回解压后的输入流
+     * GZIP以1f 8b开头；zlib流的第一个字节表示Deflate方法，不使用预设字典，且前两个字节组成的数能被31整除。
+     * JSON数组或对象以及二进制记录文件的开头不会满足这两种条件
+     *
+     * @param in 原始输入流
+     * @return 解压后的输入流，未压缩时返回带缓冲的原始内容
+     * @throws IOException 读取失败时抛出
+     */
+    public static InputStream detect(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        if (b1 == GZIP_MAGIC_1 && b2 == GZIP_MAGIC_2) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        if (b1 >= 0 && b2 >= 0 && (b1 & 0x0F) == ZLIB_METHOD_DEFLATE && (b2 & ZLIB_FLAG_DICT) == 0
+                && ((b1 << 8) | b2) % 31 == 0) {
+            return new InflaterInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    /**
+     * 按名称查找压缩方式
+     *
+     * @param name 枚举名称
+     * @return 对应的压缩方式，无法识别时返回NONE
+     */
+    public static FileCompression fromName(String name) {
+        for (FileCompression compression : values()) {
+            if (compression.name().equals(name)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+}
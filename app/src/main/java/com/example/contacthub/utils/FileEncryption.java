@@ -0,0 +1,578 @@
+package com.example.contacthub.utils;
+
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.UnrecoverableKeyException;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 数据文件的分块加密
+ * 内容按固定大小切分，每块单独用AES-GCM加密并带认证标签，读写都是流式的，不需要整个文件的明文副本；
+ * 跳过数据时整块跳过，不解密不需要的块；跳过的块仍要从流中读出，
+ * 而且经DurableFile读取时打开文件会先校验整个文件的CRC32，因此部分读取只节省解密，不节省读取。
+ * 每个文件有随机的nonce前缀，与块序号组成每块的IV，块不能被重排或移到其他文件；
+ * 最后一块的明文总是短于块大小（可以为空）并在附加认证数据中标记，截断或追加数据都会被发现。
+ * 读取时根据魔数识别，未加密的旧文件按原样读取，下次写入时转换为加密格式
+ *
+ * 文件格式：[魔数 4字节][块大小 4字节][nonce前缀 8字节]，随后每块为[密文][认证标签 16字节]
+ */
+public final class FileEncryption {
+    private static final String TAG = "FileEncryption";
+    static final int MAGIC = 0x43484531; // "CHE1"
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int NONCE_PREFIX_SIZE = 8;
+    private static final int IV_SIZE = 12;
+    private static final int TAG_SIZE = 16;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    // 数据密钥用Android Keystore中的主密钥加密后保存，不随应用数据备份
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String MASTER_KEY_ALIAS = "contacthub_data_master";
+    private static final String KEY_FILE = "data_key.bin";
+    private static final int KEY_FILE_MAGIC = 0x43484b59; // "CHKY"
+    private static final int DATA_KEY_BITS = 256;
+
+    private static final byte[] AAD_CHUNK = {0};
+    private static final byte[] AAD_FINAL_CHUNK = {1};
+
+    private final SecretKey key;
+    private final int chunkSize;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * 构造函数
+     *
+     * @param key AES密钥
+     * @param chunkSize 每块明文的字节数
+     */
+    public FileEncryption(SecretKey key, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("无效的块大小: " + chunkSize);
+        }
+        this.key = key;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 使用保存在本机的数据密钥
+     * 数据密钥在进程内用软件AES加解密，只有解开数据密钥时访问一次Keystore，
+     * 避免每块数据都经过Keystore的跨进程调用。
+     * 主密钥和密钥文件都不随备份恢复，恢复后已加密的数据无法用新密钥解开，
+     * 因此只有调用方确认还没有任何加密数据时才允许生成新密钥，否则密钥缺失或无法解开时直接失败
+     *
+     * @param context 应用上下文
+     * @param createIfMissing 没有可用的密钥时是否生成新密钥，存在加密数据时必须为false
+     * @return 使用默认块大小的加密方式
+     * @throws GeneralSecurityException Keystore不可用、密钥不存在且不允许生成，或数据密钥无法解开时抛出
+     * @throws IOException 读写密钥文件失败时抛出
+     */
+    public static FileEncryption forDevice(Context context, boolean createIfMissing)
+            throws GeneralSecurityException, IOException {
+        File keyFile = new File(context.getNoBackupFilesDir(), KEY_FILE);
+        try (FileLocks.Handle ignored = FileLocks.acquire(keyFile)) {
+            SecretKey masterKey = getMasterKey();
+            SecretKey dataKey = null;
+            try {
+                dataKey = masterKey != null ? readDataKey(keyFile, masterKey) : null;
+            } catch (GeneralSecurityException | IOException e) {
+                if (!createIfMissing) {
+                    throw e;
+                }
+                Log.w(TAG, "数据密钥无法解开，没有加密数据，重新生成", e);
+            }
+            if (dataKey == null) {
+                if (!createIfMissing) {
+                    throw new UnrecoverableKeyException(masterKey == null ? "Keystore中没有主密钥" : "数据密钥不存在");
+                }
+                if (masterKey == null) {
+                    masterKey = createMasterKey();
+                }
+                dataKey = createDataKey(keyFile, masterKey);
+            }
+            return new FileEncryption(dataKey, DEFAULT_CHUNK_SIZE);
+        }
+    }
+
+    private static SecretKey getMasterKey() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        return keyStore.containsAlias(MASTER_KEY_ALIAS) ? (SecretKey) keyStore.getKey(MASTER_KEY_ALIAS, null) : null;
+    }
+
+    private static SecretKey createMasterKey() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(MASTER_KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    /**
+     * 读取并解开数据密钥
+     * 格式：[魔数][IV长度][IV][密文长度][密文]
+     *
+     * @param keyFile 密钥文件
+     * @param masterKey 主密钥
+     * @return 数据密钥，文件不存在时返回null
+     * @throws GeneralSecurityException 主密钥无法解开数据密钥时抛出
+     * @throws IOException 读取失败或格式无效时抛出
+     */
+    private static SecretKey readDataKey(File keyFile, SecretKey masterKey) throws GeneralSecurityException, IOException {
+        byte[] iv;
+        byte[] wrapped;
+        try (DataInputStream in = new DataInputStream(DurableFile.openRead(keyFile))) {
+            if (in.readInt() != KEY_FILE_MAGIC) {
+                throw new IOException("数据密钥文件格式无效");
+            }
+            iv = readBlock(in);
+            wrapped = readBlock(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_SIZE * 8, iv));
+        return new SecretKeySpec(cipher.doFinal(wrapped), "AES");
+    }
+
+    private static SecretKey createDataKey(File keyFile, SecretKey masterKey) throws GeneralSecurityException, IOException {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(DATA_KEY_BITS);
+        SecretKey dataKey = generator.generateKey();
+        // Keystore中的密钥只允许由其自身生成IV
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, masterKey);
+        byte[] wrapped = cipher.doFinal(dataKey.getEncoded());
+        try (DurableFile.CommitOutputStream stream = DurableFile.openWrite(keyFile)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(KEY_FILE_MAGIC);
+            out.writeInt(cipher.getIV().length);
+            out.write(cipher.getIV());
+            out.writeInt(wrapped.length);
+            out.write(wrapped);
+            out.flush();
+            stream.commit();
+        }
+        Log.i(TAG, "已生成数据密钥");
+        return dataKey;
+    }
+
+    private static byte[] readBlock(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > 1024) {
+            throw new IOException("数据密钥文件格式无效");
+        }
+        byte[] block = new byte[length];
+        in.readFully(block);
+        return block;
+    }
+
+    /**
+     * 包装输出流，写入的内容按块加密
+     * 写入完成后必须调用{@link #finish(OutputStream)}写出最后一块，之后才能提交文件；
+     * 未调用就关闭时不写出最后一块，读取时会被识别为不完整的文件
+     *
+     * @param out 原始输出流
+     * @return 加密输出流
+     * @throws IOException 写入文件头失败时抛出
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        return new EncryptingOutputStream(out);
+    }
+
+    /**
+     * 写出加密流的最后一块，不关闭底层流
+     *
+     * @param wrapped {@link #wrap(OutputStream)}返回的输出流，也可以是未加密的原始流
+     * @throws IOException 写入失败时抛出
+     */
+    public static void finish(OutputStream wrapped) throws IOException {
+        if (wrapped instanceof EncryptingOutputStream) {
+            ((EncryptingOutputStream) wrapped).finish();
+        } else {
+            wrapped.flush();
+        }
+    }
+
+    /**
+     * 根据魔数识别加密文件并返回解密后的输入流
+     * 加密文件以"CHE1"开头；JSON文本、GZIP/zlib流和其他二进制记录文件的开头都不同
+     *
+     * @param in 原始输入流
+     * @param encryption 加密方式，为null时遇到加密文件抛出异常
+     * @return 解密后的输入流，未加密时返回原始内容
+     * @throws IOException 读取失败、文件已加密但没有密钥，或文件头无效时抛出
+     */
+    public static InputStream detect(InputStream in, FileEncryption encryption) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 4);
+        byte[] magic = new byte[4];
+        int count = 0;
+        while (count < magic.length) {
+            int n = pushback.read(magic, count, magic.length - count);
+            if (n == -1) {
+                break;
+            }
+            count += n;
+        }
+        pushback.unread(magic, 0, count);
+        if (count < magic.length || readInt(magic, 0) != MAGIC) {
+            return pushback;
+        }
+        if (encryption == null) {
+            pushback.close();
+            throw new IOException("文件已加密，但没有可用的密钥");
+        }
+        return encryption.new DecryptingInputStream(pushback);
+    }
+
+    /**
+     * 判断内容开头是否为加密文件头
+     *
+     * @param header 内容开头的至少4个字节
+     * @return 是加密文件时返回true
+     */
+    public static boolean isEncrypted(byte[] header) {
+        return header.length >= 4 && readInt(header, 0) == MAGIC;
+    }
+
+    /**
+     * 加密一段独立的短数据，使用随机IV
+     * 用于逐条追加的记录，结果为[IV 12字节][密文][认证标签 16字节]
+     *
+     * @param plaintext 明文
+     * @return 密文
+     * @throws IOException 加密失败时抛出
+     */
+    public byte[] seal(byte[] plaintext) throws IOException {
+        byte[] iv = new byte[IV_SIZE];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, iv));
+            byte[] sealed = Arrays.copyOf(iv, IV_SIZE + plaintext.length + TAG_SIZE);
+            cipher.doFinal(plaintext, 0, plaintext.length, sealed, IV_SIZE);
+            return sealed;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("加密失败", e);
+        }
+    }
+
+    /**
+     * 解密{@link #seal(byte[])}的结果
+     *
+     * @param sealed 密文
+     * @return 明文，认证失败时返回null
+     */
+    public byte[] open(byte[] sealed) {
+        if (sealed.length < IV_SIZE + TAG_SIZE) {
+            return null;
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, sealed, 0, IV_SIZE));
+            return cipher.doFinal(sealed, IV_SIZE, sealed.length - IV_SIZE);
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 计算块的IV：文件的nonce前缀加块序号
+     */
+    private static byte[] chunkIv(byte[] noncePrefix, int chunkIndex) {
+        byte[] iv = Arrays.copyOf(noncePrefix, IV_SIZE);
+        iv[8] = (byte) (chunkIndex >>> 24);
+        iv[9] = (byte) (chunkIndex >>> 16);
+        iv[10] = (byte) (chunkIndex >>> 8);
+        iv[11] = (byte) chunkIndex;
+        return iv;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static Cipher newCipher() throws IOException {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM不可用", e);
+        }
+    }
+
+    /**
+     * 加密输出流
+     * 明文攒满一块立即加密写出；最后一块在finish时写出，长度总是小于块大小
+     */
+    private final class EncryptingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Cipher cipher = newCipher();
+        private final byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        private final byte[] plain = new byte[chunkSize];
+        private final byte[] sealed = new byte[chunkSize + TAG_SIZE];
+        private int buffered;
+        private int chunkIndex;
+        private boolean finished;
+
+        EncryptingOutputStream(OutputStream out) throws IOException {
+            this.out = out;
+            random.nextBytes(noncePrefix);
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(chunkSize);
+            header.write(noncePrefix);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("加密流已结束");
+            }
+            while (len > 0) {
+                int count = Math.min(len, chunkSize - buffered);
+                System.arraycopy(b, off, plain, buffered, count);
+                buffered += count;
+                off += count;
+                len -= count;
+                if (buffered == chunkSize) {
+                    writeChunk(false);
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            writeChunk(true);
+            finished = true;
+            out.flush();
+        }
+
+        private void writeChunk(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, chunkIv(noncePrefix, chunkIndex)));
+                cipher.updateAAD(last ? AAD_FINAL_CHUNK : AAD_CHUNK);
+                int count = cipher.doFinal(plain, 0, buffered, sealed, 0);
+                out.write(sealed, 0, count);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("加密失败", e);
+            }
+            chunkIndex++;
+            buffered = 0;
+        }
+
+        /**
+         * 只刷新已写出的完整块，不足一块的明文留到攒满或结束时写出
+         */
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * 解密输入流
+     * 逐块读取并校验，只返回通过认证的明文；跳过数据时不解密被整块跳过的块
+     */
+    private final class DecryptingInputStream extends InputStream {
+        private final InputStream in;
+        private final Cipher cipher = newCipher();
+        private final byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        private final int fileChunkSize;
+        private final byte[] sealed;
+        private final byte[] plain;
+        private int position;
+        private int limit;
+        private int chunkIndex;
+        private boolean lastChunkRead;
+
+        DecryptingInputStream(InputStream in) throws IOException {
+            this.in = in;
+            DataInputStream header = new DataInputStream(in);
+            header.readInt();
+            fileChunkSize = header.readInt();
+            if (fileChunkSize <= 0 || fileChunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("加密文件头无效");
+            }
+            header.readFully(noncePrefix);
+            sealed = new byte[fileChunkSize + TAG_SIZE];
+            plain = new byte[fileChunkSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (position == limit) {
+                if (!nextChunk()) {
+                    return -1;
+                }
+            }
+            return plain[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == limit) {
+                if (!nextChunk()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(plain, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        /**
+         * 跳过数据，完整的块只读取不解密
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                if (position == limit) {
+                    if (n - skipped >= fileChunkSize && skipChunk()) {
+                        skipped += fileChunkSize;
+                        continue;
+                    }
+                    if (position == limit && !nextChunk()) {
+                        break;
+                    }
+                    if (position == limit) {
+                        continue;
+                    }
+                }
+                int count = (int) Math.min(n - skipped, limit - position);
+                position += count;
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        /**
+         * 读取并解密下一块
+         *
+         * @return 没有更多数据时返回false
+         * @throws IOException 读取失败、认证失败或文件被截断时抛出
+         */
+        private boolean nextChunk() throws IOException {
+            position = 0;
+            limit = 0;
+            if (lastChunkRead) {
+                return false;
+            }
+            decryptChunk(readChunk());
+            return true;
+        }
+
+        /**
+         * 整块跳过下一块，只读取不解密
+         * 下一块是最后一块时改为解密校验，保证截断能被发现
+         *
+         * @return 整块跳过时返回true；已到最后一块时返回false，此时最后一块已解密
+         * @throws IOException 读取失败、认证失败或文件被截断时抛出
+         */
+        private boolean skipChunk() throws IOException {
+            position = 0;
+            limit = 0;
+            if (lastChunkRead) {
+                return false;
+            }
+            int count = readChunk();
+            if (count == sealed.length) {
+                chunkIndex++;
+                return true;
+            }
+            decryptChunk(count);
+            return false;
+        }
+
+        /**
+         * 读取一块密文：读满块大小加标签长度的是中间块，不足的是最后一块
+         */
+        private int readChunk() throws IOException {
+            int count = readFully(sealed);
+            if (count < TAG_SIZE) {
+                throw new EOFException("加密文件不完整");
+            }
+            return count;
+        }
+
+        private void decryptChunk(int count) throws IOException {
+            boolean last = count < sealed.length;
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key,
+                        new GCMParameterSpec(TAG_SIZE * 8, chunkIv(noncePrefix, chunkIndex)));
+                cipher.updateAAD(last ? AAD_FINAL_CHUNK : AAD_CHUNK);
+                limit = cipher.doFinal(sealed, 0, count, plain, 0);
+            } catch (AEADBadTagException e) {
+                throw new IOException("加密数据校验失败，块: " + chunkIndex, e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("解密失败", e);
+            }
+            chunkIndex++;
+            lastChunkRead = last;
+        }
+
+        private int readFully(byte[] buffer) throws IOException {
+            int total = 0;
+            while (total < buffer.length) {
+                int n = in.read(buffer, total, buffer.length - total);
+                if (n == -1) {
+                    break;
+                }
+                total += n;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
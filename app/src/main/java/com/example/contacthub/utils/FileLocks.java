@@ -0,0 +1,95 @@
+package com.example.contacthub.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按文件加锁
+ * 写入文件期间对同目录下的“文件名.lock”持有FileChannel独占锁，防止多个进程或多个写入方交错写入同一文件。
+ * FileChannel锁属于整个进程，同一进程的多个线程不能重复加锁，因此先按路径取进程内的锁，再取文件锁；
+ * 同一线程重复加锁时只增加计数。每次加锁的等待时间记录到{@link StorageMetrics}
+ */
+public final class FileLocks {
+    public static final String LOCK_SUFFIX = ".lock";
+
+    private static final Map<String, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+
+    private FileLocks() {
+    }
+
+    /**
+     * 已持有的文件锁，关闭时释放
+     */
+    public static final class Handle implements Closeable {
+        private final ReentrantLock localLock;
+        private final RandomAccessFile lockFile;
+        private final FileLock fileLock;
+        private boolean released;
+
+        Handle(ReentrantLock localLock, RandomAccessFile lockFile, FileLock fileLock) {
+            this.localLock = localLock;
+            this.lockFile = lockFile;
+            this.fileLock = fileLock;
+        }
+
+        /**
+         * 释放锁，重复调用无效果
+         *
+         * @throws IOException 释放文件锁失败时抛出，进程内的锁仍会释放
+         */
+        @Override
+        public void close() throws IOException {
+            if (released) {
+                return;
+            }
+            released = true;
+            try {
+                if (lockFile != null) {
+                    fileLock.release();
+                    lockFile.close();
+                }
+            } finally {
+                localLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 获取文件的独占锁，阻塞直到其他线程和进程释放
+     *
+     * @param file 要写入的文件
+     * @return 已持有的锁，写入完成后必须关闭
+     * @throws IOException 锁文件无法创建或加锁失败时抛出
+     */
+    public static Handle acquire(File file) throws IOException {
+        long startNanos = System.nanoTime();
+        ReentrantLock localLock = localLocks.computeIfAbsent(file.getAbsolutePath(), path -> new ReentrantLock());
+        localLock.lock();
+        if (localLock.getHoldCount() > 1) {
+            return new Handle(localLock, null, null);
+        }
+        RandomAccessFile lockFile = null;
+        try {
+            lockFile = new RandomAccessFile(file.getPath() + LOCK_SUFFIX, "rw");
+            FileLock fileLock = lockFile.getChannel().lock();
+            StorageMetrics.recordLockWait(file.getName(), System.nanoTime() - startNanos);
+            return new Handle(localLock, lockFile, fileLock);
+        } catch (IOException | RuntimeException e) {
+            if (lockFile != null) {
+                try {
+                    lockFile.close();
+                } catch (IOException ignored) {
+                    // 加锁已经失败，关闭失败不影响结果
+                }
+            }
+            localLock.unlock();
+            throw e;
+        }
+    }
+}
@@ -4,80 +4,247 @@ import android.content.Context;
 import android.util.Log;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 文件工具类
  * 提供JSON格式文件的读写功能
+ * 读写均基于JsonReader/JsonWriter流式处理，不在内存中保留完整的JSON文本
+ * 写入通过DurableFile先写临时文件再原子替换，读取时校验并在损坏时回退到上一代文件。
+ * 可以按文件名配置写入时的压缩方式，读取时根据魔数自动解压。
+ * 设置了加密方式后，经本类写入的文件在压缩之后按块加密写入，读取时根据魔数自动解密。
+ * 不经过本类的文件（变更日志、头像、迁移暂存文件）各自处理加密，SQLite数据库不加密
  */
 public class FileUtil {
     private static final String TAG = "FileUtil";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // 按文件名配置的压缩方式，进程内所有实例共享，未配置的文件不压缩
+    private static final Map<String, FileCompression> COMPRESSION = new ConcurrentHashMap<>();
+    // 所有文件共用的加密方式，为null时写入明文
+    private static volatile FileEncryption encryption;
     private final Context context;
     private final Gson gson = new Gson();
 
     /**
      * 构造函数
-     * 
+     *
      * @param context 应用程序上下文
      */
     public FileUtil(Context context) {
         this.context = context;
     }
 
+    /**
+     * 设置文件写入时使用的压缩方式
+     * 只影响之后的写入；已有文件读取时自动识别格式，不需要转换
+     *
+     * @param filename 文件名
+     * @param compression 压缩方式
+     */
+    public static void setCompression(String filename, FileCompression compression) {
+        if (compression == FileCompression.NONE) {
+            COMPRESSION.remove(filename);
+        } else {
+            COMPRESSION.put(filename, compression);
+        }
+    }
+
+    /**
+     * 获取文件写入时使用的压缩方式
+     *
+     * @param filename 文件名
+     * @return 压缩方式，未配置时返回NONE
+     */
+    public static FileCompression getCompression(String filename) {
+        FileCompression compression = COMPRESSION.get(filename);
+        return compression != null ? compression : FileCompression.NONE;
+    }
+
+    /**
+     * 设置所有文件写入时使用的加密方式
+     * 只影响之后的写入；读取时自动识别已加密的文件和未加密的旧文件
+     *
+     * @param fileEncryption 加密方式，为null时写入明文
+     */
+    public static void setEncryption(FileEncryption fileEncryption) {
+        encryption = fileEncryption;
+    }
+
+    /**
+     * 获取当前的加密方式，供不经过本类读写的文件（日志、头像等）使用
+     *
+     * @return 加密方式，未设置时返回null
+     */
+    public static FileEncryption getEncryption() {
+        return encryption;
+    }
+
+    /**
+     * 写入操作
+     */
+    private interface WriteAction {
+        void write(Writer writer) throws IOException;
+    }
+
     /**
      * 将对象数组保存为JSON文件
-     * 
+     * 逐个元素序列化并写入缓冲输出流
+     *
      * @param objects 要保存的对象数组
      * @param filename 目标文件名
      * @param <T> 对象类型
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
      */
-    public <T> void saveJSON(T[] objects, String filename) {
-        try {
-            String json = gson.toJson(objects);
-            FileOutputStream fos = context.openFileOutput(filename, Context.MODE_PRIVATE);
-            fos.write(json.getBytes());
-            fos.close();
-        } catch (IOException e) {
-            Log.e(TAG, "保存JSON到文件失败: " + filename, e);
-        }
+    public <T> void saveJSON(T[] objects, String filename) throws IOException {
+        writeAtomically(filename, out -> {
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginArray();
+            for (T object : objects) {
+                if (object == null) {
+                    writer.nullValue();
+                } else {
+                    gson.toJson(object, object.getClass(), writer);
+                }
+            }
+            writer.endArray();
+            writer.flush();
+        });
+    }
+
+    /**
+     * 记录写入操作，在版本头之后的records数组中逐个写入元素
+     */
+    public interface RecordWriter {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * 将对象数组保存为带版本头的JSON文件
+     * 文件格式为{"schemaVersion":N,"records":[...]}，可以用{@link #iterateArray}流式读取
+     *
+     * @param objects 要保存的对象数组
+     * @param filename 目标文件名
+     * @param schemaVersion 数据版本
+     * @param <T> 对象类型
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    public <T> void saveVersionedJSON(T[] objects, String filename, int schemaVersion) throws IOException {
+        saveVersionedRecords(filename, schemaVersion, writer -> {
+            for (T object : objects) {
+                if (object == null) {
+                    writer.nullValue();
+                } else {
+                    gson.toJson(object, object.getClass(), writer);
+                }
+            }
+        });
+    }
+
+    /**
+     * 以流的方式保存带版本头的JSON文件
+     *
+     * @param filename 目标文件名
+     * @param schemaVersion 数据版本
+     * @param records 写入数组元素的操作
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    public void saveVersionedRecords(String filename, int schemaVersion, RecordWriter records) throws IOException {
+        writeAtomically(filename, out -> {
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginObject();
+            writer.name(JsonArrayIterator.SCHEMA_VERSION_KEY).value(schemaVersion);
+            writer.name(JsonArrayIterator.RECORDS_KEY);
+            writer.beginArray();
+            records.write(writer);
+            writer.endArray();
+            writer.endObject();
+            writer.flush();
+        });
     }
 
     /**
      * 从JSON文件读取并转换为指定类型的对象
-     * 
+     *
      * @param filename 要读取的文件名
      * @param classOfT 目标对象类型
      * @param <T> 对象类型
      * @return 转换后的对象，如果读取失败则返回null
      */
     public <T> T readFile(String filename, Class<T> classOfT) {
-        String json = readFile(filename);
-        if (json == null) {
+        try (JsonReader reader = new JsonReader(openReader(filename))) {
+            return gson.fromJson(reader, classOfT);
+        } catch (IOException | JsonIOException e) {
+            Log.e(TAG, "读取文件失败: " + filename, e);
             return null;
         }
-        return gson.fromJson(json, classOfT);
+    }
+
+    /**
+     * 从JSON文件读取对象，区分文件不存在和读取失败
+     *
+     * @param filename 要读取的文件名
+     * @param classOfT 目标对象类型
+     * @param <T> 对象类型
+     * @return 转换后的对象，文件不存在时返回null
+     * @throws IOException 文件存在但校验失败、无法解密或格式无效时抛出
+     */
+    public <T> T readExisting(String filename, Class<T> classOfT) throws IOException {
+        try (JsonReader reader = new JsonReader(openReader(filename))) {
+            return gson.fromJson(reader, classOfT);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (JsonParseException e) {
+            throw new IOException("读取文件失败: " + filename, e);
+        }
+    }
+
+    /**
+     * 打开JSON数组文件的流式迭代器
+     * 调用方逐个读取元素，使用完毕后需要关闭迭代器；带版本头的文件可通过迭代器获取版本
+     *
+     * @param filename 要读取的文件名
+     * @param elementClass 数组元素类型
+     * @param <T> 元素类型
+     * @return 数组元素迭代器
+     * @throws IOException 文件打开失败时抛出
+     */
+    public <T> JsonArrayIterator<T> iterateArray(String filename, Class<T> elementClass) throws IOException {
+        return new JsonArrayIterator<>(gson, openReader(filename), elementClass);
     }
 
     /**
      * 读取文件内容
-     * 
+     *
      * @param filename 要读取的文件名
      * @return 文件内容字符串，如果读取失败则返回null
      */
     public String readFile(String filename) {
-        try (FileInputStream fis = context.openFileInput(filename);
-             InputStreamReader isr = new InputStreamReader(fis);
-             BufferedReader reader = new BufferedReader(isr)) {
-            
+        try (Reader reader = openReader(filename)) {
             StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
+            char[] buffer = new char[BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, count);
             }
             return sb.toString();
         } catch (IOException e) {
@@ -88,32 +255,167 @@ public class FileUtil {
 
     /**
      * 保存原始JSON字符串到文件
-     * 
+     *
      * @param filename 要保存的文件名
      * @param jsonString 要保存的原始JSON字符串
      * @throws IOException 当文件写入失败时抛出
      */
     public void saveRawJSON(String filename, String jsonString) throws IOException {
-        try (FileOutputStream fos = context.openFileOutput(filename, Context.MODE_PRIVATE)) {
-            fos.write(jsonString.getBytes());
-        }
+        writeAtomically(filename, writer -> writer.write(jsonString));
     }
 
     /**
      * 将单个对象保存为JSON文件
-     * 
+     *
      * @param object 要保存的对象
      * @param filename 目标文件名
      * @param <T> 对象类型
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    public <T> void saveObject(T object, String filename) throws IOException {
+        writeAtomically(filename, out -> {
+            JsonWriter writer = new JsonWriter(out);
+            gson.toJson(object, object.getClass(), writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * 二进制写入操作
+     */
+    public interface BinaryWriteAction {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 以原子方式写入二进制文件
+     *
+     * @param filename 目标文件名
+     * @param action 向缓冲字节输出流写入内容的操作
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    public void saveBinary(String filename, BinaryWriteAction action) throws IOException {
+        FileCompression compression = getCompression(filename);
+        try (DurableFile.CommitOutputStream out = DurableFile.openWrite(getFile(filename));
+             OutputStream sealed = encrypt(out);
+             OutputStream encoded = compression.wrap(sealed)) {
+            OutputStream buffered = new BufferedOutputStream(encoded, BUFFER_SIZE);
+            action.write(buffered);
+            buffered.flush();
+            FileCompression.finish(encoded);
+            FileEncryption.finish(sealed);
+            out.commit();
+        } catch (IOException e) {
+            Log.e(TAG, "写入文件失败: " + filename, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 打开经过校验的带缓冲二进制文件读取流
+     * 调用方使用完毕后需要关闭
+     *
+     * @param filename 要读取的文件名
+     * @return 缓冲字节输入流
+     * @throws IOException 文件不存在、所有版本均校验失败或打开失败时抛出
+     */
+    public InputStream openBinary(String filename) throws IOException {
+        return new BufferedInputStream(FileCompression.detect(openDecrypted(filename)), BUFFER_SIZE);
+    }
+
+    /**
+     * 删除文件及其备份
+     *
+     * @param filename 要删除的文件名
+     * @return 删除成功或文件本不存在时返回true
+     */
+    public boolean deleteFile(String filename) {
+        return DurableFile.delete(getFile(filename));
+    }
+
+    /**
+     * 以原子方式写入文件
+     * 内容按文件配置压缩、再按需加密后写入临时文件，fsync后才替换正式文件，写入过程中出错不会破坏原文件
+     *
+     * @param filename 目标文件名
+     * @param action 向缓冲字符输出流写入内容的操作
+     * @throws IOException 写入或提交失败时抛出
      */
-    public <T> void saveObject(T object, String filename) {
-        try {
-            String json = gson.toJson(object);
-            FileOutputStream fos = context.openFileOutput(filename, Context.MODE_PRIVATE);
-            fos.write(json.getBytes());
-            fos.close();
+    private void writeAtomically(String filename, WriteAction action) throws IOException {
+        FileCompression compression = getCompression(filename);
+        try (DurableFile.CommitOutputStream out = DurableFile.openWrite(getFile(filename));
+             OutputStream sealed = encrypt(out);
+             OutputStream encoded = compression.wrap(sealed)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(encoded, StandardCharsets.UTF_8), BUFFER_SIZE);
+            try {
+                action.write(writer);
+            } catch (JsonIOException e) {
+                throw new IOException("序列化失败: " + filename, e);
+            }
+            writer.flush();
+            FileCompression.finish(encoded);
+            FileEncryption.finish(sealed);
+            out.commit();
         } catch (IOException e) {
-            Log.e(TAG, "保存对象到文件失败: " + filename, e);
+            Log.e(TAG, "写入文件失败: " + filename, e);
+            throw e;
         }
     }
+
+    /**
+     * 打开经过校验的带缓冲UTF-8文件读取流
+     *
+     * @param filename 要读取的文件名
+     * @return 缓冲字符输入流
+     * @throws IOException 文件不存在、所有版本均校验失败或打开失败时抛出
+     */
+    private Reader openReader(String filename) throws IOException {
+        InputStream in = FileCompression.detect(openDecrypted(filename));
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * 按当前的加密方式包装写入流，未设置加密时返回原始流
+     * 写入完成后需调用{@link FileEncryption#finish(OutputStream)}
+     *
+     * @param out 原始输出流
+     * @return 加密输出流或原始流
+     * @throws IOException 写入加密文件头失败时抛出
+     */
+    public static OutputStream encrypt(OutputStream out) throws IOException {
+        FileEncryption current = encryption;
+        return current != null ? current.wrap(out) : out;
+    }
+
+    /**
+     * 识别已加密的内容并按当前的加密方式解密，未加密的内容按原样返回
+     *
+     * @param in 原始输入流
+     * @return 明文输入流
+     * @throws IOException 读取失败、内容已加密但没有密钥时抛出
+     */
+    public static InputStream decrypt(InputStream in) throws IOException {
+        return FileEncryption.detect(in, encryption);
+    }
+
+    /**
+     * 打开经过校验的文件读取流，已加密的文件返回解密后的内容
+     *
+     * @param filename 要读取的文件名
+     * @return 明文输入流
+     * @throws IOException 文件不存在、所有版本均校验失败、缺少密钥或打开失败时抛出
+     */
+    private InputStream openDecrypted(String filename) throws IOException {
+        return decrypt(DurableFile.openRead(getFile(filename)));
+    }
+
+    /**
+     * 获取应用私有目录下的文件
+     *
+     * @param filename 文件名
+     * @return 文件对象
+     */
+    private File getFile(String filename) {
+        return new File(context.getFilesDir(), filename);
+    }
 }
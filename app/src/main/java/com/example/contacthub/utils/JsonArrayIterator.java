@@ -0,0 +1,172 @@
+package com.example.contacthub.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * JSON数组流式迭代器
+ * 每次只反序列化数组中的一个元素，避免将整个文档加载到内存。
+ * 同时支持裸数组和带版本头的文档{"schemaVersion":N,"records":[...]}，裸数组视为旧版数据
+ *
+ * @param <T> 数组元素类型
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+    public static final String SCHEMA_VERSION_KEY = "schemaVersion";
+    public static final String RECORDS_KEY = "records";
+    // 没有版本头的裸数组文档的版本
+    public static final int LEGACY_SCHEMA_VERSION = 1;
+
+    private final Gson gson;
+    private final JsonReader reader;
+    private final Type elementType;
+    private boolean started;
+    private boolean finished;
+    private int schemaVersion = LEGACY_SCHEMA_VERSION;
+
+    /**
+     * 构造函数
+     *
+     * @param gson 用于反序列化元素的Gson实例
+     * @param source 数据来源，迭代器关闭时一并关闭
+     * @param elementType 数组元素类型
+     */
+    public JsonArrayIterator(Gson gson, Reader source, Type elementType) {
+        this.gson = gson;
+        this.reader = new JsonReader(source);
+        this.elementType = elementType;
+    }
+
+    /**
+     * 判断是否还有下一个元素
+     * 首次调用时读取数组起始符，遇到数组结束符时视为迭代完成
+     *
+     * @return 还有未读取的元素时返回true
+     */
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        try {
+            start();
+            if (finished) {
+                return false;
+            }
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+            finished = true;
+            return false;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * 获取文档的数据版本
+     * 首次调用时读取版本头，不消耗数组元素
+     *
+     * @return 版本头中的版本号，裸数组返回LEGACY_SCHEMA_VERSION
+     */
+    public int getSchemaVersion() {
+        try {
+            start();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return schemaVersion;
+    }
+
+    /**
+     * 读取文档开头，定位到数组的第一个元素之前
+     * 带版本头的文档先读取版本号，再进入records数组；版本头必须写在records之前
+     *
+     * @throws IOException 读取失败时抛出
+     */
+    private void start() throws IOException {
+        if (started) {
+            return;
+        }
+        started = true;
+        if (isEmptyDocument()) {
+            finished = true;
+            return;
+        }
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (SCHEMA_VERSION_KEY.equals(name)) {
+                    schemaVersion = reader.nextInt();
+                } else if (RECORDS_KEY.equals(name)) {
+                    if (reader.peek() == JsonToken.NULL) {
+                        finished = true;
+                        return;
+                    }
+                    reader.beginArray();
+                    return;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            // 没有records字段的文档视为空
+            finished = true;
+            return;
+        }
+        reader.beginArray();
+    }
+
+    /**
+     * 判断文档是否为空或为JSON null
+     *
+     * @return 文档没有任何内容可读时返回true
+     * @throws IOException 读取失败时抛出
+     */
+    private boolean isEmptyDocument() throws IOException {
+        try {
+            return reader.peek() == JsonToken.NULL;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 读取并反序列化下一个元素
+     *
+     * @return 下一个数组元素
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return gson.fromJson(reader, elementType);
+    }
+
+    /**
+     * 关闭底层数据流
+     *
+     * @throws IOException 关闭失败时抛出
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        reader.close();
+    }
+}
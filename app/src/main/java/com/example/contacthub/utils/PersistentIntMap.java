@@ -0,0 +1,436 @@
+package com.example.contacthub.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 以int为键的持久化映射（哈希数组映射前缀树，HAMT）
+ * 修改方法返回新的映射，原映射保持不变。新旧映射共享未修改的节点，一次修改只复制从根到该键路径上的节点，
+ * 至多7层、每层至多32个槽位，保留多个历史版本的额外内存与修改次数成正比，而不是与映射大小成正比。
+ * 键从高位到低位按段索引：第0层取最高2位，之后每层5位，因此遍历顺序即键的无符号大小顺序。
+ * 映射不可修改，可在线程间自由共享；作为{@link Map}使用时修改方法抛出UnsupportedOperationException
+ *
+ * @param <V> 值类型，不能为null
+ */
+public final class PersistentIntMap<V> extends AbstractMap<Integer, V> {
+    private static final int BITS = 5;
+    private static final int TOP_SHIFT = 30;
+    // 第0层到第6层，加上遍历时的叶子层
+    private static final int MAX_DEPTH = 8;
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+    private Set<Map.Entry<Integer, V>> entrySet;
+
+    /**
+     * 两个版本之间单个键的差异
+     *
+     * @param <V> 值类型
+     */
+    public interface DiffListener<V> {
+        /**
+         * 键的值不同
+         *
+         * @param key 键
+         * @param before 旧版本中的值，不存在时为null
+         * @param after 新版本中的值，不存在时为null
+         */
+        void changed(int key, V before, V after);
+    }
+
+    /**
+     * 叶子：一个键值对
+     */
+    private static final class Leaf<V> implements Map.Entry<Integer, V> {
+        final int key;
+        final V value;
+
+        Leaf(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Integer getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("映射不可修改");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return Integer.valueOf(key).equals(other.getKey()) && value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * 内部节点：位图标记哪些槽位有内容，槽位按位序紧凑存放叶子或子节点。
+     * 除根节点外，每个节点至少有两项，或者只有一个子节点
+     */
+    private static final class Node {
+        static final Node EMPTY = new Node(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        Object slot(int bit) {
+            return (bitmap & bit) != 0 ? slots[index(bit)] : null;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Node insert(int bit, Object value) {
+            int index = index(bit);
+            Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = value;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new Node(bitmap | bit, copy);
+        }
+
+        Node replace(int bit, Object value) {
+            Object[] copy = slots.clone();
+            copy[index(bit)] = value;
+            return new Node(bitmap, copy);
+        }
+
+        Node delete(int bit) {
+            int index = index(bit);
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+    }
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 获取空映射
+     *
+     * @param <V> 值类型
+     * @return 空映射
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * 由普通映射生成持久化映射
+     *
+     * @param map 来源映射，值不能为null
+     * @param <V> 值类型
+     * @return 包含相同键值对的映射
+     */
+    public static <V> PersistentIntMap<V> copyOf(Map<Integer, ? extends V> map) {
+        if (map instanceof PersistentIntMap) {
+            @SuppressWarnings("unchecked")
+            PersistentIntMap<V> persistent = (PersistentIntMap<V>) map;
+            return persistent;
+        }
+        PersistentIntMap<V> result = empty();
+        for (Map.Entry<Integer, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static int bit(int key, int shift) {
+        return 1 << ((key >>> shift) & 31);
+    }
+
+    /**
+     * 按键读取值
+     *
+     * @param key 键
+     * @return 值，不存在时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = TOP_SHIFT; ; shift -= BITS) {
+            Object slot = node.slot(bit(key, shift));
+            if (slot == null) {
+                return null;
+            }
+            if (slot instanceof Leaf) {
+                Leaf<V> leaf = (Leaf<V>) slot;
+                return leaf.key == key ? leaf.value : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 生成加入或替换一个键值对后的映射
+     *
+     * @param key 键
+     * @param value 值，不能为null
+     * @return 新映射；值与原值是同一对象时返回当前映射
+     */
+    public PersistentIntMap<V> plus(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("值不能为null");
+        }
+        Node updated = plus(root, TOP_SHIFT, new Leaf<>(key, value));
+        if (updated == root) {
+            return this;
+        }
+        return new PersistentIntMap<>(updated, containsKey(key) ? size : size + 1);
+    }
+
+    private static Node plus(Node node, int shift, Leaf<?> leaf) {
+        int bit = bit(leaf.key, shift);
+        Object slot = node.slot(bit);
+        if (slot == null) {
+            return node.insert(bit, leaf);
+        }
+        if (slot instanceof Leaf) {
+            Leaf<?> existing = (Leaf<?>) slot;
+            if (existing.key != leaf.key) {
+                return node.replace(bit, split(existing, leaf, shift - BITS));
+            }
+            return existing.value == leaf.value ? node : node.replace(bit, leaf);
+        }
+        Node child = (Node) slot;
+        Node updated = plus(child, shift - BITS, leaf);
+        return updated == child ? node : node.replace(bit, updated);
+    }
+
+    /**
+     * 为落在同一槽位的两个不同的键生成子节点，键的这一段仍相同时继续向下一层
+     */
+    private static Node split(Leaf<?> a, Leaf<?> b, int shift) {
+        int bitA = bit(a.key, shift);
+        int bitB = bit(b.key, shift);
+        if (bitA == bitB) {
+            return new Node(bitA, new Object[]{split(a, b, shift - BITS)});
+        }
+        Object[] slots = Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[]{a, b} : new Object[]{b, a};
+        return new Node(bitA | bitB, slots);
+    }
+
+    /**
+     * 生成移除一个键后的映射
+     *
+     * @param key 键
+     * @return 新映射；键不存在时返回当前映射
+     */
+    public PersistentIntMap<V> minus(int key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        return new PersistentIntMap<>(minus(root, TOP_SHIFT, key), size - 1);
+    }
+
+    private static Node minus(Node node, int shift, int key) {
+        int bit = bit(key, shift);
+        Object slot = node.slot(bit);
+        if (slot instanceof Leaf) {
+            return node.delete(bit);
+        }
+        Node child = (Node) slot;
+        Node updated = minus(child, shift - BITS, key);
+        if (updated.slots.length == 1 && updated.slots[0] instanceof Leaf) {
+            // 只剩一个叶子的子节点折叠回父节点，保持每条路径尽量短
+            return node.replace(bit, updated.slots[0]);
+        }
+        return node.replace(bit, updated);
+    }
+
+    /**
+     * 比较两个版本，对每个值不同的键回调一次
+     * 两个版本共享的子树直接跳过，耗时与两者之间的修改量成正比
+     *
+     * @param before 旧版本
+     * @param after 新版本
+     * @param listener 差异回调，按键的无符号大小顺序调用
+     * @param <V> 值类型
+     */
+    public static <V> void diff(PersistentIntMap<V> before, PersistentIntMap<V> after, DiffListener<V> listener) {
+        diff(before.root, after.root, listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void diff(Object before, Object after, DiffListener<V> listener) {
+        if (before == after) {
+            return;
+        }
+        if (before instanceof Node && after instanceof Node) {
+            Node a = (Node) before;
+            Node b = (Node) after;
+            int bits = a.bitmap | b.bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                diff(a.slot(bit), b.slot(bit), listener);
+                bits &= ~bit;
+            }
+            return;
+        }
+        // 至少一侧是叶子或为空，按键合并比较两侧的全部叶子
+        List<Leaf<V>> left = new ArrayList<>();
+        List<Leaf<V>> right = new ArrayList<>();
+        collect(before, left);
+        collect(after, right);
+        int i = 0;
+        int j = 0;
+        while (i < left.size() || j < right.size()) {
+            Leaf<V> a = i < left.size() ? left.get(i) : null;
+            Leaf<V> b = j < right.size() ? right.get(j) : null;
+            int order = a == null ? 1 : b == null ? -1 : Integer.compareUnsigned(a.key, b.key);
+            if (order < 0) {
+                listener.changed(a.key, a.value, null);
+                i++;
+            } else if (order > 0) {
+                listener.changed(b.key, null, b.value);
+                j++;
+            } else {
+                if (a.value != b.value) {
+                    listener.changed(a.key, a.value, b.value);
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void collect(Object slot, List<Leaf<V>> out) {
+        if (slot instanceof Leaf) {
+            out.add((Leaf<V>) slot);
+        } else if (slot instanceof Node) {
+            for (Object child : ((Node) slot).slots) {
+                collect(child, out);
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, V>> entrySet() {
+        Set<Map.Entry<Integer, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<Integer, V>>() {
+                @Override
+                public Iterator<Map.Entry<Integer, V>> iterator() {
+                    return new LeafIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    /**
+     * 按键的无符号大小顺序遍历叶子，用栈记录每层的位置
+     */
+    private static final class LeafIterator<V> implements Iterator<Map.Entry<Integer, V>> {
+        private final Node[] nodes = new Node[MAX_DEPTH];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Leaf<V> next;
+
+        LeafIterator(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (positions[depth] >= node.slots.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = node.slots[positions[depth]++];
+                if (slot instanceof Leaf) {
+                    next = (Leaf<V>) slot;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) slot;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Integer, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<V> current = next;
+            advance();
+            return current;
+        }
+    }
+}
@@ -0,0 +1,684 @@
+package com.example.contacthub.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * 压缩的整数ID集合
+ * 参照Roaring位图：ID按高16位分桶，每个桶按元素数量选择有序char数组（稀疏）或8KB位图（稠密），
+ * 元素不装箱，交集、并集和差集按桶逐个计算。ID按无符号32位顺序排列。
+ * 集合冻结后不可再修改，可在线程之间安全共享
+ */
+public final class RoaringIdSet implements Iterable<Integer> {
+    // 数组容器超过该元素数时转为位图容器，位图容器低于该元素数时转回数组容器
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final byte TYPE_ARRAY = 0;
+    private static final byte TYPE_BITMAP = 1;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+    private boolean frozen;
+
+    /**
+     * 创建空集合
+     */
+    public RoaringIdSet() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    private RoaringIdSet(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * 用给定ID创建集合
+     *
+     * @param ids ID集合
+     * @return 新集合
+     */
+    public static RoaringIdSet of(Iterable<Integer> ids) {
+        RoaringIdSet set = new RoaringIdSet();
+        if (ids != null) {
+            for (Integer id : ids) {
+                if (id != null) {
+                    set.add(id);
+                }
+            }
+        }
+        return set;
+    }
+
+    /**
+     * 添加ID
+     *
+     * @param id ID
+     * @return 集合原先不包含该ID时返回true
+     */
+    public boolean add(int id) {
+        checkMutable();
+        char high = (char) (id >>> 16);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) id);
+        return containers[index].cardinality() > before;
+    }
+
+    /**
+     * 移除ID
+     *
+     * @param id ID
+     * @return 集合原先包含该ID时返回true
+     */
+    public boolean remove(int id) {
+        checkMutable();
+        int index = indexOf((char) (id >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove((char) id);
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = container;
+        }
+        return container.cardinality() < before;
+    }
+
+    /**
+     * 判断是否包含ID
+     *
+     * @param id ID
+     * @return 包含时返回true
+     */
+    public boolean contains(int id) {
+        int index = indexOf((char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    /**
+     * 获取元素数
+     *
+     * @return 集合中的ID数量
+     */
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按顺序遍历全部ID，不装箱
+     *
+     * @param action 对每个ID执行的操作
+     */
+    public void forEachId(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * 按顺序返回全部ID
+     *
+     * @return ID数组
+     */
+    public int[] toArray() {
+        int[] result = new int[cardinality()];
+        int[] position = {0};
+        forEachId(id -> result[position[0]++] = id);
+        return result;
+    }
+
+    /**
+     * 按顺序迭代全部ID
+     * 迭代期间不能修改集合
+     *
+     * @return 基本类型迭代器
+     */
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        int[] ids = toArray();
+        return new PrimitiveIterator.OfInt() {
+            private int next;
+
+            @Override
+            public int nextInt() {
+                if (next >= ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return ids[next++];
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+        };
+    }
+
+    /**
+     * 计算交集
+     *
+     * @param a 集合
+     * @param b 集合
+     * @return 新集合，同时属于两个集合的ID
+     */
+    public static RoaringIdSet and(RoaringIdSet a, RoaringIdSet b) {
+        RoaringIdSet result = new RoaringIdSet();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 计算并集
+     *
+     * @param a 集合
+     * @param b 集合
+     * @return 新集合，属于任一集合的ID
+     */
+    public static RoaringIdSet or(RoaringIdSet a, RoaringIdSet b) {
+        RoaringIdSet result = new RoaringIdSet();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j >= b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i >= a.size || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 计算差集
+     *
+     * @param a 被减集合
+     * @param b 减去的集合
+     * @return 新集合，属于a但不属于b的ID
+     */
+    public static RoaringIdSet andNot(RoaringIdSet a, RoaringIdSet b) {
+        RoaringIdSet result = new RoaringIdSet();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            Container container = j < b.size && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j]) : a.containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.appendContainer(a.keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 复制集合，副本可以修改
+     *
+     * @return 新集合
+     */
+    public RoaringIdSet copy() {
+        Container[] copied = new Container[Math.max(size, 4)];
+        for (int i = 0; i < size; i++) {
+            copied[i] = containers[i].copy();
+        }
+        return new RoaringIdSet(Arrays.copyOf(keys, copied.length), copied, size);
+    }
+
+    /**
+     * 冻结集合，之后的修改会抛出UnsupportedOperationException
+     *
+     * @return 当前集合
+     */
+    public RoaringIdSet freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * 写出集合
+     * 格式：[桶数 int]，每个桶为[高16位 char][类型 byte][元素数 int][数组：元素数个char | 位图：1024个long]
+     *
+     * @param out 输出
+     * @throws IOException 写入失败时抛出
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            containers[i].writeTo(out);
+        }
+    }
+
+    /**
+     * 读取由{@link #writeTo(DataOutput)}写出的集合
+     *
+     * @param in 输入
+     * @return 新集合
+     * @throws IOException 读取失败或格式错误时抛出
+     */
+    public static RoaringIdSet readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > 1 << 16) {
+            throw new IOException("桶数无效: " + count);
+        }
+        char[] keys = new char[Math.max(count, 4)];
+        Container[] containers = new Container[keys.length];
+        for (int i = 0; i < count; i++) {
+            keys[i] = in.readChar();
+            byte type = in.readByte();
+            int cardinality = in.readInt();
+            if (type == TYPE_ARRAY && cardinality > 0 && cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                for (int k = 0; k < cardinality; k++) {
+                    values[k] = in.readChar();
+                }
+                containers[i] = new ArrayContainer(values, cardinality);
+            } else if (type == TYPE_BITMAP && cardinality > 0 && cardinality <= 1 << 16) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int k = 0; k < BITMAP_WORDS; k++) {
+                    words[k] = in.readLong();
+                }
+                containers[i] = new BitmapContainer(words, cardinality);
+            } else {
+                throw new IOException("桶格式无效: " + type + "/" + cardinality);
+            }
+        }
+        return new RoaringIdSet(keys, containers, count);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RoaringIdSet)) {
+            return false;
+        }
+        return Arrays.equals(toArray(), ((RoaringIdSet) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("集合已冻结");
+        }
+    }
+
+    private int indexOf(char high) {
+        int low = 0;
+        int highIndex = size - 1;
+        while (low <= highIndex) {
+            int mid = (low + highIndex) >>> 1;
+            char key = keys[mid];
+            if (key < high) {
+                low = mid + 1;
+            } else if (key > high) {
+                highIndex = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertContainer(int index, char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private void appendContainer(char high, Container container) {
+        insertContainer(size, high, container);
+    }
+
+    /**
+     * 一个桶内的低16位元素
+     * 修改操作可能返回另一种容器，调用方需要使用返回值
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Container copy();
+
+        abstract void writeTo(DataOutput out) throws IOException;
+
+        /**
+         * 展开为位图字，用于与另一种容器运算
+         */
+        abstract long[] toWords();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                return ((ArrayContainer) this).and((ArrayContainer) other);
+            }
+            if (this instanceof ArrayContainer || other instanceof ArrayContainer) {
+                // 稀疏容器逐个检查，不需要展开
+                ArrayContainer sparse = (ArrayContainer) (this instanceof ArrayContainer ? this : other);
+                Container dense = sparse == this ? other : this;
+                char[] values = new char[sparse.cardinality];
+                int count = 0;
+                for (int i = 0; i < sparse.cardinality; i++) {
+                    if (dense.contains(sparse.values[i])) {
+                        values[count++] = sparse.values[i];
+                    }
+                }
+                return new ArrayContainer(values, count);
+            }
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] &= otherWords[i];
+            }
+            return BitmapContainer.fromWords(words);
+        }
+
+        Container or(Container other) {
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] |= otherWords[i];
+            }
+            return BitmapContainer.fromWords(words);
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                ArrayContainer sparse = (ArrayContainer) this;
+                char[] values = new char[sparse.cardinality];
+                int count = 0;
+                for (int i = 0; i < sparse.cardinality; i++) {
+                    if (!other.contains(sparse.values[i])) {
+                        values[count++] = sparse.values[i];
+                    }
+                }
+                return new ArrayContainer(values, count);
+            }
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                words[i] &= ~otherWords[i];
+            }
+            return BitmapContainer.fromWords(words);
+        }
+    }
+
+    /**
+     * 稀疏桶：有序char数组
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this.values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality >= ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(TYPE_ARRAY);
+            out.writeInt(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.writeChar(values[i]);
+            }
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        ArrayContainer and(ArrayContainer other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (values[i] < other.values[j]) {
+                    i++;
+                } else if (values[i] > other.values[j]) {
+                    j++;
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        private BitmapContainer toBitmap() {
+            return new BitmapContainer(toWords(), cardinality);
+        }
+    }
+
+    /**
+     * 稠密桶：65536位的位图
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * 由位图字创建容器，元素较少时转为数组容器
+         */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality <= ARRAY_MAX ? bitmap.toArray() : bitmap;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(TYPE_BITMAP);
+            out.writeInt(cardinality);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
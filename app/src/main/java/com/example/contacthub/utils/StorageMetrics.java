@@ -0,0 +1,193 @@
+package com.example.contacthub.utils;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 存储指标统计
+ * 记录每次持久化写入的字节数与耗时，用于评估持久性保证带来的开销；
+ * 同时记录合并写入的请求数和实际写入数，用于评估写入合并节省的写入次数；
+ * 以及联系人保存中因内容未变而跳过、增量写入和完整写入的次数，和写入前等待文件锁的时间
+ */
+public final class StorageMetrics {
+    private static final String TAG = "StorageMetrics";
+
+    private static final AtomicLong totalWrites = new AtomicLong();
+    private static final AtomicLong totalBytes = new AtomicLong();
+    private static final AtomicLong totalWriteNanos = new AtomicLong();
+    private static final AtomicLong totalSyncNanos = new AtomicLong();
+    private static final AtomicLong coalescedRequests = new AtomicLong();
+    private static final AtomicLong coalescedWrites = new AtomicLong();
+    private static final AtomicLong skippedSaves = new AtomicLong();
+    private static final AtomicLong deltaSaves = new AtomicLong();
+    private static final AtomicLong fullSaves = new AtomicLong();
+    private static final AtomicLong lockAcquisitions = new AtomicLong();
+    private static final AtomicLong totalLockWaitNanos = new AtomicLong();
+    private static final AtomicLong maxLockWaitNanos = new AtomicLong();
+    private static final Map<String, WriteStats> lastWrites = new ConcurrentHashMap<>();
+
+    private StorageMetrics() {
+    }
+
+    /**
+     * 单次写入的统计信息
+     */
+    public static final class WriteStats {
+        public final String filename;
+        public final long bytes;
+        public final long elapsedNanos;
+        public final long syncNanos;
+
+        WriteStats(String filename, long bytes, long elapsedNanos, long syncNanos) {
+            this.filename = filename;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.syncNanos = syncNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d 字节, 耗时 %.2fms (fsync %.2fms)",
+                    filename, bytes, elapsedNanos / 1e6, syncNanos / 1e6);
+        }
+    }
+
+    /**
+     * 记录一次写入
+     *
+     * @param filename 写入的文件名
+     * @param bytes 写入的字节数
+     * @param elapsedNanos 从开始写入到提交完成的总耗时
+     * @param syncNanos 其中fsync所用的时间
+     */
+    public static void recordWrite(String filename, long bytes, long elapsedNanos, long syncNanos) {
+        WriteStats stats = new WriteStats(filename, bytes, elapsedNanos, syncNanos);
+        lastWrites.put(filename, stats);
+        totalWrites.incrementAndGet();
+        totalBytes.addAndGet(bytes);
+        totalWriteNanos.addAndGet(elapsedNanos);
+        totalSyncNanos.addAndGet(syncNanos);
+        Log.d(TAG, "写入 " + stats);
+    }
+
+    /**
+     * 记录一次合并提交
+     *
+     * @param requests 合并进本次提交的修改请求数
+     * @param writes 本次提交实际执行的写入次数
+     */
+    public static void recordCoalescedCommit(int requests, int writes) {
+        long totalRequests = coalescedRequests.addAndGet(requests);
+        long totalWrites = coalescedWrites.addAndGet(writes);
+        Log.d(TAG, "合并提交: 请求 " + requests + " 次, 写入 " + writes + " 次; 累计节省 "
+                + (totalRequests - totalWrites) + " 次写入");
+    }
+
+    /**
+     * 记录一次联系人保存的结果
+     *
+     * @param skipped 内容未变而跳过的联系人数
+     * @param delta 只写入修改字段的联系人数
+     * @param full 完整写入的联系人数
+     */
+    public static void recordContactSaves(int skipped, int delta, int full) {
+        skippedSaves.addAndGet(skipped);
+        deltaSaves.addAndGet(delta);
+        fullSaves.addAndGet(full);
+        Log.d(TAG, "保存联系人: 跳过 " + skipped + ", 增量 " + delta + ", 完整 " + full
+                + "; 累计跳过/执行 " + String.format(Locale.ROOT, "%.2f", getSkippedSaveRatio()));
+    }
+
+    /**
+     * 记录一次文件锁等待
+     * 等待超过1ms时输出日志，说明有其他线程或进程正在写入同一文件
+     *
+     * @param filename 加锁的文件名
+     * @param waitNanos 从请求加锁到获得锁的时间
+     */
+    public static void recordLockWait(String filename, long waitNanos) {
+        lockAcquisitions.incrementAndGet();
+        totalLockWaitNanos.addAndGet(waitNanos);
+        maxLockWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        if (waitNanos > 1_000_000L) {
+            Log.d(TAG, String.format(Locale.ROOT, "等待文件锁 %s: %.2fms", filename, waitNanos / 1e6));
+        }
+    }
+
+    /**
+     * 获取累计等待文件锁的时间
+     *
+     * @return 进程启动以来等待文件锁的纳秒数
+     */
+    public static long getTotalLockWaitNanos() {
+        return totalLockWaitNanos.get();
+    }
+
+    /**
+     * 获取跳过的保存次数与实际执行的保存次数之比
+     *
+     * @return 跳过次数除以增量和完整写入次数之和，没有执行过保存时返回跳过次数
+     */
+    public static double getSkippedSaveRatio() {
+        long performed = deltaSaves.get() + fullSaves.get();
+        return performed == 0 ? skippedSaves.get() : (double) skippedSaves.get() / performed;
+    }
+
+    /**
+     * 获取写入合并累计节省的写入次数
+     *
+     * @return 修改请求数与实际写入数之差
+     */
+    public static long getSavedWrites() {
+        return coalescedRequests.get() - coalescedWrites.get();
+    }
+
+    /**
+     * 获取指定文件最近一次写入的统计信息
+     *
+     * @param filename 文件名
+     * @return 最近一次写入的统计，没有记录时返回null
+     */
+    public static WriteStats getLastWrite(String filename) {
+        return lastWrites.get(filename);
+    }
+
+    /**
+     * 获取累计写入次数
+     *
+     * @return 进程启动以来的写入次数
+     */
+    public static long getTotalWrites() {
+        return totalWrites.get();
+    }
+
+    /**
+     * 获取累计写入字节数
+     *
+     * @return 进程启动以来写入的字节数
+     */
+    public static long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * 生成统计摘要
+     *
+     * @return 可读的统计摘要字符串
+     */
+    public static String summary() {
+        return String.format(Locale.ROOT, "写入 %d 次, 共 %d 字节, 总耗时 %.2fms, 其中fsync %.2fms; "
+                        + "合并请求 %d 次, 实际写入 %d 次, 节省 %d 次; "
+                        + "保存联系人跳过 %d 次, 增量 %d 次, 完整 %d 次, 跳过/执行 %.2f; "
+                        + "文件锁 %d 次, 等待共 %.2fms, 最长 %.2fms",
+                totalWrites.get(), totalBytes.get(),
+                totalWriteNanos.get() / 1e6, totalSyncNanos.get() / 1e6,
+                coalescedRequests.get(), coalescedWrites.get(), getSavedWrites(),
+                skippedSaves.get(), deltaSaves.get(), fullSaves.get(), getSkippedSaveRatio(),
+                lockAcquisitions.get(), totalLockWaitNanos.get() / 1e6, maxLockWaitNanos.get() / 1e6);
+    }
+}
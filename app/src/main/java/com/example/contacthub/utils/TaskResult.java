@@ -0,0 +1,51 @@
+package com.example.contacthub.utils;
+
+/**
+ * 后台任务的执行结果
+ * 成功时携带返回值，失败时携带异常
+ *
+ * @param <T> 返回值类型
+ */
+public final class TaskResult<T> {
+    private final T value;
+    private final Exception error;
+
+    private TaskResult(T value, Exception error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * 创建成功结果
+     *
+     * @param value 返回值
+     * @param <T> 返回值类型
+     * @return 成功结果
+     */
+    public static <T> TaskResult<T> success(T value) {
+        return new TaskResult<>(value, null);
+    }
+
+    /**
+     * 创建失败结果
+     *
+     * @param error 任务抛出的异常
+     * @param <T> 返回值类型
+     * @return 失败结果
+     */
+    public static <T> TaskResult<T> failure(Exception error) {
+        return new TaskResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.contacthub.data;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.ContactField;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 联系人变更日志的重放测试，重点是写入中途崩溃留下的半行
+ */
+public class ContactJournalTest {
+    private static final String FILENAME = "contacts.journal";
+
+    private File directory;
+    private FilesContext context;
+    private ContactJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal").toFile();
+        context = new FilesContext(directory);
+        journal = new ContactJournal(context, FILENAME, SchemaMigrator.forContacts(context));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replay_appliesUpsertsPatchesAndDeletes() throws IOException {
+        journal.appendUpserts(Arrays.asList(contact(1, "a"), contact(2, "b"), contact(3, "c")));
+        Contact renamed = contact(1, "a2");
+        journal.appendPatches(Collections.singletonList(new ContactPatch(renamed, EnumSet.of(ContactField.NAME))));
+        journal.appendDelete(2);
+
+        Map<Integer, Contact> contacts = new HashMap<>();
+        assertEquals(5, journal.replay(contacts, Long.MAX_VALUE));
+        assertEquals(2, contacts.size());
+        assertEquals("a2", contacts.get(1).getName());
+        assertNull(contacts.get(2));
+        assertEquals("c", contacts.get(3).getName());
+    }
+
+    @Test
+    public void replay_skipsTornTail() throws IOException {
+        journal.appendUpserts(Arrays.asList(contact(1, "a"), contact(2, "b")));
+        long intact = journal.length();
+        journal.appendUpsert(contact(3, "c"));
+        // 模拟追加第三条记录时进程被杀：只留下半行，没有换行
+        truncate(intact + (journal.length() - intact) / 2);
+
+        Map<Integer, Contact> contacts = new HashMap<>();
+        assertEquals(2, journal.replay(contacts, Long.MAX_VALUE));
+        assertEquals(2, contacts.size());
+        assertFalse(contacts.containsKey(3));
+    }
+
+    @Test
+    public void append_afterTornTail_keepsNewRecord() throws IOException {
+        journal.appendUpsert(contact(1, "a"));
+        long intact = journal.length();
+        journal.appendUpsert(contact(2, "b"));
+        truncate(intact + 5);
+
+        // 新记录不能拼接到半行后面一起被丢弃
+        journal.appendUpsert(contact(3, "c"));
+
+        Map<Integer, Contact> contacts = new HashMap<>();
+        assertEquals(2, journal.replay(contacts, Long.MAX_VALUE));
+        assertEquals("a", contacts.get(1).getName());
+        assertFalse(contacts.containsKey(2));
+        assertEquals("c", contacts.get(3).getName());
+    }
+
+    @Test
+    public void replay_skipsRecordWithBadChecksum() throws IOException {
+        journal.appendUpserts(Arrays.asList(contact(1, "a"), contact(2, "b")));
+        byte[] bytes = Files.readAllBytes(new File(directory, FILENAME).toPath());
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        // 改动第一条记录的内容，不改校验值
+        text = text.replaceFirst("\"a\"", "\"x\"");
+        Files.write(new File(directory, FILENAME).toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+        Map<Integer, Contact> contacts = new HashMap<>();
+        assertEquals(1, journal.replay(contacts, Long.MAX_VALUE));
+        assertFalse(contacts.containsKey(1));
+        assertEquals("b", contacts.get(2).getName());
+    }
+
+    @Test
+    public void replay_stopsAtLimit() throws IOException {
+        journal.appendUpsert(contact(1, "a"));
+        long prefix = journal.length();
+        journal.appendUpsert(contact(2, "b"));
+
+        Map<Integer, Contact> contacts = new HashMap<>();
+        assertEquals(1, journal.replay(contacts, prefix));
+        assertEquals(1, contacts.size());
+    }
+
+    @Test
+    public void replay_countsRawBytesOfUndecodableLines() throws IOException {
+        journal.appendUpsert(contact(1, "a"));
+        // 不是有效UTF-8的一行，解码后再编码的长度与原始字节数不同
+        try (FileOutputStream out = new FileOutputStream(new File(directory, FILENAME), true)) {
+            out.write(new byte[]{(byte) 0xC3, '(', (byte) 0xFF, (byte) 0xFE, '\n'});
+        }
+        journal.appendUpsert(contact(2, "b"));
+
+        Map<Integer, Contact> contacts = new HashMap<>();
+        assertEquals(2, journal.replay(contacts, journal.length()));
+        assertEquals("b", contacts.get(2).getName());
+    }
+
+    @Test
+    public void replay_reportsReadFailure() throws IOException {
+        journal.appendUpserts(Arrays.asList(contact(1, "a"), contact(2, "b")));
+        context.failReads = true;
+
+        try {
+            journal.replay(new HashMap<>(), Long.MAX_VALUE);
+            fail("读取失败时不能返回只重放了一部分的结果");
+        } catch (IOException expected) {
+            // 预期的异常
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, FILENAME), "rw")) {
+            file.setLength(length);
+        }
+    }
+
+    private static Contact contact(int id, String name) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setName(name);
+        return contact;
+    }
+
+    /**
+     * 只提供私有文件目录的上下文，可以模拟读取失败
+     */
+    private static final class FilesContext extends ContextWrapper {
+        private final File directory;
+        boolean failReads;
+
+        FilesContext(File directory) {
+            super(null);
+            this.directory = directory;
+        }
+
+        @Override
+        public File getFilesDir() {
+            return directory;
+        }
+
+        @Override
+        public FileInputStream openFileInput(String name) throws FileNotFoundException {
+            if (!failReads) {
+                return new FileInputStream(new File(directory, name));
+            }
+            return new FileInputStream(new File(directory, name)) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    throw new IOException("模拟读取失败");
+                }
+            };
+        }
+
+        @Override
+        public FileOutputStream openFileOutput(String name, int mode) throws FileNotFoundException {
+            return new FileOutputStream(new File(directory, name), (mode & Context.MODE_APPEND) != 0);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.contacthub.data;
+
+import com.example.contacthub.model.Contact;
+import com.example.contacthub.model.Group;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 二进制联系人记录格式的编解码测试
+ */
+public class ContactRecordCodecTest {
+    private final Gson gson = new Gson();
+
+    @Test
+    public void contacts_roundTripAllFields() throws IOException {
+        Contact full = new Contact();
+        full.setId(1);
+        full.setName("张三");
+        full.setMobileNumber("138-0000-1234");
+        full.setTelephoneNumber("010 12345678");
+        full.setEmail("zhangsan@example.com");
+        full.setAddress("北京市");
+        full.setGroupIds(new ArrayList<>(Arrays.asList(1, 3)));
+        full.setPhotoRef("photos/1.jpg");
+        full.setQq("10001");
+        full.setWechat("zhangsan");
+        full.setWebsite("https://example.com");
+        full.setBirthday("1990-01-01");
+        full.setCompany("公司");
+        full.setPostalCode("100000");
+        full.setNotes("第一行\n第二行");
+        full.generatePinyin();
+
+        Contact sparse = new Contact();
+        sparse.setId(-7);
+
+        List<Contact> contacts = Arrays.asList(full, sparse);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContactRecordCodec.writeContacts(contacts, out);
+
+        List<Contact> decoded = ContactRecordCodec.readContacts(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(gson.toJson(contacts), gson.toJson(decoded));
+    }
+
+    @Test
+    public void groups_roundTrip() throws IOException {
+        List<Group> groups = Arrays.asList(new Group(1, false, "家人"), new Group(2, false, null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContactRecordCodec.writeGroups(groups, out);
+
+        List<Group> decoded = ContactRecordCodec.readGroups(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, decoded.size());
+        assertEquals(1, decoded.get(0).getId());
+        assertEquals("家人", decoded.get(0).getName());
+        assertEquals(2, decoded.get(1).getId());
+        assertNull(decoded.get(1).getName());
+    }
+
+    @Test
+    public void json_convertsToBinaryAndBack() throws IOException {
+        String json = "[{\"id\":1,\"name\":\"a\",\"groupIds\":[2]},null,{\"name\":\"没有ID\"},{\"id\":3}]";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, ContactRecordCodec.convertJsonToBinary(new StringReader(json), out));
+
+        StringWriter back = new StringWriter();
+        assertEquals(2, ContactRecordCodec.convertBinaryToJson(new ByteArrayInputStream(out.toByteArray()), back));
+        assertEquals("[{\"id\":1,\"name\":\"a\",\"groupIds\":[2]},{\"id\":3}]", back.toString());
+    }
+
+    @Test
+    public void truncatedRecord_isRejected() throws IOException {
+        Contact contact = new Contact();
+        contact.setId(1);
+        contact.setName("截断");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContactRecordCodec.writeContacts(Collections.singletonList(contact), out);
+        byte[] bytes = out.toByteArray();
+
+        try {
+            ContactRecordCodec.readContacts(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2)));
+            fail("截断的记录应当读取失败");
+        } catch (IOException expected) {
+            // 预期的异常
+        }
+    }
+
+    @Test
+    public void wrongKind_isRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContactRecordCodec.writeGroups(Collections.singletonList(new Group(1, false, "g")), out);
+
+        try {
+            ContactRecordCodec.readContacts(new ByteArrayInputStream(out.toByteArray()));
+            fail("分组记录不能按联系人读取");
+        } catch (IOException expected) {
+            // 预期的异常
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.contacthub.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分块AES-GCM加密的测试，重点是篡改和截断都能被发现
+ */
+public class FileEncryptionTest {
+    private static final int CHUNK_SIZE = 256;
+
+    private final FileEncryption encryption = new FileEncryption(
+            new SecretKeySpec(new byte[32], "AES"), CHUNK_SIZE);
+
+    @Test
+    public void stream_roundTrips() throws IOException {
+        // 空内容、不足一块、正好整块和多块加零头
+        for (int length : new int[]{0, 10, CHUNK_SIZE, CHUNK_SIZE * 3, CHUNK_SIZE * 5 + 7}) {
+            byte[] plain = randomBytes(length);
+            byte[] sealed = encrypt(plain);
+            assertTrue(FileEncryption.isEncrypted(sealed));
+            assertArrayEquals(plain, decrypt(sealed));
+        }
+    }
+
+    @Test
+    public void plainContent_passesThrough() throws IOException {
+        byte[] plain = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+        assertFalse(FileEncryption.isEncrypted(plain));
+        assertArrayEquals(plain, readAll(FileEncryption.detect(new ByteArrayInputStream(plain), null)));
+    }
+
+    @Test
+    public void tamperedByte_isDetected() throws IOException {
+        byte[] sealed = encrypt(randomBytes(CHUNK_SIZE * 3 + 10));
+        // 逐块改动一个字节，每一处都必须在读取时报错
+        for (int offset = sealed.length - 1; offset > 32; offset -= CHUNK_SIZE / 2) {
+            byte[] tampered = sealed.clone();
+            tampered[offset] ^= 1;
+            assertReadFails(tampered);
+        }
+    }
+
+    @Test
+    public void truncation_isDetected() throws IOException {
+        byte[] sealed = encrypt(randomBytes(CHUNK_SIZE * 3 + 10));
+        // 截在块中间、整块边界和只剩最后一块之前，都不能被当作完整文件
+        for (int cut = 1; cut < sealed.length - 16; cut += 37) {
+            assertReadFails(Arrays.copyOf(sealed, sealed.length - cut));
+        }
+    }
+
+    @Test
+    public void missingFinalChunk_isDetected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream wrapped = encryption.wrap(out);
+        wrapped.write(randomBytes(CHUNK_SIZE * 2 + 10));
+        // 未调用finish就关闭，最后一块没有写出
+        wrapped.close();
+        assertReadFails(out.toByteArray());
+    }
+
+    @Test
+    public void encryptedContent_withoutKey_isRejected() throws IOException {
+        byte[] sealed = encrypt(randomBytes(10));
+        try {
+            FileEncryption.detect(new ByteArrayInputStream(sealed), null);
+            fail("没有密钥时不能读取加密文件");
+        } catch (IOException expected) {
+            // 预期的异常
+        }
+    }
+
+    @Test
+    public void sealedRecord_rejectsTamperingAndTruncation() throws IOException {
+        byte[] plain = "{\"op\":\"upsert\",\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        byte[] sealed = encryption.seal(plain);
+        assertArrayEquals(plain, encryption.open(sealed));
+
+        byte[] tampered = sealed.clone();
+        tampered[tampered.length / 2] ^= 1;
+        assertNull(encryption.open(tampered));
+        assertNull(encryption.open(Arrays.copyOf(sealed, sealed.length - 1)));
+        assertNull(encryption.open(new byte[4]));
+    }
+
+    private byte[] encrypt(byte[] plain) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream wrapped = encryption.wrap(out);
+        wrapped.write(plain);
+        FileEncryption.finish(wrapped);
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] sealed) throws IOException {
+        try (InputStream in = FileEncryption.detect(new ByteArrayInputStream(sealed), encryption)) {
+            return readAll(in);
+        }
+    }
+
+    private void assertReadFails(byte[] sealed) {
+        try {
+            decrypt(sealed);
+            fail("被篡改或截断的加密内容应当读取失败");
+        } catch (IOException expected) {
+            // 预期的异常
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
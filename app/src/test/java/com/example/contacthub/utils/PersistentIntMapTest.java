@@ -0,0 +1,113 @@
+package com.example.contacthub.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 持久化映射的测试，与普通映射逐步对照
+ */
+public class PersistentIntMapTest {
+
+    @Test
+    public void randomOperations_matchHashMap() {
+        Random random = new Random(42);
+        Map<Integer, String> expected = new HashMap<>();
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            // 包含负数和跨越高位段的键
+            int key = random.nextBoolean() ? random.nextInt(2000) : random.nextInt();
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                String value = "v" + i;
+                expected.put(key, value);
+                map = map.plus(key, value);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey().intValue()));
+        }
+    }
+
+    @Test
+    public void oldVersions_areUnchanged() {
+        PersistentIntMap<String> v1 = PersistentIntMap.<String>empty().plus(1, "a").plus(2, "b");
+        PersistentIntMap<String> v2 = v1.plus(1, "a2").minus(2).plus(3, "c");
+
+        assertEquals(2, v1.size());
+        assertEquals("a", v1.get(1));
+        assertEquals("b", v1.get(2));
+        assertFalse(v1.containsKey(3));
+        assertEquals(2, v2.size());
+        assertEquals("a2", v2.get(1));
+        assertNull(v2.get(2));
+    }
+
+    @Test
+    public void unchangedOperations_returnSameMap() {
+        String value = "a";
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().plus(1, value);
+        assertSame(map, map.plus(1, value));
+        assertSame(map, map.minus(2));
+    }
+
+    @Test
+    public void iteration_isInUnsignedKeyOrder() {
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        int[] keys = {-1, 5, Integer.MIN_VALUE, 0, 1 << 20, Integer.MAX_VALUE};
+        for (int key : keys) {
+            map = map.plus(key, "v");
+        }
+        List<Integer> order = new ArrayList<>(map.keySet());
+        List<Integer> sorted = new ArrayList<>(order);
+        sorted.sort(Integer::compareUnsigned);
+        assertEquals(sorted, order);
+    }
+
+    @Test
+    public void diff_reportsOnlyChangedKeys() {
+        Map<Integer, String> source = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            source.put(i, "v" + i);
+        }
+        PersistentIntMap<String> before = PersistentIntMap.copyOf(source);
+        PersistentIntMap<String> after = before.plus(10, "changed").minus(20).plus(5000, "new");
+
+        Map<Integer, String[]> changes = new TreeMap<>();
+        PersistentIntMap.diff(before, after, (key, old, now) -> changes.put(key, new String[]{old, now}));
+
+        assertEquals(3, changes.size());
+        assertEquals("v10", changes.get(10)[0]);
+        assertEquals("changed", changes.get(10)[1]);
+        assertEquals("v20", changes.get(20)[0]);
+        assertNull(changes.get(20)[1]);
+        assertNull(changes.get(5000)[0]);
+        assertEquals("new", changes.get(5000)[1]);
+    }
+
+    @Test
+    public void mapMutators_areUnsupported() {
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().plus(1, "a");
+        try {
+            map.put(2, "b");
+            fail("持久化映射不能原地修改");
+        } catch (UnsupportedOperationException expected) {
+            assertEquals(1, map.size());
+        }
+    }
+}
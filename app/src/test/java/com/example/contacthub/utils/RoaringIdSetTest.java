@@ -0,0 +1,117 @@
+package com.example.contacthub.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 压缩ID集合的测试，集合运算与TreeSet对照，覆盖稀疏和稠密两种容器
+ */
+public class RoaringIdSetTest {
+
+    @Test
+    public void setOperations_matchTreeSet() {
+        Random random = new Random(7);
+        // 稀疏：跨越多个桶的少量ID；稠密：同一个桶内超过数组容器上限的ID
+        int[][] shapes = {{200, 1 << 20}, {20000, 40000}, {6000, 70000}};
+        for (int[] shape : shapes) {
+            Set<Integer> a = randomIds(random, shape[0], shape[1]);
+            Set<Integer> b = randomIds(random, shape[0], shape[1]);
+            RoaringIdSet setA = RoaringIdSet.of(a);
+            RoaringIdSet setB = RoaringIdSet.of(b);
+
+            Set<Integer> and = new TreeSet<>(a);
+            and.retainAll(b);
+            Set<Integer> or = new TreeSet<>(a);
+            or.addAll(b);
+            Set<Integer> andNot = new TreeSet<>(a);
+            andNot.removeAll(b);
+
+            assertArrayEquals(toArray(and), RoaringIdSet.and(setA, setB).toArray());
+            assertArrayEquals(toArray(or), RoaringIdSet.or(setA, setB).toArray());
+            assertArrayEquals(toArray(andNot), RoaringIdSet.andNot(setA, setB).toArray());
+            assertEquals(a.size(), setA.cardinality());
+        }
+    }
+
+    @Test
+    public void addAndRemove_convertBetweenContainers() {
+        RoaringIdSet set = new RoaringIdSet();
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(set.add(i));
+        }
+        assertFalse(set.add(5));
+        for (int i = 0; i < 10000; i += 2) {
+            assertTrue(set.remove(i));
+        }
+        assertFalse(set.remove(0));
+        assertEquals(5000, set.cardinality());
+        assertTrue(set.contains(9999));
+        assertFalse(set.contains(9998));
+        for (int i = 1; i < 10000; i += 2) {
+            set.remove(i);
+        }
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void serialization_roundTrips() throws IOException {
+        Set<Integer> ids = randomIds(new Random(3), 8000, 200000);
+        ids.add(-1);
+        RoaringIdSet set = RoaringIdSet.of(ids);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(new DataOutputStream(bytes));
+        RoaringIdSet read = RoaringIdSet.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(set, read);
+        assertArrayEquals(set.toArray(), read.toArray());
+    }
+
+    @Test
+    public void frozenSet_rejectsChanges() {
+        RoaringIdSet set = new RoaringIdSet();
+        set.add(1);
+        RoaringIdSet copy = set.copy();
+        set.freeze();
+        try {
+            set.add(2);
+            fail("冻结后的集合不能修改");
+        } catch (UnsupportedOperationException expected) {
+            // 预期的异常
+        }
+        assertTrue(copy.add(2));
+        assertEquals(1, set.cardinality());
+    }
+
+    private static Set<Integer> randomIds(Random random, int count, int bound) {
+        Set<Integer> ids = new TreeSet<>();
+        while (ids.size() < count) {
+            ids.add(random.nextInt(bound));
+        }
+        return ids;
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        // TreeSet按有符号顺序排列，测试中的ID都是非负数，与集合的无符号顺序一致
+        int[] array = new int[ids.size()];
+        int i = 0;
+        for (int id : ids) {
+            array[i++] = id;
+        }
+        return array;
+    }
+}